@@ -0,0 +1,54 @@
+package fr.uge.structsure.config;
+
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.services.AccountCache;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Authentication data of a request, built once by the {@link JwtFilter}
+ * and completed by the {@link RoleFilter}. It is stored as a request
+ * attribute so that the services reuse it instead of parsing the token
+ * and loading the account again.
+ * @param claims the claims of the parsed token
+ * @param account the account of the user, as found in the {@link AccountCache}
+ * @param requiredRole the minimum role of the requested endpoint, null if any user is allowed
+ */
+public record AuthContext(Claims claims, AccountCache.Snapshot account, Role requiredRole) {
+    /** Name of the request attribute holding the context */
+    public static final String ATTRIBUTE = AuthContext.class.getName();
+
+    public AuthContext {
+        Objects.requireNonNull(claims);
+        Objects.requireNonNull(account);
+    }
+
+    /**
+     * Gets the context of the given request
+     * @param request the current request
+     * @return the context, or empty if the request is not authenticated
+     */
+    public static Optional<AuthContext> of(HttpServletRequest request) {
+        return request.getAttribute(ATTRIBUTE) instanceof AuthContext context ? Optional.of(context) : Optional.empty();
+    }
+
+    /**
+     * Stores this context in the given request
+     * @param request the current request
+     */
+    public void attach(HttpServletRequest request) {
+        request.setAttribute(ATTRIBUTE, this);
+    }
+
+    /**
+     * Copies this context with the role required by the endpoint
+     * @param role the minimum role of the endpoint
+     * @return the new context
+     */
+    public AuthContext withRequiredRole(Role role) {
+        return new AuthContext(claims, account, role);
+    }
+}
@@ -0,0 +1,20 @@
+package fr.uge.structsure.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Registers the binary format for the Android payloads after the
+ * default converters so that JSON stays the default format.
+ */
+@Configuration
+public class BinaryCodecConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new BinaryMessageConverter());
+    }
+}
@@ -0,0 +1,62 @@
+package fr.uge.structsure.config;
+
+import fr.uge.structsure.dto.ErrorDTO;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.structure.StructureResponseDTO;
+import fr.uge.structsure.utils.BinaryCodec;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Converts the Android payloads from and to the compact binary format
+ * of {@link BinaryCodec}. This converter is only used when the client
+ * explicitly asks for {@link #MEDIA_TYPE}, JSON stays the default.
+ */
+public class BinaryMessageConverter extends AbstractHttpMessageConverter<Object> {
+    /** Name of the binary media type */
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.structsure+binary";
+
+    /** The binary media type */
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    private static final Set<Class<?>> SUPPORTED = Set.of(
+        AndroidScanResultDTO.class, StructureResponseDTO.class, ErrorDTO.class
+    );
+
+    public BinaryMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return SUPPORTED.contains(clazz);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        try {
+            if (clazz == AndroidScanResultDTO.class) return BinaryCodec.decodeScan(inputMessage.getBody());
+            if (clazz == StructureResponseDTO.class) return BinaryCodec.decodeStructure(inputMessage.getBody());
+            return BinaryCodec.decodeError(inputMessage.getBody());
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Malformed binary payload: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+        switch (value) {
+            case AndroidScanResultDTO scan -> BinaryCodec.encode(scan, outputMessage.getBody());
+            case StructureResponseDTO structure -> BinaryCodec.encode(structure, outputMessage.getBody());
+            case ErrorDTO error -> BinaryCodec.encode(error, outputMessage.getBody());
+            default -> throw new HttpMessageNotWritableException("Unsupported type " + value.getClass());
+        }
+    }
+}
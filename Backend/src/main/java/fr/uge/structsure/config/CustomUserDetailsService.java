@@ -1,6 +1,7 @@
 package fr.uge.structsure.config;
 
 import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.services.AccountCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
@@ -45,4 +46,14 @@ public class CustomUserDetailsService implements UserDetailsService {
         return new User(account.getLogin(), account.getPasswordEncrypted(),
                 Collections.singletonList(new SimpleGrantedAuthority(account.getRole().toString())));
     }
+
+    /**
+     * Converts the given account to the user object of Spring Security
+     * @param account the account of the user
+     * @return UserDetails the user with its login, password and role
+     */
+    static UserDetails toUserDetails(AccountCache.Snapshot account) {
+        return new User(account.login(), account.passwordEncrypted() == null ? "" : account.passwordEncrypted(),
+                Collections.singletonList(new SimpleGrantedAuthority(account.role().toString())));
+    }
 }
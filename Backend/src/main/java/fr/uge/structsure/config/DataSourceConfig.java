@@ -0,0 +1,162 @@
+package fr.uge.structsure.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import fr.uge.structsure.services.StatementStatistics;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.sqlite.SQLiteConfig;
+
+import javax.sql.DataSource;
+
+/**
+ * Connections to the SQLite database. SQLite only allows one writer at
+ * a time, so instead of letting concurrent writers fail with
+ * SQLITE_BUSY, all the writes go through a pool of a single connection
+ * where they wait for their turn. The database uses the WAL journal so
+ * that the reads are not blocked by the writer, and they go through a
+ * separate pool of read-only connections.
+ * <p>
+ * The read-only transactions ({@code @Transactional(readOnly = true)},
+ * including the find methods of the repositories) are routed to the
+ * read pool, everything else to the write lane. Connections are taken
+ * lazily, once the transaction is known to be read-only, and are given
+ * back at the end of each transaction rather than being held for the
+ * whole request.
+ * <p>
+ * When the requests run on virtual threads, the SQLite driver pins
+ * the carrier thread for the whole duration of its native calls. The
+ * pools bound the number of threads inside the driver, so the read
+ * pool is reduced if needed so that the readers and the writer always
+ * leave one carrier free for the threads that are not waiting for the
+ * database. With less than {@link #MIN_CARRIERS} carriers, this is not
+ * possible and the requests run on platform threads instead, see
+ * {@link VirtualThreadsFallback}.
+ */
+@Configuration
+public class DataSourceConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataSourceConfig.class);
+
+    /** Carriers needed by one reader, the writer and the other threads */
+    static final int MIN_CARRIERS = 3;
+
+    /**
+     * Creates the single connection pool used for the writes. It is
+     * created first as it creates the database file and sets the WAL
+     * journal, which is kept by the file.
+     * @param url the url of the database
+     * @param busyTimeout maximum time to wait for a lock held by another process, in milliseconds
+     * @param writeTimeout maximum time to wait for the write connection, in milliseconds
+     * @return the write pool
+     */
+    @Bean(destroyMethod = "close")
+    public HikariDataSource writeDataSource(
+        @Value("${spring.datasource.url}") String url,
+        @Value("${app.datasource.busy-timeout:5000}") int busyTimeout,
+        @Value("${app.datasource.write-timeout:30000}") long writeTimeout
+    ) {
+        var sqlite = new SQLiteConfig();
+        sqlite.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        sqlite.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        sqlite.setBusyTimeout(busyTimeout);
+        var config = poolConfig("sqlite-writer", url, sqlite);
+        config.setMaximumPoolSize(1);
+        config.setConnectionTimeout(writeTimeout);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Creates the pool of read-only connections.
+     * @param writeDataSource the write pool, that must be created first
+     * @param url the url of the database
+     * @param busyTimeout maximum time to wait for a lock held by another process, in milliseconds
+     * @param readers the number of read connections
+     * @param virtualThreads true if the requests run on virtual threads
+     * @return the read pool
+     */
+    @Bean(destroyMethod = "close")
+    public HikariDataSource readDataSource(
+        @Qualifier("writeDataSource") HikariDataSource writeDataSource,
+        @Value("${spring.datasource.url}") String url,
+        @Value("${app.datasource.busy-timeout:5000}") int busyTimeout,
+        @Value("${app.datasource.readers:4}") int readers,
+        @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+    ) {
+        if (virtualThreads) {
+            /* The readers and the write connection leave one carrier free */
+            var maxReaders = carriers() - 2;
+            if (readers > maxReaders) {
+                LOGGER.warn("Read pool reduced from {} to {} connections to not pin all the {} virtual thread carriers",
+                    readers, maxReaders, carriers());
+                readers = maxReaders;
+            }
+        }
+        var sqlite = new SQLiteConfig();
+        sqlite.setReadOnly(true);
+        sqlite.setBusyTimeout(busyTimeout);
+        var config = poolConfig("sqlite-reader", url, sqlite);
+        config.setMaximumPoolSize(readers);
+        config.setReadOnly(true);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Creates the data source used by the application, routing each
+     * connection to the read or the write pool. Its statements are
+     * recorded in the statistics unless they are disabled.
+     * @param writeDataSource the write pool
+     * @param readDataSource the read pool
+     * @param statistics the statistics of the statements
+     * @param statisticsEnabled true to record the statements in the statistics
+     * @return the data source
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(
+        @Qualifier("writeDataSource") DataSource writeDataSource,
+        @Qualifier("readDataSource") DataSource readDataSource,
+        StatementStatistics statistics,
+        @Value("${app.sql.statistics.enabled:true}") boolean statisticsEnabled
+    ) {
+        var dataSource = new LazyConnectionDataSourceProxy(writeDataSource);
+        dataSource.setReadOnlyDataSource(readDataSource);
+        return statisticsEnabled ? new StatementStatisticsDataSource(dataSource, statistics) : dataSource;
+    }
+
+    /**
+     * Releases the connections at the end of each transaction, so that
+     * a request holding a read connection can then get the write one.
+     * @return the customizer of the Hibernate properties
+     */
+    @Bean
+    public HibernatePropertiesCustomizer connectionHandling() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+            PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    /**
+     * Gets the number of platform threads running the virtual threads
+     * @return the parallelism of the virtual threads scheduler
+     */
+    static int carriers() {
+        return Integer.getInteger("jdk.virtualThreadScheduler.parallelism", Runtime.getRuntime().availableProcessors());
+    }
+
+    private static HikariConfig poolConfig(String name, String url, SQLiteConfig sqlite) {
+        var config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(url);
+        config.setDriverClassName("org.sqlite.JDBC");
+        config.setDataSourceProperties(sqlite.toProperties());
+        return config;
+    }
+}
@@ -0,0 +1,75 @@
+package fr.uge.structsure.config;
+
+import fr.uge.structsure.entities.Role;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Table of the roles required by the API endpoints, read once at
+ * startup from the {@link RequiresRole} annotations of the controllers
+ * so that the annotations are not looked up for each request.
+ */
+@Component
+public class EndpointRoles {
+
+    /**
+     * An endpoint of the API
+     * @param mapping the conditions a request must match to get to the endpoint
+     * @param role the minimum role of the endpoint, null if any user is allowed
+     */
+    private record Endpoint(RequestMappingInfo mapping, Role role) {}
+
+    private final List<Endpoint> endpoints;
+
+    /** Whether at least one endpoint requires a role */
+    private final boolean restricted;
+
+    /**
+     * Internal constructor intended to be used by Spring only to set
+     * autowired fields.
+     * @param handlerMapping the mapping of the requests to the controllers
+     *                       methods, not the one of the actuator endpoints
+     */
+    @Autowired
+    public EndpointRoles(@Qualifier("requestMappingHandlerMapping") RequestMappingHandlerMapping handlerMapping) {
+        var list = new ArrayList<Endpoint>();
+        handlerMapping.getHandlerMethods().forEach((mapping, method) -> {
+            var annotation = method.getMethodAnnotation(RequiresRole.class);
+            list.add(new Endpoint(mapping, annotation == null ? null : annotation.value()));
+        });
+        endpoints = List.copyOf(list);
+        restricted = endpoints.stream().anyMatch(endpoint -> endpoint.role() != null);
+    }
+
+    /**
+     * Finds the minimum role required to access the endpoint that
+     * handles the given request. When several endpoints match the
+     * request, the most specific one is used, as Spring MVC does.
+     * @param request the request of the client
+     * @return the minimum role, or null if any user is allowed
+     */
+    public Role requiredRole(HttpServletRequest request) {
+        if (!restricted) return null;
+        if (!ServletRequestPathUtils.hasParsedRequestPath(request)) {
+            ServletRequestPathUtils.parseAndCache(request);
+        }
+        RequestMappingInfo best = null;
+        Role role = null;
+        for (var endpoint : endpoints) {
+            var match = endpoint.mapping().getMatchingCondition(request);
+            if (match != null && (best == null || match.compareTo(best, request) < 0)) {
+                best = match;
+                role = endpoint.role();
+            }
+        }
+        return role;
+    }
+}
@@ -0,0 +1,33 @@
+package fr.uge.structsure.config;
+
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewFilter;
+
+/**
+ * Opens the entity manager of a request before the security filters
+ * so that the account loaded by the {@link JwtFilter} stays attached
+ * during the whole request. Its lazy relations can then be read by the
+ * services, and the transactions of the services reuse the same entity
+ * manager.
+ * <p>
+ * This replaces the interceptor enabled by {@code spring.jpa.open-in-view},
+ * which only starts after the filters.
+ */
+@Configuration
+public class EntityManagerInViewConfig {
+
+    /**
+     * Registers the filter right before the security filter chain
+     * @return the filter registration
+     */
+    @Bean
+    public FilterRegistrationBean<OpenEntityManagerInViewFilter> openEntityManagerInViewFilter() {
+        var registration = new FilterRegistrationBean<>(new OpenEntityManagerInViewFilter());
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 10);
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
@@ -2,6 +2,8 @@ package fr.uge.structsure.config;
 
 import fr.uge.structsure.exceptions.Error;
 import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.services.AccountCache;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -13,7 +15,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
@@ -21,6 +22,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.Objects;
 
 /**
  * This is a filter that will be called before any request. Its role is to check
@@ -29,14 +31,20 @@ import java.util.Date;
 @Component
 public class JwtFilter extends OncePerRequestFilter {
 
-    private final CustomUserDetailsService customUserDetailsService;
+    private final AccountCache accountCache;
 
     private final JwtUtils jwtUtils;
 
+    /**
+     * Internal constructor intended to be used by Spring only to set
+     * autowired fields.
+     * @param accountCache to get the accounts without querying the database each time
+     * @param jwtUtils JsonWebToken manager
+     */
     @Autowired
-    public JwtFilter(CustomUserDetailsService customUserDetailsService, JwtUtils jwtUtils) {
-        this.customUserDetailsService = customUserDetailsService;
-        this.jwtUtils = jwtUtils;
+    public JwtFilter(AccountCache accountCache, JwtUtils jwtUtils) {
+        this.accountCache = Objects.requireNonNull(accountCache);
+        this.jwtUtils = Objects.requireNonNull(jwtUtils);
     }
 
     /**
@@ -62,16 +70,20 @@ public class JwtFilter extends OncePerRequestFilter {
 
         String jwt = authHeader.substring(7);
         try {
-            String username = jwtUtils.extractUsername(jwt);
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = customUserDetailsService.loadUserByUsername(username);
-                if (jwtUtils.validateToken(jwt, userDetails)) {
+            var claims = jwtUtils.parse(jwt);
+            var username = claims.getSubject();
+            if (username != null && AuthContext.of(request).isEmpty()) {
+                var account = accountCache.get(username)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found : " + username));
+                new AuthContext(claims, account, null).attach(request);
+                if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                    var userDetails = CustomUserDetailsService.toUserDetails(account);
                     var authenticationToken = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                     authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authenticationToken);
                 }
             }
-            tryRenewToken(request, response, jwt, username);
+            tryRenewToken(request, response, claims);
         } catch (ExpiredJwtException | UsernameNotFoundException e) {
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
         }
@@ -83,16 +95,15 @@ public class JwtFilter extends OncePerRequestFilter {
      * response header if the given one is about to expire.
      * @param request to make sure the call is an API endpoint
      * @param response to put the new token in
-     * @param jwt the current token to check
-     * @param username the login of the user
+     * @param claims the claims of the current token
      */
-    private void tryRenewToken(HttpServletRequest request, HttpServletResponse response, String jwt, String username) {
+    private void tryRenewToken(HttpServletRequest request, HttpServletResponse response, Claims claims) {
         if (!request.getRequestURI().startsWith("/api")) return;
         var tokenAlreadyRenewed = response.getHeader("Authorization") != null;
         if (tokenAlreadyRenewed) return;
-        var remainingTime = jwtUtils.extractExpirationDate(jwt).getTime() - new Date().getTime();
+        var remainingTime = claims.getExpiration().getTime() - new Date().getTime();
         if (remainingTime > 0 && remainingTime < jwtUtils.expirationTime / 2) {
-            var newToken = jwtUtils.generateToken(username);
+            var newToken = jwtUtils.generateToken(claims.getSubject());
             response.setHeader("Authorization", newToken);
         }
     }
@@ -103,6 +103,17 @@ public class JwtUtils {
         return claimsResolver.apply(claims);
     }
 
+    /**
+     * Parses the given token and checks its signature and expiration
+     * date. Callers needing several claims should parse the token once
+     * with this method rather than calling the extract methods.
+     * @param token the token to parse
+     * @return the claims of the token
+     */
+    public Claims parse(String token) {
+        return extractAllClaims(token);
+    }
+
     private Claims extractAllClaims(String token) {
         return Jwts.parser()
                 .setSigningKey(getSignkey())
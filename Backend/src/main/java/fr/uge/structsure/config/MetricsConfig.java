@@ -0,0 +1,96 @@
+package fr.uge.structsure.config;
+
+import fr.uge.structsure.services.AppLogWriter;
+import fr.uge.structsure.services.StatementStatistics;
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Metrics of the server, in addition to the ones of Spring Boot (JVM
+ * memory and GC, connection pools, requests and Spring Data repository
+ * calls) and the statistics of the SQL statements. They are exposed to
+ * the administrators by
+ * {@link fr.uge.structsure.controllers.MonitoringController}.
+ */
+@Configuration
+public class MetricsConfig {
+    /**
+     * Adds the controller method that handled the request to the
+     * request metrics, to tell apart the endpoints sharing a path.
+     * @return the convention naming the request metrics
+     */
+    @Bean
+    public DefaultServerRequestObservationConvention handlerObservationConvention() {
+        return new DefaultServerRequestObservationConvention() {
+            @Override
+            public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+                var handler = context.getCarrier().getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+                var name = handler instanceof HandlerMethod method
+                    ? method.getBeanType().getSimpleName() + "." + method.getMethod().getName()
+                    : "none";
+                return super.getLowCardinalityKeyValues(context).and(KeyValue.of("handler", name));
+            }
+        };
+    }
+
+    /**
+     * Times the calls to the repositories that are not Spring Data ones
+     * (Criteria queries and JDBC writers).
+     * @param meterRegistry the registry of the metrics, resolved at the first call
+     * @return the post-processor adding the timing to the repositories
+     */
+    @Bean
+    public static RepositoryMetricsPostProcessor repositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new RepositoryMetricsPostProcessor(meterRegistry);
+    }
+
+    /**
+     * Registers the filter counting the SQL statements of each request,
+     * before the {@link EntityManagerInViewConfig} filter.
+     * @param statistics the statistics of the statements
+     * @param enabled true if the statements are recorded in the statistics
+     * @return the filter registration
+     */
+    @Bean
+    public FilterRegistrationBean<StatementStatisticsFilter> statementStatisticsFilter(
+        StatementStatistics statistics,
+        @Value("${app.sql.statistics.enabled:true}") boolean enabled
+    ) {
+        var registration = new FilterRegistrationBean<>(new StatementStatisticsFilter(statistics));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 20);
+        registration.addUrlPatterns("/api/*");
+        registration.setEnabled(enabled);
+        return registration;
+    }
+
+    /**
+     * Exposes the counters of the log writer.
+     * @param appLogWriter the writer of the log entries
+     * @return the binder of the log writer metrics
+     */
+    @Bean
+    public MeterBinder appLogWriterMetrics(AppLogWriter appLogWriter) {
+        return registry -> {
+            FunctionCounter.builder("structsure.logs.written", appLogWriter, AppLogWriter::written)
+                .description("Log entries written in database").register(registry);
+            FunctionCounter.builder("structsure.logs.failed", appLogWriter, AppLogWriter::failed)
+                .description("Log entries that could not be written").register(registry);
+            Gauge.builder("structsure.logs.pending", appLogWriter, AppLogWriter::pending)
+                .description("Log entries waiting to be written").register(registry);
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package fr.uge.structsure.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ClassFilter;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.ClassFilters;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationClassFilter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Repository;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times each public method of the {@link Repository} beans, such as
+ * the Criteria queries and the JDBC writers, in the
+ * {@code structsure.repository.invocations} timer. The Spring Data
+ * repositories are left out as Spring Boot already times them.
+ */
+public class RepositoryMetricsPostProcessor extends AbstractAdvisingBeanPostProcessor {
+    /** Name of the timer of the repository calls */
+    public static final String TIMER = "structsure.repository.invocations";
+
+    /**
+     * Constructor
+     * @param meterRegistry the registry of the metrics, resolved at the first call
+     */
+    public RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        Objects.requireNonNull(meterRegistry);
+        ClassFilter repositories = ClassFilters.intersection(new AnnotationClassFilter(Repository.class, true),
+            type -> !org.springframework.data.repository.Repository.class.isAssignableFrom(type));
+        this.advisor = new DefaultPointcutAdvisor(new ComposablePointcut(repositories), new Timing(meterRegistry));
+        setBeforeExistingAdvisors(true);
+    }
+
+    /**
+     * Records the duration of the calls, with one timer per method.
+     */
+    private static final class Timing implements MethodInterceptor {
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+        private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+        private Timing(ObjectProvider<MeterRegistry> meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            var method = invocation.getMethod();
+            if (!Modifier.isPublic(method.getModifiers()) || method.getDeclaringClass() == Object.class) {
+                return invocation.proceed();
+            }
+            var start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                var timer = timers.computeIfAbsent(method, this::timer);
+                if (timer != null) timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private Timer timer(Method method) {
+            var registry = meterRegistry.getIfAvailable();
+            if (registry == null) return null;
+            return Timer.builder(TIMER)
+                .description("Duration of the repository calls")
+                .tag("repository", method.getDeclaringClass().getSimpleName())
+                .tag("method", method.getName())
+                .publishPercentileHistogram()
+                .register(registry);
+        }
+    }
+}
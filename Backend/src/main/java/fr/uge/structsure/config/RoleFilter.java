@@ -2,16 +2,15 @@ package fr.uge.structsure.config;
 
 import fr.uge.structsure.exceptions.Error;
 import fr.uge.structsure.exceptions.TraitementException;
-import fr.uge.structsure.repositories.AccountRepository;
-import fr.uge.structsure.services.AuthValidationService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
-import org.springframework.web.method.HandlerMethod;
-import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.io.IOException;
+import java.util.Objects;
 
 /**
  * Filter that applies role restrictions for API endpoints
@@ -19,57 +18,47 @@ import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandl
 @Component
 public class RoleFilter extends OncePerRequestFilter {
 
-    private final AuthValidationService authValidationService;
-    private final AccountRepository accountRepository;
-    private final RequestMappingHandlerMapping handlerMapping;
+    private final EndpointRoles endpointRoles;
 
     /**
      * Internal constructor intended to be used by Spring only to set
      * autowired fields.
-     * @param authValidationService authentication validation service
-     * @param accountRepository access to the accounts in the database
-     * @param handlerMapping to retrieve Java method for a given endpoint
+     * @param endpointRoles the roles required by each endpoint
      */
-    public RoleFilter(AuthValidationService authValidationService,
-        AccountRepository accountRepository,
-        RequestMappingHandlerMapping handlerMapping) {
-        this.authValidationService = authValidationService;
-        this.accountRepository = accountRepository;
-        this.handlerMapping = handlerMapping;
+    public RoleFilter(EndpointRoles endpointRoles) {
+        this.endpointRoles = Objects.requireNonNull(endpointRoles);
     }
 
     /**
      * Makes sure that the request is authorized for the current user
-     * role checking if the handler method has a {@link RequiresRole}
+     * role checking if the handler method has a {@link RequiresRole}.
+     * The user is taken from the {@link AuthContext} built by the
+     * {@link JwtFilter}.
      * @param request the request to get the handler method for
      * @param response to put errors in if any
      * @param filterChain to call other filters if the request is valid
      * @throws ServletException in case of unexpected exception
+     * @throws IOException if an I/O error occurs in the next filters
      */
     @Override
     protected void doFilterInternal(
         HttpServletRequest request,
         HttpServletResponse response,
         FilterChain filterChain
-    ) throws ServletException {
+    ) throws ServletException, IOException {
         try {
-            var handlerChain = handlerMapping.getHandler(request);
-            if (handlerChain != null && handlerChain.getHandler() instanceof HandlerMethod handlerMethod) {
-                var requiredRole = handlerMethod.getMethodAnnotation(RequiresRole.class);
-
-                if (requiredRole != null) {
-                    var user = authValidationService.checkTokenValidityAndUserAccessVerifier(request, accountRepository);
-                    if (user.getRole().ordinal() < requiredRole.value().ordinal()){
-                        throw new TraitementException(Error.UNAUTHORIZED_OPERATION);
-                    }
+            var requiredRole = endpointRoles.requiredRole(request);
+            if (requiredRole != null) {
+                var context = AuthContext.of(request).orElseThrow(() -> new TraitementException(Error.INVALID_TOKEN));
+                if (context.account().role().ordinal() < requiredRole.ordinal()) {
+                    throw new TraitementException(Error.UNAUTHORIZED_OPERATION);
                 }
+                context.withRequiredRole(requiredRole).attach(request);
             }
-            filterChain.doFilter(request, response);
         } catch (TraitementException e) {
             response.setStatus(e.error.code);
-        } catch (Exception e) {
-            throw new ServletException(e);
+            return;
         }
+        filterChain.doFilter(request, response);
     }
 }
-
@@ -26,7 +26,7 @@ import java.util.Objects;
 @EnableWebSecurity
 public class SpringSecurityConfig {
 
-    private final JwtUtils jwtUtils;
+    private final JwtFilter jwtFilter;
 
     private final CustomUserDetailsService customUserDetailsService;
     private final RoleFilter roleFilter;
@@ -34,13 +34,13 @@ public class SpringSecurityConfig {
     /**
      * Internal constructor intended to be used by Spring only to set
      * autowired fields.
-     * @param jwtUtils JsonWebToken manager
+     * @param jwtFilter to authenticate the user from its token
      * @param customUserDetailsService to load user by name
      * @param roleFilter to restrict endpoint access by role
      */
     @Autowired
-    public SpringSecurityConfig(JwtUtils jwtUtils, CustomUserDetailsService customUserDetailsService, RoleFilter roleFilter) {
-        this.jwtUtils = Objects.requireNonNull(jwtUtils);
+    public SpringSecurityConfig(JwtFilter jwtFilter, CustomUserDetailsService customUserDetailsService, RoleFilter roleFilter) {
+        this.jwtFilter = Objects.requireNonNull(jwtFilter);
         this.customUserDetailsService = Objects.requireNonNull(customUserDetailsService);
         this.roleFilter = roleFilter;
     }
@@ -65,7 +65,6 @@ public class SpringSecurityConfig {
      */
     @Bean
     SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
-        var jwtFilter = new JwtFilter(customUserDetailsService, jwtUtils);
         http
             .cors(Customizer.withDefaults())
             .csrf(AbstractHttpConfigurer::disable)
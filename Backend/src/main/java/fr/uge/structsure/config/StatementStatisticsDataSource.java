@@ -0,0 +1,136 @@
+package fr.uge.structsure.config;
+
+import fr.uge.structsure.services.StatementStatistics;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Data source recording each statement executed on its connections in
+ * the {@link StatementStatistics}, with its duration and the types of
+ * its parameters. It wraps the JDBC objects, so the statements of
+ * Hibernate and of the JDBC writers are both counted.
+ */
+public class StatementStatisticsDataSource extends DelegatingDataSource {
+    private final StatementStatistics statistics;
+
+    /**
+     * Constructor
+     * @param dataSource the data source giving the connections
+     * @param statistics the statistics fed with the statements
+     */
+    public StatementStatisticsDataSource(DataSource dataSource, StatementStatistics statistics) {
+        super(dataSource);
+        this.statistics = Objects.requireNonNull(statistics);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(Connection.class, new ConnectionHandler(super.getConnection()));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(Connection.class, new ConnectionHandler(super.getConnection(username, password)));
+    }
+
+    private static <T> T wrap(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(StatementStatisticsDataSource.class.getClassLoader(),
+            new Class<?>[] { type }, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * Wraps the statements created by the connection.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return switch (method.getName()) {
+                case "prepareStatement" -> wrap(PreparedStatement.class,
+                    new StatementHandler(StatementStatisticsDataSource.invoke(target, method, args), (String) args[0]));
+                case "prepareCall" -> wrap(CallableStatement.class,
+                    new StatementHandler(StatementStatisticsDataSource.invoke(target, method, args), (String) args[0]));
+                case "createStatement" -> wrap(Statement.class,
+                    new StatementHandler(StatementStatisticsDataSource.invoke(target, method, args), null));
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "toString" -> "Statistics of " + target;
+                default -> StatementStatisticsDataSource.invoke(target, method, args);
+            };
+        }
+    }
+
+    /**
+     * Times the executions of the statement and keeps the types of the
+     * parameters bound to it.
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final Object target;
+        private final String sql;
+        private final List<String> parameters = new ArrayList<>();
+
+        private StatementHandler(Object target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            var name = method.getName();
+            if (name.startsWith("execute")) {
+                var executed = args != null && args.length > 0 && args[0] instanceof String query ? query : sql;
+                var start = System.nanoTime();
+                try {
+                    return StatementStatisticsDataSource.invoke(target, method, args);
+                } finally {
+                    statistics.record(executed, System.nanoTime() - start, List.copyOf(parameters));
+                    if (name.equals("executeBatch")) parameters.clear();
+                }
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index && index > 0) {
+                setParameter(index, name.equals("setObject") && args[1] != null
+                    ? args[1].getClass().getSimpleName()
+                    : name.substring(3));
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            }
+            return switch (name) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "toString" -> "Statistics of " + target;
+                default -> StatementStatisticsDataSource.invoke(target, method, args);
+            };
+        }
+
+        private void setParameter(int index, String type) {
+            while (parameters.size() < index) parameters.add("?");
+            parameters.set(index - 1, type);
+        }
+    }
+}
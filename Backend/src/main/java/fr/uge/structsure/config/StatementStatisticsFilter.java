@@ -0,0 +1,54 @@
+package fr.uge.structsure.config;
+
+import fr.uge.structsure.services.StatementStatistics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Filter counting the SQL statements sent during each request, so that
+ * the requests sending too many statements are reported with their
+ * endpoint. It runs before the {@link EntityManagerInViewConfig} filter
+ * to also count the lazy loadings done while writing the response.
+ */
+public class StatementStatisticsFilter extends OncePerRequestFilter {
+
+    private final StatementStatistics statistics;
+
+    /**
+     * Constructor
+     * @param statistics the statistics of the statements
+     */
+    public StatementStatisticsFilter(StatementStatistics statistics) {
+        this.statistics = Objects.requireNonNull(statistics);
+    }
+
+    /**
+     * Counts the statements of the request, named after the endpoint
+     * that handled it once it is known.
+     * @param request the request to count the statements of
+     * @param response the response of the request
+     * @param filterChain to call the other filters
+     * @throws ServletException in case of unexpected exception
+     * @throws IOException in case of unexpected exception
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        try (var scope = statistics.open(request.getMethod() + " " + request.getRequestURI())) {
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                if (request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE) instanceof String pattern) {
+                    scope.rename(request.getMethod() + " " + pattern);
+                }
+            }
+        }
+    }
+}
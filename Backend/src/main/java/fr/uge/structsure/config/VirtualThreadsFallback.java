@@ -0,0 +1,44 @@
+package fr.uge.structsure.config;
+
+import org.apache.commons.logging.Log;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLogFactory;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+
+/**
+ * Runs the requests on platform threads when there are not enough
+ * virtual thread carriers for the database connections. The SQLite
+ * driver pins a carrier for each connection in use, so the write
+ * connection and at least one read connection must leave one carrier
+ * free, see {@link DataSourceConfig}. With fewer carriers, virtual
+ * threads could all be stuck behind the database, so they are disabled
+ * before the application starts.
+ */
+public class VirtualThreadsFallback implements EnvironmentPostProcessor {
+    private static final String VIRTUAL_THREADS = "spring.threads.virtual.enabled";
+
+    private final Log logger;
+
+    /**
+     * Constructor
+     * @param logFactory the factory of the loggers usable before the logging is set up
+     */
+    public VirtualThreadsFallback(DeferredLogFactory logFactory) {
+        this.logger = logFactory.getLog(VirtualThreadsFallback.class);
+    }
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!environment.getProperty(VIRTUAL_THREADS, Boolean.class, false)) return;
+        var carriers = DataSourceConfig.carriers();
+        if (carriers >= DataSourceConfig.MIN_CARRIERS) return;
+        logger.warn("Virtual threads disabled: " + carriers + " carriers cannot run the database connections and "
+            + "keep one free (at least " + DataSourceConfig.MIN_CARRIERS + " needed), requests run on platform threads");
+        environment.getPropertySources().addFirst(
+            new MapPropertySource("virtualThreadsFallback", Map.of(VIRTUAL_THREADS, false)));
+    }
+}
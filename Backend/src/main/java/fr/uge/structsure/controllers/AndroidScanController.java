@@ -1,10 +1,18 @@
 package fr.uge.structsure.controllers;
 
+import fr.uge.structsure.config.RequiresRole;
 import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.ScanChunkDTO;
+import fr.uge.structsure.entities.Role;
 import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.services.ScanQueueService;
 import fr.uge.structsure.services.ScanService;
+import fr.uge.structsure.services.ScanUploadService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,19 +23,159 @@ import java.util.Objects;
 @RequestMapping("/api/scans")
 public class AndroidScanController {
     private final ScanService scanService;
+    private final ScanQueueService scanQueueService;
+    private final ScanUploadService scanUploadService;
 
     @Autowired
-    public AndroidScanController(ScanService scanService) {
+    public AndroidScanController(ScanService scanService, ScanQueueService scanQueueService, ScanUploadService scanUploadService) {
         this.scanService = Objects.requireNonNull(scanService);
+        this.scanQueueService = Objects.requireNonNull(scanQueueService);
+        this.scanUploadService = Objects.requireNonNull(scanUploadService);
     }
 
     @PostMapping
     public ResponseEntity<?> submitScanResults(HttpServletRequest request, @RequestBody AndroidScanResultDTO scanData) {
         try {
-            scanService.saveScanResults(request, scanData);
-            return ResponseEntity.ok().build();
+            try {
+                return ResponseEntity.ok(scanService.saveScanResults(request, scanData));
+            } catch (DataIntegrityViolationException e) {
+                return ResponseEntity.ok(scanService.concurrentDuplicate(scanData, e));
+            }
         } catch (TraitementException e) {
             return e.toResponseEntity("Android scan rejected: {}");
         }
     }
+
+    /**
+     * Saves the scan read progressively from the request body, so that
+     * large scans do not have to fit in memory. The scan metadata must
+     * be placed before the results and sensorEdits arrays.
+     * @param request the request containing the scan
+     * @return the id of the saved scan and whether it had already been saved
+     */
+    @PostMapping(value = "/stream", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> submitStreamedScanResults(HttpServletRequest request) {
+        try {
+            return ResponseEntity.ok(scanService.saveStreamedScanResults(request));
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.ok(scanService.concurrentDuplicate(request, e));
+        } catch (TraitementException e) {
+            return e.toResponseEntity("Android scan rejected: {}");
+        }
+    }
+
+    /**
+     * Checks the scan and queues it to be saved later, so that the
+     * client does not have to wait for the whole processing.
+     * @param request the full request data to get the current user account
+     * @param scanData the scan sent by the Android device
+     * @return 202 with the ticket to follow the processing of the scan
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<?> submitScanJob(HttpServletRequest request, @RequestBody AndroidScanResultDTO scanData) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(scanQueueService.submit(request, scanData));
+        } catch (TraitementException e) {
+            return e.toResponseEntity("Android scan rejected: {}");
+        }
+    }
+
+    /**
+     * Gets the processing status of a scan sent with {@link #submitScanJob}
+     * by the current user
+     * @param request the full request data to get the current user account
+     * @param ticket the ticket given back when the scan was submitted
+     * @return the status of the scan processing
+     */
+    @GetMapping("/jobs/{ticket}")
+    public ResponseEntity<?> getScanJob(HttpServletRequest request, @PathVariable("ticket") String ticket) {
+        try {
+            return ResponseEntity.ok(scanQueueService.status(request, ticket));
+        } catch (TraitementException e) {
+            return e.toResponseEntity();
+        }
+    }
+
+    /**
+     * Gets the depth of the scans queue and the processing latency
+     * @return the statistics of the scans queue
+     */
+    @RequiresRole(Role.ADMIN)
+    @GetMapping("/jobs")
+    public ResponseEntity<?> getScanQueueStats() {
+        return ResponseEntity.ok(scanQueueService.stats());
+    }
+
+    /**
+     * Opens an upload session to send a scan by chunks. Opening again
+     * the same scan returns the existing session to resume it.
+     * @param request the full request data to get the current user account
+     * @param metadata the scan metadata, without results nor edits
+     * @return the state of the upload with its identifier
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<?> openUpload(HttpServletRequest request, @RequestBody AndroidScanResultDTO metadata) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(scanUploadService.open(request, metadata));
+        } catch (TraitementException e) {
+            return e.toResponseEntity("Android scan upload rejected: {}");
+        }
+    }
+
+    /**
+     * Sends (or sends again) one chunk of results and edits of an upload
+     * @param request the full request data to get the current user account
+     * @param uploadId the identifier of the upload
+     * @param index the position of the chunk, starting at 0
+     * @param chunk the results and edits of the chunk
+     * @return the state of the upload with the acknowledged chunks
+     */
+    @PutMapping("/uploads/{uploadId}/chunks/{index}")
+    public ResponseEntity<?> putUploadChunk(
+        HttpServletRequest request,
+        @PathVariable("uploadId") String uploadId,
+        @PathVariable("index") int index,
+        @RequestBody ScanChunkDTO chunk
+    ) {
+        try {
+            return ResponseEntity.ok(scanUploadService.putChunk(request, uploadId, index, chunk));
+        } catch (TraitementException e) {
+            return e.toResponseEntity("Android scan chunk rejected: {}");
+        }
+    }
+
+    /**
+     * Gets the state of an upload, to know where to resume it
+     * @param request the full request data to get the current user account
+     * @param uploadId the identifier of the upload
+     * @return the state of the upload with the acknowledged chunks
+     */
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> getUpload(HttpServletRequest request, @PathVariable("uploadId") String uploadId) {
+        try {
+            return ResponseEntity.ok(scanUploadService.status(request, uploadId));
+        } catch (TraitementException e) {
+            return e.toResponseEntity();
+        }
+    }
+
+    /**
+     * Saves the scan once all its chunks have been sent
+     * @param request the full request data to get the current user account
+     * @param uploadId the identifier of the upload
+     * @param chunks the number of chunks sent by the client
+     * @return the state of the upload with the id of the saved scan
+     */
+    @PostMapping("/uploads/{uploadId}/commit")
+    public ResponseEntity<?> commitUpload(
+        HttpServletRequest request,
+        @PathVariable("uploadId") String uploadId,
+        @RequestParam("chunks") int chunks
+    ) {
+        try {
+            return ResponseEntity.ok(scanUploadService.commit(request, uploadId, chunks));
+        } catch (TraitementException e) {
+            return e.toResponseEntity("Android scan upload commit rejected: {}");
+        }
+    }
 }
\ No newline at end of file
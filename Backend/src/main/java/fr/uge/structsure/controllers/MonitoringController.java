@@ -0,0 +1,101 @@
+package fr.uge.structsure.controllers;
+
+import fr.uge.structsure.config.RequiresRole;
+import fr.uge.structsure.dto.monitoring.CacheStatsDTO;
+import fr.uge.structsure.dto.monitoring.StatementStatsDTO;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.services.AccountCache;
+import fr.uge.structsure.services.StatementStatistics;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Controller exposing the internal counters of the server to the
+ * administrators.
+ */
+@RestController
+@RequestMapping("/api/monitoring")
+public class MonitoringController {
+    /** Content type of the Prometheus text format */
+    private static final MediaType PROMETHEUS_TEXT = MediaType.parseMediaType("text/plain;version=0.0.4;charset=utf-8");
+
+    private final AccountCache accountCache;
+    private final ObjectProvider<PrometheusMeterRegistry> prometheusRegistry;
+    private final StatementStatistics statementStatistics;
+
+    /**
+     * Constructor
+     * @param accountCache the cache of the accounts
+     * @param prometheusRegistry the registry of the metrics, missing if their export is disabled
+     * @param statementStatistics the statistics of the SQL statements
+     */
+    @Autowired
+    public MonitoringController(AccountCache accountCache, ObjectProvider<PrometheusMeterRegistry> prometheusRegistry,
+                                StatementStatistics statementStatistics) {
+        this.accountCache = Objects.requireNonNull(accountCache);
+        this.prometheusRegistry = Objects.requireNonNull(prometheusRegistry);
+        this.statementStatistics = Objects.requireNonNull(statementStatistics);
+    }
+
+    /**
+     * Returns the hits, misses and evictions of the in-memory caches
+     * @return the counters of each cache
+     */
+    @RequiresRole(Role.ADMIN)
+    @GetMapping("/caches")
+    public ResponseEntity<List<CacheStatsDTO>> getCaches() {
+        return ResponseEntity.ok(List.of(accountCache.stats()));
+    }
+
+    /**
+     * Returns the metrics of the server in the Prometheus text format:
+     * latency histograms of the endpoints and of the repositories, scan
+     * ingestion and log writer counters, connection pools usage and JVM
+     * memory and GC.
+     * @return the metrics, or 503 if their export is disabled
+     */
+    @RequiresRole(Role.ADMIN)
+    @GetMapping("/metrics")
+    public ResponseEntity<String> getMetrics() {
+        var registry = prometheusRegistry.getIfAvailable();
+        if (registry == null) return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        return ResponseEntity.ok().contentType(PROMETHEUS_TEXT).body(registry.scrape());
+    }
+
+    /**
+     * Returns the number of executions and the time spent in each SQL
+     * statement since the start of the server or the last reset, the
+     * most time-consuming first.
+     * @param limit the maximum number of statements to return
+     * @return the statistics of each statement
+     */
+    @RequiresRole(Role.ADMIN)
+    @GetMapping("/statements")
+    public ResponseEntity<List<StatementStatsDTO>> getStatements(@RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(statementStatistics.stats(Math.max(0, limit)));
+    }
+
+    /**
+     * Clears the statistics of the SQL statements, to measure a given
+     * period of activity.
+     * @return an empty response
+     */
+    @RequiresRole(Role.ADMIN)
+    @DeleteMapping("/statements")
+    public ResponseEntity<Void> resetStatements() {
+        statementStatistics.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
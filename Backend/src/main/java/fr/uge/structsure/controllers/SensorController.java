@@ -66,7 +66,8 @@ public class SensorController {
         try {
             List<SensorDTO> sensorDTOs = sensorService.getSensors(id, request);
             var sizeOfResult = sensorService.countSensors(id, request);
-            return ResponseEntity.ok(new SensorByStructureResponseDTO(sizeOfResult, sensorDTOs));
+            var nextCursor = sensorService.nextCursor(request, sensorDTOs);
+            return ResponseEntity.ok(new SensorByStructureResponseDTO(sizeOfResult, sensorDTOs, nextCursor));
         } catch (TraitementException e) {
             return e.toResponseEntity();
         }
@@ -165,4 +166,14 @@ public class SensorController {
             return e.toResponseEntity();
         }
     }
+
+    /**
+     * Recomputes the state stored on each sensor from all its results
+     * @return the number of updated sensors
+     */
+    @RequiresRole(Role.ADMIN)
+    @PostMapping("/sensors/states/rebuild")
+    public ResponseEntity<?> rebuildSensorStates() {
+        return ResponseEntity.ok(sensorService.rebuildStates());
+    }
 }
@@ -1,5 +1,6 @@
 package fr.uge.structsure.controllers;
 
+import fr.uge.structsure.config.BinaryMessageConverter;
 import fr.uge.structsure.config.RequiresRole;
 import fr.uge.structsure.dto.plan.PlanMetadataDTO;
 import fr.uge.structsure.dto.structure.AddStructureRequestDTO;
@@ -285,7 +286,24 @@ public class StructureController {
         }
     }
 
-    @GetMapping(value = "/android/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    /**
+     * This method handle the structure endpoint to get a page of the
+     * structures, the next page being requested with the cursor given
+     * in the response.
+     * @param allStructureRequestDTO The request DTO, with the limit and the cursor of the page
+     * @param httpRequest The http request to check the permission
+     * @return the page of structures
+     */
+    @GetMapping(value = "/page", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getStructuresPage(AllStructureRequestDTO allStructureRequestDTO, HttpServletRequest httpRequest) {
+        try {
+            return ResponseEntity.status(200).body(structureService.getStructuresPage(allStructureRequestDTO, httpRequest));
+        } catch (TraitementException e) {
+            return e.toResponseEntity("Failed to send structures page: {}");
+        }
+    }
+
+    @GetMapping(value = "/android/{id}", produces = { MediaType.APPLICATION_JSON_VALUE, BinaryMessageConverter.MEDIA_TYPE_VALUE })
     public ResponseEntity<?> getStructureById(@PathVariable("id") Long id) {
         try {
             return ResponseEntity.status(200).body(structureService.downloadStructureAndroid(id));
@@ -7,6 +7,7 @@ import fr.uge.structsure.dto.logs.LogsRequestDTO;
 import fr.uge.structsure.dto.userAccount.UserStructureAccessRequestDTO;
 import fr.uge.structsure.dto.userAccount.UserUpdateRequestDTO;
 import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.entities.SensorId;
 import fr.uge.structsure.exceptions.Error;
 import fr.uge.structsure.exceptions.TraitementException;
 import fr.uge.structsure.services.AccountService;
@@ -218,4 +219,89 @@ public class UserAccountController {
             return e.toResponseEntity();
         }
     }
+
+    /**
+     * Loads the logs concerning a structure, its plans, sensors and scans.
+     * @param id the id of the structure
+     * @param cursor the token of the page to get (optional)
+     * @return the logs concerning the structure
+     */
+    @RequiresRole(Role.ADMIN)
+    @GetMapping("/logs/structures/{id}")
+    public ResponseEntity<?> getStructureLogs(@PathVariable("id") long id, @RequestParam(value = "cursor", required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(appLogService.loadStructureLogs(id, cursor));
+        } catch (TraitementException e) {
+            return e.toResponseEntity();
+        }
+    }
+
+    /**
+     * Loads the logs concerning a plan.
+     * @param id the id of the plan
+     * @param cursor the token of the page to get (optional)
+     * @return the logs concerning the plan
+     */
+    @RequiresRole(Role.ADMIN)
+    @GetMapping("/logs/plans/{id}")
+    public ResponseEntity<?> getPlanLogs(@PathVariable("id") long id, @RequestParam(value = "cursor", required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(appLogService.loadPlanLogs(id, cursor));
+        } catch (TraitementException e) {
+            return e.toResponseEntity();
+        }
+    }
+
+    /**
+     * Loads the logs concerning a scan and the sensors edited during it.
+     * @param id the id of the scan
+     * @param cursor the token of the page to get (optional)
+     * @return the logs concerning the scan
+     */
+    @RequiresRole(Role.ADMIN)
+    @GetMapping("/logs/scans/{id}")
+    public ResponseEntity<?> getScanLogs(@PathVariable("id") long id, @RequestParam(value = "cursor", required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(appLogService.loadScanLogs(id, cursor));
+        } catch (TraitementException e) {
+            return e.toResponseEntity();
+        }
+    }
+
+    /**
+     * Loads the logs concerning a sensor.
+     * @param controlChip the control chip of the sensor
+     * @param measureChip the measure chip of the sensor
+     * @param cursor the token of the page to get (optional)
+     * @return the logs concerning the sensor
+     */
+    @RequiresRole(Role.ADMIN)
+    @GetMapping("/logs/sensors/{controlChip}/{measureChip}")
+    public ResponseEntity<?> getSensorLogs(
+        @PathVariable("controlChip") String controlChip,
+        @PathVariable("measureChip") String measureChip,
+        @RequestParam(value = "cursor", required = false) String cursor
+    ) {
+        try {
+            return ResponseEntity.ok(appLogService.loadSensorLogs(new SensorId(controlChip, measureChip), cursor));
+        } catch (TraitementException e) {
+            return e.toResponseEntity();
+        }
+    }
+
+    /**
+     * Loads the logs concerning an account (creation, editions, access).
+     * @param id the id of the account
+     * @param cursor the token of the page to get (optional)
+     * @return the logs concerning the account
+     */
+    @RequiresRole(Role.ADMIN)
+    @GetMapping("/logs/accounts/{id}")
+    public ResponseEntity<?> getAccountLogs(@PathVariable("id") long id, @RequestParam(value = "cursor", required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(appLogService.loadAccountLogs(id, cursor));
+        } catch (TraitementException e) {
+            return e.toResponseEntity();
+        }
+    }
 }
@@ -8,9 +8,19 @@ import java.util.Objects;
 /**
  * Dto for the request to get the all logs with pagination
  * @param search the search string (optional)
- * @param page the index of the page to get
+ * @param page the index of the page to get, ignored if a cursor is given
+ * @param cursor the token of the page to get, given with the previous page (optional)
  */
-public record LogsRequestDTO(String search, Integer page) {
+public record LogsRequestDTO(String search, Integer page, String cursor) {
+
+    /**
+     * Creates a request for the given page, without cursor
+     * @param search the search string (optional)
+     * @param page the index of the page to get
+     */
+    public LogsRequestDTO(String search, Integer page) {
+        this(search, page, null);
+    }
 
     /**
      * Checks if the limit and offset have valid positive values
@@ -18,10 +28,10 @@ public record LogsRequestDTO(String search, Integer page) {
      *     incorrect value
      */
     public void checkFields() throws TraitementException {
-        if (Objects.isNull(page)) {
+        if (Objects.isNull(page) && Objects.isNull(cursor)) {
             throw new TraitementException(Error.MISSING_FIELDS);
         }
-        if (page < 0) {
+        if (page != null && page < 0) {
             throw new TraitementException(Error.INCORRECT_FIELD_VALUE);
         }
     }
@@ -9,5 +9,6 @@ import java.util.List;
  * @param total the total number of entries (without pagination)
  * @param pageSize the maximum number of items per page
  * @param logs the results that match the search and pagination
+ * @param nextCursor the token to get the next page, null if this is the last one
  */
-public record LogsResponseDTO(long total, long pageSize, List<AppLog> logs) {}
+public record LogsResponseDTO(long total, long pageSize, List<AppLog> logs, String nextCursor) {}
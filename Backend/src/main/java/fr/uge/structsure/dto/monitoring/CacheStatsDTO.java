@@ -0,0 +1,13 @@
+package fr.uge.structsure.dto.monitoring;
+
+/**
+ * Usage counters of an in-memory cache
+ * @param name the name of the cache
+ * @param size the number of entries currently in the cache
+ * @param maxSize the maximum number of entries of the cache
+ * @param hits the number of lookups answered by the cache
+ * @param misses the number of lookups that had to query the database
+ * @param evictions the number of entries removed because the cache was full or the entry expired
+ * @param invalidations the number of entries removed after a change of the data
+ */
+public record CacheStatsDTO(String name, int size, int maxSize, long hits, long misses, long evictions, long invalidations) {}
@@ -0,0 +1,11 @@
+package fr.uge.structsure.dto.monitoring;
+
+/**
+ * Aggregated executions of a SQL statement shape
+ * @param statement the SQL of the statement, with its values replaced by {@code ?}
+ * @param count the number of executions
+ * @param totalMs the total time spent executing the statement, in milliseconds
+ * @param averageMs the average time of an execution, in milliseconds
+ * @param maxMs the longest execution, in milliseconds
+ */
+public record StatementStatsDTO(String statement, long count, double totalMs, double averageMs, double maxMs) {}
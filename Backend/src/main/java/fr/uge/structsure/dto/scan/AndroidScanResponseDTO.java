@@ -0,0 +1,9 @@
+package fr.uge.structsure.dto.scan;
+
+/**
+ * The response sent to the android application once a scan is received
+ * @param scanId the id of the saved scan, null if the scan was empty
+ * @param alreadyIngested true if the scan had already been saved by a
+ *     previous submission, in which case nothing has been changed
+ */
+public record AndroidScanResponseDTO(Long scanId, boolean alreadyIngested) {}
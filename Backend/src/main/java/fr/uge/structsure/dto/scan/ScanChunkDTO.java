@@ -0,0 +1,11 @@
+package fr.uge.structsure.dto.scan;
+
+import java.util.List;
+
+/**
+ * The DTO for a chunk of a scan uploaded by parts by the android
+ * application
+ * @param results part of the results of the scan
+ * @param sensorEdits part of the sensors editions of the scan
+ */
+public record ScanChunkDTO(List<AndroidSensorResultDTO> results, List<AndroidSensorEditDTO> sensorEdits) {}
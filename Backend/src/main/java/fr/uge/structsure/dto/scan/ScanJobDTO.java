@@ -0,0 +1,48 @@
+package fr.uge.structsure.dto.scan;
+
+import fr.uge.structsure.entities.PendingScan;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Status of a scan sent asynchronously by an Android device
+ * @param ticket the identifier of the scan processing
+ * @param state the current state of the processing (QUEUED, RUNNING, DONE, FAILED)
+ * @param error the reason of the failure if the state is FAILED, null otherwise
+ * @param scanId the id of the saved scan once DONE (null for empty scans)
+ * @param queueTime the time (in ms) the scan waited before being processed,
+ *     null if not started yet
+ * @param processingTime the time (in ms) spent to save the scan, null if not
+ *     finished yet
+ */
+public record ScanJobDTO(String ticket, String state, String error, Long scanId, Long queueTime, Long processingTime) {
+
+    /**
+     * Creates the DTO from the given pending scan entity
+     * @param scan the entity to get the status from
+     * @return the corresponding DTO
+     */
+    public static ScanJobDTO from(PendingScan scan) {
+        return new ScanJobDTO(
+            scan.getTicket(),
+            scan.getState().name(),
+            scan.getError(),
+            scan.getScanId(),
+            millisBetween(scan.getSubmittedAt(), scan.getStartedAt()),
+            millisBetween(scan.getStartedAt(), scan.getFinishedAt())
+        );
+    }
+
+    /**
+     * Gets the number of milliseconds between the two dates.
+     * @param from the start date
+     * @param to the end date
+     * @return the duration in milliseconds or null if one of the dates
+     *     is not set
+     */
+    private static Long millisBetween(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) return null;
+        return Duration.between(from, to).toMillis();
+    }
+}
@@ -0,0 +1,21 @@
+package fr.uge.structsure.dto.scan;
+
+/**
+ * Statistics of the asynchronous scans ingestion
+ * @param queued the number of scans waiting to be processed
+ * @param running the number of scans being processed
+ * @param failed the number of scans that could not be saved
+ * @param workers the maximum number of scans processed at the same time
+ * @param processed the number of scans processed since the server started
+ * @param averageQueueTime the average time (in ms) scans waited before being processed
+ * @param averageProcessingTime the average time (in ms) spent to save a scan
+ */
+public record ScanQueueStatsDTO(
+    long queued,
+    long running,
+    long failed,
+    int workers,
+    long processed,
+    long averageQueueTime,
+    long averageProcessingTime
+) {}
@@ -0,0 +1,13 @@
+package fr.uge.structsure.dto.scan;
+
+/**
+ * State of a scan uploaded by chunks
+ * @param uploadId the identifier of the upload to use in the next requests
+ * @param acknowledged the number of consecutive chunks received from the
+ *     first one, which is the index of the next chunk to send to resume
+ *     the upload
+ * @param received the total number of chunks received
+ * @param committed true if the scan has been saved
+ * @param scanId the id of the saved scan once committed
+ */
+public record UploadSessionDTO(String uploadId, int acknowledged, int received, boolean committed, Long scanId) {}
@@ -20,11 +20,34 @@ import java.util.Objects;
  * @param limit the limit
  * @param offset the offset
  * @param archivedFilter the archived filter true or false
+ * @param scanFilter the scan filter
+ * @param cursor the token of the page to get, given with the previous
+ *     page (replaces the offset)
  */
 @JsonSerialize
 public record AllSensorsByStructureRequestDTO(String orderByColumn, String orderType, String stateFilter, Integer planFilter,
                                               String minInstallationDate, String maxInstallationDate, Integer limit, Integer offset,
-                                              Boolean archivedFilter, Integer scanFilter) {
+                                              Boolean archivedFilter, Integer scanFilter, String cursor) {
+
+    /**
+     * Creates a request for the first page
+     * @param orderByColumn the column to order by
+     * @param orderType the order type
+     * @param stateFilter the state filter
+     * @param planFilter the plan filter
+     * @param minInstallationDate the minimum installation date
+     * @param maxInstallationDate the maximum installation date
+     * @param limit the limit
+     * @param offset the offset
+     * @param archivedFilter the archived filter true or false
+     * @param scanFilter the scan filter
+     */
+    public AllSensorsByStructureRequestDTO(String orderByColumn, String orderType, String stateFilter, Integer planFilter,
+                                           String minInstallationDate, String maxInstallationDate, Integer limit, Integer offset,
+                                           Boolean archivedFilter, Integer scanFilter) {
+        this(orderByColumn, orderType, stateFilter, planFilter, minInstallationDate, maxInstallationDate,
+            limit, offset, archivedFilter, scanFilter, null);
+    }
 
     /**
      * Represents enum for the supported order
@@ -61,7 +84,8 @@ public record AllSensorsByStructureRequestDTO(String orderByColumn, String order
         if (!EnumValidatorFromString.validateEnumValue(OrderByColumn.class, orderByColumn) ||
                 !EnumValidatorFromString.validateEnumValue(OrderEnum.class, orderType) ||
                 (!Objects.isNull(stateFilter) && !EnumValidatorFromString.validateEnumValue(State.class, stateFilter))
-                || (planFilter != null && planFilter < 0) || (scanFilter != null && scanFilter < 0)) {
+                || (planFilter != null && planFilter < 0) || (scanFilter != null && scanFilter < 0)
+                || (limit != null && limit < 0) || (offset != null && offset < 0)) {
             throw new TraitementException(Error.INCORRECT_FIELD_VALUE);
         }
     }
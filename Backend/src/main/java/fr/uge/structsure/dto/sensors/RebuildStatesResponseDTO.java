@@ -0,0 +1,7 @@
+package fr.uge.structsure.dto.sensors;
+
+/**
+ * The response of the rebuild of the sensors states
+ * @param updatedSensors the number of sensors which state got recomputed
+ */
+public record RebuildStatesResponseDTO(int updatedSensors) {}
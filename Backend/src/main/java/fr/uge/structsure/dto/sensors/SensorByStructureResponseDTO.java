@@ -7,12 +7,14 @@ import java.util.Objects;
  * Sensor by structure response DTO
  * @param sizeOfResult The total number of sensors
  * @param sensors The sensor list
+ * @param nextCursor The token to get the next page, null if this is the last one
  */
-public record SensorByStructureResponseDTO(long sizeOfResult, List<SensorDTO> sensors) {
+public record SensorByStructureResponseDTO(long sizeOfResult, List<SensorDTO> sensors, String nextCursor) {
     /**
      * Constructor
      * @param sizeOfResult The total number of sensors
      * @param sensors The sensor list
+     * @param nextCursor The token to get the next page, null if this is the last one
      */
     public SensorByStructureResponseDTO {
         Objects.requireNonNull(sensors);
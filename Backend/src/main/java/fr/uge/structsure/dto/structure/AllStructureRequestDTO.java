@@ -16,9 +16,23 @@ import java.util.Optional;
  * @param searchByState the state to filter
  * @param orderType the order type (ASC or DESC)
  * @param archived whether fetch only archived structure
+ * @param limit the maximum number of structures to return, all of them if empty
+ * @param cursor the token of the page to get, given with the previous page
  */
 @JsonSerialize
-public record AllStructureRequestDTO(String searchByName, Optional<State> searchByState, Optional<Boolean> archived, String orderByColumnName, String orderType) {
+public record AllStructureRequestDTO(String searchByName, Optional<State> searchByState, Optional<Boolean> archived, String orderByColumnName, String orderType,
+                                     Optional<Integer> limit, Optional<String> cursor) {
+    /**
+     * Replaces the optional fields missing from the request by empty
+     * optionals, so that they never have to be checked for null.
+     */
+    public AllStructureRequestDTO {
+        searchByState = searchByState == null ? Optional.empty() : searchByState;
+        archived = archived == null ? Optional.empty() : archived;
+        limit = limit == null ? Optional.empty() : limit;
+        cursor = cursor == null ? Optional.empty() : cursor;
+    }
+
     /**
      * The orderByColumn enum
      */
@@ -52,6 +66,9 @@ public record AllStructureRequestDTO(String searchByName, Optional<State> search
         if (!orderByColumnName.equals("STATE") && !orderByColumnName.equals("NUMBER_OF_SENSORS") && !orderByColumnName.equals("NAME")) {
             throw new TraitementException(Error.ORDER_BY_COLUMN_NAME_NOT_EXISTS);
         }
+        if (limit.isPresent() && limit.get() <= 0) {
+            throw new TraitementException(Error.INCORRECT_FIELD_VALUE);
+        }
     }
 
     /**
@@ -65,7 +82,25 @@ public record AllStructureRequestDTO(String searchByName, Optional<State> search
                 searchByState,
                 Optional.of(archived),
                 orderByColumnName,
-                orderType
+                orderType,
+                limit,
+                cursor
+        );
+    }
+
+    /**
+     * Removes the limit and the cursor of the request to get the whole listing
+     * @return The new request record
+     */
+    public AllStructureRequestDTO unpaged() {
+        return new AllStructureRequestDTO(
+                searchByName,
+                searchByState,
+                archived,
+                orderByColumnName,
+                orderType,
+                Optional.empty(),
+                Optional.empty()
         );
     }
 }
@@ -0,0 +1,16 @@
+package fr.uge.structsure.dto.structure;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A page of the structures listing
+ * @param sizeOfResult The total number of structures matching the filters
+ * @param structures The structures of the page
+ * @param nextCursor The token to get the next page, null if this is the last one
+ */
+public record StructurePageDTO(long sizeOfResult, List<AllStructureResponseDTO> structures, String nextCursor) {
+    public StructurePageDTO {
+        Objects.requireNonNull(structures);
+    }
+}
@@ -8,6 +8,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.Objects;
 
 @Entity
+@Table(indexes = { @Index(columnList = "time, id"), @Index(columnList = "author_id") })
 public class AppLog {
     /** Formatter to export time */
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy - HH:mm:ss");
@@ -21,8 +22,23 @@ public class AppLog {
     @ManyToOne
     private Account author;
 
+    /** Free text of the entries written before the events, null otherwise */
     private String message;
 
+    @Enumerated(EnumType.ORDINAL)
+    private AppLogEvent event;
+
+    /** Values of the message of the event, see {@link AppLogEvent#encode} */
+    private String params;
+
+    /* Entities concerned by the event, kept as plain ids so the entries outlive them */
+    private Long structureId;
+    private Long planId;
+    private Long scanId;
+    private String sensorControlChip;
+    private String sensorMeasureChip;
+    private Long accountId;
+
     /**
      * Initialise the AppLog entity
      */
@@ -52,11 +68,21 @@ public class AppLog {
         return time.format(FORMATTER);
     }
 
+    @JsonIgnore
+    public LocalDateTime getDateTime() {
+        return time;
+    }
+
     public String getAuthor() {
         return author == null ? "?" : author.getLogin();
     }
 
     public String getMessage() {
-        return message;
+        return event == null ? message : event.render(params);
+    }
+
+    @JsonIgnore
+    public AppLogEvent getEvent() {
+        return event;
     }
 }
\ No newline at end of file
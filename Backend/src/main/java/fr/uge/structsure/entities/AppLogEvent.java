@@ -0,0 +1,77 @@
+package fr.uge.structsure.entities;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Type of action recorded by a log entry. The entry only stores the
+ * type and the values of the message, and the message is built from
+ * the template of the type when the entry is read.
+ * <p>
+ * The types are stored by their ordinal: new types must be added at
+ * the end of the list and existing ones must never be removed.
+ */
+public enum AppLogEvent {
+    ACCOUNT_CREATED("Compte créé: %s - %s (#%s)"),
+    ACCOUNT_EDITED("Compte édité: %s (#%s)%s"),
+    ACCOUNT_ACCESS_EDITED("Autorisations de compte édité: %s (#%s) -> %s"),
+    ACCOUNT_DELETED("Compte supprimé: %s (#%s)"),
+    STRUCTURE_CREATED("Ouvrage créé: %s (#%s)"),
+    STRUCTURE_EDITED("Ouvrage édité: %s (#%s)%s"),
+    STRUCTURE_ARCHIVED("Ouvrage archivé: %s (#%s)"),
+    STRUCTURE_RESTORED("Ouvrage restauré: %s (#%s)"),
+    PLAN_CREATED("Plan créé: %s"),
+    PLAN_EDITED("Plan édité: %s%s"),
+    PLAN_ARCHIVED("Plan archivé: %s"),
+    PLAN_RESTORED("Plan restoré: %s"),
+    SENSOR_CREATED("Capteur créé: %s (%s), Note: %s"),
+    SENSOR_EDITED("Capteur édité: %s (%s)%s"),
+    SENSOR_ARCHIVED("Capteur archivé: %s (%s)"),
+    SENSOR_RESTORED("Capteur restauré: %s (%s)"),
+    SCAN_ADDED("Scan ajouté: Scan: #%s, Ouvrage: %s (#%s), Auteur: %s, Résultats: %s, Note: %s"),
+    SCAN_SENSOR_CREATED("Capteur créé lors du scan #%s: %s (%s), Note: %s"),
+    SCAN_SENSOR_EDITED("Capteur édité lors du scan #%s: %s (%s)%s"),
+    SCAN_STRUCTURE_NOTE("Note d'ouvrage éditée lors du scan #%s: %s (%s), Note: %s -> %s");
+
+    /** Separator of the values in the stored parameters (ASCII unit separator) */
+    public static final char SEPARATOR = '\u001F';
+
+    private final String template;
+    private final int arity;
+
+    AppLogEvent(String template) {
+        this.template = template;
+        this.arity = template.split("%s", -1).length - 1;
+    }
+
+    /**
+     * Converts the values of a message to the compact form stored with
+     * the entry.
+     * @param values the values of the message, in the template order
+     * @return the stored parameters
+     */
+    public String encode(Object... values) {
+        if (values.length != arity) {
+            throw new IllegalArgumentException(name() + " expects " + arity + " values, got " + values.length);
+        }
+        var params = new StringBuilder();
+        for (var i = 0; i < values.length; i++) {
+            if (i > 0) params.append(SEPARATOR);
+            params.append(String.valueOf(values[i]).replace(SEPARATOR, ' '));
+        }
+        return params.toString();
+    }
+
+    /**
+     * Builds the message of an entry from its stored parameters. Missing
+     * values are left empty.
+     * @param params the stored parameters
+     * @return the message of the entry
+     */
+    public String render(String params) {
+        var values = params == null ? List.<String>of() : Arrays.asList(params.split(String.valueOf(SEPARATOR), -1));
+        var args = new Object[arity];
+        for (var i = 0; i < arity; i++) args[i] = i < values.size() ? values.get(i) : "";
+        return String.format(template, args);
+    }
+}
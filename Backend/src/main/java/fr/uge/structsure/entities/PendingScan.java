@@ -0,0 +1,121 @@
+package fr.uge.structsure.entities;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Scan received from an Android device and waiting to be saved by the
+ * ingestion workers. The payload is kept as raw JSON until the scan
+ * has been processed so that no submitted scan is lost on restart.
+ */
+@Entity
+@Table(indexes = @Index(columnList = "state, id"))
+public class PendingScan {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(nullable = false, unique = true, length = 36)
+    private String ticket;
+
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    @ManyToOne
+    private Account submitter;
+
+    @Enumerated(EnumType.ORDINAL)
+    private PendingScanState state;
+
+    private String error;
+
+    private Long scanId;
+
+    private LocalDateTime submittedAt;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    public PendingScan() {}
+
+    /**
+     * Creates a new queued scan
+     * @param ticket the identifier given back to the client
+     * @param payload the JSON content of the scan
+     * @param submitter the account that sent the scan
+     */
+    public PendingScan(String ticket, String payload, Account submitter) {
+        this.ticket = Objects.requireNonNull(ticket);
+        this.payload = Objects.requireNonNull(payload);
+        this.submitter = submitter;
+        this.state = PendingScanState.QUEUED;
+        this.submittedAt = LocalDateTime.now();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getTicket() {
+        return ticket;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public Account getSubmitter() {
+        return submitter;
+    }
+
+    public PendingScanState getState() {
+        return state;
+    }
+
+    public void setState(PendingScanState state) {
+        this.state = state;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Long getScanId() {
+        return scanId;
+    }
+
+    public void setScanId(Long scanId) {
+        this.scanId = scanId;
+    }
+
+    public LocalDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
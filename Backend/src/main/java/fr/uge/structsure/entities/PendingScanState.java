@@ -0,0 +1,8 @@
+package fr.uge.structsure.entities;
+
+/**
+ * Represents the processing state of a scan received asynchronously
+ */
+public enum PendingScanState {
+    QUEUED, RUNNING, DONE, FAILED
+}
@@ -9,6 +9,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@Table(indexes = @Index(columnList = "structure_id"))
 public class Plan {
     @Id
     @GeneratedValue(strategy= GenerationType.IDENTITY)
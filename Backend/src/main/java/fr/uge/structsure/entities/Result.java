@@ -6,6 +6,7 @@ import jakarta.persistence.*;
 import java.util.Objects;
 
 @Entity
+@Table(indexes = @Index(columnList = "control_chip, measure_chip"))
 public class Result {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
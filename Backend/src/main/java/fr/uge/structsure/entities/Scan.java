@@ -1,12 +1,14 @@
 package fr.uge.structsure.entities;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
 import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Entity
+@Table(indexes = @Index(name = "scan_fingerprint_idx", columnList = "fingerprint", unique = true))
 public class Scan {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,6 +25,11 @@ public class Scan {
     @ManyToOne
     private Account author;
 
+    /** Hash of the structure, author and date identifying a submission */
+    @JsonIgnore
+    @Column(length = 64)
+    private String fingerprint;
+
     public Scan() {}
 
     public Scan(Structure structure, LocalDateTime date, String note, Account author) {
@@ -71,4 +78,12 @@ public class Scan {
     public void setAuthor(Account author) {
         this.author = author;
     }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
 }
\ No newline at end of file
@@ -14,6 +14,7 @@ import java.time.LocalDate;
 import java.util.*;
 
 @Entity
+@Table(indexes = @Index(columnList = "structure_id, current_state"))
 public class Sensor {
     /*
     spring data ne permet pas d'avoir 2 champs Id.
@@ -47,6 +48,24 @@ public class Sensor {
 
     private Boolean archived=false;
 
+    /*
+    Current state of the sensor computed from all its results. These
+    columns are maintained in SQL by ResultBatchWriter each time results
+    are added, Hibernate never writes them.
+     */
+    @Enumerated(EnumType.ORDINAL)
+    @Column(insertable = false, updatable = false, columnDefinition = "INTEGER NOT NULL DEFAULT 3")
+    @JsonIgnore
+    private State currentState = State.UNKNOWN;
+
+    @Column(insertable = false, updatable = false, columnDefinition = "INTEGER NOT NULL DEFAULT 0")
+    @JsonIgnore
+    private long resultCount;
+
+    @Column(insertable = false, updatable = false)
+    @JsonIgnore
+    private Long lastScanId;
+
     @OneToMany(mappedBy="sensor")
     @JsonIgnore
     @Lazy
@@ -228,6 +247,23 @@ public class Sensor {
         this.archived = archived;
     }
 
+    /**
+     * Gets the state of the sensor computed from all its results, as
+     * of the loading of this entity.
+     * @return the current state, UNKNOWN if the sensor has no result
+     */
+    public State getCurrentState() {
+        return currentState;
+    }
+
+    public long getResultCount() {
+        return resultCount;
+    }
+
+    public Long getLastScanId() {
+        return lastScanId;
+    }
+
     public Set<Result> getResults() {
         return results;
     }
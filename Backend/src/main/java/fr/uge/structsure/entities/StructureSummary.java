@@ -0,0 +1,76 @@
+package fr.uge.structsure.entities;
+
+import jakarta.persistence.*;
+
+/**
+ * Counters of a structure displayed in the structures dashboard. This
+ * row is maintained by {@link fr.uge.structsure.repositories.StructureSummaryWriter}
+ * each time the sensors, plans or results of the structure change, so
+ * that the dashboard does not need to aggregate them.
+ */
+@Entity
+@Table(indexes = @Index(columnList = "state"))
+public class StructureSummary {
+    @Id
+    @Column(name = "structure_id")
+    private long structureId;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @MapsId
+    @JoinColumn(name = "structure_id")
+    private Structure structure;
+
+    private long sensorCount;
+
+    private long planCount;
+
+    private long nokCount;
+
+    private long defectiveCount;
+
+    private long okCount;
+
+    private long unknownCount;
+
+    /** Worst state of the sensors, UNKNOWN if none has results */
+    @Enumerated(EnumType.ORDINAL)
+    private State state = State.UNKNOWN;
+
+    public StructureSummary() {}
+
+    public long getStructureId() {
+        return structureId;
+    }
+
+    public Structure getStructure() {
+        return structure;
+    }
+
+    public long getSensorCount() {
+        return sensorCount;
+    }
+
+    public long getPlanCount() {
+        return planCount;
+    }
+
+    public long getNokCount() {
+        return nokCount;
+    }
+
+    public long getDefectiveCount() {
+        return defectiveCount;
+    }
+
+    public long getOkCount() {
+        return okCount;
+    }
+
+    public long getUnknownCount() {
+        return unknownCount;
+    }
+
+    public State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,58 @@
+package fr.uge.structsure.entities;
+
+import jakarta.persistence.*;
+
+import java.util.Objects;
+
+/**
+ * Part of the results and edits of a scan uploaded by chunks
+ */
+@Entity
+@Table(indexes = @Index(columnList = "session_id, chunkIndex", unique = true))
+public class UploadChunk {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private UploadSession session;
+
+    private int chunkIndex;
+
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    public UploadChunk() {}
+
+    /**
+     * Creates a new chunk
+     * @param session the upload session this chunk belongs to
+     * @param chunkIndex the position of the chunk in the upload
+     * @param payload the JSON results and edits of the chunk
+     */
+    public UploadChunk(UploadSession session, int chunkIndex, String payload) {
+        this.session = Objects.requireNonNull(session);
+        this.chunkIndex = chunkIndex;
+        this.payload = Objects.requireNonNull(payload);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public UploadSession getSession() {
+        return session;
+    }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+}
@@ -0,0 +1,98 @@
+package fr.uge.structsure.entities;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Scan uploaded by chunks by an Android device. The metadata of the
+ * scan is kept until all the chunks are received and the upload is
+ * committed.
+ */
+@Entity
+@Table(indexes = @Index(columnList = "fingerprint"))
+public class UploadSession {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(nullable = false, unique = true, length = 36)
+    private String uploadId;
+
+    @ManyToOne
+    private Account submitter;
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    @Column(columnDefinition = "TEXT")
+    private String metadata;
+
+    private boolean committed;
+
+    private Long scanId;
+
+    private LocalDateTime updatedAt;
+
+    public UploadSession() {}
+
+    /**
+     * Creates a new upload session
+     * @param uploadId the identifier given back to the client
+     * @param submitter the account that uploads the scan
+     * @param fingerprint the fingerprint of the uploaded scan
+     * @param metadata the JSON metadata of the scan (without results and edits)
+     */
+    public UploadSession(String uploadId, Account submitter, String fingerprint, String metadata) {
+        this.uploadId = Objects.requireNonNull(uploadId);
+        this.submitter = submitter;
+        this.fingerprint = Objects.requireNonNull(fingerprint);
+        this.metadata = Objects.requireNonNull(metadata);
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public Account getSubmitter() {
+        return submitter;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getMetadata() {
+        return metadata;
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public void setCommitted(boolean committed) {
+        this.committed = committed;
+    }
+
+    public Long getScanId() {
+        return scanId;
+    }
+
+    public void setScanId(Long scanId) {
+        this.scanId = scanId;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -73,6 +73,10 @@ public enum Error {
     SENSOR_CHIP_TAGS_ARE_IDENTICAL(422, "Les tags sont identiques"),
     SENSOR_STRUCTURE_ID_IS_EMPTY(422, "Le champ structureId est obligatoire"),
 
+    SCAN_JOB_NOT_FOUND(404, "Scan introuvable"),
+    UPLOAD_NOT_FOUND(404, "Envoi introuvable ou expiré"),
+    UPLOAD_INCOMPLETE(409, "Des parties de l'envoi sont manquantes"),
+
     LIST_STRUCTURES_EMPTY(404, "Aucun ouvrage enregistré dans le système"),
     DATE_FORMAT_ERROR(422, "Le format de la date n'est pas correct JJ-MM-AAAA"),
     DATE_TIME_ISO_FORMAT_ERROR(422, "Le format de la date n'est pas correct AAAA-MM-JJTHH:MM:SS"),
@@ -2,6 +2,8 @@ package fr.uge.structsure.repositories;
 
 import fr.uge.structsure.entities.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -27,4 +29,12 @@ public interface AccountRepository extends JpaRepository<Account, String> {
      */
     Optional<Account> findById(Long id);
 
+    /**
+     * Find the ids of the structures the given account can access
+     * @param accountId the id of the account
+     * @return the ids of the allowed structures
+     */
+    @Query("SELECT s.id FROM Structure s JOIN s.accounts a WHERE a.id = :accountId ORDER BY s.id")
+    List<Long> findAllowedStructureIds(@Param("accountId") long accountId);
+
 }
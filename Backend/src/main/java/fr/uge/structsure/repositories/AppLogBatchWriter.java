@@ -0,0 +1,254 @@
+package fr.uge.structsure.repositories;
+
+import fr.uge.structsure.entities.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Bulk writer for the app log entity. Like the results, the log
+ * entries are inserted with plain JDBC using multi-rows INSERT
+ * statements, and the old entries are removed by chunks of ids so that
+ * the database is never locked for long.
+ * <p>
+ * The inserted entries are also added to the full-text index with the
+ * text shown to the users, rendered from their event and values, see
+ * {@link AppLogSearchRepository}.
+ */
+@Repository
+public class AppLogBatchWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AppLogBatchWriter.class);
+    private static final String INSERT = "INSERT INTO app_log (time, author_id, event, params, structure_id, "
+        + "plan_id, scan_id, sensor_control_chip, sensor_measure_chip, account_id) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INDEX = "INSERT INTO app_log_fts (rowid, message, login, firstname, lastname) "
+        + "SELECT v.column1, v.column2, a.login, a.firstname, a.lastname FROM (VALUES ";
+    private static final String INDEX_ROW = "(?, ?, ?)";
+    private static final String INDEX_END = ") v LEFT JOIN account a ON a.id = v.column3";
+    private static final String DELETE_CHUNK =
+        "DELETE FROM app_log WHERE id IN (SELECT id FROM app_log WHERE id <= ? AND time < ? ORDER BY id LIMIT ?)";
+
+    /**
+     * Log entry waiting to be written
+     * @param time the time of the action
+     * @param authorId the id of the user that initiated the action, null if unknown
+     * @param event the type of the action
+     * @param params the values of the message, see {@link AppLogEvent#encode}
+     * @param target the entities concerned by the action
+     */
+    public record Entry(LocalDateTime time, Long authorId, AppLogEvent event, String params, Target target) {
+        public Entry {
+            Objects.requireNonNull(time);
+            Objects.requireNonNull(event);
+            Objects.requireNonNull(params);
+            Objects.requireNonNull(target);
+        }
+    }
+
+    /**
+     * Entities concerned by a log entry, used to find the entries
+     * related to one of them. Each reference is null if not concerned.
+     * @param structureId the id of the structure
+     * @param planId the id of the plan
+     * @param scanId the id of the scan
+     * @param sensor the id of the sensor
+     * @param accountId the id of the account (other than the author)
+     */
+    public record Target(Long structureId, Long planId, Long scanId, SensorId sensor, Long accountId) {
+        public static Target account(long id) {
+            return new Target(null, null, null, null, id);
+        }
+
+        public static Target structure(Structure structure) {
+            return new Target(structure.getId(), null, null, null, null);
+        }
+
+        public static Target plan(Plan plan) {
+            return new Target(plan.getStructure().getId(), plan.getId(), null, null, null);
+        }
+
+        public static Target sensor(Sensor sensor) {
+            var structure = sensor.getStructure();
+            return new Target(structure == null ? null : structure.getId(), null, null, sensor.getSensorId(), null);
+        }
+
+        public static Target scan(Scan scan) {
+            return new Target(scan.getStructure().getId(), null, scan.getId(), null, null);
+        }
+
+        /**
+         * Adds the given scan to the concerned entities
+         * @param scan the scan in which the action occurred
+         * @return the new target
+         */
+        public Target within(Scan scan) {
+            return new Target(structureId, planId, scan.getId(), sensor, accountId);
+        }
+    }
+
+    /**
+     * Text of a log entry to add to the full-text index
+     * @param id the id of the entry
+     * @param message the text shown to the users
+     * @param authorId the id of the user that initiated the action, null if unknown
+     */
+    record Indexed(long id, String message, Long authorId) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AppLogRepository appLogRepository;
+
+    /**
+     * Constructor
+     * @param jdbcTemplate access to the database
+     * @param appLogRepository to find the entries to remove
+     */
+    @Autowired
+    public AppLogBatchWriter(JdbcTemplate jdbcTemplate, AppLogRepository appLogRepository) {
+        this.jdbcTemplate = Objects.requireNonNull(jdbcTemplate);
+        this.appLogRepository = Objects.requireNonNull(appLogRepository);
+    }
+
+    /**
+     * Inserts the given entries with a single statement and adds them
+     * to the full-text index. If the index cannot be written, the
+     * entries are indexed at the next startup.
+     * @param entries the entries to insert
+     * @return the number of inserted rows
+     */
+    public int insertAll(List<Entry> entries) {
+        if (entries.isEmpty()) return 0;
+        var sql = new StringBuilder(INSERT.length() + entries.size() * (ROW.length() + 2)).append(INSERT);
+        for (var i = 0; i < entries.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(ROW);
+        }
+        return Objects.requireNonNull(jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            try (var statement = connection.prepareStatement(sql.toString())) {
+                var index = 1;
+                for (var entry : entries) {
+                    statement.setTimestamp(index++, Timestamp.valueOf(entry.time()));
+                    index = setLong(statement, index, entry.authorId());
+                    statement.setInt(index++, entry.event().ordinal());
+                    statement.setString(index++, entry.params());
+                    var target = entry.target();
+                    index = setLong(statement, index, target.structureId());
+                    index = setLong(statement, index, target.planId());
+                    index = setLong(statement, index, target.scanId());
+                    statement.setString(index++, target.sensor() == null ? null : target.sensor().getControlChip());
+                    statement.setString(index++, target.sensor() == null ? null : target.sensor().getMeasureChip());
+                    index = setLong(statement, index, target.accountId());
+                }
+                var inserted = statement.executeUpdate();
+                try {
+                    index(connection, indexed(entries, lastInsertedId(connection) - inserted + 1));
+                } catch (SQLException e) {
+                    LOGGER.warn("Failed to index {} log entries, indexing them at the next startup", inserted, e);
+                }
+                return inserted;
+            }
+        }));
+    }
+
+    /**
+     * Gets the texts to index of the given entries. SQLite gives
+     * consecutive ids to the rows inserted by a single statement.
+     * @param entries the inserted entries
+     * @param firstId the id of the first entry
+     * @return the texts to index
+     */
+    private static List<Indexed> indexed(List<Entry> entries, long firstId) {
+        var indexed = new ArrayList<Indexed>(entries.size());
+        for (var i = 0; i < entries.size(); i++) {
+            var entry = entries.get(i);
+            indexed.add(new Indexed(firstId + i, entry.event().render(entry.params()), entry.authorId()));
+        }
+        return indexed;
+    }
+
+    private static long lastInsertedId(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement();
+             var result = statement.executeQuery("SELECT last_insert_rowid()")) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    /**
+     * Adds the given texts to the full-text index with a single
+     * statement, along with the login and names of their author.
+     * @param connection the connection to the database
+     * @param rows the texts to index
+     * @throws SQLException if the index cannot be written
+     */
+    static void index(Connection connection, List<Indexed> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+        var sql = new StringBuilder(INDEX);
+        for (var i = 0; i < rows.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(INDEX_ROW);
+        }
+        sql.append(INDEX_END);
+        try (var statement = connection.prepareStatement(sql.toString())) {
+            var index = 1;
+            for (var row : rows) {
+                statement.setLong(index++, row.id());
+                statement.setString(index++, row.message());
+                index = setLong(statement, index, row.authorId());
+            }
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Sets a nullable long parameter of the statement
+     * @param statement the statement to fill
+     * @param index the index of the parameter
+     * @param value the value to set
+     * @return the index of the next parameter
+     * @throws SQLException if the parameter cannot be set
+     */
+    private static int setLong(PreparedStatement statement, int index, Long value) throws SQLException {
+        if (value == null) statement.setNull(index, Types.BIGINT);
+        else statement.setLong(index, value);
+        return index + 1;
+    }
+
+    /**
+     * Removes the entries older than the given time. Each chunk is
+     * removed by its own statement, releasing the database between two
+     * chunks.
+     * <p>
+     * The chunks are walked by id up to the last old entry, but the ids
+     * do not strictly follow the time: the entries are inserted in the
+     * order they are dequeued, or directly when the queue is full. The
+     * time is then checked again so that a recent entry inserted before
+     * an old one is kept.
+     * @param time the time before which entries must be removed
+     * @param chunkSize the maximum number of entries removed by a statement
+     * @return the number of removed entries
+     */
+    public long deleteBefore(LocalDateTime time, int chunkSize) {
+        var lastId = appLogRepository.findLastIdBefore(time);
+        if (lastId == null) return 0;
+        long removed = 0;
+        int chunk;
+        do {
+            chunk = jdbcTemplate.update(DELETE_CHUNK, lastId, Timestamp.valueOf(time), chunkSize);
+            removed += chunk;
+        } while (chunk == chunkSize);
+        return removed;
+    }
+}
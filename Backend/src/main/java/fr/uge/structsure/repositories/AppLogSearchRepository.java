@@ -0,0 +1,231 @@
+package fr.uge.structsure.repositories;
+
+import fr.uge.structsure.entities.AppLog;
+import fr.uge.structsure.entities.AppLogEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Search in the log entries through the app_log_fts full-text index.
+ * The index is an FTS5 table using the trigram tokenizer, so any
+ * substring of at least three characters of the message or of the
+ * author login and names is found without scanning the log table.
+ * Shorter searches still go through the index table but with LIKE.
+ * <p>
+ * The index is kept in sync by triggers on the log table (insert and
+ * delete, including the retention) and on the account table (login
+ * and names changes, such as anonymization). Since the entries only
+ * store the type and the values of their message, the indexed text is
+ * rendered by the application when the entries are inserted, see
+ * {@link AppLogBatchWriter}, so that a search spanning the fixed text
+ * and the values matches like on the displayed message.
+ * <p>
+ * The entries can also be listed by the entity they concern, through
+ * partial indexes on each reference that only contain the entries
+ * having this reference.
+ * <p>
+ * The entries are sorted from the most recent and paged by keyset on
+ * (time, id), so a page costs the same whatever its position.
+ */
+@Repository
+public class AppLogSearchRepository {
+    /** Minimum search length the trigram index can match */
+    private static final int MIN_MATCH_LENGTH = 3;
+
+    /** Number of entries indexed at once at startup */
+    private static final int BACKFILL_CHUNK = 1000;
+
+    /* Entries written before the index existed or which indexing failed */
+    private static final String MISSING = """
+        SELECT l.id, l.message, l.event, l.params, l.author_id FROM app_log l
+        WHERE l.id > ? AND NOT EXISTS (SELECT 1 FROM app_log_fts f WHERE f.rowid = l.id)
+        ORDER BY l.id LIMIT ?""";
+
+    private static final String MATCH = "f.app_log_fts MATCH :search";
+    private static final String LIKE =
+        "(f.message LIKE :search OR f.login LIKE :search OR f.firstname LIKE :search OR f.lastname LIKE :search)";
+    private static final String AFTER = "(l.time < :time OR (l.time = :time AND l.id < :id))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    /**
+     * Constructor
+     * @param jdbcTemplate access to the database
+     */
+    @Autowired
+    public AppLogSearchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = Objects.requireNonNull(jdbcTemplate);
+    }
+
+    /**
+     * Indexes the entries that are missing from the full-text index,
+     * by chunks of {@link #BACKFILL_CHUNK} entries. The index, its
+     * triggers and the indexes of the references are created by the V6
+     * migration.
+     * @return the number of entries added to the index
+     */
+    public int syncIndex() {
+        var events = AppLogEvent.values();
+        var total = 0;
+        var lastId = 0L;
+        List<AppLogBatchWriter.Indexed> chunk;
+        do {
+            chunk = jdbcTemplate.query(MISSING, (row, i) -> {
+                var message = row.getString("message");
+                if (message == null) {
+                    var event = row.getInt("event");
+                    message = row.wasNull() ? "" : events[event].render(row.getString("params"));
+                }
+                var authorId = row.getLong("author_id");
+                return new AppLogBatchWriter.Indexed(row.getLong("id"), message, row.wasNull() ? null : authorId);
+            }, lastId, BACKFILL_CHUNK);
+            if (chunk.isEmpty()) break;
+            var rows = chunk;
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                AppLogBatchWriter.index(connection, rows);
+                return null;
+            });
+            total += chunk.size();
+            lastId = chunk.getLast().id();
+        } while (chunk.size() == BACKFILL_CHUNK);
+        return total;
+    }
+
+    /**
+     * Gets a page of the log entries matching the given search, from
+     * the most recent one.
+     * @param search the string to find in the entries, null or empty for all of them
+     * @param afterTime the time of the last entry of the previous page, null for the first page
+     * @param afterId the id of the last entry of the previous page, null for the first page
+     * @param offset the number of entries to skip, used only without keyset
+     * @param limit the maximum number of entries to return
+     * @return the matching entries
+     */
+    public List<AppLog> search(String search, LocalDateTime afterTime, Long afterId, int offset, int limit) {
+        var filtered = search != null && !search.isEmpty();
+        var keyset = afterTime != null && afterId != null;
+        var sql = new StringBuilder("SELECT l.* FROM app_log l");
+        if (filtered) sql.append(" JOIN app_log_fts f ON f.rowid = l.id");
+        sql.append(" WHERE true");
+        if (filtered) sql.append(" AND ").append(condition(search));
+        if (keyset) sql.append(" AND ").append(AFTER);
+        sql.append(" ORDER BY l.time DESC, l.id DESC LIMIT :limit");
+        if (!keyset && offset > 0) sql.append(" OFFSET :offset");
+
+        var query = em.createNativeQuery(sql.toString(), AppLog.class);
+        if (filtered) query.setParameter("search", parameter(search));
+        if (keyset) {
+            query.setParameter("time", afterTime);
+            query.setParameter("id", afterId);
+        }
+        query.setParameter("limit", limit);
+        if (!keyset && offset > 0) query.setParameter("offset", offset);
+        @SuppressWarnings("unchecked")
+        List<AppLog> logs = query.getResultList();
+        return logs;
+    }
+
+    /**
+     * Counts the log entries matching the given search.
+     * @param search the string to find in the entries
+     * @return the number of matching entries
+     */
+    public long count(String search) {
+        var query = em.createNativeQuery("SELECT COUNT(*) FROM app_log_fts f WHERE " + condition(search), Long.class);
+        query.setParameter("search", parameter(search));
+        return ((Number) query.getSingleResult()).longValue();
+    }
+
+    /**
+     * Gets a page of the log entries concerning the given entity, from
+     * the most recent one.
+     * @param target the references the entries must have, the null ones are ignored
+     * @param afterTime the time of the last entry of the previous page, null for the first page
+     * @param afterId the id of the last entry of the previous page, null for the first page
+     * @param limit the maximum number of entries to return
+     * @return the matching entries
+     */
+    public List<AppLog> findByTarget(AppLogBatchWriter.Target target, LocalDateTime afterTime, Long afterId, int limit) {
+        var keyset = afterTime != null && afterId != null;
+        var references = references(target);
+        var sql = new StringBuilder("SELECT l.* FROM app_log l WHERE ").append(condition(references));
+        if (keyset) sql.append(" AND ").append(AFTER);
+        sql.append(" ORDER BY l.time DESC, l.id DESC LIMIT :limit");
+
+        var query = em.createNativeQuery(sql.toString(), AppLog.class);
+        references.forEach(query::setParameter);
+        if (keyset) {
+            query.setParameter("time", afterTime);
+            query.setParameter("id", afterId);
+        }
+        query.setParameter("limit", limit);
+        @SuppressWarnings("unchecked")
+        List<AppLog> logs = query.getResultList();
+        return logs;
+    }
+
+    /**
+     * Counts the log entries concerning the given entity.
+     * @param target the references the entries must have, the null ones are ignored
+     * @return the number of matching entries
+     */
+    public long countByTarget(AppLogBatchWriter.Target target) {
+        var references = references(target);
+        var query = em.createNativeQuery("SELECT COUNT(*) FROM app_log l WHERE " + condition(references), Long.class);
+        references.forEach(query::setParameter);
+        return ((Number) query.getSingleResult()).longValue();
+    }
+
+    /**
+     * Lists the columns and values of the non-null references of the
+     * given target. Parameters are named after their column.
+     * @param target the references to list
+     * @return the values by column
+     */
+    private static Map<String, Object> references(AppLogBatchWriter.Target target) {
+        var references = new LinkedHashMap<String, Object>();
+        if (target.structureId() != null) references.put("structure_id", target.structureId());
+        if (target.planId() != null) references.put("plan_id", target.planId());
+        if (target.scanId() != null) references.put("scan_id", target.scanId());
+        if (target.sensor() != null) {
+            references.put("sensor_control_chip", target.sensor().getControlChip());
+            references.put("sensor_measure_chip", target.sensor().getMeasureChip());
+        }
+        if (target.accountId() != null) references.put("account_id", target.accountId());
+        if (references.isEmpty()) throw new IllegalArgumentException("The target has no reference");
+        return references;
+    }
+
+    private static String condition(Map<String, Object> references) {
+        return references.keySet().stream()
+            .map(column -> "l." + column + " = :" + column)
+            .collect(Collectors.joining(" AND "));
+    }
+
+    private static String condition(String search) {
+        return search.length() >= MIN_MATCH_LENGTH ? MATCH : LIKE;
+    }
+
+    /**
+     * Converts the search of the user to the parameter of the query: a
+     * quoted phrase for the full-text search, so that the FTS5 operators
+     * are not interpreted, or a LIKE pattern.
+     * @param search the search of the user
+     * @return the value of the parameter
+     */
+    private static String parameter(String search) {
+        if (search.length() >= MIN_MATCH_LENGTH) return '"' + search.replace("\"", "\"\"") + '"';
+        return '%' + search + '%';
+    }
+}
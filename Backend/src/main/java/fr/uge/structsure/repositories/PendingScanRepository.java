@@ -0,0 +1,88 @@
+package fr.uge.structsure.repositories;
+
+import fr.uge.structsure.entities.PendingScan;
+import fr.uge.structsure.entities.PendingScanState;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The repository for the scans waiting to be processed
+ */
+@Repository
+public interface PendingScanRepository extends JpaRepository<PendingScan, Long> {
+
+    /**
+     * Finds a pending scan by the ticket given to the client
+     * @param ticket the ticket of the scan
+     * @return optional with the pending scan if exists or optional empty
+     */
+    Optional<PendingScan> findByTicket(String ticket);
+
+    /**
+     * Gets the ids of the scans in the given state, the oldest first.
+     * @param state the state of the scans to get
+     * @param page to limit the number of ids to get
+     * @return the list of the ids
+     */
+    @Query("SELECT p.id FROM PendingScan p WHERE p.state = :state ORDER BY p.id")
+    List<Long> findIdsByState(PendingScanState state, Pageable page);
+
+    /**
+     * Counts the scans in the given state
+     * @param state the state of the scans to count
+     * @return the number of scans in this state
+     */
+    long countByState(PendingScanState state);
+
+    /**
+     * Marks the given scan as running if it is still queued. This
+     * ensures that a scan is never processed by two workers.
+     * @param id the id of the scan to claim
+     * @param now the start time of the processing
+     * @return 1 if the scan has been claimed, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+    UPDATE PendingScan p SET p.state = fr.uge.structsure.entities.PendingScanState.RUNNING, p.startedAt = :now
+        WHERE p.id = :id AND p.state = fr.uge.structsure.entities.PendingScanState.QUEUED
+    """)
+    int claim(long id, LocalDateTime now);
+
+    /**
+     * Puts back in the queue the scans that were interrupted while
+     * running (server stopped or worker lost during the processing).
+     * @param startedBefore the time before which running scans are
+     *     considered interrupted
+     * @return the number of scans put back in the queue
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+    UPDATE PendingScan p SET p.state = fr.uge.structsure.entities.PendingScanState.QUEUED, p.startedAt = NULL
+        WHERE p.state = fr.uge.structsure.entities.PendingScanState.RUNNING AND p.startedAt < :startedBefore
+    """)
+    int requeueInterrupted(LocalDateTime startedBefore);
+
+    /**
+     * Removes the processed scans that finished before the given time.
+     * @param time the time before which processed scans are removed
+     * @return the number of removed items
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+    DELETE FROM PendingScan p
+        WHERE p.finishedAt < :time
+            AND p.state IN (fr.uge.structsure.entities.PendingScanState.DONE, fr.uge.structsure.entities.PendingScanState.FAILED)
+    """)
+    int deleteFinishedBefore(LocalDateTime time);
+}
@@ -0,0 +1,199 @@
+package fr.uge.structsure.repositories;
+
+import fr.uge.structsure.entities.Result;
+import fr.uge.structsure.entities.SensorId;
+import fr.uge.structsure.entities.State;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Bulk writer for the result entity. Hibernate cannot batch the
+ * inserts of entities with IDENTITY keys, so the results are written
+ * with plain JDBC using multi-rows INSERT statements instead.
+ * The results are written within the current transaction, along with
+ * the current state, results count and last scan of their sensors.
+ */
+@Repository
+public class ResultBatchWriter {
+    private static final String INSERT = "INSERT INTO result (state, scan_id, control_chip, measure_chip) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?)";
+
+    /* Worst state a result can give to a sensor: any result counts as OK at least */
+    private static final int BEST_RESULT_STATE = State.OK.ordinal();
+
+    /* The state of a sensor is the worst state of its results, lower ordinals being worse */
+    private static final String UPDATE_SENSOR = """
+        UPDATE sensor SET current_state = MIN(current_state, ?), result_count = result_count + ?,
+            last_scan_id = MAX(COALESCE(last_scan_id, 0), ?)
+        WHERE control_chip = ? AND measure_chip = ?""";
+
+    private static final String REBUILD_SENSORS = """
+        UPDATE sensor SET
+            result_count = (SELECT COUNT(*) FROM result r
+                WHERE r.control_chip = sensor.control_chip AND r.measure_chip = sensor.measure_chip),
+            current_state = COALESCE((SELECT MIN(MIN(r.state), %d) FROM result r
+                WHERE r.control_chip = sensor.control_chip AND r.measure_chip = sensor.measure_chip), %d),
+            last_scan_id = (SELECT MAX(r.scan_id) FROM result r
+                WHERE r.control_chip = sensor.control_chip AND r.measure_chip = sensor.measure_chip)"""
+        .formatted(BEST_RESULT_STATE, State.UNKNOWN.ordinal());
+
+    private static final String STALE_SENSORS = """
+        SELECT EXISTS (SELECT 1 FROM sensor s WHERE s.result_count = 0 AND EXISTS (SELECT 1 FROM result r
+            WHERE r.control_chip = s.control_chip AND r.measure_chip = s.measure_chip))""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    /**
+     * Constructor
+     * @param jdbcTemplate access to the database
+     * @param batchSize maximum number of rows inserted by a statement
+     */
+    @Autowired
+    public ResultBatchWriter(JdbcTemplate jdbcTemplate, @Value("${app.scans.result-batch-size:200}") int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize <= 0");
+        this.jdbcTemplate = Objects.requireNonNull(jdbcTemplate);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Inserts all the given results and updates the current state of
+     * their sensors. The scans and sensors they reference must already
+     * be saved. The ids of the given entities are not updated.
+     * @param results the results to save
+     * @return the number of inserted rows
+     */
+    public int saveAll(List<Result> results) {
+        if (results.isEmpty()) return 0;
+        em.flush(); // pending scans and sensors must be written first
+        var inserted = insertAll(results);
+        updateSensors(results);
+        return inserted;
+    }
+
+    /**
+     * Recomputes the current state, results count and last scan of all
+     * the sensors from the result table.
+     * @return the number of updated sensors
+     */
+    public int rebuildSensorStates() {
+        return jdbcTemplate.update(REBUILD_SENSORS);
+    }
+
+    /**
+     * Checks if some sensors have results but no stored state, which
+     * happens for the results saved before the state got stored.
+     * @return true if {@link #rebuildSensorStates()} should be run
+     */
+    public boolean hasStaleSensorStates() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(STALE_SENSORS, Boolean.class));
+    }
+
+    /**
+     * Inserts the given results by batches.
+     * @param results the results to insert
+     * @return the number of inserted rows
+     */
+    private int insertAll(List<Result> results) {
+        return Objects.requireNonNull(jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            var inserted = 0;
+            var full = results.size() / batchSize * batchSize;
+            if (full > 0) {
+                try (var statement = connection.prepareStatement(insert(batchSize))) {
+                    for (var from = 0; from < full; from += batchSize) {
+                        inserted += write(statement, results.subList(from, from + batchSize));
+                    }
+                }
+            }
+            if (full < results.size()) {
+                var remaining = results.subList(full, results.size());
+                try (var statement = connection.prepareStatement(insert(remaining.size()))) {
+                    inserted += write(statement, remaining);
+                }
+            }
+            return inserted;
+        }));
+    }
+
+    /**
+     * Updates the sensors of the given results with one batched
+     * statement, each sensor being updated once.
+     * @param results the inserted results
+     */
+    private void updateSensors(List<Result> results) {
+        var changes = new HashMap<SensorId, SensorChange>();
+        for (var result : results) {
+            var state = Math.min(result.getState().ordinal(), BEST_RESULT_STATE);
+            changes.computeIfAbsent(result.getSensor().getSensorId(), id -> new SensorChange())
+                .add(state, result.getScan().getId());
+        }
+        var rows = new ArrayList<Object[]>(changes.size());
+        changes.forEach((id, change) -> rows.add(new Object[] {
+            change.state, change.count, change.lastScanId, id.getControlChip(), id.getMeasureChip()
+        }));
+        jdbcTemplate.batchUpdate(UPDATE_SENSOR, rows);
+    }
+
+    /**
+     * Binds the given results to the statement and executes it.
+     * @param statement the statement inserting exactly as many rows as results
+     * @param results the results to insert
+     * @return the number of inserted rows
+     * @throws SQLException if the insertion fails
+     */
+    private static int write(PreparedStatement statement, List<Result> results) throws SQLException {
+        var index = 1;
+        for (var result : results) {
+            var sensorId = result.getSensor().getSensorId();
+            statement.setInt(index++, result.getState().ordinal());
+            statement.setLong(index++, result.getScan().getId());
+            statement.setString(index++, sensorId.getControlChip());
+            statement.setString(index++, sensorId.getMeasureChip());
+        }
+        return statement.executeUpdate();
+    }
+
+    /**
+     * Builds the SQL statement inserting the given number of rows.
+     * @param rows the number of rows of the statement
+     * @return the SQL statement
+     */
+    private static String insert(int rows) {
+        var sql = new StringBuilder(INSERT.length() + rows * (ROW.length() + 2)).append(INSERT);
+        for (var i = 0; i < rows; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(ROW);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Aggregation of the new results of a sensor
+     */
+    private static final class SensorChange {
+        private int state = State.UNKNOWN.ordinal();
+        private int count;
+        private long lastScanId;
+
+        private void add(int resultState, long scanId) {
+            state = Math.min(state, resultState);
+            count++;
+            lastScanId = Math.max(lastScanId, scanId);
+        }
+    }
+}
@@ -3,9 +3,7 @@ package fr.uge.structsure.repositories;
 import fr.uge.structsure.entities.Result;
 import fr.uge.structsure.entities.Sensor;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -35,27 +33,6 @@ public interface ResultRepository extends JpaRepository<Result, Long> {
     )
     boolean existsResultWithDefectiveState(Sensor sensor);
 
-    /**
-     * Batch insert results with optimized performance
-     */
-    @Modifying
-    @Query(value = """
-        INSERT INTO result (state, scan_id, control_chip, measure_chip)
-        VALUES (:#{#result.state}, :#{#result.scan.id}, 
-                :#{#result.sensor.sensorId.controlChip}, 
-                :#{#result.sensor.sensorId.measureChip})
-        """, nativeQuery = true)
-    void insertResult(@Param("result") Result result);
-
-    /**
-     * Save a list of results in batch
-     */
-    default void saveAllResults(List<Result> results) {
-        for (Result result : results) {
-            insertResult(result);
-        }
-    }
-
     /**
      * Find all the result associated with a scan
      * @param scanId The scan id
@@ -3,6 +3,7 @@ package fr.uge.structsure.repositories;
 import fr.uge.structsure.entities.Scan;
 import fr.uge.structsure.entities.Structure;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -16,4 +17,13 @@ public interface ScanRepository extends JpaRepository<Scan, Long> {
 
     List<Scan> findByStructure(Structure structure);
 
+    /**
+     * Finds the id of the scan having the given fingerprint using the
+     * unique index on this column.
+     * @param fingerprint the fingerprint of the scan
+     * @return Option with the scan id if exists or optional empty
+     */
+    @Query("SELECT s.id FROM Scan s WHERE s.fingerprint = :fingerprint")
+    Optional<Long> findIdByFingerprint(String fingerprint);
+
 }
\ No newline at end of file
@@ -12,8 +12,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 /**
  * The repository for Sensor entity
@@ -21,6 +20,13 @@ import java.util.Optional;
 @Repository
 public interface
 SensorRepository extends JpaRepository<Sensor, Long> {
+    /**
+     * Maximum number of sensor ids resolved by a single query of
+     * {@link #findAllBySensorIds(Collection)}, keeping the two IN lists
+     * under the SQLite bound parameters limit.
+     */
+    int LOOKUP_CHUNK_SIZE = 400;
+
     /**
      * Will find a sensor by its id
      * @param structureId the id of the sensor
@@ -97,6 +103,55 @@ SensorRepository extends JpaRepository<Sensor, Long> {
      */
     Optional<Sensor> findBySensorId(SensorId sensorId);
 
+    /**
+     * Will find all the sensors having a control chip and a measure
+     * chip in the given lists. This query returns a superset of the
+     * requested pairs and must be filtered on the full sensor id.
+     * @param controlChips the control chips to search for
+     * @param measureChips the measure chips to search for
+     * @return the list of the matching sensors
+     */
+    @Query("""
+    SELECT s FROM Sensor s
+        WHERE s.sensorId.controlChip IN :controlChips
+            AND s.sensorId.measureChip IN :measureChips
+    """)
+    List<Sensor> findByChips(Collection<String> controlChips, Collection<String> measureChips);
+
+    /**
+     * Will find all the sensors matching the given ids with one query
+     * per chunk of {@link #LOOKUP_CHUNK_SIZE} ids instead of one query
+     * per sensor.
+     * @param sensorIds the ids of the sensors to find
+     * @return the found sensors indexed by their id, unknown ids are
+     *     simply absent from the map
+     */
+    default Map<SensorId, Sensor> findAllBySensorIds(Collection<SensorId> sensorIds) {
+        var ids = List.copyOf(new HashSet<>(sensorIds));
+        var sensors = new HashMap<SensorId, Sensor>();
+        for (var from = 0; from < ids.size(); from += LOOKUP_CHUNK_SIZE) {
+            var chunk = new HashSet<>(ids.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, ids.size())));
+            var controlChips = new HashSet<String>();
+            var measureChips = new HashSet<String>();
+            for (var id : chunk) {
+                controlChips.add(id.getControlChip());
+                measureChips.add(id.getMeasureChip());
+            }
+            for (var sensor : findByChips(controlChips, measureChips)) {
+                if (chunk.contains(sensor.getSensorId())) sensors.put(sensor.getSensorId(), sensor);
+            }
+        }
+        return sensors;
+    }
+
+    /**
+     * Gets the chips and the name of all the sensors, to fill the
+     * {@link fr.uge.structsure.services.SensorRegistry}.
+     * @return for each sensor, its control chip, measure chip and name
+     */
+    @Query("SELECT s.sensorId.controlChip, s.sensorId.measureChip, s.name FROM Sensor s")
+    List<Object[]> findAllChipsAndNames();
+
     /**
      * Update sensors associated with a specific plan id by removing x, y and plan reference
      * @param planId The plan id
@@ -2,10 +2,12 @@ package fr.uge.structsure.repositories;
 
 import fr.uge.structsure.dto.sensors.AllSensorsByStructureRequestDTO;
 import fr.uge.structsure.dto.sensors.SensorDTO;
+import fr.uge.structsure.entities.Result;
 import fr.uge.structsure.entities.Sensor;
 import fr.uge.structsure.entities.State;
 import fr.uge.structsure.exceptions.Error;
 import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.utils.KeysetCursor;
 import fr.uge.structsure.utils.OrderEnum;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -28,33 +30,24 @@ public class SensorRepositoryCriteriaQuery {
     EntityManager em;
 
     /**
-     * Finds all the sensors that are present in the structure
+     * Finds all the sensors that are present in the structure. Without
+     * scan filter, the state stored on the sensors is used. Otherwise,
+     * the state is computed from the results of the filtered scan.
+     * When the request contains a cursor, the page starts right after
+     * the row the cursor points to instead of using the offset.
      * @param structureId the structure id
      * @param request the request containing data like filter by and order by
      * @return List<SensorDTO> the list of the sensors
-     * @throws TraitementException error with code DATE_FORMAT_ERROR if there is an error while converting date
+     * @throws TraitementException error with code DATE_FORMAT_ERROR if there is an error while converting date,
+     *     INCORRECT_FIELD_VALUE if the cursor is invalid
      */
     public List<SensorDTO> findAllSensorsByStructureId(long structureId, AllSensorsByStructureRequestDTO request) throws TraitementException {
         var cb = em.getCriteriaBuilder();
         var cq = cb.createQuery(SensorDTO.class);
         var sensor = cq.from(Sensor.class);
-        var result = sensor.join("results", JoinType.LEFT);
-        var plan = sensor.join("plan", JoinType.LEFT);
-
         var predicates = new ArrayList<Predicate>();
-        if (request.scanFilter() != null) {
-            predicates.add(cb.equal(result.get("scan").get("id"), request.scanFilter()));
-        }
-        if (request.planFilter() != null) {
-            predicates.add(cb.equal(plan.get("id"), request.planFilter()));
-        }
-        predicates.add(cb.equal(sensor.get("structure").get("id"), structureId));
-
-        Expression<Long> resultCount = cb.count(result);
-        Expression<Boolean> isNokPresent = checkIsNokPresent(cb, result);
-        Expression<Boolean> isDefectivePresent = checkIsDefectivePresent(cb, result);
-
-        Expression<Integer> state = getState(cb, resultCount, isNokPresent, isDefectivePresent);
+        var having = new ArrayList<Predicate>();
+        var state = stateOf(cb, cq, sensor, structureId, request, predicates, having);
 
         cq.select(cb.construct(SensorDTO.class,
                 sensor.get("sensorId").get("controlChip"),
@@ -69,35 +62,28 @@ public class SensorRepositoryCriteriaQuery {
                 sensor.get("y")
         ));
 
-
-        if (request.archivedFilter() != null) {
-            predicates.add(cb.equal(sensor.get("archived"), request.archivedFilter()));
-        }
-        else {
-            predicates.add(cb.isFalse(sensor.get("archived")));
+        var orderByColumn = AllSensorsByStructureRequestDTO.OrderByColumn.valueOf(request.orderByColumn());
+        var asc = OrderEnum.valueOf(request.orderType()) == OrderEnum.ASC;
+        Expression<?> sortExpression = switch (orderByColumn) {
+            case NAME -> sensor.get("name");
+            case STATE -> state;
+            case INSTALLATION_DATE -> sensor.get("installationDate");
+        };
+        if (request.cursor() != null) {
+            var cursor = KeysetCursor.decode(request.cursor(), request.orderByColumn(), request.orderType(), 2);
+            var keyset = after(cb, sensor, orderByColumn, state, request.scanFilter() != null, cursor, asc);
+            (request.scanFilter() == null ? predicates : having).add(keyset); // refers to the aggregated state
         }
-
-        addMinAndMaxInstallationDatePredicate(request, predicates, cb, sensor);
-
         cq.where(predicates.toArray(new Predicate[0]));
-        cq.groupBy(sensor.get("sensorId"));
+        if (!having.isEmpty()) cq.having(having.toArray(new Predicate[0]));
+        Expression<?> controlChip = sensor.get("sensorId").get("controlChip");
+        Expression<?> measureChip = sensor.get("sensorId").get("measureChip");
+        cq.orderBy(asc ?
+            List.of(cb.asc(sortExpression), cb.asc(controlChip), cb.asc(measureChip)) :
+            List.of(cb.desc(sortExpression), cb.desc(controlChip), cb.desc(measureChip)));
 
-        if (request.stateFilter() != null) {
-            var stateFilterEnum = State.valueOf(request.stateFilter());
-            cq.having(cb.equal(state, stateFilterEnum.ordinal()));
-        }
-        var orderByColumn = AllSensorsByStructureRequestDTO.OrderByColumn.valueOf(request.orderByColumn());
-        var orderType = OrderEnum.valueOf(request.orderType());
-        Order order = switch (orderByColumn) {
-            case NAME -> orderType.equals(OrderEnum.ASC) ?
-                    cb.asc(sensor.get(orderByColumn.getValue())) : cb.desc(sensor.get(orderByColumn.getValue()));
-            case STATE -> orderType.equals(OrderEnum.ASC) ? cb.asc(getWhen(cb, state)) : cb.desc(getWhen(cb, state));
-            case INSTALLATION_DATE -> orderType.equals(OrderEnum.ASC) ?
-                    cb.asc(sensor.get("installationDate")) : cb.desc(sensor.get("installationDate"));
-        };
-        cq.orderBy(order);
         var query = em.createQuery(cq);
-        if (request.offset() != null) {
+        if (request.offset() != null && request.cursor() == null) {
             query.setFirstResult(request.offset());
         }
         if (request.limit() != null) {
@@ -106,9 +92,30 @@ public class SensorRepositoryCriteriaQuery {
         return query.getResultList();
     }
 
+    /**
+     * Creates the token of the page following the given one.
+     * @param request the request that returned the page
+     * @param page the sensors of the page
+     * @return the token of the next page, or null if this page is the last one
+     */
+    public static String nextCursor(AllSensorsByStructureRequestDTO request, List<SensorDTO> page) {
+        if (request.limit() == null || page.isEmpty() || page.size() < request.limit()) return null;
+        var last = page.getLast();
+        var value = switch (AllSensorsByStructureRequestDTO.OrderByColumn.valueOf(request.orderByColumn())) {
+            case NAME -> last.name();
+            case STATE -> last.state().name();
+            case INSTALLATION_DATE -> last.installationDate() == null ? null : last.installationDate().toString();
+        };
+        return new KeysetCursor(request.orderByColumn(), request.orderType(), value,
+            List.of(last.controlChip(), last.measureChip())).encode();
+    }
+
 
     /**
      * Count the total number of sensors that are present in the structure
+     * with a single COUNT query. With a scan filter, the sensors are
+     * matched with EXISTS on the results of the scan instead of being
+     * grouped.
      * @param structureId the structure id
      * @param request the request containing data like filter by and order by
      * @return long the total number of sensors
@@ -118,46 +125,197 @@ public class SensorRepositoryCriteriaQuery {
         var cb = em.getCriteriaBuilder();
         var cq = cb.createQuery(Long.class);
         var sensor = cq.from(Sensor.class);
-        var result = sensor.join("results", JoinType.LEFT);
-        var plan = sensor.join("plan", JoinType.LEFT);
-
         var predicates = new ArrayList<Predicate>();
-        if (request.scanFilter() != null) {
-            predicates.add(cb.equal(result.get("scan").get("id"), request.scanFilter()));
+        if (request.scanFilter() == null) {
+            stateOf(cb, cq, sensor, structureId, request, predicates, new ArrayList<>());
+        } else {
+            addFilters(cb, sensor, structureId, request, predicates);
+            var state = request.stateFilter() == null ? null : State.valueOf(request.stateFilter());
+            if (state == State.UNKNOWN) return 0; // a sensor of the scan always has a result
+            // same rules as the computed state: NOK first, then DEFECTIVE, then OK
+            predicates.add(cb.exists(scanResults(cb, cq, sensor, request.scanFilter(), null)));
+            if (state == State.NOK) {
+                predicates.add(cb.exists(scanResults(cb, cq, sensor, request.scanFilter(), State.NOK)));
+            }
+            if (state == State.DEFECTIVE || state == State.OK) {
+                predicates.add(cb.not(cb.exists(scanResults(cb, cq, sensor, request.scanFilter(), State.NOK))));
+            }
+            if (state == State.DEFECTIVE) {
+                predicates.add(cb.exists(scanResults(cb, cq, sensor, request.scanFilter(), State.DEFECTIVE)));
+            }
+            if (state == State.OK) {
+                predicates.add(cb.not(cb.exists(scanResults(cb, cq, sensor, request.scanFilter(), State.DEFECTIVE))));
+            }
         }
-        if (request.planFilter() != null) {
-            predicates.add(cb.equal(plan.get("id"), request.planFilter()));
+        cq.select(cb.count(sensor));
+        cq.where(predicates.toArray(new Predicate[0]));
+        return em.createQuery(cq).getSingleResult();
+    }
+
+    /**
+     * Creates the subquery of the results of the given sensor in the
+     * given scan, optionally with the given state.
+     * @param cb the Criteria Builder
+     * @param cq the main query
+     * @param sensor the sensor of the main query
+     * @param scanId the id of the scan
+     * @param state the state of the results to find, null for any state
+     * @return the subquery
+     */
+    private static Subquery<Long> scanResults(
+        CriteriaBuilder cb, CriteriaQuery<?> cq, Root<Sensor> sensor, long scanId, State state
+    ) {
+        var subquery = cq.subquery(Long.class);
+        var result = subquery.from(Result.class);
+        var conditions = new ArrayList<Predicate>();
+        conditions.add(cb.equal(result.get("sensor"), sensor));
+        conditions.add(cb.equal(result.get("scan").get("id"), scanId));
+        if (state != null) conditions.add(cb.equal(result.get("state"), state));
+        return subquery.select(result.get("id")).where(conditions.toArray(new Predicate[0]));
+    }
+
+    /**
+     * Adds the filters of the request to the given predicates and gets
+     * the expression of the sensor state. Without scan filter, this is
+     * the state stored on the sensor. With a scan filter, the results
+     * of the scan are joined and the state is computed from them, the
+     * query being grouped by sensor.
+     * @param cb the Criteria Builder
+     * @param cq the query to add the join and grouping clauses to
+     * @param sensor the sensor entity
+     * @param structureId the structure id
+     * @param request the request containing the filters
+     * @param predicates the list of predicates to fill
+     * @param having the list of predicates on the grouped rows to fill
+     * @return the expression of the state of the sensor
+     * @throws TraitementException throws DATE_TIME_ISO_FORMAT_ERROR if there is an error while parsing the date time
+     */
+    private static Expression<?> stateOf(
+        CriteriaBuilder cb, CriteriaQuery<?> cq, Root<Sensor> sensor, long structureId,
+        AllSensorsByStructureRequestDTO request, List<Predicate> predicates, List<Predicate> having
+    ) throws TraitementException {
+        addFilters(cb, sensor, structureId, request, predicates);
+        if (request.scanFilter() == null) {
+            Expression<State> state = sensor.get("currentState");
+            if (request.stateFilter() != null) {
+                predicates.add(cb.equal(state, State.valueOf(request.stateFilter())));
+            }
+            return state;
         }
-        predicates.add(cb.equal(sensor.get("structure").get("id"), structureId));
 
+        var result = sensor.join("results", JoinType.LEFT);
+        predicates.add(cb.equal(result.get("scan").get("id"), request.scanFilter()));
         Expression<Long> resultCount = cb.count(result);
         Expression<Boolean> isNokPresent = checkIsNokPresent(cb, result);
         Expression<Boolean> isDefectivePresent = checkIsDefectivePresent(cb, result);
-
         Expression<Integer> state = getState(cb, resultCount, isNokPresent, isDefectivePresent);
+        cq.groupBy(sensor.get("sensorId"));
+        if (request.stateFilter() != null) {
+            var stateFilterEnum = State.valueOf(request.stateFilter());
+            having.add(cb.equal(state, stateFilterEnum.ordinal()));
+        }
+        return state;
+    }
 
-        cq.select(cb.count(sensor));
-
-
+    /**
+     * Adds the filters of the request that do not depend on the state
+     * @param cb the Criteria Builder
+     * @param sensor the sensor entity
+     * @param structureId the structure id
+     * @param request the request containing the filters
+     * @param predicates the list of predicates to fill
+     * @throws TraitementException throws DATE_TIME_ISO_FORMAT_ERROR if there is an error while parsing the date time
+     */
+    private static void addFilters(
+        CriteriaBuilder cb, Root<Sensor> sensor, long structureId,
+        AllSensorsByStructureRequestDTO request, List<Predicate> predicates
+    ) throws TraitementException {
+        predicates.add(cb.equal(sensor.get("structure").get("id"), structureId));
+        if (request.planFilter() != null) {
+            predicates.add(cb.equal(sensor.get("plan").get("id"), request.planFilter()));
+        }
         if (request.archivedFilter() != null) {
             predicates.add(cb.equal(sensor.get("archived"), request.archivedFilter()));
         }
         else {
             predicates.add(cb.isFalse(sensor.get("archived")));
         }
-
         addMinAndMaxInstallationDatePredicate(request, predicates, cb, sensor);
+    }
 
-        cq.where(predicates.toArray(new Predicate[0]));
-        cq.groupBy(sensor.get("sensorId"));
-
-        if (request.stateFilter() != null) {
-            var stateFilterEnum = State.valueOf(request.stateFilter());
-            cq.having(cb.equal(state, stateFilterEnum.ordinal()));
+    /**
+     * Creates the predicate selecting the rows placed after the cursor
+     * in the order of the listing. The chips of the sensors break the
+     * ties between rows having the same sort value.
+     * @param cb the Criteria Builder
+     * @param sensor the sensor entity
+     * @param column the column the listing is sorted by
+     * @param state the expression of the state of the sensor
+     * @param computed true if the state is computed from the results (ordinal)
+     *     instead of being the stored state
+     * @param cursor the position of the last row of the previous page
+     * @param asc true if the listing is in ascending order
+     * @return the predicate
+     * @throws TraitementException INCORRECT_FIELD_VALUE if the cursor value is invalid
+     */
+    @SuppressWarnings("unchecked")
+    private static Predicate after(
+        CriteriaBuilder cb, Root<Sensor> sensor, AllSensorsByStructureRequestDTO.OrderByColumn column,
+        Expression<?> state, boolean computed, KeysetCursor cursor, boolean asc
+    ) throws TraitementException {
+        Expression<String> controlChip = sensor.get("sensorId").get("controlChip");
+        Expression<String> measureChip = sensor.get("sensorId").get("measureChip");
+        var tie = cb.or(
+            compare(cb, controlChip, cursor.keys().get(0), asc),
+            cb.and(cb.equal(controlChip, cursor.keys().get(0)), compare(cb, measureChip, cursor.keys().get(1), asc))
+        );
+        if (cursor.value() == null && column != AllSensorsByStructureRequestDTO.OrderByColumn.INSTALLATION_DATE) {
+            throw new TraitementException(Error.INCORRECT_FIELD_VALUE);
+        }
+        try {
+            return switch (column) {
+                case NAME -> after(cb, sensor.get("name"), cursor.value(), asc, tie);
+                case STATE -> {
+                    var value = State.valueOf(cursor.value());
+                    yield computed ?
+                        after(cb, (Expression<Integer>) state, value.ordinal(), asc, tie) :
+                        after(cb, (Expression<State>) state, value, asc, tie);
+                }
+                case INSTALLATION_DATE -> {
+                    Expression<LocalDate> date = sensor.get("installationDate");
+                    if (cursor.value() == null) {
+                        // null dates come first in ascending order and last in descending order
+                        yield asc ? cb.or(cb.and(cb.isNull(date), tie), cb.isNotNull(date)) : cb.and(cb.isNull(date), tie);
+                    }
+                    var value = LocalDate.parse(cursor.value());
+                    var next = after(cb, date, value, asc, tie);
+                    yield asc ? next : cb.or(next, cb.isNull(date));
+                }
+            };
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new TraitementException(Error.INCORRECT_FIELD_VALUE);
         }
+    }
 
-        var query = em.createQuery(cq);
-        return query.getResultList().size();
+    /**
+     * Creates the predicate selecting the rows which sort value comes
+     * after the given one, or which is equal and matches the tie breaker.
+     * @param cb the Criteria Builder
+     * @param expression the sort value of the rows
+     * @param value the sort value of the cursor
+     * @param asc true if the listing is in ascending order
+     * @param tie the predicate selecting the rows after the cursor when the values are equal
+     * @return the predicate
+     * @param <T> the type of the sort value
+     */
+    private static <T extends Comparable<? super T>> Predicate after(
+        CriteriaBuilder cb, Expression<T> expression, T value, boolean asc, Predicate tie
+    ) {
+        return cb.or(compare(cb, expression, value, asc), cb.and(cb.equal(expression, value), tie));
+    }
+
+    private static <T extends Comparable<? super T>> Predicate compare(CriteriaBuilder cb, Expression<T> expression, T value, boolean asc) {
+        return asc ? cb.greaterThan(expression, value) : cb.lessThan(expression, value);
     }
 
 
@@ -169,7 +327,7 @@ public class SensorRepositoryCriteriaQuery {
      * @param sensor the sensor entity
      * @throws TraitementException throws DATE_TIME_ISO_FORMAT_ERROR if there is an error while parsing the date time
      */
-    private static void addMinAndMaxInstallationDatePredicate(AllSensorsByStructureRequestDTO request, ArrayList<Predicate> predicates, CriteriaBuilder cb, Root<Sensor> sensor) throws TraitementException {
+    private static void addMinAndMaxInstallationDatePredicate(AllSensorsByStructureRequestDTO request, List<Predicate> predicates, CriteriaBuilder cb, Root<Sensor> sensor) throws TraitementException {
         DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
         if (request.minInstallationDate() != null && !request.minInstallationDate().isEmpty()) {
             try {
@@ -231,18 +389,4 @@ public class SensorRepositoryCriteriaQuery {
                 .when(isDefectivePresent, State.DEFECTIVE.ordinal())
                 .otherwise(State.OK.ordinal());
     }
-
-    /**
-     * Return the case for order
-     * @param cb the criteria builder
-     * @param caseExpression the case expression containing the value
-     * @return
-     */
-    private static CriteriaBuilder.Case<Integer> getWhen(CriteriaBuilder cb, Expression<Integer> caseExpression) {
-        return cb.<Integer>selectCase()
-                .when(cb.equal(caseExpression, State.NOK.ordinal()), 1)
-                .when(cb.equal(caseExpression, State.DEFECTIVE.ordinal()), 2)
-                .when(cb.equal(caseExpression, State.OK.ordinal()), 3)
-                .when(cb.equal(caseExpression, State.UNKNOWN.ordinal()), 4);
-    }
 }
\ No newline at end of file
@@ -3,6 +3,9 @@ package fr.uge.structsure.repositories;
 import fr.uge.structsure.dto.structure.AllStructureRequestDTO;
 import fr.uge.structsure.dto.structure.AllStructureResponseDTO;
 import fr.uge.structsure.entities.*;
+import fr.uge.structsure.exceptions.Error;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.utils.KeysetCursor;
 import fr.uge.structsure.utils.OrderEnum;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -23,91 +26,206 @@ public class StructureRepositoryCriteriaQuery {
 
     /**
      * Returns the list of structures sorted by sortTypeEnum and for each one its state, number of sensors,
-     * number of plans and if it's archived
+     * number of plans and if it's archived. The counters and the state are read from the
+     * {@link StructureSummary} of each structure.
+     * When the request contains a limit, only a page of structures is returned, starting right after
+     * the structure its cursor points to.
+     * @param allStructureRequestDTO the filters and order of the listing
+     * @param accountId the id of the account whose allowed structures are listed, null for all the structures
      * @return List<AllStructureResponseDTO> list of the structures
+     * @throws TraitementException INCORRECT_FIELD_VALUE if the cursor is invalid
      */
-    public List<AllStructureResponseDTO> findAllStructuresWithState(AllStructureRequestDTO allStructureRequestDTO) {
+    public List<AllStructureResponseDTO> findAllStructuresWithState(
+        AllStructureRequestDTO allStructureRequestDTO, Long accountId
+    ) throws TraitementException {
         var cb = em.getCriteriaBuilder();
         var cq = cb.createQuery(AllStructureResponseDTO.class);
-        var structure = cq.from(Structure.class);
-        var sensor = structure.join("sensors", JoinType.LEFT);
-        var result = sensor.join("results", JoinType.LEFT);
-        var plan = structure.join("plans", JoinType.LEFT);
-
-        var countMeasureChip = cb.countDistinct(sensor.get("sensorId").get("measureChip"));
-        var countResults = cb.countDistinct(result.get("id"));
-        var countPlans = cb.countDistinct(plan.get("id"));
-        var countDefective = cb.sum(cb.<Long>selectCase()
-                .when(cb.equal(result.get("state"), State.DEFECTIVE), 1L)
-                .otherwise(0L));
-        var countNok = cb.sum(cb.<Long>selectCase()
-                .when(cb.equal(result.get("state"), State.NOK), 1L)
-                .otherwise(0L));
-        var state = cb.<Integer>selectCase()
-                .when(cb.equal(countResults, 0L), State.UNKNOWN.ordinal())
-                .when(cb.greaterThan(countNok, 0L), State.NOK.ordinal())
-                .when(cb.greaterThan(countDefective, 0L), State.DEFECTIVE.ordinal())
-                .otherwise(State.OK.ordinal());
+        var summary = cq.from(StructureSummary.class);
+        Join<StructureSummary, Structure> structure = summary.join("structure");
+        Expression<State> state = summary.get("state");
 
         cq.select(cb.construct(AllStructureResponseDTO.class,
             structure.get("id"),
             structure.get("name"),
-            countMeasureChip,
-            countPlans,
+            summary.get("sensorCount"),
+            summary.get("planCount"),
             state,
             structure.get("note"),
             structure.get("archived")
         ));
 
+        var predicates = filters(cb, cq, summary, structure, allStructureRequestDTO, accountId);
+        var column = AllStructureRequestDTO.OrderByColumn.valueOf(allStructureRequestDTO.orderByColumnName());
+        // the requested order is reversed: ascending shows the highest values first
+        var asc = OrderEnum.valueOf(allStructureRequestDTO.orderType()) == OrderEnum.DESC;
+        var cursor = allStructureRequestDTO.cursor();
+        if (cursor.isPresent()) {
+            var position = KeysetCursor.decode(cursor.get(), column.name(), allStructureRequestDTO.orderType(), 1);
+            predicates.add(after(cb, summary, structure, column, position, asc));
+        }
+        cq.where(predicates.toArray(new Predicate[0]));
+
+        var orderExpression = sortExpression(cb, summary, structure, column);
+        Expression<Long> id = structure.get("id");
+        cq.orderBy(asc ? List.of(cb.asc(orderExpression), cb.asc(id)) : List.of(cb.desc(orderExpression), cb.desc(id)));
+        var query = em.createQuery(cq);
+        allStructureRequestDTO.limit().ifPresent(query::setMaxResults);
+        return query.getResultList();
+    }
+
+    /**
+     * Counts the structures matching the filters of the request with a
+     * single COUNT query.
+     * @param allStructureRequestDTO the filters of the listing
+     * @param accountId the id of the account whose allowed structures are counted, null for all the structures
+     * @return the number of matching structures
+     */
+    public long countStructures(AllStructureRequestDTO allStructureRequestDTO, Long accountId) {
+        var cb = em.getCriteriaBuilder();
+        var cq = cb.createQuery(Long.class);
+        var summary = cq.from(StructureSummary.class);
+        Join<StructureSummary, Structure> structure = summary.join("structure");
+        var predicates = filters(cb, cq, summary, structure, allStructureRequestDTO, accountId);
+        cq.select(cb.count(summary)).where(predicates.toArray(new Predicate[0]));
+        return em.createQuery(cq).getSingleResult();
+    }
+
+    /**
+     * Creates the token of the page following the given one.
+     * @param request the request that returned the page
+     * @param page the structures of the page
+     * @return the token of the next page, or null if this page is the last one
+     */
+    public static String nextCursor(AllStructureRequestDTO request, List<AllStructureResponseDTO> page) {
+        var limit = request.limit();
+        if (limit.isEmpty() || page.isEmpty() || page.size() < limit.get()) return null;
+        var last = page.getLast();
+        var column = AllStructureRequestDTO.OrderByColumn.valueOf(request.orderByColumnName());
+        var value = switch (column) {
+            case NAME -> last.name();
+            case NUMBER_OF_SENSORS -> String.valueOf(last.numberOfSensors());
+            case STATE -> String.valueOf(stateRank(last.state(), last.archived()));
+        };
+        return new KeysetCursor(column.name(), request.orderType(), value, List.of(String.valueOf(last.id()))).encode();
+    }
+
+    /**
+     * Creates the filters of the listing. The access restriction is a
+     * subquery on the structures of the account, so the database only
+     * returns the allowed structures whatever their number.
+     * @param cb the criteria builder
+     * @param query the query to add the subquery to
+     * @param summary the summary of the structure
+     * @param structure the structure
+     * @param request the request containing the filters
+     * @param accountId the id of the account whose allowed structures are listed, null for all the structures
+     * @return the list of predicates
+     */
+    private static List<Predicate> filters(
+        CriteriaBuilder cb, AbstractQuery<?> query, Root<StructureSummary> summary,
+        Join<StructureSummary, Structure> structure, AllStructureRequestDTO request, Long accountId
+    ) {
         var predicates = new ArrayList<Predicate>();
-        predicates.add(cb.like(cb.lower(structure.get("name")), "%" + allStructureRequestDTO.searchByName().toLowerCase() + "%"));
-        allStructureRequestDTO.archived().ifPresent(v ->
+        predicates.add(cb.like(cb.lower(structure.get("name")), "%" + request.searchByName().toLowerCase() + "%"));
+        request.archived().ifPresent(v ->
             predicates.add(cb.equal(structure.get("archived"), v))
         );
-        cq.where(predicates.toArray(new Predicate[0]));
-        cq.groupBy(structure.get("id"));
+        request.searchByState().ifPresent(requestedState -> {
+            predicates.add(cb.equal(summary.get("state"), requestedState));
+            predicates.add(cb.equal(structure.get("archived"), false));
+        });
+        if (accountId != null) {
+            var allowed = query.subquery(Long.class);
+            var allowedStructure = allowed.from(Structure.class);
+            Join<Structure, Account> account = allowedStructure.join("accounts");
+            allowed.select(allowedStructure.get("id")).where(cb.equal(account.get("id"), accountId));
+            predicates.add(structure.get("id").in(allowed));
+        }
+        return predicates;
+    }
 
+    /**
+     * Gets the expression the listing is sorted by
+     * @param cb the criteria builder
+     * @param summary the summary of the structure
+     * @param structure the structure
+     * @param column the column to sort by
+     * @return the sort expression
+     */
+    private static Expression<?> sortExpression(
+        CriteriaBuilder cb, Root<StructureSummary> summary, Join<StructureSummary, Structure> structure,
+        AllStructureRequestDTO.OrderByColumn column
+    ) {
+        return switch (column) {
+            case NUMBER_OF_SENSORS -> summary.get("sensorCount");
+            case NAME -> structure.get("name");
+            case STATE -> stateRank(cb, summary, structure);
+        };
+    }
+
+    /**
+     * Gets the rank of the structures when sorted by state: the not
+     * archived structures from NOK (5) to UNKNOWN (2), then the archived
+     * ones (1).
+     * @param cb the criteria builder
+     * @param summary the summary of the structure
+     * @param structure the structure
+     * @return the rank expression
+     */
+    private static Expression<Integer> stateRank(
+        CriteriaBuilder cb, Root<StructureSummary> summary, Join<StructureSummary, Structure> structure
+    ) {
         var notArchivedPredicate = cb.equal(structure.get("archived"), false);
-        if (allStructureRequestDTO.searchByState().isPresent()) {
-            var requestedState = allStructureRequestDTO.searchByState().get();
-            Predicate statePredicate;
-            switch (requestedState) {
-                case UNKNOWN -> statePredicate = cb.and(
-                        cb.equal(countResults, 0L),
-                        notArchivedPredicate);
-                case NOK -> statePredicate = cb.and(
-                        cb.greaterThan(countNok, 0L),
-                        notArchivedPredicate);
-                case DEFECTIVE -> statePredicate = cb.and(
-                        cb.greaterThan(countDefective, 0L),
-                        cb.equal(countNok, 0L),
-                        notArchivedPredicate);
-                default -> statePredicate = cb.and( // State.OK
-                        cb.equal(countDefective, 0L),
-                        cb.equal(countNok, 0L),
-                        cb.greaterThan(countResults, 0L),
-                        notArchivedPredicate);
-            }
-            cq.having(statePredicate);
-        }
+        Expression<State> state = summary.get("state");
+        return cb.<Integer>selectCase()
+            .when(cb.and(notArchivedPredicate, cb.equal(state, State.NOK)), 5)
+            .when(cb.and(notArchivedPredicate, cb.equal(state, State.DEFECTIVE)), 4)
+            .when(cb.and(notArchivedPredicate, cb.equal(state, State.OK)), 3)
+            .when(cb.and(notArchivedPredicate, cb.equal(state, State.UNKNOWN)), 2)
+            .otherwise(1);
+    }
+
+    private static int stateRank(State state, boolean archived) {
+        return archived ? 1 : 5 - state.ordinal();
+    }
 
-        Expression<?> orderExpression;
-        switch (AllStructureRequestDTO.OrderByColumn.valueOf(allStructureRequestDTO.orderByColumnName())) {
-            case NUMBER_OF_SENSORS -> orderExpression = countMeasureChip;
-            case NAME -> orderExpression = structure.get("name");
-            case STATE -> orderExpression = cb.selectCase()
-                    .when(cb.and(notArchivedPredicate, cb.equal(state, State.NOK.ordinal())), 5)
-                    .when(cb.and(notArchivedPredicate, cb.equal(state, State.DEFECTIVE.ordinal())), 4)
-                    .when(cb.and(notArchivedPredicate, cb.equal(state, State.OK.ordinal())), 3)
-                    .when(cb.and(notArchivedPredicate, cb.equal(state, State.UNKNOWN.ordinal())), 2)
-                    .otherwise(1);
-            default -> orderExpression = structure.get("id");
+    /**
+     * Creates the predicate selecting the structures placed after the
+     * cursor in the order of the listing, the ids breaking the ties.
+     * @param cb the criteria builder
+     * @param summary the summary of the structure
+     * @param structure the structure
+     * @param column the column the listing is sorted by
+     * @param cursor the position of the last structure of the previous page
+     * @param asc true if the SQL order is ascending
+     * @return the predicate
+     * @throws TraitementException INCORRECT_FIELD_VALUE if the cursor is invalid
+     */
+    private static Predicate after(
+        CriteriaBuilder cb, Root<StructureSummary> summary, Join<StructureSummary, Structure> structure,
+        AllStructureRequestDTO.OrderByColumn column, KeysetCursor cursor, boolean asc
+    ) throws TraitementException {
+        if (cursor.value() == null) throw new TraitementException(Error.INCORRECT_FIELD_VALUE);
+        try {
+            Expression<Long> id = structure.get("id");
+            var tie = compare(cb, id, Long.parseLong(cursor.keys().getFirst()), asc);
+            return switch (column) {
+                case NAME -> after(cb, structure.get("name"), cursor.value(), asc, tie);
+                case NUMBER_OF_SENSORS -> after(cb, summary.get("sensorCount"), Long.parseLong(cursor.value()), asc, tie);
+                case STATE -> after(cb, stateRank(cb, summary, structure), Integer.parseInt(cursor.value()), asc, tie);
+            };
+        } catch (NumberFormatException e) {
+            throw new TraitementException(Error.INCORRECT_FIELD_VALUE);
         }
-        switch (OrderEnum.valueOf(allStructureRequestDTO.orderType())) {
-            case ASC -> cq.orderBy(cb.desc(orderExpression));
-            case DESC -> cq.orderBy(cb.asc(orderExpression));
-        };
-        return em.createQuery(cq).getResultList();
     }
 
+    private static <T extends Comparable<? super T>> Predicate after(
+        CriteriaBuilder cb, Expression<T> expression, T value, boolean asc, Predicate tie
+    ) {
+        return cb.or(compare(cb, expression, value, asc), cb.and(cb.equal(expression, value), tie));
+    }
+
+    private static <T extends Comparable<? super T>> Predicate compare(CriteriaBuilder cb, Expression<T> expression, T value, boolean asc) {
+        return asc ? cb.greaterThan(expression, value) : cb.lessThan(expression, value);
+    }
 }
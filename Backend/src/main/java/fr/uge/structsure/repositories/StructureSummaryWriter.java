@@ -0,0 +1,89 @@
+package fr.uge.structsure.repositories;
+
+import fr.uge.structsure.entities.State;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Objects;
+
+/**
+ * Maintains the {@link fr.uge.structsure.entities.StructureSummary}
+ * rows. A row is recomputed from the state stored on the sensors and
+ * from the plans of its structure only, using the (structure_id,
+ * current_state) index, so the cost does not depend on the number of
+ * scans nor on the other structures.
+ * The rows are written within the current transaction.
+ */
+@Repository
+public class StructureSummaryWriter {
+    private static final String COUNTS = """
+        SELECT st.id AS structure_id,
+            (SELECT COUNT(*) FROM sensor s WHERE s.structure_id = st.id) AS sensors,
+            (SELECT COUNT(*) FROM plan p WHERE p.structure_id = st.id) AS plans,
+            (SELECT COUNT(*) FROM sensor s WHERE s.structure_id = st.id AND s.current_state = %1$d) AS nok,
+            (SELECT COUNT(*) FROM sensor s WHERE s.structure_id = st.id AND s.current_state = %2$d) AS defective,
+            (SELECT COUNT(*) FROM sensor s WHERE s.structure_id = st.id AND s.current_state = %3$d) AS ok,
+            (SELECT COUNT(*) FROM sensor s WHERE s.structure_id = st.id AND s.current_state = %4$d) AS unknown
+        FROM structure st""".formatted(
+            State.NOK.ordinal(), State.DEFECTIVE.ordinal(), State.OK.ordinal(), State.UNKNOWN.ordinal());
+
+    private static final String UPSERT = """
+        INSERT OR REPLACE INTO structure_summary
+            (structure_id, sensor_count, plan_count, nok_count, defective_count, ok_count, unknown_count, state)
+        SELECT structure_id, sensors, plans, nok, defective, ok, unknown,
+            CASE WHEN nok > 0 THEN %d WHEN defective > 0 THEN %d WHEN ok > 0 THEN %d ELSE %d END
+        FROM (%s""".formatted(
+            State.NOK.ordinal(), State.DEFECTIVE.ordinal(), State.OK.ordinal(), State.UNKNOWN.ordinal(), COUNTS);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    /**
+     * Constructor
+     * @param jdbcTemplate access to the database
+     */
+    @Autowired
+    public StructureSummaryWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = Objects.requireNonNull(jdbcTemplate);
+    }
+
+    /**
+     * Recomputes the summary of the given structure.
+     * @param structureId the id of the structure
+     */
+    public void refresh(long structureId) {
+        flush();
+        jdbcTemplate.update(UPSERT + " WHERE st.id = ?)", structureId);
+    }
+
+    /**
+     * Recomputes the summary of all the structures.
+     * @return the number of written rows
+     */
+    public int refreshAll() {
+        flush();
+        return jdbcTemplate.update(UPSERT + ")");
+    }
+
+    /**
+     * Creates the summary of the structures that do not have one yet.
+     * @return the number of written rows
+     */
+    public int refreshMissing() {
+        flush();
+        return jdbcTemplate.update(UPSERT + " WHERE NOT EXISTS (SELECT 1 FROM structure_summary ss WHERE ss.structure_id = st.id))");
+    }
+
+    /**
+     * Writes the pending entities so that the summary sees them.
+     */
+    private void flush() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) em.flush();
+    }
+}
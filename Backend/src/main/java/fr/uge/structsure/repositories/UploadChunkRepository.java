@@ -0,0 +1,61 @@
+package fr.uge.structsure.repositories;
+
+import fr.uge.structsure.entities.UploadChunk;
+import fr.uge.structsure.entities.UploadSession;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The repository for the chunks of the scans uploaded by chunks
+ */
+@Repository
+public interface UploadChunkRepository extends JpaRepository<UploadChunk, Long> {
+
+    /**
+     * Finds a chunk of the given session by its index
+     * @param session the upload session
+     * @param chunkIndex the index of the chunk
+     * @return optional with the chunk if exists or optional empty
+     */
+    Optional<UploadChunk> findBySessionAndChunkIndex(UploadSession session, int chunkIndex);
+
+    /**
+     * Gets the indexes of the chunks received for the given session
+     * @param session the upload session
+     * @return the sorted indexes of the received chunks
+     */
+    @Query("SELECT c.chunkIndex FROM UploadChunk c WHERE c.session = :session ORDER BY c.chunkIndex")
+    List<Integer> findIndexesBySession(UploadSession session);
+
+    /**
+     * Gets the chunks of the given session in upload order
+     * @param session the upload session
+     * @return the chunks of the session
+     */
+    List<UploadChunk> findBySessionOrderByChunkIndex(UploadSession session);
+
+    /**
+     * Removes all the chunks of the given session
+     * @param session the upload session
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadChunk c WHERE c.session = :session")
+    void deleteBySession(UploadSession session);
+
+    /**
+     * Removes all the chunks of the sessions with the given ids
+     * @param ids the ids of the sessions
+     * @return the number of removed chunks
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadChunk c WHERE c.session.id IN :ids")
+    int deleteBySessionIds(List<Long> ids);
+}
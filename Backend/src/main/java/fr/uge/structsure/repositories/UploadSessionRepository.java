@@ -0,0 +1,53 @@
+package fr.uge.structsure.repositories;
+
+import fr.uge.structsure.entities.UploadSession;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The repository for the scans uploaded by chunks
+ */
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, Long> {
+
+    /**
+     * Finds an upload session by the identifier given to the client
+     * @param uploadId the identifier of the upload
+     * @return optional with the session if exists or optional empty
+     */
+    Optional<UploadSession> findByUploadId(String uploadId);
+
+    /**
+     * Finds the upload session opened for the scan having the given
+     * fingerprint, used to resume an upload which opening response was
+     * lost.
+     * @param fingerprint the fingerprint of the scan
+     * @return optional with the session if exists or optional empty
+     */
+    Optional<UploadSession> findFirstByFingerprintOrderByIdDesc(String fingerprint);
+
+    /**
+     * Gets the ids of the sessions not updated since the given time
+     * @param time the time before which sessions are expired
+     * @return the ids of the expired sessions
+     */
+    @Query("SELECT s.id FROM UploadSession s WHERE s.updatedAt < :time")
+    List<Long> findExpiredIds(LocalDateTime time);
+
+    /**
+     * Removes the sessions with the given ids
+     * @param ids the ids of the sessions to remove
+     * @return the number of removed sessions
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadSession s WHERE s.id IN :ids")
+    int deleteAllByIds(List<Long> ids);
+}
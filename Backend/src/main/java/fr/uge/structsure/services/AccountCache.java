@@ -0,0 +1,187 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.dto.monitoring.CacheStatsDTO;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.utils.StructureAccess;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static fr.uge.structsure.StructSureBackendApplication.SUPER_ADMIN_LOGIN;
+
+/**
+ * Size bounded cache of the accounts used to authenticate the requests,
+ * indexed by login. Each entry is an immutable snapshot of the account
+ * with the ids of the structures it can access, and expires after a
+ * fixed delay.
+ * <p>
+ * The services modifying an account must call {@link #invalidate(String)}
+ * once the change is saved. The entry is removed right away and again
+ * when the current transaction completes, and a snapshot loaded before
+ * an invalidation is never stored, so the next request always sees the
+ * change.
+ */
+@Service
+public class AccountCache {
+
+    /**
+     * Immutable copy of an account
+     * @param id the id of the account
+     * @param login the login of the account
+     * @param passwordEncrypted the hash of the password
+     * @param role the role of the account
+     * @param enabled whether the account can be used
+     * @param allowedStructures the index of the structures the account can access
+     */
+    public record Snapshot(long id, String login, String passwordEncrypted, Role role, boolean enabled, StructureAccess allowedStructures) {
+        public Snapshot {
+            Objects.requireNonNull(login);
+            Objects.requireNonNull(role);
+            Objects.requireNonNull(allowedStructures);
+        }
+
+        /**
+         * Checks if this account is the super admin
+         * @return true if this account is the super admin, false otherwise
+         */
+        public boolean isSuperAdmin() {
+            return SUPER_ADMIN_LOGIN.equals(login);
+        }
+    }
+
+    private record Entry(Snapshot snapshot, long expiresAt) {}
+
+    private final AccountRepository accountRepository;
+    private final int maxSize;
+    private final long ttl;
+
+    /* Guarded by this */
+    private final LinkedHashMap<String, Entry> entries;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Constructor
+     * @param accountRepository access to the accounts in the database
+     * @param maxSize the maximum number of accounts to keep
+     * @param ttlSeconds the maximum time to keep an account, in seconds
+     */
+    @Autowired
+    public AccountCache(
+        AccountRepository accountRepository,
+        @Value("${app.accounts.cache.size:1000}") int maxSize,
+        @Value("${app.accounts.cache.ttl.seconds:300}") long ttlSeconds
+    ) {
+        if (maxSize <= 0 || ttlSeconds <= 0) throw new IllegalArgumentException("Account cache size and TTL must be positive");
+        this.accountRepository = Objects.requireNonNull(accountRepository);
+        this.maxSize = maxSize;
+        this.ttl = ttlSeconds * 1_000_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= AccountCache.this.maxSize) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets the account with the given login, from the cache if present
+     * or from the database otherwise.
+     * @param login the login of the account
+     * @return the account, or empty if no account has this login
+     */
+    public Optional<Snapshot> get(String login) {
+        Objects.requireNonNull(login);
+        long loadGeneration;
+        synchronized (this) {
+            var entry = entries.get(login);
+            if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+                hits++;
+                return Optional.of(entry.snapshot());
+            }
+            if (entry != null) {
+                entries.remove(login);
+                evictions++;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+        var snapshot = load(login);
+        snapshot.ifPresent(value -> {
+            synchronized (this) {
+                if (generation == loadGeneration) {
+                    entries.put(login, new Entry(value, System.nanoTime() + ttl));
+                }
+            }
+        });
+        return snapshot;
+    }
+
+    /**
+     * Removes the account with the given login from the cache. Must be
+     * called after each change of an account or of its access to the
+     * structures. If a transaction is running, the account is removed
+     * again once it completes.
+     * @param login the login of the changed account
+     */
+    public void invalidate(String login) {
+        Objects.requireNonNull(login);
+        remove(login);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                remove(login);
+            }
+        });
+    }
+
+    /**
+     * Removes all the accounts from the cache
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    /**
+     * Gets the usage counters of the cache
+     * @return the counters
+     */
+    public synchronized CacheStatsDTO stats() {
+        return new CacheStatsDTO("accounts", entries.size(), maxSize, hits, misses, evictions, invalidations);
+    }
+
+    private synchronized void remove(String login) {
+        generation++;
+        if (entries.remove(login) != null) invalidations++;
+    }
+
+    /**
+     * Reads the account with the given login and its allowed
+     * structures from the database.
+     * @param login the login of the account
+     * @return the account, or empty if no account has this login
+     */
+    private Optional<Snapshot> load(String login) {
+        return accountRepository.findByLogin(login).map(account -> new Snapshot(
+            account.getId(), account.getLogin(), account.getPasswordEncrypted(), account.getRole(),
+            Boolean.TRUE.equals(account.getEnabled()),
+            StructureAccess.of(accountRepository.findAllowedStructureIds(account.getId()))
+        ));
+    }
+}
@@ -40,6 +40,7 @@ public class AccountService {
     private final JwtUtils jwtUtils;
     private final AuthValidationService authValidationService;
     private final AppLogService appLogs;
+    private final AccountCache accountCache;
 
     /**
      * Constructor
@@ -48,12 +49,15 @@ public class AccountService {
      * @param authenticationManager Authentication manager for the authentication
      * @param jwtUtils Jwt utils to perform operations with JWT token
      * @param authValidationService The auth validation service
+     * @param appLogs The service to log the actions of the users
+     * @param accountCache The cache of the accounts, cleared on each account change
      */
     @Autowired
     public AccountService(
         AccountRepository accountRepository,
         StructureRepository structureRepository, AuthenticationManager authenticationManager,
-        JwtUtils jwtUtils, AuthValidationService authValidationService, AppLogService appLogs
+        JwtUtils jwtUtils, AuthValidationService authValidationService, AppLogService appLogs,
+        AccountCache accountCache
     ) {
         this.accountRepository = Objects.requireNonNull(accountRepository);
         this.structureRepository = structureRepository;
@@ -61,6 +65,7 @@ public class AccountService {
         this.jwtUtils = Objects.requireNonNull(jwtUtils);
         this.authValidationService = authValidationService;
         this.appLogs = appLogs;
+        this.accountCache = Objects.requireNonNull(accountCache);
     }
 
     /**
@@ -257,6 +262,7 @@ public class AccountService {
             userAccount.setEnabled(userUpdateRequestDTO.accountState());
         }
         accountRepository.save(userAccount);
+        accountCache.invalidate(userAccount.getLogin());
         return new RegisterResponseDTO(userAccount.getLogin());
     }
 
@@ -338,6 +344,7 @@ public class AccountService {
             .forEach(structure -> revokeStructureForAccount(structure, userAccount, changedAccess));
 
         accountRepository.save(userAccount);
+        accountCache.invalidate(login);
         appLogs.editAccountAccess(request, userAccount, changedAccess);
         var updatedAccess = changedAccess.stream()
             .map(StructurePermission::structureId).toList();
@@ -429,6 +436,7 @@ public class AccountService {
         userAccount.setLastname("Nom anonymisé");
         userAccount.setPasswordEncrypted(null);
         accountRepository.save(userAccount);
+        accountCache.invalidate(login);
         appLogs.deleteAccount(request, login, userAccount.getId());
         return new RegisterResponseDTO(login);
     }
@@ -460,6 +468,7 @@ public class AccountService {
         }
         user.setPasswordEncrypted(passwordEncoder.encode(changePasswordRequestDTO.newPassword()));
         accountRepository.save(user);
+        accountCache.invalidate(user.getLogin());
         return new ChangePasswordResponseDTO(changePasswordRequestDTO.userId());
     }
 }
@@ -7,21 +7,30 @@ import fr.uge.structsure.dto.structure.AddStructureRequestDTO;
 import fr.uge.structsure.dto.userAccount.UserUpdateRequestDTO;
 import fr.uge.structsure.dto.userAccount.accountStructure.StructurePermission;
 import fr.uge.structsure.entities.*;
+import fr.uge.structsure.exceptions.Error;
 import fr.uge.structsure.exceptions.TraitementException;
-import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.AppLogBatchWriter;
+import fr.uge.structsure.repositories.AppLogBatchWriter.Target;
 import fr.uge.structsure.repositories.AppLogRepository;
+import fr.uge.structsure.repositories.AppLogSearchRepository;
+import fr.uge.structsure.utils.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -33,79 +42,251 @@ public class AppLogService {
     /** The logger of this service */
     private static final Logger LOGGER = LoggerFactory.getLogger(AppLogService.class);
 
+    /** Maximum number of entries returned by page */
+    private static final int PAGE_SIZE = 30;
+
     private final AppLogRepository appLogRepository;
-    private final AccountRepository accountRepository;
     private final AuthValidationService authValidation;
+    private final AppLogWriter writer;
+    private final AppLogBatchWriter batchWriter;
+    private final AppLogSearchRepository searchRepository;
     private final int logsKeepingDays;
-    private final AtomicInteger counter = new AtomicInteger(0);
+    private final int purgeChunkSize;
+
+    @PersistenceContext
+    private EntityManager em;
 
     /**
      * Constructor
      * @param appLogRepository Database access to the log table
-     * @param accountRepository Database access to the account table
      * @param authValidation Service to validate authentication
+     * @param writer Background writer of the log entries
+     * @param batchWriter Bulk access to the log table, to remove the old entries
+     * @param searchRepository Full-text search in the log table
      * @param logsKeepingDays Maximum time to keep logs in the database
+     * @param purgeChunkSize Maximum number of old entries removed by a statement
      */
     @Autowired
     public AppLogService(
-        AppLogRepository appLogRepository, AccountRepository accountRepository,
-        AuthValidationService authValidation, @Value("${logs.expiration-time.days}") int logsKeepingDays
+        AppLogRepository appLogRepository, AuthValidationService authValidation, AppLogWriter writer, AppLogBatchWriter batchWriter,
+        AppLogSearchRepository searchRepository,
+        @Value("${logs.expiration-time.days}") int logsKeepingDays,
+        @Value("${app.logs.purge-chunk-size:1000}") int purgeChunkSize
     ) {
+        if (purgeChunkSize <= 0) throw new IllegalArgumentException("purgeChunkSize <= 0");
         this.appLogRepository = Objects.requireNonNull(appLogRepository);
-        this.accountRepository = Objects.requireNonNull(accountRepository);
         this.authValidation = Objects.requireNonNull(authValidation);
+        this.writer = Objects.requireNonNull(writer);
+        this.batchWriter = Objects.requireNonNull(batchWriter);
+        this.searchRepository = Objects.requireNonNull(searchRepository);
         this.logsKeepingDays = logsKeepingDays;
+        this.purgeChunkSize = purgeChunkSize;
+    }
+
+    /**
+     * Adds the entries missing from the full-text index of the logs.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void syncSearchIndex() {
+        var indexed = searchRepository.syncIndex();
+        if (indexed > 0) LOGGER.info("Added {} logs entries to the search index", indexed);
     }
 
     /**
      * Loads the logs matching the search string and the requested
-     * pagination.
+     * pagination. The page is given either by its cursor or by its
+     * index for the first requests.
      * @param logsDto the parameters of the research
      * @return the logs matching the query
      * @throws TraitementException if the query is malformed
      */
+    @Transactional(readOnly = true)
     public LogsResponseDTO loadLogs(LogsRequestDTO logsDto) throws TraitementException {
-        var pageSize = 30;
         logsDto.checkFields();
-        var page = PageRequest.of(logsDto.page(), pageSize, Sort.by(Sort.Direction.DESC,"time"));
-        if (logsDto.search() == null || logsDto.search().isEmpty()) {
-            /* Optimized query without search */
-            var size = appLogRepository.count();
-            var logs = appLogRepository.search(page);
-            return new LogsResponseDTO(size, pageSize, logs);
-        } else {
-            var search = '%' + logsDto.search().toLowerCase() + '%';
-            var size = appLogRepository.count(search);
-            var logs = appLogRepository.search(search, page);
-            return new LogsResponseDTO(size, pageSize, logs);
+        var search = logsDto.search() == null ? "" : logsDto.search();
+        var after = decodeCursor(logsDto.cursor());
+        var offset = logsDto.page() == null ? 0 : logsDto.page() * PAGE_SIZE;
+        var logs = after == null
+            ? searchRepository.search(search, null, null, offset, PAGE_SIZE)
+            : searchRepository.search(search, after.time(), after.id(), 0, PAGE_SIZE);
+        /* Optimized count without search */
+        var size = search.isEmpty() ? appLogRepository.count() : searchRepository.count(search);
+        return new LogsResponseDTO(size, PAGE_SIZE, logs, nextCursor(logs));
+    }
+
+    /**
+     * Loads the logs concerning the given structure, including its
+     * plans, sensors and scans.
+     * @param structureId the id of the structure
+     * @param cursor the token of the page to get, null for the first page
+     * @return the logs concerning the structure
+     * @throws TraitementException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public LogsResponseDTO loadStructureLogs(long structureId, String cursor) throws TraitementException {
+        return loadLogs(new Target(structureId, null, null, null, null), cursor);
+    }
+
+    /**
+     * Loads the logs concerning the given plan.
+     * @param planId the id of the plan
+     * @param cursor the token of the page to get, null for the first page
+     * @return the logs concerning the plan
+     * @throws TraitementException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public LogsResponseDTO loadPlanLogs(long planId, String cursor) throws TraitementException {
+        return loadLogs(new Target(null, planId, null, null, null), cursor);
+    }
+
+    /**
+     * Loads the logs concerning the given scan, including the sensors
+     * edited during this scan.
+     * @param scanId the id of the scan
+     * @param cursor the token of the page to get, null for the first page
+     * @return the logs concerning the scan
+     * @throws TraitementException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public LogsResponseDTO loadScanLogs(long scanId, String cursor) throws TraitementException {
+        return loadLogs(new Target(null, null, scanId, null, null), cursor);
+    }
+
+    /**
+     * Loads the logs concerning the given sensor.
+     * @param sensorId the id of the sensor
+     * @param cursor the token of the page to get, null for the first page
+     * @return the logs concerning the sensor
+     * @throws TraitementException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public LogsResponseDTO loadSensorLogs(SensorId sensorId, String cursor) throws TraitementException {
+        return loadLogs(new Target(null, null, null, sensorId, null), cursor);
+    }
+
+    /**
+     * Loads the logs concerning the given account, not including the
+     * actions done by this account.
+     * @param accountId the id of the account
+     * @param cursor the token of the page to get, null for the first page
+     * @return the logs concerning the account
+     * @throws TraitementException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public LogsResponseDTO loadAccountLogs(long accountId, String cursor) throws TraitementException {
+        return loadLogs(Target.account(accountId), cursor);
+    }
+
+    /**
+     * Loads the logs concerning the given entity, from the most recent
+     * one. The entries are found through the index of the reference.
+     * @param target the entity the entries must concern
+     * @param cursor the token of the page to get, null for the first page
+     * @return the logs concerning the entity
+     * @throws TraitementException if the cursor is malformed
+     */
+    private LogsResponseDTO loadLogs(Target target, String cursor) throws TraitementException {
+        var after = decodeCursor(cursor);
+        var logs = after == null
+            ? searchRepository.findByTarget(target, null, null, PAGE_SIZE)
+            : searchRepository.findByTarget(target, after.time(), after.id(), PAGE_SIZE);
+        return new LogsResponseDTO(searchRepository.countByTarget(target), PAGE_SIZE, logs, nextCursor(logs));
+    }
+
+    /**
+     * Reads the position given by a page cursor.
+     * @param token the cursor sent by the client, null for the first page
+     * @return the time and id of the last entry of the previous page, null for the first page
+     * @throws TraitementException INCORRECT_FIELD_VALUE if the cursor is malformed
+     */
+    private static Position decodeCursor(String token) throws TraitementException {
+        if (token == null) return null;
+        var cursor = KeysetCursor.decode(token, "time", "DESC", 1);
+        if (cursor.value() == null) throw new TraitementException(Error.INCORRECT_FIELD_VALUE);
+        try {
+            return new Position(LocalDateTime.parse(cursor.value()), Long.parseLong(cursor.keys().getFirst()));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new TraitementException(Error.INCORRECT_FIELD_VALUE);
         }
     }
 
     /**
-     * Creates and saves a new log entry with the given author and
-     * message.
+     * Position of the last entry of a page
+     * @param time the time of the entry
+     * @param id the id of the entry
+     */
+    private record Position(LocalDateTime time, long id) {}
+
+    /**
+     * Creates the cursor of the page following the given one.
+     * @param logs the entries of the current page
+     * @return the token of the next page, null if this is the last one
+     */
+    private static String nextCursor(List<AppLog> logs) {
+        if (logs.size() < PAGE_SIZE) return null;
+        var last = logs.getLast();
+        return new KeysetCursor("time", "DESC", last.getDateTime().toString(),
+            List.of(String.valueOf(last.getId()))).encode();
+    }
+
+    /**
+     * Creates a new log entry for the given action. The entry is
+     * written in the background by the {@link AppLogWriter}.
      * @param author the user that initiated the action
-     * @param message the description of the action
-     */
-    void save(Account author, String message) {
-        appLogRepository.save(new AppLog(author, message));
-        if (counter.getAndIncrement() % 100 == 0) {
-            var maxTime = LocalDateTime.now().minusDays(logsKeepingDays);
-            var removed = appLogRepository.deleteAllByTimeBefore(maxTime);
-            if (removed == 0) return;
-            LOGGER.info("Removed {} logs entries from the database (TTL:{} days)", removed, logsKeepingDays);
-        }
+     * @param event the type of the action
+     * @param target the entities concerned by the action
+     * @param values the values of the message of the action
+     */
+    private void save(Account author, AppLogEvent event, Target target, Object... values) {
+        save(author == null ? null : author.getId(), event, target, values);
+    }
+
+    /**
+     * Creates a new log entry for the given action. The entry is
+     * written in the background by the {@link AppLogWriter}.
+     * @param authorId the id of the user that initiated the action, null if unknown
+     * @param event the type of the action
+     * @param target the entities concerned by the action
+     * @param values the values of the message of the action
+     */
+    private void save(Long authorId, AppLogEvent event, Target target, Object... values) {
+        writer.submit(authorId, event, event.encode(values), target);
+    }
+
+    /**
+     * Removes the log entries older than the retention delay.
+     */
+    @Scheduled(fixedDelay = 1, initialDelay = 1, timeUnit = TimeUnit.HOURS)
+    public void purge() {
+        var maxTime = LocalDateTime.now().minusDays(logsKeepingDays);
+        var removed = batchWriter.deleteBefore(maxTime, purgeChunkSize);
+        if (removed == 0) return;
+        LOGGER.info("Removed {} logs entries from the database (TTL:{} days)", removed, logsKeepingDays);
     }
 
     /**
-     * Extracts the current user's account from the http request.
+     * Extracts the current user's account from the http request, to be
+     * set as the submitter or the author of an entity. The user is taken
+     * from the {@link AccountCache} and the account is not loaded from
+     * the database: only its id can be read outside of a transaction.
      * @param request the request to get the user from
-     * @return the current user if existing, null otherwise
+     * @return a reference to the current user if existing, null otherwise
      */
     public Account currentAccount(HttpServletRequest request) {
+        var id = authorId(request);
+        return id == null ? null : em.getReference(Account.class, id);
+    }
+
+    /**
+     * Gets the id of the user that sent the request, to be set as
+     * author of a log entry. The account is taken from the
+     * {@link AccountCache} and is not loaded from the database.
+     * @param request the request to get the user from
+     * @return the id of the current user if existing, null otherwise
+     */
+    private Long authorId(HttpServletRequest request) {
         try {
-            return authValidation.checkTokenValidityAndUserAccessVerifier(
-                request, accountRepository);
+            return authValidation.currentUser(request).id();
         } catch (TraitementException e) {
             return null;
         }
@@ -117,10 +298,10 @@ public class AppLogService {
      * @param created the account freshly created
      */
     public void addAccount(HttpServletRequest request, Account created) {
-        var author = currentAccount(request);
-        save(author, String.format("Compte créé: %s - %s (#%d)",
+        var author = authorId(request);
+        save(author, AppLogEvent.ACCOUNT_CREATED, Target.account(created.getId()),
             created.getLogin(), created.getRole(), created.getId()
-        ));
+        );
     }
 
     /**
@@ -132,10 +313,10 @@ public class AppLogService {
     public void editAccount(HttpServletRequest request, Account account, UserUpdateRequestDTO edits) {
         var diff = edits.logDiff(account);
         if (diff.isEmpty()) return;
-        var author = currentAccount(request);
-        save(author, String.format("Compte édité: %s (#%d)%s",
+        var author = authorId(request);
+        save(author, AppLogEvent.ACCOUNT_EDITED, Target.account(account.getId()),
             account.getLogin(), account.getId(), diff
-        ));
+        );
     }
 
     /**
@@ -145,12 +326,12 @@ public class AppLogService {
      * @param edits the edited structures and their new state
      */
     public void editAccountAccess(HttpServletRequest request, Account account, List<StructurePermission> edits) {
-        var author = currentAccount(request);
+        var author = authorId(request);
         var diff = edits.stream()
             .map(e -> "#" + e.structureId() + " " + (e.hasAccess() ? "ajouté" : "retiré"))
             .collect(Collectors.joining(", "));
-        save(author, String.format("Autorisations de compte édité: %s (#%d) -> %s",
-            account.getLogin(), account.getId(), diff));
+        save(author, AppLogEvent.ACCOUNT_ACCESS_EDITED, Target.account(account.getId()),
+            account.getLogin(), account.getId(), diff);
     }
 
     /**
@@ -160,8 +341,8 @@ public class AppLogService {
      * @param id the id of the deleted account
      */
     public void deleteAccount(HttpServletRequest request, String login, long id) {
-        var author = currentAccount(request);
-        save(author, String.format("Compte supprimé: %s (#%d)", login, id));
+        var author = authorId(request);
+        save(author, AppLogEvent.ACCOUNT_DELETED, Target.account(id), login, id);
     }
 
     /**
@@ -170,10 +351,10 @@ public class AppLogService {
      * @param structure the freshly created structure
      */
     public void addStructure(HttpServletRequest request, Structure structure) {
-        var author = currentAccount(request);
-        save(author, String.format("Ouvrage créé: %s (#%d)",
+        var author = authorId(request);
+        save(author, AppLogEvent.STRUCTURE_CREATED, Target.structure(structure),
             structure.getName(), structure.getId()
-        ));
+        );
     }
 
     /**
@@ -185,10 +366,10 @@ public class AppLogService {
     public void editStructure(HttpServletRequest request, Structure structure, AddStructureRequestDTO edits) {
         var diff = edits.logDiff(structure);
         if (diff.isEmpty()) return;
-        var author = currentAccount(request);
-        save(author, String.format("Ouvrage édité: %s (#%d)%s",
+        var author = authorId(request);
+        save(author, AppLogEvent.STRUCTURE_EDITED, Target.structure(structure),
             structure.getName(), structure.getId(), diff
-        ));
+        );
     }
 
     /**
@@ -197,10 +378,10 @@ public class AppLogService {
      * @param structure the structure to be archived
      */
     public void archiveStructure(HttpServletRequest request, Structure structure) {
-        var author = currentAccount(request);
-        save(author, String.format("Ouvrage archivé: %s (#%d)",
+        var author = authorId(request);
+        save(author, AppLogEvent.STRUCTURE_ARCHIVED, Target.structure(structure),
             structure.getName(), structure.getId()
-        ));
+        );
     }
 
     /**
@@ -209,10 +390,10 @@ public class AppLogService {
      * @param structure the structure to be restored
      */
     public void restoreStructure(HttpServletRequest request, Structure structure) {
-        var author = currentAccount(request);
-        save(author, String.format("Ouvrage restauré: %s (#%d)",
+        var author = authorId(request);
+        save(author, AppLogEvent.STRUCTURE_RESTORED, Target.structure(structure),
             structure.getName(), structure.getId()
-        ));
+        );
     }
 
     /**
@@ -221,8 +402,8 @@ public class AppLogService {
      * @param plan the freshly created plan
      */
     public void addPlan(HttpServletRequest request, Plan plan) {
-        var author = currentAccount(request);
-        save(author, String.format("Plan créé: %s", plan));
+        var author = authorId(request);
+        save(author, AppLogEvent.PLAN_CREATED, Target.plan(plan), plan);
     }
 
     /**
@@ -233,8 +414,8 @@ public class AppLogService {
      */
     public void editPlan(HttpServletRequest request, Plan plan, String diff) {
         if (diff.isEmpty()) return;
-        var author = currentAccount(request);
-        save(author, String.format("Plan édité: %s%s", plan, diff));
+        var author = authorId(request);
+        save(author, AppLogEvent.PLAN_EDITED, Target.plan(plan), plan, diff);
     }
 
     /**
@@ -243,8 +424,8 @@ public class AppLogService {
      * @param plan the plan that got archived
      */
     public void archivePlan(HttpServletRequest request, Plan plan) {
-        var author = currentAccount(request);
-        save(author, String.format("Plan archivé: %s", plan));
+        var author = authorId(request);
+        save(author, AppLogEvent.PLAN_ARCHIVED, Target.plan(plan), plan);
     }
 
     /**
@@ -253,8 +434,8 @@ public class AppLogService {
      * @param plan the plan that got restored
      */
     public void restorePlan(HttpServletRequest request, Plan plan) {
-        var author = currentAccount(request);
-        save(author, String.format("Plan restoré: %s", plan));
+        var author = authorId(request);
+        save(author, AppLogEvent.PLAN_RESTORED, Target.plan(plan), plan);
     }
 
     /**
@@ -263,10 +444,10 @@ public class AppLogService {
      * @param sensor the freshly created sensor
      */
     public void addSensor(HttpServletRequest request, Sensor sensor) {
-        var author = currentAccount(request);
-        save(author, String.format("Capteur créé: %s (%s), Note: %s",
+        var author = authorId(request);
+        save(author, AppLogEvent.SENSOR_CREATED, Target.sensor(sensor),
             sensor.getName(), sensor.getSensorId(), sensor.getNote()
-        ));
+        );
     }
 
     /**
@@ -277,10 +458,10 @@ public class AppLogService {
      */
     public void editSensor(HttpServletRequest request, Sensor sensor, String diff) {
         if (diff.isEmpty()) return;
-        var author = currentAccount(request);
-        save(author, String.format("Capteur édité: %s (%s)%s",
+        var author = authorId(request);
+        save(author, AppLogEvent.SENSOR_EDITED, Target.sensor(sensor),
             sensor.getName(), sensor.getSensorId(), diff
-        ));
+        );
     }
 
     /**
@@ -289,10 +470,10 @@ public class AppLogService {
      * @param sensor the archived sensor
      */
     public void archiveSensor(HttpServletRequest request, Sensor sensor) {
-        var author = currentAccount(request);
-        save(author, String.format("Capteur archivé: %s (%s)",
+        var author = authorId(request);
+        save(author, AppLogEvent.SENSOR_ARCHIVED, Target.sensor(sensor),
             sensor.getName(), sensor.getSensorId()
-        ));
+        );
     }
 
     /**
@@ -301,59 +482,55 @@ public class AppLogService {
      * @param sensor the restored sensor
      */
     public void restoreSensor(HttpServletRequest request, Sensor sensor) {
-        var author = currentAccount(request);
-        save(author, String.format("Capteur restauré: %s (%s)",
+        var author = authorId(request);
+        save(author, AppLogEvent.SENSOR_RESTORED, Target.sensor(sensor),
             sensor.getName(), sensor.getSensorId()
-        ));
+        );
     }
 
     /**
      * Adds a log entry for a new scan creation.
-     * @param request to extract the author of this action
+     * @param author the account that sent the scan
      * @param scan the received scan
      * @param results the number of results saved
      */
-    public void addScan(HttpServletRequest request, Scan scan, int results) {
-        var author = currentAccount(request);
-        save(author, String.format(
-            "Scan ajouté: Scan: #%d, Ouvrage: %s (#%d), Auteur: %s, Résultats: %d, Note: %s",
+    public void addScan(Account author, Scan scan, int results) {
+        save(author, AppLogEvent.SCAN_ADDED, Target.scan(scan),
             scan.getId(), scan.getStructure().getName(), scan.getStructure().getId(),
             scan.getAuthor().getLogin(), results, scan.getNote()
-        ));
+        );
     }
 
     /**
      * Adds a log entry for a sensor creation/edition within a scan.
-     * @param request to extract the author of this action
+     * @param author the account that sent the scan
      * @param scan the scan where the edition occurs
      * @param sensor the edited sensor
      * @param edit the new data of the sensor
      * @param newSensor true if this sensor just got created
      */
-    public void addScanEdit(HttpServletRequest request, Scan scan, Sensor sensor, AndroidSensorEditDTO edit, boolean newSensor) {
-        var author = currentAccount(request);
+    public void addScanEdit(Account author, Scan scan, Sensor sensor, AndroidSensorEditDTO edit, boolean newSensor) {
         if (newSensor) {
-            save(author, String.format("Capteur créé lors du scan #%d: %s (%s), Note: %s",
+            save(author, AppLogEvent.SCAN_SENSOR_CREATED, Target.sensor(sensor).within(scan),
                 scan.getId(), sensor.getName(), sensor.getSensorId(), sensor.getNote()
-            ));
+            );
         } else {
-            save(author, String.format("Capteur édité lors du scan #%d: %s (%s)%s",
+            save(author, AppLogEvent.SCAN_SENSOR_EDITED, Target.sensor(sensor).within(scan),
                 scan.getId(), sensor.getName(), sensor.getSensorId(), edit.logDiff(sensor)
-            ));
+            );
         }
     }
 
     /**
      * Adds a log entry for a sensor creation/edition within a scan.
-     * @param request to extract the author of this action
+     * @param author the account that sent the scan
      * @param scan the scan where the edition occurs
      * @param structure structure to be edited
      * @param note the new structure note
      */
-    public void addScanNote(HttpServletRequest request, Scan scan, Structure structure, String note) {
-        var author = currentAccount(request);
-        save(author, String.format("Note d'ouvrage éditée lors du scan #%d: %s (%s), Note: %s -> %s",
+    public void addScanNote(Account author, Scan scan, Structure structure, String note) {
+        save(author, AppLogEvent.SCAN_STRUCTURE_NOTE, Target.structure(structure).within(scan),
             scan.getId(), structure.getName(), structure.getId(), scan.getNote(), note
-        ));
+        );
     }
 }
@@ -0,0 +1,194 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.entities.AppLogEvent;
+import fr.uge.structsure.repositories.AppLogBatchWriter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the log entries in the background. The entries are put in a
+ * bounded queue and a dedicated thread inserts them by batches, as soon
+ * as a batch is full or when the flush interval elapsed since the first
+ * waiting entry. The entries created within a transaction are queued
+ * once it is committed, so the actions that rolled back are not logged.
+ * <p>
+ * When the queue is full, the entry is written directly by the caller
+ * rather than lost. The queue is drained when the server stops.
+ */
+@Service
+public class AppLogWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AppLogWriter.class);
+
+    private final AppLogBatchWriter batchWriter;
+    private final BlockingQueue<AppLogBatchWriter.Entry> queue;
+    private final int batchSize;
+    private final long flushInterval;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /* Statistics since the server started */
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param batchWriter access to the log table
+     * @param queueSize maximum number of entries waiting to be written
+     * @param batchSize maximum number of entries written by a statement
+     * @param flushInterval maximum time an entry waits before being written, in milliseconds
+     */
+    @Autowired
+    public AppLogWriter(
+        AppLogBatchWriter batchWriter,
+        @Value("${app.logs.queue-size:10000}") int queueSize,
+        @Value("${app.logs.batch-size:200}") int batchSize,
+        @Value("${app.logs.flush-interval:1000}") long flushInterval
+    ) {
+        if (queueSize <= 0 || batchSize <= 0 || flushInterval <= 0) {
+            throw new IllegalArgumentException("Log writer queue size, batch size and flush interval must be positive");
+        }
+        this.batchWriter = Objects.requireNonNull(batchWriter);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.thread = new Thread(this::run, "app-log-writer");
+    }
+
+    /**
+     * Starts the background thread
+     */
+    @PostConstruct
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Queues a new log entry. If a transaction is running, the entry is
+     * queued only once it is committed.
+     * @param authorId the id of the user that initiated the action, null if unknown
+     * @param event the type of the action
+     * @param params the values of the message, see {@link AppLogEvent#encode}
+     * @param target the entities concerned by the action
+     */
+    public void submit(Long authorId, AppLogEvent event, String params, AppLogBatchWriter.Target target) {
+        var entry = new AppLogBatchWriter.Entry(LocalDateTime.now(), authorId, event, params, target);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(entry);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(entry);
+            }
+        });
+    }
+
+    /**
+     * Gets the number of entries waiting to be written
+     * @return the number of entries in the queue
+     */
+    public int pending() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of entries written since the server started
+     * @return the number of written entries
+     */
+    public long written() {
+        return written.get();
+    }
+
+    /**
+     * Gets the number of entries that could not be written since the
+     * server started
+     * @return the number of lost entries
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * Stops the background thread and writes the remaining entries.
+     * @throws InterruptedException if interrupted while waiting for the thread
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        thread.join(flushInterval + TimeUnit.SECONDS.toMillis(10));
+        var remaining = new ArrayList<AppLogBatchWriter.Entry>();
+        queue.drainTo(remaining);
+        for (var from = 0; from < remaining.size(); from += batchSize) {
+            write(remaining.subList(from, Math.min(from + batchSize, remaining.size())));
+        }
+        LOGGER.info("Log writer stopped, {} entries written ({} failed)", written.get(), failed.get());
+    }
+
+    /**
+     * Puts the entry in the queue, or writes it right away if the queue
+     * is full or the writer is stopped.
+     * @param entry the entry to write
+     */
+    private void enqueue(AppLogBatchWriter.Entry entry) {
+        if (running && queue.offer(entry)) return;
+        write(List.of(entry));
+    }
+
+    /**
+     * Loop of the background thread, writing the entries by batches.
+     */
+    private void run() {
+        var batch = new ArrayList<AppLogBatchWriter.Entry>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval);
+                while (batch.size() < batchSize) {
+                    var remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Inserts the given entries, logging the failures.
+     * @param entries the entries to write
+     */
+    private void write(List<AppLogBatchWriter.Entry> entries) {
+        if (entries.isEmpty()) return;
+        try {
+            written.addAndGet(batchWriter.insertAll(entries));
+        } catch (RuntimeException e) {
+            failed.addAndGet(entries.size());
+            LOGGER.error("Failed to write {} log entries", entries.size(), e);
+        }
+    }
+}
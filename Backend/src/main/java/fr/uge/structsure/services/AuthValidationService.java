@@ -1,5 +1,7 @@
 package fr.uge.structsure.services;
 
+import fr.uge.structsure.config.AuthContext;
+import fr.uge.structsure.config.JwtFilter;
 import fr.uge.structsure.config.JwtUtils;
 import fr.uge.structsure.entities.Account;
 import fr.uge.structsure.entities.Role;
@@ -27,37 +29,55 @@ public class AuthValidationService {
 
     private final JwtUtils jwtUtils;
 
+    private final AccountCache accountCache;
+
     /**
      * Constructor
      * @param jwtUtils The jwt utils object
+     * @param accountCache The cache of the accounts
      */
     @Autowired
-    public AuthValidationService(JwtUtils jwtUtils) {
+    public AuthValidationService(JwtUtils jwtUtils, AccountCache accountCache) {
         this.jwtUtils = Objects.requireNonNull(jwtUtils);
+        this.accountCache = Objects.requireNonNull(accountCache);
     }
 
     /**
-     * Check the validity of the JWT TOKEN
+     * Gets the account of the user that sent the request. The account
+     * found by the {@link JwtFilter} is reused if the request went
+     * through it, otherwise the token is read and the account is taken
+     * from the {@link AccountCache}.
      * @param request The HTTP Request
-     * @return Account Return the account if exist
-     * @throws TraitementException thrown JWT token extract exception into custom exception
+     * @return the snapshot of the account of the user
+     * @throws TraitementException INVALID_TOKEN if the token is invalid or the account does not exist
      */
-    public Account checkTokenValidityAndUserAccessVerifier(HttpServletRequest request, AccountRepository accountRepository) throws TraitementException {
+    public AccountCache.Snapshot currentUser(HttpServletRequest request) throws TraitementException {
         Objects.requireNonNull(request);
-        Optional<Account> account;
+        var context = AuthContext.of(request);
+        if (context.isPresent()) return context.get().account();
+        Optional<AccountCache.Snapshot> account;
         try {
             var token = request.getHeader("authorization");
             if (token.startsWith("Bearer ")) token = token.substring(7);
-            account = accountRepository.findByLogin(jwtUtils.extractUsername(token));
+            account = accountCache.get(jwtUtils.extractUsername(token));
         } catch (UnsupportedJwtException | MalformedJwtException | DecodingException | SignatureException |
                  ExpiredJwtException | IllegalArgumentException | NullPointerException e){
             throw new TraitementException(fr.uge.structsure.exceptions.Error.INVALID_TOKEN);
         }
+        return account.orElseThrow(() -> new TraitementException(Error.INVALID_TOKEN));
+    }
 
-        if (account.isEmpty()){
-            throw new TraitementException(Error.INVALID_TOKEN);
-        }
-        return account.get();
+    /**
+     * Check the validity of the JWT TOKEN and loads the account entity
+     * of the user. Prefer {@link #currentUser(HttpServletRequest)} when
+     * the role and the allowed structures are enough.
+     * @param request The HTTP Request
+     * @return Account Return the account if exist
+     * @throws TraitementException thrown JWT token extract exception into custom exception
+     */
+    public Account checkTokenValidityAndUserAccessVerifier(HttpServletRequest request, AccountRepository accountRepository) throws TraitementException {
+        var user = currentUser(request);
+        return accountRepository.findById(user.id()).orElseThrow(() -> new TraitementException(Error.INVALID_TOKEN));
     }
 
     /**
@@ -11,6 +11,7 @@ import fr.uge.structsure.repositories.AccountRepository;
 import fr.uge.structsure.repositories.PlanRepository;
 import fr.uge.structsure.repositories.SensorRepository;
 import fr.uge.structsure.repositories.StructureRepository;
+import fr.uge.structsure.repositories.StructureSummaryWriter;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +47,7 @@ public class PlanService {
         MediaType.IMAGE_PNG
     );
     private final StructureRepository structureRepository;
+    private final StructureSummaryWriter summaryWriter;
 
     /**
      * Constructor
@@ -54,11 +56,12 @@ public class PlanService {
      * @param structureService The structure service
      * @param sensorService The sensor service
      * @param appLogService The logs service
+     * @param summaryWriter The writer of the structures summary
      */
     @Autowired
     public PlanService(PlanRepository planRepository, SensorRepository sensorRepository,
         StructureRepository structureRepository, StructureService structureService,
-        SensorService sensorService, AppLogService appLogService,
+        SensorService sensorService, AppLogService appLogService, StructureSummaryWriter summaryWriter,
         @Value("${file.upload-dir}") Path uploadDir
     ) {
         this.planRepository = planRepository;
@@ -68,6 +71,7 @@ public class PlanService {
         this.appLogs = appLogService;
         this.uploadDir = uploadDir;
         this.structureRepository = structureRepository;
+        this.summaryWriter = summaryWriter;
     }
 
     /**
@@ -104,6 +108,7 @@ public class PlanService {
         managedFilesDirectory(uploadDir);
         var savedPlan = handleAddPlan(file, new Plan(uploadDir.toString(), metadata.name(), metadata.section(), structure));
         appLogs.addPlan(request, savedPlan);
+        summaryWriter.refresh(structure.getId());
         return new AddPlanResponseDTO(savedPlan.getId(), new Timestamp(System.currentTimeMillis()).toString());
     }
 
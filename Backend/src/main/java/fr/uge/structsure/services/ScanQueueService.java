@@ -0,0 +1,274 @@
+package fr.uge.structsure.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.uge.structsure.dto.scan.AndroidScanResponseDTO;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.ScanJobDTO;
+import fr.uge.structsure.dto.scan.ScanQueueStatsDTO;
+import fr.uge.structsure.entities.PendingScan;
+import fr.uge.structsure.entities.PendingScanState;
+import fr.uge.structsure.exceptions.Error;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.PendingScanRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service that receives the Android scans to save them later. The
+ * scans are stored in the pending scans table so that the client does
+ * not wait for the whole processing, then a bounded pool of workers
+ * saves them using {@link ScanService}.
+ */
+@Service
+public class ScanQueueService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScanQueueService.class);
+
+    private final PendingScanRepository pendingScanRepository;
+    private final ScanService scanService;
+    private final AppLogService appLogs;
+    private final ObjectMapper mapper;
+    private final int workers;
+    private final int retentionDays;
+    private final int runningTimeoutMinutes;
+    private final ThreadPoolExecutor executor;
+
+    /* Statistics of the scans processed since the server started */
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong totalQueueTime = new AtomicLong();
+    private final AtomicLong totalProcessingTime = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param pendingScanRepository access to the pending scans table
+     * @param scanService service that saves the scans
+     * @param appLogService to get the author of the submitted scans
+     * @param mapper to store the scans payload as JSON
+     * @param workers maximum number of scans processed at the same time
+     * @param retentionDays number of days the processed scans status is kept
+     * @param runningTimeoutMinutes time after which a running scan is considered
+     *     interrupted and is put back in the queue
+     * @param virtualThreads true to process the scans on virtual threads
+     */
+    @Autowired
+    public ScanQueueService(
+        PendingScanRepository pendingScanRepository, ScanService scanService,
+        AppLogService appLogService, ObjectMapper mapper,
+        @Value("${app.scans.queue.workers:2}") int workers,
+        @Value("${app.scans.queue.retention.days:7}") int retentionDays,
+        @Value("${app.scans.queue.running-timeout.minutes:10}") int runningTimeoutMinutes,
+        @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+    ) {
+        if (workers <= 0) throw new IllegalArgumentException("workers <= 0");
+        this.pendingScanRepository = Objects.requireNonNull(pendingScanRepository);
+        this.scanService = Objects.requireNonNull(scanService);
+        this.appLogs = Objects.requireNonNull(appLogService);
+        this.mapper = Objects.requireNonNull(mapper);
+        this.workers = workers;
+        this.retentionDays = retentionDays;
+        this.runningTimeoutMinutes = runningTimeoutMinutes;
+        var threads = virtualThreads ? Thread.ofVirtual().name("scan-worker-", 1) : Thread.ofPlatform().name("scan-worker-", 1);
+        this.executor = new ThreadPoolExecutor(
+            workers, workers, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(workers * 16),
+            threads.factory(),
+            new ThreadPoolExecutor.DiscardPolicy() // still queued in the database, the poller retries
+        );
+    }
+
+    /**
+     * Checks the given scan and stores it in the queue of the scans to
+     * save.
+     * @param request the details of the request to get the scan submitter
+     * @param scanData the scan sent by the Android device
+     * @return the status of the queued scan, containing its ticket
+     * @throws TraitementException if the scan data is malformed
+     */
+    public ScanJobDTO submit(HttpServletRequest request, AndroidScanResultDTO scanData) throws TraitementException {
+        scanService.checkScanData(scanData);
+        String payload;
+        try {
+            payload = mapper.writeValueAsString(scanData);
+        } catch (JsonProcessingException e) {
+            throw new TraitementException(Error.INVALID_FIELDS);
+        }
+        var pending = new PendingScan(UUID.randomUUID().toString(), payload, appLogs.currentAccount(request));
+        pending = pendingScanRepository.save(pending);
+        LOGGER.info("Android scan {} queued with ticket {}", scanData.scanId(), pending.getTicket());
+        dispatch(pending.getId());
+        return ScanJobDTO.from(pending);
+    }
+
+    /**
+     * Gets the status of the scan matching the given ticket, if it has
+     * been submitted by the current user.
+     * @param request the details of the request to get the current user
+     * @param ticket the ticket given when the scan was submitted
+     * @return the status of the scan
+     * @throws TraitementException if no scan matches the ticket or if
+     *     it belongs to another user
+     */
+    public ScanJobDTO status(HttpServletRequest request, String ticket) throws TraitementException {
+        var pending = pendingScanRepository.findByTicket(ticket)
+            .orElseThrow(() -> new TraitementException(Error.SCAN_JOB_NOT_FOUND));
+        var submitter = pending.getSubmitter();
+        var user = appLogs.currentAccount(request);
+        if (submitter == null || user == null || submitter.getId() != user.getId()) {
+            throw new TraitementException(Error.SCAN_JOB_NOT_FOUND);
+        }
+        return ScanJobDTO.from(pending);
+    }
+
+    /**
+     * Gets the depth of the queue and the latency of the processing.
+     * @return the statistics of the queue
+     */
+    public ScanQueueStatsDTO stats() {
+        var count = processed.get();
+        return new ScanQueueStatsDTO(
+            pendingScanRepository.countByState(PendingScanState.QUEUED),
+            pendingScanRepository.countByState(PendingScanState.RUNNING),
+            pendingScanRepository.countByState(PendingScanState.FAILED),
+            workers,
+            count,
+            count == 0 ? 0 : totalQueueTime.get() / count,
+            count == 0 ? 0 : totalProcessingTime.get() / count
+        );
+    }
+
+    /**
+     * Puts back in the queue the scans interrupted by the last server
+     * shutdown, they will be picked by the next poll.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        var requeued = pendingScanRepository.requeueInterrupted(LocalDateTime.now());
+        if (requeued > 0) LOGGER.warn("{} interrupted Android scans put back in the queue", requeued);
+    }
+
+    /**
+     * Gives the queued scans to the workers. This catches the scans
+     * that could not be dispatched at submission (workers busy or
+     * server restarted). The scans running for longer than
+     * {@link #runningTimeoutMinutes} are put back in the queue first,
+     * since their worker has been lost: saving them again is harmless
+     * as the already saved scans are recognized by their fingerprint.
+     */
+    @Scheduled(fixedDelayString = "${app.scans.queue.poll-delay:5000}")
+    public void poll() {
+        var stalled = pendingScanRepository.requeueInterrupted(LocalDateTime.now().minusMinutes(runningTimeoutMinutes));
+        if (stalled > 0) LOGGER.warn("{} Android scans running for too long put back in the queue", stalled);
+        var free = executor.getQueue().remainingCapacity();
+        if (free == 0) return;
+        pendingScanRepository.findIdsByState(PendingScanState.QUEUED, PageRequest.of(0, free))
+            .forEach(this::dispatch);
+    }
+
+    /**
+     * Removes the status of the scans processed a long time ago.
+     */
+    @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.HOURS)
+    public void purge() {
+        var removed = pendingScanRepository.deleteFinishedBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (removed == 0) return;
+        LOGGER.info("Removed {} processed Android scans from the queue (TTL:{} days)", removed, retentionDays);
+    }
+
+    /**
+     * Stops the workers, the scans not processed yet will be resumed
+     * at the next start.
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            LOGGER.warn("Android scans still running at shutdown, they will be resumed at next start");
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Asks the workers to process the given scan.
+     * @param id the id of the pending scan
+     */
+    private void dispatch(long id) {
+        if (executor.isShutdown()) return;
+        executor.execute(() -> process(id));
+    }
+
+    /**
+     * Saves the given scan if it has not been claimed by another
+     * worker yet, and records the result of the processing.
+     * @param id the id of the pending scan
+     */
+    private void process(long id) {
+        if (pendingScanRepository.claim(id, LocalDateTime.now()) == 0) return; // already taken
+        var pending = pendingScanRepository.findById(id).orElse(null);
+        if (pending == null) return;
+        try {
+            var scanData = mapper.readValue(pending.getPayload(), AndroidScanResultDTO.class);
+            AndroidScanResponseDTO saved;
+            try {
+                saved = scanService.saveScanResults(pending.getSubmitter(), scanData);
+            } catch (DataIntegrityViolationException e) {
+                saved = scanService.concurrentDuplicate(scanData, e);
+            }
+            pending.setScanId(saved.scanId());
+            pending.setState(PendingScanState.DONE);
+            pending.setPayload(null);
+        } catch (TraitementException e) {
+            LOGGER.info("Android scan {} rejected: {}", pending.getTicket(), e.error.message);
+            fail(pending, e.error.message);
+        } catch (Exception e) {
+            LOGGER.error("Android scan {} failed", pending.getTicket(), e);
+            fail(pending, Error.SERVER_ERROR.message);
+        }
+        pending.setFinishedAt(LocalDateTime.now());
+        pendingScanRepository.save(pending);
+        record(pending);
+    }
+
+    /**
+     * Marks the given scan as failed.
+     * @param pending the scan that failed
+     * @param error the reason of the failure
+     */
+    private static void fail(PendingScan pending, String error) {
+        pending.setState(PendingScanState.FAILED);
+        pending.setError(error);
+    }
+
+    /**
+     * Adds the latency of the given processed scan to the statistics.
+     * @param pending the scan that just got processed
+     */
+    private void record(PendingScan pending) {
+        var queueTime = Duration.between(pending.getSubmittedAt(), pending.getStartedAt()).toMillis();
+        var processingTime = Duration.between(pending.getStartedAt(), pending.getFinishedAt()).toMillis();
+        processed.incrementAndGet();
+        totalQueueTime.addAndGet(queueTime);
+        totalProcessingTime.addAndGet(processingTime);
+        LOGGER.info("Android scan {} {} (queued {} ms, processed in {} ms)",
+            pending.getTicket(), pending.getState(), queueTime, processingTime);
+    }
+}
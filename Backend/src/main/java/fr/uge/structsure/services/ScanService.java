@@ -1,27 +1,40 @@
 package fr.uge.structsure.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.uge.structsure.dto.scan.AndroidScanResponseDTO;
 import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
 import fr.uge.structsure.dto.scan.AndroidSensorEditDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
 import fr.uge.structsure.dto.sensors.BaseSensorDTO;
 import fr.uge.structsure.entities.*;
 import fr.uge.structsure.exceptions.Error;
 import fr.uge.structsure.exceptions.TraitementException;
 import fr.uge.structsure.repositories.*;
+import fr.uge.structsure.utils.AndroidScanReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.*;
 
 /**
  * Service class responsible for handling scan-related operations.
@@ -30,42 +43,79 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @Service
 public class ScanService {
     private static final Logger LOGGER = LoggerFactory.getLogger(ScanService.class);
+    /** Attribute of the request holding the fingerprint of a streamed scan */
+    private static final String FINGERPRINT_ATTRIBUTE = ScanService.class.getName() + ".fingerprint";
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.[SSS][SS][S]");
 
-    private final ResultRepository resultRepository;
+    private final ResultBatchWriter resultWriter;
+    private final StructureSummaryWriter summaryWriter;
     private final ScanRepository scanRepository;
     private final StructureRepository structureRepository;
     private final AccountRepository accountRepository;
     private final SensorRepository sensorRepository;
     private final SensorService sensorService;
+    private final SensorRegistry sensorRegistry;
     private final PlanRepository planRepository;
     private final AppLogService appLogs;
+    private final AndroidScanReader scanReader;
+    private final int chunkSize;
+
+    /* Ingestion metrics */
+    private final Counter savedScans;
+    private final Counter duplicateScans;
+    private final Counter emptyScans;
+    private final Counter savedResults;
+    private final Counter receivedEdits;
+    private final Counter rejectedSensors;
+
+    @PersistenceContext
+    private EntityManager em;
 
     /**
      * Constructs a new ScanService with the necessary repositories.
      *
      * @param scanRepository      Repository for Scan entities
-     * @param resultRepository    Repository for Result entities
+     * @param resultWriter        Bulk writer for Result entities
+     * @param summaryWriter       Writer of the structures summary
      * @param structureRepository Repository for Structure entities
      * @param accountRepository   Repository for Account entities
      * @param sensorRepository    Repository for Sensor entities
+     * @param sensorRegistry      Registry of the used chips and sensor names
      * @param appLogService       Logs manager
+     * @param mapper              JSON mapper used to read streamed scans
+     * @param meterRegistry       Registry of the ingestion metrics
+     * @param chunkSize           Number of results or edits persisted at once for streamed scans
      */
     @Autowired
     public ScanService(
-        ScanRepository scanRepository, ResultRepository resultRepository,
+        ScanRepository scanRepository, ResultBatchWriter resultWriter, StructureSummaryWriter summaryWriter,
         StructureRepository structureRepository, AccountRepository accountRepository,
-        SensorRepository sensorRepository, SensorService sensorService,
-        PlanRepository planRepository, AppLogService appLogService
+        SensorRepository sensorRepository, SensorService sensorService, SensorRegistry sensorRegistry,
+        PlanRepository planRepository, AppLogService appLogService,
+        ObjectMapper mapper, MeterRegistry meterRegistry, @Value("${app.scans.chunk-size:500}") int chunkSize
     ) {
-        this.resultRepository = Objects.requireNonNull(resultRepository);
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize <= 0");
+        this.resultWriter = Objects.requireNonNull(resultWriter);
+        this.summaryWriter = Objects.requireNonNull(summaryWriter);
         this.scanRepository = Objects.requireNonNull(scanRepository);
         this.structureRepository = Objects.requireNonNull(structureRepository);
         this.accountRepository = Objects.requireNonNull(accountRepository);
         this.sensorRepository = Objects.requireNonNull(sensorRepository);
         this.sensorService = Objects.requireNonNull(sensorService);
+        this.sensorRegistry = Objects.requireNonNull(sensorRegistry);
         this.planRepository = Objects.requireNonNull(planRepository);
         this.appLogs = Objects.requireNonNull(appLogService);
+        this.scanReader = new AndroidScanReader(mapper);
+        this.chunkSize = chunkSize;
+        this.savedScans = Counter.builder("structsure.scans").tag("outcome", "saved")
+            .description("Scans received from the tablets").register(meterRegistry);
+        this.duplicateScans = Counter.builder("structsure.scans").tag("outcome", "duplicate")
+            .description("Scans received from the tablets").register(meterRegistry);
+        this.emptyScans = Counter.builder("structsure.scans").tag("outcome", "empty")
+            .description("Scans received from the tablets").register(meterRegistry);
+        this.savedResults = meterRegistry.counter("structsure.scans.results");
+        this.receivedEdits = meterRegistry.counter("structsure.scans.edits");
+        this.rejectedSensors = meterRegistry.counter("structsure.scans.rejected.sensors");
     }
 
     /**
@@ -75,29 +125,156 @@ public class ScanService {
      *
      * @param request the details of the request to get the scan submitter
      * @param scanData The DTO containing the scan results from the Android device
+     * @return the id of the scan and whether it had already been saved
      * @throws TraitementException If there's an error during the processing of the scan data
      */
-    @Transactional
-    public void saveScanResults(HttpServletRequest request, AndroidScanResultDTO scanData) throws TraitementException {
-        if (!isValidScanData(scanData) || scanAlreadyExists(scanData)) return;
+    @Transactional(rollbackFor = TraitementException.class)
+    public AndroidScanResponseDTO saveScanResults(HttpServletRequest request, AndroidScanResultDTO scanData) throws TraitementException {
+        return saveScanResults(appLogs.currentAccount(request), scanData);
+    }
+
+    /**
+     * Saves the scan results received from an Android device on behalf
+     * of the given submitter. This is the entry point for the scans
+     * that are not processed within the request that sent them.
+     *
+     * @param submitter the account that sent the scan, used as author
+     *     of the logs entries (may be null if unknown)
+     * @param scanData The DTO containing the scan results from the Android device
+     * @return the id of the scan and whether it had already been saved
+     * @throws TraitementException If there's an error during the processing of the scan data,
+     *     the whole scan is then rolled back
+     */
+    @Transactional(rollbackFor = TraitementException.class)
+    public AndroidScanResponseDTO saveScanResults(Account submitter, AndroidScanResultDTO scanData) throws TraitementException {
+        var fingerprint = fingerprint(scanData);
+        var existing = findIngested(fingerprint, scanData);
+        if (existing != null) return existing;
+        if (!isValidScanData(scanData)) return new AndroidScanResponseDTO(null, false);
 
         Structure structure = findStructure(scanData.structureId());
         Account account = findAccount(scanData.login());
 
-        Scan scan = createScan(structure, scanData, account);
-        processEdits(request, scanData.sensorEdits(), scan);
-        List<Result> results = processResults(scan, scanData);
+        Scan scan = createScan(structure, scanData, account, fingerprint);
+        var sensors = sensorRepository.findAllBySensorIds(collectSensorIds(scanData));
+        processEdits(submitter, scanData.sensorEdits(), scan, sensors);
+        List<Result> results = processResults(scan, scanData, sensors);
 
         if (scanData.structureNote() != null && !scanData.structureNote().isEmpty()) {
-            appLogs.addScanNote(request, scan, structure, scanData.structureNote());
+            appLogs.addScanNote(submitter, scan, structure, scanData.structureNote());
             structure.setNote(scanData.structureNote());
             structureRepository.save(structure);
         }
 
-        resultRepository.saveAll(results);
-        appLogs.addScan(request, scan, results.size());
+        resultWriter.saveAll(results);
+        summaryWriter.refresh(structure.getId());
+        appLogs.addScan(submitter, scan, results.size());
+        countSaved(results.size(), scanData.sensorEdits().size());
         LOGGER.info("Saved {} results and {} edits for scan {}",
             results.size(), scanData.sensorEdits().size(), scanData.scanId());
+        return new AndroidScanResponseDTO(scan.getId(), false);
+    }
+
+    /**
+     * Saves the scan read from the body of the given request without
+     * loading all its results and edits in memory.
+     *
+     * @param request the request containing the scan, also used to get the scan submitter
+     * @return the id of the scan and whether it had already been saved
+     * @throws TraitementException If there's an error during the processing of the scan data
+     * @see #saveScanResults(Account, InputStream)
+     */
+    @Transactional(rollbackFor = TraitementException.class)
+    public AndroidScanResponseDTO saveStreamedScanResults(HttpServletRequest request) throws TraitementException {
+        try {
+            var streamed = new StreamedScan(appLogs.currentAccount(request), request);
+            scanReader.read(request.getInputStream(), streamed);
+            return streamed.finish();
+        } catch (IOException e) {
+            throw new TraitementException(Error.INVALID_FIELDS);
+        }
+    }
+
+    /**
+     * Gets the response to send back for a scan which save failed on
+     * the unique index of the fingerprints, because the same scan was
+     * saved at the same time by another request. The transaction of the
+     * failed save must be over, as it can only be rolled back.
+     *
+     * @param scanData the scan that could not be saved
+     * @param failure the failure of the save
+     * @return the id of the scan saved by the other request
+     * @throws TraitementException if a field of the scan is missing or malformed
+     * @throws DataIntegrityViolationException the given failure if the scan
+     *     has not been saved by another request
+     */
+    @Transactional(readOnly = true)
+    public AndroidScanResponseDTO concurrentDuplicate(AndroidScanResultDTO scanData, DataIntegrityViolationException failure) throws TraitementException {
+        var existing = findIngested(fingerprint(scanData), scanData);
+        if (existing == null) throw failure;
+        return existing;
+    }
+
+    /**
+     * Same as {@link #concurrentDuplicate(AndroidScanResultDTO, DataIntegrityViolationException)}
+     * for the scans sent to {@link #saveStreamedScanResults}, which body
+     * cannot be read again.
+     *
+     * @param request the request that sent the scan
+     * @param failure the failure of the save
+     * @return the id of the scan saved by the other request
+     * @throws DataIntegrityViolationException the given failure if the scan
+     *     has not been saved by another request
+     */
+    @Transactional(readOnly = true)
+    public AndroidScanResponseDTO concurrentDuplicate(HttpServletRequest request, DataIntegrityViolationException failure) {
+        if (!(request.getAttribute(FINGERPRINT_ATTRIBUTE) instanceof String fingerprint)) throw failure;
+        return scanRepository.findIdByFingerprint(fingerprint)
+            .map(id -> {
+                duplicateScans.increment();
+                return new AndroidScanResponseDTO(id, true);
+            })
+            .orElseThrow(() -> failure);
+    }
+
+    /**
+     * Saves the scan read from the given stream without loading all
+     * its results and edits in memory: they are resolved and persisted
+     * by chunks of {@link #chunkSize} elements. Results referencing a
+     * sensor created later by the edits of the scan are kept aside
+     * until all edits have been saved.
+     * The whole scan is rolled back if any error occurs.
+     *
+     * @param submitter the account that sent the scan, used as author
+     *     of the logs entries (may be null if unknown)
+     * @param input the JSON content of the scan, metadata first
+     * @return the id of the scan and whether it had already been saved
+     * @throws TraitementException If there's an error during the processing of the scan data
+     */
+    @Transactional(rollbackFor = TraitementException.class)
+    public AndroidScanResponseDTO saveScanResults(Account submitter, InputStream input) throws TraitementException {
+        var streamed = new StreamedScan(submitter, null);
+        scanReader.read(input, streamed);
+        return streamed.finish();
+    }
+
+    /**
+     * Checks that the given scan data is complete enough to be
+     * processed later: the mandatory fields must be set, the date and
+     * the sensor ids must be well formatted and the structure must
+     * exist.
+     *
+     * @param scanData The scan data to check
+     * @throws TraitementException If the scan data cannot be processed
+     */
+    public void checkScanData(AndroidScanResultDTO scanData) throws TraitementException {
+        if (scanData.structureId() == null || scanData.login() == null || scanData.launchDate() == null
+            || scanData.results() == null || scanData.sensorEdits() == null) {
+            throw new TraitementException(Error.MISSING_FIELDS);
+        }
+        parseDate(scanData.launchDate());
+        collectSensorIds(scanData);
+        findStructure(scanData.structureId());
     }
 
     /**
@@ -108,26 +285,76 @@ public class ScanService {
     private boolean isValidScanData(AndroidScanResultDTO scanData)  {
         if (scanData.results().isEmpty() && scanData.sensorEdits().isEmpty()) {
             LOGGER.warn("Received empty scan, ignoring");
+            emptyScans.increment();
             return false;
         }
         return true;
     }
 
+    /**
+     * Computes the fingerprint identifying a scan submission: a hash
+     * of the structure id, the author login and the launch date.
+     * @param scanData the data of the scan
+     * @return the hexadecimal SHA-256 fingerprint of the scan
+     * @throws TraitementException if a field is missing or if the scan
+     *     time is not an ISO date
+     */
+    static String fingerprint(AndroidScanResultDTO scanData) throws TraitementException {
+        if (scanData.structureId() == null || scanData.login() == null || scanData.launchDate() == null) {
+            throw new TraitementException(Error.MISSING_FIELDS);
+        }
+        var key = scanData.structureId() + "\n" + scanData.login() + "\n" + parseDate(scanData.launchDate());
+        try {
+            var hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 is required on every JVM
+        }
+    }
+
+    /**
+     * Counts a saved scan in the ingestion metrics once the transaction
+     * is committed, so that the rolled back scans are not counted.
+     * @param results the number of results of the scan
+     * @param edits the number of sensor edits of the scan
+     */
+    private void countSaved(int results, int edits) {
+        Runnable count = () -> {
+            savedScans.increment();
+            savedResults.increment(results);
+            receivedEdits.increment(edits);
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            count.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                count.run();
+            }
+        });
+    }
+
     /**
      * Tests if the scan given by the client has already been saved in
-     * the database or not.
+     * the database or not, with a single lookup on the fingerprint
+     * unique index.
      * This case can occur when the data has been completely received
      * and computed, but the client has not received the response due
      * to lag, crash or connection loses.
+     * @param fingerprint the fingerprint of the scan to search
      * @param scanData the data of the scan to search
-     * @return true if already saved, false otherwise
-     * @throws TraitementException if the scan time is not an ISO date
+     * @return the response to send back if already saved, null otherwise
      */
-    private boolean scanAlreadyExists(AndroidScanResultDTO scanData) throws TraitementException {
-        LocalDateTime date = parseDate(scanData.launchDate());
-        return scanRepository.findById(scanData.structureId()).stream()
-            .filter(scan -> scan.getAuthor().getLogin().equals(scanData.login()))
-            .anyMatch(scan -> scan.getDate().isEqual(date));
+    private AndroidScanResponseDTO findIngested(String fingerprint, AndroidScanResultDTO scanData) {
+        return scanRepository.findIdByFingerprint(fingerprint)
+            .map(id -> {
+                LOGGER.info("Scan {} already saved as #{}, ignoring", scanData.scanId(), id);
+                duplicateScans.increment();
+                return new AndroidScanResponseDTO(id, true);
+            })
+            .orElse(null);
     }
 
     /**
@@ -160,13 +387,34 @@ public class ScanService {
      * @param structure The Structure entity associated with the scan
      * @param scanData  The DTO containing the scan data
      * @param account   The Account entity associated with the scan
+     * @param fingerprint The fingerprint identifying the scan submission
      * @return The created and saved Scan entity
      * @throws TraitementException if the scan time is not an ISO date
      */
-    private Scan createScan(Structure structure, AndroidScanResultDTO scanData, Account account) throws TraitementException {
+    private Scan createScan(Structure structure, AndroidScanResultDTO scanData, Account account, String fingerprint) throws TraitementException {
         LocalDateTime date = parseDate(scanData.launchDate());
         Scan scan = new Scan(structure, date, scanData.scanNote(), account);
-        return scanRepository.save(scan);
+        scan.setFingerprint(fingerprint);
+        return scanRepository.saveAndFlush(scan); // fails right away on concurrent duplicates
+    }
+
+    /**
+     * Gets the ids of all the sensors referenced by the results and
+     * the edits of the scan, so that they can be loaded all at once.
+     *
+     * @param scanData The DTO containing the scan data
+     * @return the ids of the referenced sensors
+     * @throws TraitementException If one of the sensor ids is malformed
+     */
+    private static Set<SensorId> collectSensorIds(AndroidScanResultDTO scanData) throws TraitementException {
+        var ids = new HashSet<SensorId>();
+        for (var rawResult : scanData.results()) {
+            ids.add(SensorId.from(rawResult.sensorId()));
+        }
+        for (var edit : scanData.sensorEdits()) {
+            ids.add(SensorId.from(edit.sensorId()));
+        }
+        return ids;
     }
 
     /**
@@ -174,16 +422,16 @@ public class ScanService {
      *
      * @param scan     The Scan entity associated with these results
      * @param scanData The DTO containing the scan data and results
+     * @param sensors  The sensors referenced by the scan, indexed by id
      * @return A list of created Result entities
      * @throws TraitementException If there's an error processing the results
      */
-    private List<Result> processResults(Scan scan, AndroidScanResultDTO scanData) throws TraitementException {
-        List<Result> results = new ArrayList<>();
+    private List<Result> processResults(Scan scan, AndroidScanResultDTO scanData, Map<SensorId, Sensor> sensors) throws TraitementException {
+        List<Result> results = new ArrayList<>(scanData.results().size());
 
         for (var rawResult : scanData.results()) {
-            var sensorId = SensorId.from(rawResult.sensorId());
-            var sensor = sensorRepository.findBySensorId(sensorId)
-                .orElseThrow(() -> new TraitementException(Error.SENSOR_NOT_FOUND));
+            var sensor = sensors.get(SensorId.from(rawResult.sensorId()));
+            if (sensor == null) throw new TraitementException(Error.SENSOR_NOT_FOUND);
             Result result = new Result(State.valueOf(rawResult.state()), sensor, scan);
             results.add(result);
         }
@@ -194,24 +442,25 @@ public class ScanService {
     /**
      * Updates sensors or creates new ones based on the edits from the scan.
      *
-     * @param request the details of the request to get the scan submitter
+     * @param submitter the account that sent the scan
      * @param edits All the editions done on sensors during the scan
      * @param scan details of the main scan object
+     * @param known the sensors referenced by the scan, indexed by id.
+     *     Sensors created by the edits are added to this map.
      * @throws TraitementException if there's an error during processing
      */
-    private void processEdits(HttpServletRequest request, List<AndroidSensorEditDTO> edits, Scan scan) throws TraitementException {
+    private void processEdits(
+        Account submitter, List<AndroidSensorEditDTO> edits, Scan scan, Map<SensorId, Sensor> known
+    ) throws TraitementException {
         var sensors = new ArrayList<Sensor>();
 
-        var newSensor = new AtomicBoolean(false);
         for (var edit : edits) {
-            newSensor.set(false);
-            var sensorId = SensorId.from(edit.sensorId());
-            var sensor = sensorRepository.findBySensorId(sensorId).orElseGet(() -> {
-                newSensor.set(true);
-                return getIfValid(edit, scan.getStructure());
-            });
+            var sensor = known.get(SensorId.from(edit.sensorId()));
+            var newSensor = sensor == null;
+            if (newSensor) sensor = getIfValid(edit, scan.getStructure());
             if (sensor == null) break; // cannot save this sensor
-            appLogs.addScanEdit(request, scan, sensor, edit, newSensor.get());
+            if (newSensor) known.put(sensor.getSensorId(), sensor);
+            appLogs.addScanEdit(submitter, scan, sensor, edit, newSensor);
             if (edit.note() != null) sensor.setNote(edit.note());
             if (edit.plan() != null) setPlan(edit, sensor, scan);
             sensors.add(sensor);
@@ -220,6 +469,7 @@ public class ScanService {
         if (!sensors.isEmpty()) {
             sensorRepository.saveAll(sensors);
         }
+        rejectedSensors.increment(edits.size() - sensors.size());
     }
 
     /**
@@ -263,7 +513,10 @@ public class ScanService {
     private Sensor getIfValid(AndroidSensorEditDTO edit, Structure structure) {
         if (!isValidNewSensor(edit)) return null;
         var name = checkNewSensorName(edit.name());
-        if (name == null) return null;
+        if (name == null) {
+            sensorRegistry.releaseChips(edit.controlChip(), edit.measureChip());
+            return null;
+        }
         return new Sensor(
             edit.controlChip(),
             edit.measureChip(),
@@ -275,14 +528,15 @@ public class ScanService {
 
     /**
      * Asks the Sensor service to check if the given edit contains
-     * valid sensor data or not.
+     * valid sensor data or not. If so, its chips are reserved in the
+     * registry until the end of the transaction.
      * @param edit the data to check
      * @return true if valid, false otherwise
      */
     private boolean isValidNewSensor(AndroidSensorEditDTO edit) {
         try {
             sensorService.addPlanAsserts(new BaseSensorDTO(-1L, edit.controlChip(), edit.measureChip(), edit.name(), Optional.empty(), edit.note()));
-            if (sensorRepository.chipTagAlreadyExists(edit.controlChip())) {
+            if (!sensorRegistry.reserveChips(edit.controlChip(), edit.measureChip())) {
                 LOGGER.warn("New sensor from scan will be ignored because of already used chips");
                 return false;
             }
@@ -294,22 +548,15 @@ public class ScanService {
     }
 
     /**
-     * Checks if the given sensor names already exist or not.
-     * If so, try to add a distinctive letter after it to save it.
+     * Reserves the given sensor name or, if already used, the same
+     * name followed by the first free distinctive letter.
      * @param name the name of the sensor to check
      * @return the corrected name or null if invalid
      */
     private String checkNewSensorName(String name) {
-        if (!sensorRepository.nameAlreadyExists(name)) return name;
-        String editedName;
-        for (var i = 'A' ; i <= 'Z' ; i++) {
-            editedName = name + " " + i;
-            if (!sensorRepository.nameAlreadyExists(editedName)) {
-                return editedName;
-            }
-        }
-        LOGGER.warn("New sensor with already used name will be ignored: {}", name);
-        return null;
+        var available = sensorRegistry.reserveAvailableName(name);
+        if (available == null) LOGGER.warn("New sensor with already used name will be ignored: {}", name);
+        return available;
     }
 
     /**
@@ -325,4 +572,163 @@ public class ScanService {
             throw new TraitementException(Error.DATE_TIME_FORMAT_ERROR);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Processing state of a scan read by {@link #saveScanResults(Account, InputStream)}
+     */
+    private final class StreamedScan implements AndroidScanReader.Handler {
+        private final Account submitter;
+        /* Request sending the scan, to keep the fingerprint for concurrentDuplicate */
+        private final HttpServletRequest request;
+        private final List<AndroidSensorResultDTO> pendingResults = new ArrayList<>();
+        private final List<AndroidSensorEditDTO> pendingEdits = new ArrayList<>();
+        /* Results referencing sensors that may be created by the edits */
+        private final List<AndroidSensorResultDTO> deferredResults = new ArrayList<>();
+        private AndroidScanResultDTO metadata;
+        private String fingerprint;
+        private AndroidScanResponseDTO ingested;
+        private boolean ignored;
+        private Structure structure;
+        private Account account;
+        private Scan scan;
+        private int results;
+        private int edits;
+
+        private StreamedScan(Account submitter, HttpServletRequest request) {
+            this.submitter = submitter;
+            this.request = request;
+        }
+
+        @Override
+        public void onMetadata(AndroidScanResultDTO metadata) throws TraitementException {
+            this.metadata = metadata;
+            fingerprint = fingerprint(metadata);
+            if (request != null) request.setAttribute(FINGERPRINT_ATTRIBUTE, fingerprint);
+            ingested = findIngested(fingerprint, metadata);
+            if (ingested != null) {
+                ignored = true;
+                return;
+            }
+            structure = findStructure(metadata.structureId());
+            account = findAccount(metadata.login());
+        }
+
+        @Override
+        public void onResult(AndroidSensorResultDTO result) throws TraitementException {
+            if (ignored) return;
+            pendingResults.add(result);
+            if (pendingResults.size() >= chunkSize) flushResults();
+        }
+
+        @Override
+        public void onEdit(AndroidSensorEditDTO edit) throws TraitementException {
+            if (ignored) return;
+            pendingEdits.add(edit);
+            if (pendingEdits.size() >= chunkSize) flushEdits();
+        }
+
+        /**
+         * Saves the remaining results and edits, then the results that
+         * were waiting for the edits to be saved.
+         * @return the id of the scan and whether it had already been saved
+         * @throws TraitementException if a result references an unknown sensor
+         */
+        private AndroidScanResponseDTO finish() throws TraitementException {
+            if (ignored) return ingested;
+            flushResults();
+            flushEdits();
+            for (var from = 0; from < deferredResults.size(); from += chunkSize) {
+                var chunk = deferredResults.subList(from, Math.min(from + chunkSize, deferredResults.size()));
+                if (!persistResults(chunk).isEmpty()) throw new TraitementException(Error.SENSOR_NOT_FOUND);
+            }
+            if (scan == null) {
+                LOGGER.warn("Received empty scan, ignoring");
+                emptyScans.increment();
+                return new AndroidScanResponseDTO(null, false);
+            }
+            if (metadata.structureNote() != null && !metadata.structureNote().isEmpty()) {
+                appLogs.addScanNote(submitter, scan, structure, metadata.structureNote());
+                structure.setNote(metadata.structureNote());
+                structure = structureRepository.save(structure);
+            }
+            summaryWriter.refresh(structure.getId());
+            appLogs.addScan(submitter, scan, results);
+            countSaved(results, edits);
+            LOGGER.info("Saved {} results and {} edits for streamed scan {}", results, edits, metadata.scanId());
+            return new AndroidScanResponseDTO(scan.getId(), false);
+        }
+
+        /**
+         * Persists the pending results, keeping aside the ones which
+         * sensor does not exist yet.
+         * @throws TraitementException if a sensor id is malformed
+         */
+        private void flushResults() throws TraitementException {
+            if (pendingResults.isEmpty()) return;
+            deferredResults.addAll(persistResults(pendingResults));
+            pendingResults.clear();
+        }
+
+        /**
+         * Applies the pending edits.
+         * @throws TraitementException if a sensor id is malformed
+         */
+        private void flushEdits() throws TraitementException {
+            if (pendingEdits.isEmpty()) return;
+            var ids = new HashSet<SensorId>();
+            for (var edit : pendingEdits) {
+                ids.add(SensorId.from(edit.sensorId()));
+            }
+            processEdits(submitter, pendingEdits, scan(), sensorRepository.findAllBySensorIds(ids));
+            edits += pendingEdits.size();
+            pendingEdits.clear();
+            release();
+        }
+
+        /**
+         * Saves the given results which sensor exists.
+         * @param rawResults the results to save
+         * @return the results which sensor does not exist
+         * @throws TraitementException if a sensor id is malformed
+         */
+        private List<AndroidSensorResultDTO> persistResults(List<AndroidSensorResultDTO> rawResults) throws TraitementException {
+            var ids = new HashSet<SensorId>();
+            for (var rawResult : rawResults) {
+                ids.add(SensorId.from(rawResult.sensorId()));
+            }
+            var sensors = sensorRepository.findAllBySensorIds(ids);
+            var current = scan();
+            var chunk = new ArrayList<Result>(rawResults.size());
+            var unknown = new ArrayList<AndroidSensorResultDTO>();
+            for (var rawResult : rawResults) {
+                var sensor = sensors.get(SensorId.from(rawResult.sensorId()));
+                if (sensor == null) unknown.add(rawResult);
+                else chunk.add(new Result(State.valueOf(rawResult.state()), sensor, current));
+            }
+            resultWriter.saveAll(chunk);
+            results += chunk.size();
+            release();
+            return unknown;
+        }
+
+        /**
+         * Gets the scan entity, creating it at the first result or edit
+         * so that empty scans are not saved.
+         * @return the scan entity
+         * @throws TraitementException if the scan time is not an ISO date
+         */
+        private Scan scan() throws TraitementException {
+            if (scan == null) scan = createScan(structure, metadata, account, fingerprint);
+            return scan;
+        }
+
+        /**
+         * Writes the current chunk in the database and detaches it from
+         * the persistence context so that it can be garbage collected.
+         */
+        private void release() {
+            em.flush();
+            em.clear();
+        }
+    }
+}
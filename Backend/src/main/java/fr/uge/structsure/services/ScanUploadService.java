@@ -0,0 +1,280 @@
+package fr.uge.structsure.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.uge.structsure.dto.scan.*;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.SensorId;
+import fr.uge.structsure.entities.UploadChunk;
+import fr.uge.structsure.entities.UploadSession;
+import fr.uge.structsure.exceptions.Error;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.UploadChunkRepository;
+import fr.uge.structsure.repositories.UploadSessionRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service handling the scans uploaded by chunks. This lets the Android
+ * devices resume an interrupted upload instead of sending the whole
+ * scan again: a session is opened with the metadata of the scan, then
+ * numbered chunks of results and edits are sent, and the scan is saved
+ * at once through {@link ScanService} when the upload is committed.
+ */
+@Service
+public class ScanUploadService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScanUploadService.class);
+
+    /** Maximum number of chunks of an upload */
+    private static final int MAX_CHUNKS = 10_000;
+
+    private final UploadSessionRepository sessionRepository;
+    private final UploadChunkRepository chunkRepository;
+    private final ScanService scanService;
+    private final AppLogService appLogs;
+    private final ObjectMapper mapper;
+    private final int expirationHours;
+
+    /**
+     * Constructor
+     * @param sessionRepository access to the upload sessions table
+     * @param chunkRepository access to the upload chunks table
+     * @param scanService service that saves the scans
+     * @param appLogService to get the author of the uploads
+     * @param mapper to store the chunks as JSON
+     * @param expirationHours time after which an inactive upload is removed
+     */
+    @Autowired
+    public ScanUploadService(
+        UploadSessionRepository sessionRepository, UploadChunkRepository chunkRepository,
+        ScanService scanService, AppLogService appLogService, ObjectMapper mapper,
+        @Value("${app.scans.uploads.expiration-time.hours:24}") int expirationHours
+    ) {
+        this.sessionRepository = Objects.requireNonNull(sessionRepository);
+        this.chunkRepository = Objects.requireNonNull(chunkRepository);
+        this.scanService = Objects.requireNonNull(scanService);
+        this.appLogs = Objects.requireNonNull(appLogService);
+        this.mapper = Objects.requireNonNull(mapper);
+        this.expirationHours = expirationHours;
+    }
+
+    /**
+     * Opens an upload session for the scan described by the given
+     * metadata. If a session has already been opened for this scan by
+     * the same user, this session is returned so that the upload can
+     * be resumed.
+     * @param request the details of the request to get the scan submitter
+     * @param metadata the scan metadata (its results and edits are ignored)
+     * @return the state of the upload
+     * @throws TraitementException if the metadata is malformed
+     */
+    @Transactional
+    public UploadSessionDTO open(HttpServletRequest request, AndroidScanResultDTO metadata) throws TraitementException {
+        metadata = new AndroidScanResultDTO(
+            metadata.structureId(), metadata.scanId(), metadata.launchDate(), metadata.scanNote(),
+            metadata.structureNote(), metadata.login(), List.of(), List.of()
+        );
+        scanService.checkScanData(metadata);
+        var submitter = appLogs.currentAccount(request);
+        var fingerprint = ScanService.fingerprint(metadata);
+        var existing = sessionRepository.findFirstByFingerprintOrderByIdDesc(fingerprint)
+            .filter(session -> sameAccount(session.getSubmitter(), submitter));
+        if (existing.isPresent()) return toDTO(existing.get());
+
+        var session = new UploadSession(UUID.randomUUID().toString(), submitter, fingerprint, write(metadata));
+        session = sessionRepository.save(session);
+        LOGGER.info("Upload {} opened for Android scan {}", session.getUploadId(), metadata.scanId());
+        return toDTO(session);
+    }
+
+    /**
+     * Stores a chunk of the upload. Sending several times the same
+     * chunk replaces its content, so that a client can safely resend a
+     * chunk which acknowledgement was lost.
+     * @param request the details of the request to get the scan submitter
+     * @param uploadId the identifier of the upload
+     * @param index the position of the chunk in the upload, starting at 0
+     * @param chunk the results and edits of the chunk
+     * @return the state of the upload
+     * @throws TraitementException if the upload does not exist or if the
+     *     chunk is malformed
+     */
+    @Transactional
+    public UploadSessionDTO putChunk(HttpServletRequest request, String uploadId, int index, ScanChunkDTO chunk) throws TraitementException {
+        if (index < 0 || index >= MAX_CHUNKS) throw new TraitementException(Error.INVALID_FIELDS);
+        var session = findSession(request, uploadId);
+        if (session.isCommitted()) return toDTO(session);
+        chunk = new ScanChunkDTO(
+            chunk.results() == null ? List.of() : chunk.results(),
+            chunk.sensorEdits() == null ? List.of() : chunk.sensorEdits()
+        );
+        for (var result : chunk.results()) SensorId.from(result.sensorId());
+        for (var edit : chunk.sensorEdits()) SensorId.from(edit.sensorId());
+
+        var payload = write(chunk);
+        var existing = chunkRepository.findBySessionAndChunkIndex(session, index);
+        if (existing.isPresent()) {
+            existing.get().setPayload(payload);
+        } else {
+            chunkRepository.save(new UploadChunk(session, index, payload));
+        }
+        session.setUpdatedAt(LocalDateTime.now());
+        return toDTO(session);
+    }
+
+    /**
+     * Gets the state of the upload, to know which chunk to send next.
+     * @param request the details of the request to get the scan submitter
+     * @param uploadId the identifier of the upload
+     * @return the state of the upload
+     * @throws TraitementException if the upload does not exist
+     */
+    @Transactional(readOnly = true)
+    public UploadSessionDTO status(HttpServletRequest request, String uploadId) throws TraitementException {
+        return toDTO(findSession(request, uploadId));
+    }
+
+    /**
+     * Saves the uploaded scan from all its chunks in a single
+     * transaction. Committing an already committed upload only returns
+     * its state. The upload is marked as committed once the scan is
+     * saved: if it is committed twice at the same time, or again after
+     * a failure in between, the fingerprint of the scan gives back the
+     * scan already saved.
+     * @param request the details of the request to get the scan submitter
+     * @param uploadId the identifier of the upload
+     * @param chunks the number of chunks the client sent
+     * @return the state of the upload containing the id of the saved scan
+     * @throws TraitementException if the upload does not exist, if chunks
+     *     are missing, or if the scan cannot be saved
+     */
+    public UploadSessionDTO commit(HttpServletRequest request, String uploadId, int chunks) throws TraitementException {
+        var session = findSession(request, uploadId);
+        if (session.isCommitted()) return toDTO(session);
+        var indexes = chunkRepository.findIndexesBySession(session);
+        if (chunks < 0 || indexes.size() != chunks || acknowledged(indexes) != chunks) {
+            throw new TraitementException(Error.UPLOAD_INCOMPLETE);
+        }
+
+        var metadata = read(session.getMetadata(), AndroidScanResultDTO.class);
+        var results = new ArrayList<AndroidSensorResultDTO>();
+        var edits = new ArrayList<AndroidSensorEditDTO>();
+        for (var chunk : chunkRepository.findBySessionOrderByChunkIndex(session)) {
+            var content = read(chunk.getPayload(), ScanChunkDTO.class);
+            results.addAll(content.results());
+            edits.addAll(content.sensorEdits());
+        }
+        var scanData = new AndroidScanResultDTO(
+            metadata.structureId(), metadata.scanId(), metadata.launchDate(), metadata.scanNote(),
+            metadata.structureNote(), metadata.login(), results, edits
+        );
+        AndroidScanResponseDTO saved;
+        try {
+            saved = scanService.saveScanResults(session.getSubmitter(), scanData);
+        } catch (DataIntegrityViolationException e) {
+            saved = scanService.concurrentDuplicate(scanData, e);
+        }
+
+        chunkRepository.deleteBySession(session);
+        session.setCommitted(true);
+        session.setScanId(saved.scanId());
+        session.setUpdatedAt(LocalDateTime.now());
+        sessionRepository.save(session);
+        LOGGER.info("Upload {} committed with {} chunks", uploadId, chunks);
+        return new UploadSessionDTO(session.getUploadId(), chunks, chunks, true, saved.scanId());
+    }
+
+    /**
+     * Removes the uploads that have not been updated for a long time,
+     * either abandoned or committed long ago.
+     */
+    @Scheduled(fixedDelay = 10, timeUnit = TimeUnit.MINUTES)
+    public void expire() {
+        var ids = sessionRepository.findExpiredIds(LocalDateTime.now().minusHours(expirationHours));
+        if (ids.isEmpty()) return;
+        chunkRepository.deleteBySessionIds(ids);
+        sessionRepository.deleteAllByIds(ids);
+        LOGGER.info("Removed {} expired scan uploads (TTL:{} hours)", ids.size(), expirationHours);
+    }
+
+    /**
+     * Finds the given upload session and makes sure that it belongs to
+     * the current user.
+     * @param request the details of the request to get the current user
+     * @param uploadId the identifier of the upload
+     * @return the upload session
+     * @throws TraitementException if the session does not exist or
+     *     belongs to another user
+     */
+    private UploadSession findSession(HttpServletRequest request, String uploadId) throws TraitementException {
+        var session = sessionRepository.findByUploadId(uploadId)
+            .orElseThrow(() -> new TraitementException(Error.UPLOAD_NOT_FOUND));
+        if (!sameAccount(session.getSubmitter(), appLogs.currentAccount(request))) {
+            throw new TraitementException(Error.UPLOAD_NOT_FOUND);
+        }
+        return session;
+    }
+
+    /**
+     * Converts the given session to the state sent to the client
+     * @param session the upload session
+     * @return the state of the upload
+     */
+    private UploadSessionDTO toDTO(UploadSession session) {
+        if (session.isCommitted()) {
+            return new UploadSessionDTO(session.getUploadId(), 0, 0, true, session.getScanId());
+        }
+        var indexes = chunkRepository.findIndexesBySession(session);
+        return new UploadSessionDTO(session.getUploadId(), acknowledged(indexes), indexes.size(), false, null);
+    }
+
+    /**
+     * Gets the number of consecutive chunks received from the first one.
+     * @param indexes the sorted indexes of the received chunks
+     * @return the index of the first missing chunk
+     */
+    private static int acknowledged(List<Integer> indexes) {
+        var next = 0;
+        for (var index : indexes) {
+            if (index != next) break;
+            next++;
+        }
+        return next;
+    }
+
+    private static boolean sameAccount(Account first, Account second) {
+        if (first == null || second == null) return first == second;
+        return first.getId() == second.getId();
+    }
+
+    private String write(Object value) throws TraitementException {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new TraitementException(Error.INVALID_FIELDS);
+        }
+    }
+
+    private <T> T read(String json, Class<T> type) throws TraitementException {
+        try {
+            return mapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            LOGGER.error("Corrupted scan upload content", e);
+            throw new TraitementException(Error.SERVER_ERROR);
+        }
+    }
+}
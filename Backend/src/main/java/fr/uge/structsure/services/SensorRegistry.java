@@ -0,0 +1,290 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.repositories.SensorRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory registry of the chip tags and names already used by the
+ * sensors. It answers the uniqueness checks done when a sensor is
+ * created or renamed without querying the database.
+ * <p>
+ * Values are reserved atomically before the sensor is saved so that
+ * two concurrent creations cannot take the same chip or name. When the
+ * reservation is done within a transaction, it is released
+ * automatically if the transaction rolls back. Otherwise, the caller
+ * has to release it if the sensor cannot be saved.
+ */
+@Service
+public class SensorRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SensorRegistry.class);
+
+    /** Letters added after a used name to make it unique */
+    private static final char FIRST_SUFFIX = 'A';
+    private static final char LAST_SUFFIX = 'Z';
+
+    private final SensorRepository sensorRepository;
+
+    private final Set<String> chips = ConcurrentHashMap.newKeySet();
+    private final Set<String> names = ConcurrentHashMap.newKeySet();
+
+    /* Values reserved by transactions that are not completed yet */
+    private final Set<String> pendingChips = ConcurrentHashMap.newKeySet();
+    private final Set<String> pendingNames = ConcurrentHashMap.newKeySet();
+
+    /* Taken by the reservations so that the snapshots never see a reserved value not yet pending */
+    private final ReadWriteLock reservations = new ReentrantReadWriteLock();
+
+    /* For each used name, the next suffix that may be free */
+    private final ConcurrentHashMap<String, Character> nextSuffix = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     * @param sensorRepository access to the sensors table
+     */
+    @Autowired
+    public SensorRegistry(SensorRepository sensorRepository) {
+        this.sensorRepository = Objects.requireNonNull(sensorRepository);
+    }
+
+    /**
+     * Fills the registry with the chips and names of the sensors
+     * already in database.
+     */
+    @PostConstruct
+    public void load() {
+        for (var row : sensorRepository.findAllChipsAndNames()) {
+            chips.add((String) row[0]);
+            chips.add((String) row[1]);
+            names.add((String) row[2]);
+        }
+        LOGGER.info("Sensor registry loaded with {} chips and {} names", chips.size(), names.size());
+    }
+
+    /**
+     * Checks if the given chip tag is used by a sensor, either as
+     * control or measure chip.
+     * @param chip the chip tag to check
+     * @return true if the chip is used, false otherwise
+     */
+    public boolean chipExists(String chip) {
+        return chips.contains(chip);
+    }
+
+    /**
+     * Checks if the given name is used by a sensor.
+     * @param name the name to check
+     * @return true if the name is used, false otherwise
+     */
+    public boolean nameExists(String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * Reserves the two chips of a new sensor if none of them is used.
+     * @param controlChip the control chip of the sensor
+     * @param measureChip the measure chip of the sensor
+     * @return true if the chips got reserved, false if one is used
+     */
+    public boolean reserveChips(String controlChip, String measureChip) {
+        var lock = reservations.readLock();
+        lock.lock();
+        try {
+            if (!chips.add(controlChip)) return false;
+            if (!chips.add(measureChip)) {
+                chips.remove(controlChip);
+                return false;
+            }
+            onRollback(pendingChips, chips::remove, controlChip, measureChip);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserves the given name if it is not used.
+     * @param name the name to reserve
+     * @return true if the name got reserved, false if it is used
+     */
+    public boolean reserveName(String name) {
+        var lock = reservations.readLock();
+        lock.lock();
+        try {
+            if (!names.add(name)) return false;
+            onRollback(pendingNames, this::releaseName, name);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserves the given name or, if it is used, the first free name
+     * made of the given one followed by a letter from A to Z. The next
+     * letter to try is remembered for each name so the search does not
+     * start over each time.
+     * @param name the wanted name
+     * @return the reserved name, or null if the name and all its
+     *     suffixed variants are used
+     */
+    public String reserveAvailableName(String name) {
+        if (reserveName(name)) return name;
+        var suffix = nextSuffix.getOrDefault(name, FIRST_SUFFIX);
+        for (; suffix <= LAST_SUFFIX; suffix++) {
+            var candidate = name + " " + suffix;
+            if (reserveName(candidate)) {
+                nextSuffix.merge(name, (char) (suffix + 1), (a, b) -> (char) Math.max(a, b));
+                return candidate;
+            }
+        }
+        nextSuffix.put(name, (char) (LAST_SUFFIX + 1));
+        return null;
+    }
+
+    /**
+     * Frees the chips of a sensor that got deleted or could not be saved.
+     * @param controlChip the control chip of the sensor
+     * @param measureChip the measure chip of the sensor
+     */
+    public void releaseChips(String controlChip, String measureChip) {
+        chips.remove(controlChip);
+        chips.remove(measureChip);
+    }
+
+    /**
+     * Frees the name of a sensor that got renamed, deleted or could
+     * not be saved.
+     * @param name the name to free
+     */
+    public void releaseName(String name) {
+        if (!names.remove(name)) return;
+        var length = name.length();
+        if (length < 3 || name.charAt(length - 2) != ' ') return;
+        var suffix = name.charAt(length - 1);
+        if (suffix < FIRST_SUFFIX || suffix > LAST_SUFFIX) return;
+        nextSuffix.computeIfPresent(name.substring(0, length - 2), (base, next) -> next > suffix ? suffix : next);
+    }
+
+    /**
+     * Frees the name of a sensor that got renamed once the current
+     * transaction is committed, so that the name stays reserved if the
+     * renaming is rolled back. Outside a transaction, the name is freed
+     * right away.
+     * @param name the name to free
+     */
+    public void releaseNameOnCommit(String name) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            releaseName(name);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                releaseName(name);
+            }
+        });
+    }
+
+    /**
+     * Compares the registry with the database and fixes the
+     * differences. Values reserved by running transactions are not
+     * considered as drift.
+     * <p>
+     * The registry and its pending values are copied together before
+     * reading the database: a value reserved after the copy may belong
+     * to a sensor committed after the read, so only the values found in
+     * the copy, and not pending at any time, can be removed.
+     * @return the number of differences found
+     */
+    @Scheduled(fixedDelay = 1, initialDelay = 1, timeUnit = TimeUnit.HOURS)
+    public int checkConsistency() {
+        Snapshot chipsSnapshot;
+        Snapshot namesSnapshot;
+        var lock = reservations.writeLock();
+        lock.lock();
+        try {
+            chipsSnapshot = new Snapshot(Set.copyOf(chips), Set.copyOf(pendingChips));
+            namesSnapshot = new Snapshot(Set.copyOf(names), Set.copyOf(pendingNames));
+        } finally {
+            lock.unlock();
+        }
+        var dbChips = new HashSet<String>();
+        var dbNames = new HashSet<String>();
+        for (var row : sensorRepository.findAllChipsAndNames()) {
+            dbChips.add((String) row[0]);
+            dbChips.add((String) row[1]);
+            dbNames.add((String) row[2]);
+        }
+        var drift = reconcile(chips, pendingChips, chipsSnapshot, dbChips)
+            + reconcile(names, pendingNames, namesSnapshot, dbNames);
+        if (drift > 0) {
+            nextSuffix.clear();
+            LOGGER.warn("Sensor registry drifted from the database, {} values fixed", drift);
+        }
+        return drift;
+    }
+
+    /**
+     * Copy of the registered values taken before reading the database
+     * @param registered the values of the registry
+     * @param pending the values reserved by uncommitted transactions
+     */
+    private record Snapshot(Set<String> registered, Set<String> pending) {}
+
+    /**
+     * Makes the registered values match the values of the database.
+     * @param registered the values of the registry
+     * @param pending the values reserved by uncommitted transactions
+     * @param snapshot the values of the registry before reading the database
+     * @param expected the values found in the database
+     * @return the number of added or removed values
+     */
+    private static int reconcile(Set<String> registered, Set<String> pending, Snapshot snapshot, Set<String> expected) {
+        var fixed = 0;
+        for (var value : expected) {
+            if (registered.add(value)) fixed++;
+        }
+        for (var value : snapshot.registered()) {
+            if (expected.contains(value) || snapshot.pending().contains(value) || pending.contains(value)) continue;
+            if (registered.remove(value)) fixed++;
+        }
+        return fixed;
+    }
+
+    /**
+     * Releases the given reserved values if the current transaction
+     * rolls back. Nothing is done outside a transaction.
+     * @param pending the values reserved by uncommitted transactions
+     * @param release the action freeing a value
+     * @param values the values just reserved
+     */
+    private static void onRollback(Set<String> pending, Consumer<String> release, String... values) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        for (var value : values) pending.add(value);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                for (var value : values) {
+                    pending.remove(value);
+                    if (status != STATUS_COMMITTED) release.accept(value);
+                }
+            }
+        });
+    }
+}
@@ -6,8 +6,13 @@ import fr.uge.structsure.exceptions.Error;
 import fr.uge.structsure.exceptions.TraitementException;
 import fr.uge.structsure.repositories.*;
 import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -19,6 +24,8 @@ import java.util.*;
  */
 @Service
 public class SensorService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SensorService.class);
+
     private final SensorRepository sensorRepository;
     private final StructureRepository structureRepository;
     private final ResultRepository resultRepository;
@@ -26,6 +33,9 @@ public class SensorService {
     private final AccountRepository accountRepository;
     private final SensorRepositoryCriteriaQuery sensorRepositoryCriteriaQuery;
     private final AppLogService appLogs;
+    private final SensorRegistry sensorRegistry;
+    private final ResultBatchWriter resultWriter;
+    private final StructureSummaryWriter summaryWriter;
 
     private final AuthValidationService authValidationService;
 
@@ -39,13 +49,18 @@ public class SensorService {
      * @param appLogService The logs manager
      * @param sensorRepositoryCriteriaQuery the sensor repository using criteria query api
      * @param authValidationService The auth validation service
+     * @param sensorRegistry The registry of the used chips and names
+     * @param resultWriter The writer maintaining the stored sensors states
+     * @param summaryWriter The writer of the structures summary
      */
     @Autowired
     public SensorService(
         SensorRepository sensorRepository, StructureRepository structureRepository,
         ResultRepository resultRepository, PlanRepository planRepository,
         AccountRepository accountRepository, AppLogService appLogService,
-        SensorRepositoryCriteriaQuery sensorRepositoryCriteriaQuery, AuthValidationService authValidationService
+        SensorRepositoryCriteriaQuery sensorRepositoryCriteriaQuery, AuthValidationService authValidationService,
+        SensorRegistry sensorRegistry, ResultBatchWriter resultWriter,
+        StructureSummaryWriter summaryWriter
     ) {
         this.sensorRepository = sensorRepository;
         this.structureRepository = structureRepository;
@@ -55,6 +70,9 @@ public class SensorService {
         this.appLogs = appLogService;
         this.sensorRepositoryCriteriaQuery = sensorRepositoryCriteriaQuery;
         this.authValidationService = authValidationService;
+        this.sensorRegistry = sensorRegistry;
+        this.resultWriter = resultWriter;
+        this.summaryWriter = summaryWriter;
     }
 
 
@@ -64,6 +82,7 @@ public class SensorService {
      * @return List<SensorDTO> list of sensors
      * @throws TraitementException if there is no structure with the id
      */
+    @Transactional(readOnly = true)
     public List<SensorDTO> getSensors(long structureId, AllSensorsByStructureRequestDTO request) throws TraitementException {
         request.checkFields();
         var structure = structureRepository.findById(structureId);
@@ -80,6 +99,7 @@ public class SensorService {
      * @return long The total number of sensors
      * @throws TraitementException throw if structure not found or DATE_FORMAT_ERROR if there is an error while converting date
      */
+    @Transactional(readOnly = true)
     public long countSensors(long structureId, AllSensorsByStructureRequestDTO request) throws TraitementException {
         request.checkFields();
         var structure = structureRepository.findById(structureId);
@@ -89,6 +109,16 @@ public class SensorService {
         return sensorRepositoryCriteriaQuery.countSensorsByStructureId(structureId, request);
     }
 
+    /**
+     * Gets the token of the page following the given page of sensors
+     * @param request the request that returned the page
+     * @param page the sensors returned for the request
+     * @return the token of the next page or null if this page is the last one
+     */
+    public String nextCursor(AllSensorsByStructureRequestDTO request, List<SensorDTO> page) {
+        return SensorRepositoryCriteriaQuery.nextCursor(request, page);
+    }
+
     /**
      * Returns the list of sensors present in a plan
      * @param structureId the structure id
@@ -96,6 +126,7 @@ public class SensorService {
      * @param scanId the optional scan id
      * @return List<SensorDTO> the list of the sensors
      */
+    @Transactional(readOnly = true)
     public List<SensorDTO> getSensorsByPlanId(long structureId, long planId, Optional<Long> scanId) throws TraitementException {
         var structure = structureRepository.findById(structureId).orElseThrow(() -> new TraitementException(Error.STRUCTURE_ID_NOT_FOUND));
         var plan = planRepository.findByStructureAndId(structure, planId).orElseThrow(() -> new TraitementException(Error.PLAN_NOT_FOUND));
@@ -127,19 +158,33 @@ public class SensorService {
      * @return StateEnum the state
      */
     private State getSensorState(Sensor sensor) {
-        var numberOfResults = resultRepository.countBySensor(sensor);
-        if (numberOfResults == 0) {
-            return State.UNKNOWN;
-        }
-        var isNokPresent = resultRepository.existsResultWithNokState(sensor);
-        if (isNokPresent) {
-            return State.NOK;
-        }
-        var isDefecitvePresent = resultRepository.existsResultWithDefectiveState(sensor);
-        if (isDefecitvePresent) {
-            return State.DEFECTIVE;
-        }
-        return State.OK;
+        return sensor.getCurrentState();
+    }
+
+    /**
+     * Recomputes the state, results count and last scan stored on each
+     * sensor from all the results, then the summary of the structures.
+     * @return the number of updated sensors
+     */
+    @Transactional
+    public RebuildStatesResponseDTO rebuildStates() {
+        var updated = resultWriter.rebuildSensorStates();
+        summaryWriter.refreshAll();
+        LOGGER.info("Rebuilt the stored state of {} sensors", updated);
+        return new RebuildStatesResponseDTO(updated);
+    }
+
+    /**
+     * Rebuilds the stored states at startup if some results were saved
+     * before the state got stored on the sensors. The rebuild is called
+     * through the bean of the context, a direct call would not be
+     * transactional.
+     * @param event the startup event, giving access to the context
+     */
+    @EventListener
+    public void rebuildStatesIfStale(ApplicationReadyEvent event) {
+        if (!resultWriter.hasStaleSensorStates()) return;
+        event.getApplicationContext().getBean(SensorService.class).rebuildStates();
     }
 
     /**
@@ -163,22 +208,32 @@ public class SensorService {
         }
         var structure = structureRepository.findById(sensorDto.structureId()).orElseThrow(() -> new TraitementException(Error.SENSOR_STRUCTURE_NOT_FOUND));
         checkState(structure);
-        if (sensorRepository.chipTagAlreadyExists(sensorDto.controlChip())) {
+        if (!sensorRegistry.reserveChips(sensorDto.controlChip(), sensorDto.measureChip())) {
             throw new TraitementException(Error.SENSOR_CHIP_TAGS_ALREADY_EXISTS);
         }
-        if (sensorRepository.nameAlreadyExists(sensorDto.name())) {
+        if (!sensorRegistry.reserveName(sensorDto.name())) {
+            sensorRegistry.releaseChips(sensorDto.controlChip(), sensorDto.measureChip());
             throw new TraitementException(Error.SENSOR_NAME_ALREADY_EXISTS);
         }
-        var sensor = new Sensor(sensorDto.controlChip(),
-                sensorDto.measureChip(),
-                sensorDto.name(),
-                sensorDto.installationDate()
-                        .filter(dateStr -> !dateStr.isBlank())
-                        .map(dateStr -> LocalDate.parse(dateStr, DateTimeFormatter.ISO_LOCAL_DATE))
-                        .orElse(null),
-                sensorDto.note() == null ? "": sensorDto.note(),
-                structure);
-        var saved = sensorRepository.save(sensor);
+        Sensor sensor;
+        Sensor saved;
+        try {
+            sensor = new Sensor(sensorDto.controlChip(),
+                    sensorDto.measureChip(),
+                    sensorDto.name(),
+                    sensorDto.installationDate()
+                            .filter(dateStr -> !dateStr.isBlank())
+                            .map(dateStr -> LocalDate.parse(dateStr, DateTimeFormatter.ISO_LOCAL_DATE))
+                            .orElse(null),
+                    sensorDto.note() == null ? "": sensorDto.note(),
+                    structure);
+            saved = sensorRepository.save(sensor);
+        } catch (RuntimeException e) {
+            sensorRegistry.releaseChips(sensorDto.controlChip(), sensorDto.measureChip());
+            sensorRegistry.releaseName(sensorDto.name());
+            throw e;
+        }
+        summaryWriter.refresh(structure.getId());
         appLogs.addSensor(request, sensor);
         return new AddSensorResponseDTO(saved.getSensorId().getControlChip(), saved.getSensorId().getMeasureChip());
     }
@@ -258,12 +313,15 @@ public class SensorService {
      * @param request the request to get the author account from
      * @param editSensorRequestDTO The edit sensor request DTO
      */
+    @Transactional(rollbackFor = TraitementException.class)
     public EditSensorResponseDTO editSensor(HttpServletRequest request, EditSensorRequestDTO editSensorRequestDTO) throws TraitementException {
         Objects.requireNonNull(editSensorRequestDTO);
         var sensor = sensorRepository.findByChipsId(editSensorRequestDTO.controlChip(), editSensorRequestDTO.measureChip()).orElseThrow(() -> new TraitementException(Error.SENSOR_NOT_FOUND));
         var diff = editSensorRequestDTO.logDiff(sensor);
-        if (!sensor.getName().equals(editSensorRequestDTO.name())){
-            if (sensorRepository.nameAlreadyExists(editSensorRequestDTO.name())) {
+        var oldName = sensor.getName();
+        var renamed = !oldName.equals(editSensorRequestDTO.name());
+        if (renamed){
+            if (!sensorRegistry.reserveName(editSensorRequestDTO.name())) {
                 throw new TraitementException(Error.SENSOR_NAME_ALREADY_EXISTS);
             }
             sensor.setName(editSensorRequestDTO.name());
@@ -280,6 +338,8 @@ public class SensorService {
             sensor.setInstallationDate(null);
         }
         var sensorSaved = sensorRepository.save(sensor);
+        /* The new name is freed by the registry if the transaction rolls back */
+        if (renamed) sensorRegistry.releaseNameOnCommit(oldName);
         appLogs.editSensor(request, sensor, diff);
         return new EditSensorResponseDTO(sensorSaved.getSensorId().getControlChip(), sensorSaved.getSensorId().getMeasureChip(), LocalDateTime.now().toString());
     }
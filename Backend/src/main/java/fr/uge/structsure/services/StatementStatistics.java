@@ -0,0 +1,264 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.dto.monitoring.StatementStatsDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Statistics of the SQL statements sent to the database, fed by
+ * {@link fr.uge.structsure.config.StatementStatisticsDataSource}.
+ * <p>
+ * The statements are grouped by shape: the SQL with its literals
+ * replaced by {@code ?} and its lists of values collapsed. The time
+ * spent in each shape is aggregated for the administrators, and the
+ * statements of a request are counted in a {@link Scope} to report
+ * the requests sending too many statements or repeating the same one,
+ * which is the mark of a query sent for each element of a list (N+1).
+ */
+@Service
+public class StatementStatistics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementStatistics.class);
+
+    /** Maximum number of distinct shapes kept, in case the SQL is built with inlined values */
+    private static final int MAX_SHAPES = 2000;
+
+    /** Shape of the statements beyond {@link #MAX_SHAPES} */
+    private static final String OTHER = "(other statements)";
+
+    private static final Pattern STRINGS = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBERS = Pattern.compile("(?<![\\w.\"])-?\\d+(?:\\.\\d+)?(?![\\w.\"])");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Pattern LISTS = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern ROWS = Pattern.compile("\\(\\.\\.\\.\\)(?:\\s*,\\s*\\(\\.\\.\\.\\))+");
+
+    private final int maxStatements;
+    private final int maxRepeats;
+    private final long slowStatementNanos;
+    private final Map<String, String> shapes = new ConcurrentHashMap<>();
+    private final Map<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+    private final ThreadLocal<Scope> current = new ThreadLocal<>();
+
+    /**
+     * Constructor
+     * @param maxStatements number of statements of a request above which it is reported
+     * @param maxRepeats number of times the same statement can be sent by a request before it is reported
+     * @param slowStatement duration above which a statement is reported, in milliseconds
+     */
+    @Autowired
+    public StatementStatistics(
+        @Value("${app.sql.max-statements-per-request:100}") int maxStatements,
+        @Value("${app.sql.max-repeats-per-request:20}") int maxRepeats,
+        @Value("${app.sql.slow-statement-ms:200}") long slowStatement
+    ) {
+        this.maxStatements = maxStatements;
+        this.maxRepeats = maxRepeats;
+        this.slowStatementNanos = TimeUnit.MILLISECONDS.toNanos(slowStatement);
+    }
+
+    /**
+     * Starts counting the statements sent by the current thread, until
+     * the returned scope is closed. Scopes can be nested, the statements
+     * are then counted in all the open scopes.
+     * @param name the name of the work, such as the endpoint of a request
+     * @return the scope counting the statements
+     */
+    public Scope open(String name) {
+        Objects.requireNonNull(name);
+        var scope = new Scope(name, current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    /**
+     * Records a statement sent to the database by the current thread.
+     * @param sql the SQL of the statement
+     * @param nanos the time taken to execute it, in nanoseconds
+     * @param parameters the types of the parameters bound to the statement
+     */
+    public void record(String sql, long nanos, List<String> parameters) {
+        if (sql == null) return;
+        var shape = shape(sql);
+        var aggregate = aggregates.get(shape);
+        if (aggregate == null) {
+            aggregate = aggregates.size() < MAX_SHAPES
+                ? aggregates.computeIfAbsent(shape, Aggregate::new)
+                : aggregates.computeIfAbsent(OTHER, Aggregate::new);
+        }
+        aggregate.add(nanos);
+        var scope = current.get();
+        for (var open = scope; open != null; open = open.parent) {
+            open.add(shape);
+        }
+        if (nanos >= slowStatementNanos) {
+            LOGGER.warn("Slow statement ({} ms) in {}: {} with parameters {}",
+                TimeUnit.NANOSECONDS.toMillis(nanos), scope == null ? "background task" : scope.name, shape, parameters);
+        }
+    }
+
+    /**
+     * Returns the statistics of the statements since the start or the
+     * last reset, the most time-consuming first.
+     * @param limit the maximum number of statements to return
+     * @return the statistics of each statement shape
+     */
+    public List<StatementStatsDTO> stats(int limit) {
+        return aggregates.values().stream()
+            .map(Aggregate::toDTO)
+            .sorted(Comparator.comparingDouble(StatementStatsDTO::totalMs).reversed())
+            .limit(limit)
+            .toList();
+    }
+
+    /**
+     * Clears the aggregated statistics
+     */
+    public void reset() {
+        aggregates.clear();
+    }
+
+    /**
+     * Gets the shape of the statement, cached as the application only
+     * sends a limited number of distinct statements.
+     * @param sql the SQL of the statement
+     * @return the shape of the statement
+     */
+    private String shape(String sql) {
+        var shape = shapes.get(sql);
+        if (shape != null) return shape;
+        shape = normalize(sql);
+        if (shapes.size() < MAX_SHAPES) shapes.put(sql, shape);
+        return shape;
+    }
+
+    /**
+     * Normalizes the SQL of a statement so that the statements only
+     * differing by their values share the same shape: the literals are
+     * replaced by {@code ?}, the lists of values such as the ones of
+     * {@code IN} by {@code (...)} and the rows of a multi-row insert by
+     * a single one.
+     * @param sql the SQL of the statement
+     * @return the shape of the statement
+     */
+    static String normalize(String sql) {
+        var shape = STRINGS.matcher(sql).replaceAll("?");
+        shape = NUMBERS.matcher(shape).replaceAll("?");
+        shape = SPACES.matcher(shape).replaceAll(" ").strip();
+        shape = LISTS.matcher(shape).replaceAll("(...)");
+        return ROWS.matcher(shape).replaceAll("(...)");
+    }
+
+    /**
+     * Counters of a statement shape, updated by concurrent requests.
+     */
+    private static final class Aggregate {
+        private final String shape;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private Aggregate(String shape) {
+            this.shape = shape;
+        }
+
+        private void add(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        private StatementStatsDTO toDTO() {
+            var executions = count.sum();
+            var total = totalNanos.sum() / 1e6;
+            return new StatementStatsDTO(shape, executions, total,
+                executions == 0 ? 0 : total / executions, maxNanos.get() / 1e6);
+        }
+    }
+
+    /**
+     * Statements sent by a thread while the scope is open. Closing it
+     * reports the work if it sent more statements than allowed or sent
+     * the same statement too many times.
+     */
+    public final class Scope implements AutoCloseable {
+        private final Scope parent;
+        private final Map<String, Integer> counts = new HashMap<>();
+        private String name;
+        private int total;
+        private boolean closed;
+
+        private Scope(String name, Scope parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        private void add(String shape) {
+            total++;
+            counts.merge(shape, 1, Integer::sum);
+        }
+
+        /**
+         * Changes the name of the work, once it is better known (such as
+         * the endpoint matched by the request).
+         * @param name the new name of the work
+         */
+        public void rename(String name) {
+            this.name = Objects.requireNonNull(name);
+        }
+
+        /**
+         * Gets the number of statements sent since the scope is open
+         * @return the number of statements
+         */
+        public int total() {
+            return total;
+        }
+
+        /**
+         * Gets the number of times the statement sent the most was sent
+         * @return the number of repeats, 0 if no statement was sent
+         */
+        public int maxRepeats() {
+            return counts.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        }
+
+        /**
+         * Gets the number of statements sent for each shape
+         * @return the number of statements of each shape
+         */
+        public Map<String, Integer> counts() {
+            return Map.copyOf(counts);
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            current.set(parent);
+            if (parent == null) current.remove();
+            var repeated = counts.entrySet().stream().max(Map.Entry.comparingByValue());
+            if (repeated.isEmpty()) return;
+            var shape = repeated.get();
+            if (shape.getValue() > maxRepeats) {
+                LOGGER.warn("N+1 suspected in {}: {} sent {} times ({} statements in total)",
+                    name, shape.getKey(), shape.getValue(), total);
+            } else if (total > maxStatements) {
+                LOGGER.warn("{} sent {} statements, the most repeated being {} ({} times)",
+                    name, total, shape.getKey(), shape.getValue());
+            }
+        }
+    }
+}
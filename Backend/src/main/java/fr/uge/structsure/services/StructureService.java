@@ -3,14 +3,20 @@ package fr.uge.structsure.services;
 import fr.uge.structsure.dto.plan.PlanDTO;
 import fr.uge.structsure.dto.sensors.AllSensorsByStructureRequestDTO;
 import fr.uge.structsure.dto.structure.*;
+import fr.uge.structsure.entities.Account;
 import fr.uge.structsure.entities.Role;
 import fr.uge.structsure.entities.Structure;
 import fr.uge.structsure.exceptions.Error;
 import fr.uge.structsure.exceptions.TraitementException;
 import fr.uge.structsure.repositories.*;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp;
 import java.util.*;
@@ -31,12 +37,19 @@ public class StructureService {
     private final AccountRepository accountRepository;
 
     private final StructureRepositoryCriteriaQuery structureRepositoryCriteriaQuery;
+    private final StructureSummaryWriter summaryWriter;
+    private final AccountCache accountCache;
+
+    @PersistenceContext
+    private EntityManager em;
 
     /**
      * The consturctor for the structure service
      * @param structureRepository the structure repository
      * @param sensorRepository the sensor repository
      * @param planRepository the plan repository
+     * @param summaryWriter the writer of the structures summary
+     * @param accountCache the cache of the accounts, to refresh the access of the creator
      */
     @Autowired
     public StructureService(
@@ -44,7 +57,8 @@ public class StructureService {
         PlanRepository planRepository, ScanRepository scanRepository,
         AccountRepository accountRepository, AppLogService appLogService,
         StructureRepositoryCriteriaQuery structureRepositoryCriteriaQuery,
-        SensorRepositoryCriteriaQuery sensorCriteriaQuery, AuthValidationService authValidationService
+        SensorRepositoryCriteriaQuery sensorCriteriaQuery, AuthValidationService authValidationService,
+        StructureSummaryWriter summaryWriter, AccountCache accountCache
     ) {
         this.sensorRepository = Objects.requireNonNull(sensorRepository);
         this.structureRepository = Objects.requireNonNull(structureRepository);
@@ -55,6 +69,17 @@ public class StructureService {
         this.sensorCriteriaQuery = sensorCriteriaQuery;
         this.authValidationService = authValidationService;
         this.accountRepository = accountRepository;
+        this.summaryWriter = Objects.requireNonNull(summaryWriter);
+        this.accountCache = Objects.requireNonNull(accountCache);
+    }
+
+    /**
+     * Creates the dashboard summary of the structures that do not
+     * have one yet, like the ones created before the summaries existed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createMissingSummaries() {
+        summaryWriter.refreshMissing();
     }
 
     /**
@@ -82,6 +107,8 @@ public class StructureService {
      *               ({@code Error.STRUCTURE_NOTE_EXCEED_LIMIT}).</li>
      *           <li>A structure with the same name already exists
      *               ({@code Error.STRUCTURE_NAME_ALREADY_EXISTS}).</li>
+     *           <li>The user sending the request is not found
+     *               ({@code Error.INVALID_TOKEN}).</li>
      *         </ul>
      */
     public AddStructureAnswerDTO createStructure(
@@ -89,13 +116,13 @@ public class StructureService {
         AddStructureRequestDTO addStructureRequestDTO
     ) throws TraitementException {
         structurePrecondition(addStructureRequestDTO);
+        var user = authValidationService.currentUser(request);
         var structure = new Structure(addStructureRequestDTO.name(), addStructureRequestDTO.note(), false);
+        structure.add(em.getReference(Account.class, user.id()));
         var result = structureRepository.save(structure);
+        summaryWriter.refresh(result.getId());
         appLogs.addStructure(request, structure);
-        var account = appLogs.currentAccount(request);
-        account.add(structure);
-        structure.add(account);
-        accountRepository.save(account);
+        accountCache.invalidate(user.login());
         return new AddStructureAnswerDTO(result.getId(), new Timestamp(System.currentTimeMillis()).toString());
     }
 
@@ -237,28 +264,54 @@ public class StructureService {
 
     /**
      * Returns the structures with state for each structure, if it's archived or not, number of sensors in the structure
-     * and also with the number of plans
+     * and also with the number of plans. The whole listing is returned, see {@link #getStructuresPage} to get it
+     * page by page.
      * @param allStructureRequestDTO The request DTO
      * @param httpRequest The http request to check the permission
      * @return List<AllStructureResponseDTO> the list containing of the structures
      * @throws TraitementException in case of wrong behaviour
      */
+    @Transactional(readOnly = true)
     public List<AllStructureResponseDTO> getAllStructure(AllStructureRequestDTO allStructureRequestDTO, HttpServletRequest httpRequest) throws TraitementException {
         Objects.requireNonNull(httpRequest);
         allStructureRequestDTO.checkFields();
-        var userSessionAccount = authValidationService.checkTokenValidityAndUserAccessVerifier(httpRequest, accountRepository);
-        if (userSessionAccount.getRole() == Role.OPERATEUR) {
+        var userSessionAccount = authValidationService.currentUser(httpRequest);
+        allStructureRequestDTO = allStructureRequestDTO.unpaged();
+        if (userSessionAccount.role() == Role.OPERATEUR) {
             allStructureRequestDTO = allStructureRequestDTO.setArchived(false);
         }
-        var structures = structureRepositoryCriteriaQuery.findAllStructuresWithState(allStructureRequestDTO);
-        var allowedStructures = userSessionAccount.getAllowedStructures();
-        if (userSessionAccount.getRole() != Role.ADMIN){
-            return structures.stream()
-                    .filter(structure -> allowedStructures.stream()
-                            .anyMatch(allowedStructure -> allowedStructure.getId() == structure.id()))
-                    .toList();
+        return structureRepositoryCriteriaQuery.findAllStructuresWithState(allStructureRequestDTO, restrictedTo(userSessionAccount));
+    }
+
+    /**
+     * Returns a page of the structures listing along with the total
+     * number of structures matching the filters.
+     * @param allStructureRequestDTO The request DTO, containing the limit and the cursor of the page
+     * @param httpRequest The http request to check the permission
+     * @return the page of structures
+     * @throws TraitementException in case of wrong behaviour
+     */
+    @Transactional(readOnly = true)
+    public StructurePageDTO getStructuresPage(AllStructureRequestDTO allStructureRequestDTO, HttpServletRequest httpRequest) throws TraitementException {
+        Objects.requireNonNull(httpRequest);
+        allStructureRequestDTO.checkFields();
+        var userSessionAccount = authValidationService.currentUser(httpRequest);
+        if (userSessionAccount.role() == Role.OPERATEUR) {
+            allStructureRequestDTO = allStructureRequestDTO.setArchived(false);
         }
-        return structures;
+        var accountId = restrictedTo(userSessionAccount);
+        var structures = structureRepositoryCriteriaQuery.findAllStructuresWithState(allStructureRequestDTO, accountId);
+        var total = structureRepositoryCriteriaQuery.countStructures(allStructureRequestDTO, accountId);
+        return new StructurePageDTO(total, structures, StructureRepositoryCriteriaQuery.nextCursor(allStructureRequestDTO, structures));
+    }
+
+    /**
+     * Gets the account whose allowed structures the given user can see
+     * @param account the account of the user
+     * @return the id of the account, or null if the user can see all the structures
+     */
+    private static Long restrictedTo(AccountCache.Snapshot account) {
+        return account.role() == Role.ADMIN ? null : account.id();
     }
 
     /**
@@ -271,6 +324,7 @@ public class StructureService {
      * @return the data of the structure
      * @throws TraitementException if the structure cannot be found
      */
+    @Transactional(readOnly = true)
     public StructureResponseDTO downloadStructureAndroid(Long id) throws TraitementException {
         Objects.requireNonNull(id);
         var structure = structureRepository.findById(id).orElseThrow(
@@ -290,11 +344,11 @@ public class StructureService {
      * @return the record containing the detail
      * @throws TraitementException thrown custom exceptions
      */
+    @Transactional(readOnly = true)
     public StructureDetailsResponseDTO structureDetail(long id, HttpServletRequest httpServletRequest) throws TraitementException {
         Objects.requireNonNull(httpServletRequest);
-        var userSessionAccount = authValidationService.checkTokenValidityAndUserAccessVerifier(httpServletRequest, accountRepository);
-        var allowedStructures = userSessionAccount.getAllowedStructures();
-        if (userSessionAccount.getRole() != Role.ADMIN && allowedStructures.stream().noneMatch(structure -> structure.getId() == id)){
+        var userSessionAccount = authValidationService.currentUser(httpServletRequest);
+        if (userSessionAccount.role() != Role.ADMIN && !userSessionAccount.allowedStructures().contains(id)){
             throw new TraitementException(Error.UNAUTHORIZED_OPERATION);
         }
         var structureOpt = structureRepository.findById(id);
@@ -0,0 +1,155 @@
+package fr.uge.structsure.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorEditDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.exceptions.Error;
+import fr.uge.structsure.exceptions.TraitementException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Reads an {@link AndroidScanResultDTO} JSON document token by token
+ * so that the results and the edits of the scan are never all loaded
+ * in memory at the same time.
+ * The scan metadata (structureId, launchDate, login...) must be placed
+ * before the results and sensorEdits arrays in the document, which is
+ * the order used by the Android application.
+ */
+public class AndroidScanReader {
+    private final ObjectMapper mapper;
+
+    /**
+     * Handler receiving the parts of the scan while it is read.
+     */
+    public interface Handler {
+        /**
+         * Called once, before any result or edit, with the metadata
+         * of the scan (its results and edits lists are empty).
+         * @param metadata the metadata of the scan
+         * @throws TraitementException to abort the reading
+         */
+        void onMetadata(AndroidScanResultDTO metadata) throws TraitementException;
+
+        /**
+         * Called for each result of the scan.
+         * @param result the result of one sensor
+         * @throws TraitementException to abort the reading
+         */
+        void onResult(AndroidSensorResultDTO result) throws TraitementException;
+
+        /**
+         * Called for each sensor edition of the scan.
+         * @param edit the edition of one sensor
+         * @throws TraitementException to abort the reading
+         */
+        void onEdit(AndroidSensorEditDTO edit) throws TraitementException;
+    }
+
+    /** Consumer of array elements that may abort the reading */
+    @FunctionalInterface
+    private interface ElementHandler<T> {
+        void accept(T element) throws TraitementException;
+    }
+
+    /**
+     * Creates a new reader using the given mapper to bind the results
+     * and the edits.
+     * @param mapper the mapper used to bind the elements
+     */
+    public AndroidScanReader(ObjectMapper mapper) {
+        this.mapper = Objects.requireNonNull(mapper);
+    }
+
+    /**
+     * Reads the whole scan from the given stream and sends its parts to
+     * the given handler.
+     * @param input the stream containing the JSON scan
+     * @param handler the handler to send the scan parts to
+     * @throws TraitementException if the JSON is malformed or if the
+     *     handler aborts the reading
+     */
+    public void read(InputStream input, Handler handler) throws TraitementException {
+        try (var parser = mapper.getFactory().createParser(input)) {
+            new Reading(parser, handler).run();
+        } catch (IOException e) {
+            throw new TraitementException(Error.INVALID_FIELDS);
+        }
+    }
+
+    /**
+     * State of the reading of one document
+     */
+    private final class Reading {
+        private final JsonParser parser;
+        private final Handler handler;
+        private boolean metadataSent;
+        private Long structureId;
+        private Long scanId;
+        private String launchDate;
+        private String scanNote;
+        private String structureNote;
+        private String login;
+
+        private Reading(JsonParser parser, Handler handler) {
+            this.parser = parser;
+            this.handler = handler;
+        }
+
+        private void run() throws IOException, TraitementException {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new TraitementException(Error.INVALID_FIELDS);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var name = parser.currentName();
+                var token = parser.nextToken();
+                switch (name) {
+                    case "results" -> readArray(token, AndroidSensorResultDTO.class, handler::onResult);
+                    case "sensorEdits" -> readArray(token, AndroidSensorEditDTO.class, handler::onEdit);
+                    case "structureId" -> structureId = metadata(token) ? parser.getLongValue() : null;
+                    case "scanId" -> scanId = metadata(token) ? parser.getLongValue() : null;
+                    case "launchDate" -> launchDate = metadata(token) ? parser.getText() : null;
+                    case "scanNote" -> scanNote = metadata(token) ? parser.getText() : null;
+                    case "structureNote" -> structureNote = metadata(token) ? parser.getText() : null;
+                    case "login" -> login = metadata(token) ? parser.getText() : null;
+                    default -> parser.skipChildren();
+                }
+            }
+            sendMetadata();
+        }
+
+        /**
+         * Makes sure that metadata are not read after the metadata has
+         * already been sent to the handler.
+         * @param token the value of the metadata field
+         * @return true if the value is not null
+         * @throws TraitementException if the metadata comes too late
+         */
+        private boolean metadata(JsonToken token) throws TraitementException {
+            if (metadataSent) throw new TraitementException(Error.INVALID_FIELDS);
+            return token != JsonToken.VALUE_NULL;
+        }
+
+        private void sendMetadata() throws TraitementException {
+            if (metadataSent) return;
+            metadataSent = true;
+            handler.onMetadata(new AndroidScanResultDTO(
+                structureId, scanId, launchDate, scanNote, structureNote, login, List.of(), List.of()
+            ));
+        }
+
+        private <T> void readArray(JsonToken token, Class<T> type, ElementHandler<T> elements)
+            throws IOException, TraitementException {
+            if (token == JsonToken.VALUE_NULL) return;
+            if (token != JsonToken.START_ARRAY) throw new TraitementException(Error.INVALID_FIELDS);
+            sendMetadata();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                elements.accept(mapper.readValue(parser, type));
+            }
+        }
+    }
+}
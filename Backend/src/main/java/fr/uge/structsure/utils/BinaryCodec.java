@@ -0,0 +1,464 @@
+package fr.uge.structsure.utils;
+
+import fr.uge.structsure.dto.ErrorDTO;
+import fr.uge.structsure.dto.plan.PlanDTO;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorEditDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.dto.sensors.SensorDTO;
+import fr.uge.structsure.dto.structure.StructureResponseDTO;
+import fr.uge.structsure.entities.State;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Compact binary representation of the payloads exchanged with the
+ * Android application, to save bandwidth on metered connections.
+ * <p>
+ * A document starts with the magic bytes {@code SS}, the version of
+ * the format and the type of the payload. Then comes a table of the
+ * chip ids used in the payload, referenced by their index in the rest
+ * of the document. Numbers are written as variable-length integers
+ * (zigzag encoded if they can be negative), states as their ordinal.
+ * Nullable values are shifted by one so that 0 means null.
+ */
+public final class BinaryCodec {
+    private static final int MAGIC = ('S' << 8) | 'S';
+    private static final int VERSION = 1;
+    private static final int SCAN = 1;
+    private static final int STRUCTURE = 2;
+    private static final int ERROR = 3;
+    private static final State[] STATES = State.values();
+
+    private BinaryCodec() {
+        throw new AssertionError("No instances");
+    }
+
+    /**
+     * Writes the given scan in the output.
+     * @param scan the scan to encode
+     * @param output the stream to write the scan into
+     * @throws IOException if the output fails
+     */
+    public static void encode(AndroidScanResultDTO scan, OutputStream output) throws IOException {
+        var chips = new ChipTable();
+        var results = orEmpty(scan.results());
+        var edits = orEmpty(scan.sensorEdits());
+        results.forEach(result -> chips.addSensorId(result.sensorId()));
+        edits.forEach(edit -> {
+            chips.addSensorId(edit.sensorId());
+            chips.add(edit.controlChip());
+            chips.add(edit.measureChip());
+        });
+
+        var out = new BinaryWriter(output);
+        out.header(SCAN);
+        chips.write(out);
+        out.nullableLong(scan.structureId());
+        out.nullableLong(scan.scanId());
+        out.string(scan.launchDate());
+        out.string(scan.scanNote());
+        out.string(scan.structureNote());
+        out.string(scan.login());
+        out.varint(results.size());
+        for (var result : results) {
+            chips.writeSensorId(out, result.sensorId());
+            state(out, result.state());
+        }
+        out.varint(edits.size());
+        for (var edit : edits) {
+            chips.writeSensorId(out, edit.sensorId());
+            chips.writeRef(out, edit.controlChip());
+            chips.writeRef(out, edit.measureChip());
+            out.string(edit.name());
+            out.string(edit.note());
+            out.nullableLong(edit.plan());
+            out.nullableInt(edit.x());
+            out.nullableInt(edit.y());
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a scan from the input.
+     * @param input the stream containing the encoded scan
+     * @return the decoded scan
+     * @throws IOException if the input fails or is not a scan
+     */
+    public static AndroidScanResultDTO decodeScan(InputStream input) throws IOException {
+        var in = new BinaryReader(input);
+        in.header(SCAN);
+        var chips = ChipTable.read(in);
+        var structureId = in.nullableLong();
+        var scanId = in.nullableLong();
+        var launchDate = in.string();
+        var scanNote = in.string();
+        var structureNote = in.string();
+        var login = in.string();
+        var resultCount = in.count();
+        var results = new ArrayList<AndroidSensorResultDTO>(Math.min(resultCount, 1024));
+        for (var i = 0; i < resultCount; i++) {
+            results.add(new AndroidSensorResultDTO(chips.readSensorId(in), state(in)));
+        }
+        var editCount = in.count();
+        var edits = new ArrayList<AndroidSensorEditDTO>(Math.min(editCount, 1024));
+        for (var i = 0; i < editCount; i++) {
+            edits.add(new AndroidSensorEditDTO(
+                chips.readSensorId(in), chips.readRef(in), chips.readRef(in),
+                in.string(), in.string(), in.nullableLong(), in.nullableInt(), in.nullableInt()
+            ));
+        }
+        return new AndroidScanResultDTO(structureId, scanId, launchDate, scanNote, structureNote, login, results, edits);
+    }
+
+    /**
+     * Writes the given structure in the output.
+     * @param structure the structure to encode
+     * @param output the stream to write the structure into
+     * @throws IOException if the output fails
+     */
+    public static void encode(StructureResponseDTO structure, OutputStream output) throws IOException {
+        var chips = new ChipTable();
+        var plans = orEmpty(structure.plans());
+        var sensors = orEmpty(structure.sensors());
+        sensors.forEach(sensor -> {
+            chips.add(sensor.controlChip());
+            chips.add(sensor.measureChip());
+        });
+
+        var out = new BinaryWriter(output);
+        out.header(STRUCTURE);
+        chips.write(out);
+        out.nullableLong(structure.id());
+        out.string(structure.name());
+        out.string(structure.note());
+        out.varint(plans.size());
+        for (var plan : plans) {
+            out.varlong(zigzag(plan.id()));
+            out.string(plan.name());
+            out.string(plan.imageUrl());
+            out.string(plan.section());
+        }
+        out.varint(sensors.size());
+        for (var sensor : sensors) {
+            chips.writeRef(out, sensor.controlChip());
+            chips.writeRef(out, sensor.measureChip());
+            out.string(sensor.name());
+            out.string(sensor.note());
+            out.varint(sensor.state() == null ? 0 : sensor.state().ordinal() + 1);
+            out.varint(sensor.archived() == null ? 0 : sensor.archived() ? 2 : 1);
+            out.nullableLong(sensor.installationDate() == null ? null : sensor.installationDate().toEpochDay());
+            out.nullableLong(sensor.plan());
+            out.nullableInt(sensor.x());
+            out.nullableInt(sensor.y());
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a structure from the input.
+     * @param input the stream containing the encoded structure
+     * @return the decoded structure
+     * @throws IOException if the input fails or is not a structure
+     */
+    public static StructureResponseDTO decodeStructure(InputStream input) throws IOException {
+        var in = new BinaryReader(input);
+        in.header(STRUCTURE);
+        var chips = ChipTable.read(in);
+        var id = in.nullableLong();
+        var name = in.string();
+        var note = in.string();
+        var planCount = in.count();
+        var plans = new ArrayList<PlanDTO>(Math.min(planCount, 1024));
+        for (var i = 0; i < planCount; i++) {
+            plans.add(new PlanDTO(unzigzag(in.varlong()), in.string(), in.string(), in.string()));
+        }
+        var sensorCount = in.count();
+        var sensors = new ArrayList<SensorDTO>(Math.min(sensorCount, 1024));
+        for (var i = 0; i < sensorCount; i++) {
+            var controlChip = chips.readRef(in);
+            var measureChip = chips.readRef(in);
+            var sensorName = in.string();
+            var sensorNote = in.string();
+            var state = in.varint();
+            if (state > STATES.length) throw new IOException("Unknown state " + state);
+            var archived = in.varint();
+            var installationDate = in.nullableLong();
+            sensors.add(new SensorDTO(
+                controlChip, measureChip, sensorName, sensorNote,
+                state == 0 ? null : STATES[state - 1],
+                archived == 0 ? null : archived == 2,
+                installationDate == null ? null : LocalDate.ofEpochDay(installationDate),
+                in.nullableLong(), in.nullableInt(), in.nullableInt()
+            ));
+        }
+        return new StructureResponseDTO(id, name, note, plans, sensors);
+    }
+
+    /**
+     * Writes the given error in the output.
+     * @param error the error to encode
+     * @param output the stream to write the error into
+     * @throws IOException if the output fails
+     */
+    public static void encode(ErrorDTO error, OutputStream output) throws IOException {
+        var out = new BinaryWriter(output);
+        out.header(ERROR);
+        out.string(error.error());
+        out.flush();
+    }
+
+    /**
+     * Reads an error from the input.
+     * @param input the stream containing the encoded error
+     * @return the decoded error
+     * @throws IOException if the input fails or is not an error
+     */
+    public static ErrorDTO decodeError(InputStream input) throws IOException {
+        var in = new BinaryReader(input);
+        in.header(ERROR);
+        var message = in.string();
+        if (message == null) throw new IOException("Missing error message");
+        return new ErrorDTO(message);
+    }
+
+    /**
+     * Writes a state name as its ordinal, unknown names are written
+     * as is after a 0 marker.
+     */
+    private static void state(BinaryWriter out, String state) throws IOException {
+        for (var value : STATES) {
+            if (value.name().equals(state)) {
+                out.varint(value.ordinal() + 1);
+                return;
+            }
+        }
+        out.varint(0);
+        out.string(state);
+    }
+
+    private static String state(BinaryReader in) throws IOException {
+        var ordinal = in.varint();
+        if (ordinal == 0) return in.string();
+        if (ordinal > STATES.length) throw new IOException("Unknown state " + ordinal);
+        return STATES[ordinal - 1].name();
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Table of the distinct chip ids of a document
+     */
+    private static final class ChipTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> chips = new ArrayList<>();
+
+        private void add(String chip) {
+            if (chip == null) return;
+            if (indexes.putIfAbsent(chip, chips.size()) == null) chips.add(chip);
+        }
+
+        private void addSensorId(String sensorId) {
+            var parts = split(sensorId);
+            if (parts == null) return;
+            add(parts[0]);
+            add(parts[1]);
+        }
+
+        private void write(BinaryWriter out) throws IOException {
+            out.varint(chips.size());
+            for (var chip : chips) out.string(chip);
+        }
+
+        private static ChipTable read(BinaryReader in) throws IOException {
+            var table = new ChipTable();
+            var size = in.count();
+            for (var i = 0; i < size; i++) {
+                var chip = in.string();
+                if (chip == null) throw new IOException("Null chip in table");
+                table.chips.add(chip);
+            }
+            return table;
+        }
+
+        /** Writes a reference to a chip of the table, 0 for null */
+        private void writeRef(BinaryWriter out, String chip) throws IOException {
+            out.varint(chip == null ? 0 : indexes.get(chip) + 1);
+        }
+
+        private String readRef(BinaryReader in) throws IOException {
+            var ref = in.varint();
+            if (ref == 0) return null;
+            if (ref > chips.size()) throw new IOException("Unknown chip " + ref);
+            return chips.get(ref - 1);
+        }
+
+        /**
+         * Writes a "CONTROL-MEASURE" sensor id as two references. Ids
+         * that cannot be split are written as is after a 0 marker.
+         */
+        private void writeSensorId(BinaryWriter out, String sensorId) throws IOException {
+            var parts = split(sensorId);
+            if (parts == null) {
+                out.varint(0);
+                out.string(sensorId);
+                return;
+            }
+            writeRef(out, parts[0]);
+            writeRef(out, parts[1]);
+        }
+
+        private String readSensorId(BinaryReader in) throws IOException {
+            var control = readRef(in);
+            if (control == null) return in.string();
+            var measure = readRef(in);
+            if (measure == null) throw new IOException("Missing measure chip");
+            return control + "-" + measure;
+        }
+
+        private static String[] split(String sensorId) {
+            if (sensorId == null) return null;
+            var separator = sensorId.indexOf('-');
+            if (separator <= 0 || separator == sensorId.length() - 1) return null;
+            if (sensorId.indexOf('-', separator + 1) != -1) return null;
+            return new String[] { sensorId.substring(0, separator), sensorId.substring(separator + 1) };
+        }
+    }
+
+    /**
+     * Low level writer of variable-length integers and strings
+     */
+    private static final class BinaryWriter {
+        private final OutputStream output;
+
+        private BinaryWriter(OutputStream output) {
+            this.output = new BufferedOutputStream(output);
+        }
+
+        private void header(int type) throws IOException {
+            output.write(MAGIC >> 8);
+            output.write(MAGIC & 0xFF);
+            output.write(VERSION);
+            output.write(type);
+        }
+
+        private void varint(int value) throws IOException {
+            varlong(Integer.toUnsignedLong(value));
+        }
+
+        private void varlong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                output.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            output.write((int) value);
+        }
+
+        private void nullableLong(Long value) throws IOException {
+            varlong(value == null ? 0 : zigzag(value) + 1);
+        }
+
+        private void nullableInt(Integer value) throws IOException {
+            nullableLong(value == null ? null : value.longValue());
+        }
+
+        /** Writes the length + 1 (0 for null) followed by the UTF-8 bytes */
+        private void string(String value) throws IOException {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            var bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1);
+            output.write(bytes);
+        }
+
+        private void flush() throws IOException {
+            output.flush();
+        }
+    }
+
+    /**
+     * Low level reader of variable-length integers and strings
+     */
+    private static final class BinaryReader {
+        /** Maximum size of a string or a list, to reject corrupted inputs */
+        private static final int MAX_LENGTH = 16 * 1024 * 1024;
+        private final InputStream input;
+
+        private BinaryReader(InputStream input) {
+            this.input = new BufferedInputStream(input);
+        }
+
+        private void header(int type) throws IOException {
+            var magic = (readByte() << 8) | readByte();
+            if (magic != MAGIC) throw new IOException("Not a StructSure binary document");
+            var version = readByte();
+            if (version != VERSION) throw new IOException("Unsupported version " + version);
+            var actual = readByte();
+            if (actual != type) throw new IOException("Unexpected payload type " + actual);
+        }
+
+        private int readByte() throws IOException {
+            var value = input.read();
+            if (value == -1) throw new EOFException();
+            return value;
+        }
+
+        private long varlong() throws IOException {
+            var value = 0L;
+            for (var shift = 0; shift < 64; shift += 7) {
+                var b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private int varint() throws IOException {
+            var value = varlong();
+            if (value > Integer.MAX_VALUE) throw new IOException("Value too large " + value);
+            return (int) value;
+        }
+
+        /** Reads a size of list, bounded to reject corrupted inputs */
+        private int count() throws IOException {
+            var count = varint();
+            if (count > MAX_LENGTH) throw new IOException("Size too large " + count);
+            return count;
+        }
+
+        private Long nullableLong() throws IOException {
+            var value = varlong();
+            return value == 0 ? null : unzigzag(value - 1);
+        }
+
+        private Integer nullableInt() throws IOException {
+            var value = nullableLong();
+            if (value == null) return null;
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) throw new IOException("Value too large " + value);
+            return value.intValue();
+        }
+
+        private String string() throws IOException {
+            var length = count();
+            if (length == 0) return null;
+            var bytes = input.readNBytes(length - 1);
+            if (bytes.length != length - 1) throw new EOFException();
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package fr.uge.structsure.utils;
+
+import fr.uge.structsure.exceptions.Error;
+import fr.uge.structsure.exceptions.TraitementException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Position in a sorted listing, given to the client as an opaque token
+ * to get the next page. Instead of skipping rows with an offset, the
+ * next page starts right after the sort value and the identifier of the
+ * last returned row, so deep pages cost the same as the first one.
+ * @param column the column the listing is sorted by
+ * @param order the order of the listing
+ * @param value the sort value of the last returned row (nullable)
+ * @param keys the identifier of the last returned row
+ */
+public record KeysetCursor(String column, String order, String value, List<String> keys) {
+    private static final char SEPARATOR = '\n';
+    private static final String NULL = "\u0000";
+
+    public KeysetCursor {
+        Objects.requireNonNull(column);
+        Objects.requireNonNull(order);
+        keys = List.copyOf(keys);
+    }
+
+    /**
+     * Converts this cursor to the token sent to the client
+     * @return the token
+     */
+    public String encode() {
+        var raw = new StringBuilder().append(escape(column)).append(SEPARATOR).append(escape(order))
+            .append(SEPARATOR).append(value == null ? NULL : escape(value));
+        for (var key : keys) raw.append(SEPARATOR).append(escape(key));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the given token and checks that it has been created for a
+     * listing sorted the same way.
+     * @param token the token sent by the client
+     * @param column the column the listing is sorted by
+     * @param order the order of the listing
+     * @param keyCount the number of values in the identifier of a row
+     * @return the decoded cursor
+     * @throws TraitementException INCORRECT_FIELD_VALUE if the token is malformed
+     *     or does not match the requested sort
+     */
+    public static KeysetCursor decode(String token, String column, String order, int keyCount) throws TraitementException {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new TraitementException(Error.INCORRECT_FIELD_VALUE);
+        }
+        var parts = split(raw);
+        if (parts.size() != 3 + keyCount || !parts.get(0).equals(column) || !parts.get(1).equals(order)) {
+            throw new TraitementException(Error.INCORRECT_FIELD_VALUE);
+        }
+        var value = parts.get(2);
+        return new KeysetCursor(column, order, NULL.equals(value) ? null : value, parts.subList(3, parts.size()));
+    }
+
+    private static String escape(String part) {
+        return part.replace("\\", "\\\\").replace("\n", "\\n").replace(NULL, "\\0");
+    }
+
+    private static List<String> split(String raw) {
+        var parts = new ArrayList<String>();
+        var current = new StringBuilder();
+        for (var i = 0; i < raw.length(); i++) {
+            var c = raw.charAt(i);
+            if (c == SEPARATOR) {
+                parts.add(current.toString());
+                current.setLength(0);
+            } else if (c == '\\' && i + 1 < raw.length()) {
+                var next = raw.charAt(++i);
+                current.append(switch (next) {
+                    case 'n' -> '\n';
+                    case '0' -> '\u0000';
+                    default -> next;
+                });
+            } else {
+                current.append(c);
+            }
+        }
+        parts.add(current.toString());
+        return parts;
+    }
+}
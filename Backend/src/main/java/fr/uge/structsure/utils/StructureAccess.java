@@ -0,0 +1,65 @@
+package fr.uge.structsure.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Compact and immutable set of the ids of the structures an account can
+ * access. The ids are kept in a sorted array of primitives, so checking
+ * an access is a binary search without any boxing and a few hundred
+ * allowed structures only take a few kilobytes.
+ */
+public final class StructureAccess {
+    private static final StructureAccess NONE = new StructureAccess(new long[0]);
+
+    private final long[] ids;
+
+    private StructureAccess(long[] ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Creates the index of the given structure ids
+     * @param structureIds the ids of the allowed structures, duplicates are ignored
+     * @return the index
+     */
+    public static StructureAccess of(Collection<Long> structureIds) {
+        Objects.requireNonNull(structureIds);
+        if (structureIds.isEmpty()) return NONE;
+        var sorted = structureIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        return new StructureAccess(sorted);
+    }
+
+    /**
+     * Checks if the structure with the given id is allowed
+     * @param structureId the id of the structure
+     * @return true if the structure is allowed, false otherwise
+     */
+    public boolean contains(long structureId) {
+        return Arrays.binarySearch(ids, structureId) >= 0;
+    }
+
+    /**
+     * Gets the number of allowed structures
+     * @return the number of structures
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof StructureAccess other && Arrays.equals(ids, other.ids);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ids);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(ids);
+    }
+}
@@ -0,0 +1,25 @@
+-- Current state of the sensors and dashboard summary of the structures,
+-- maintained when the results are saved. The states of the sensors having
+-- results and the missing summaries are computed at startup, see
+-- SensorService.rebuildStatesIfStale and StructureService.createMissingSummaries.
+
+ALTER TABLE sensor ADD COLUMN current_state INTEGER NOT NULL DEFAULT 3;
+ALTER TABLE sensor ADD COLUMN result_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE sensor ADD COLUMN last_scan_id bigint;
+CREATE INDEX sensor_structure_state_idx ON sensor (structure_id, current_state);
+
+CREATE TABLE structure_summary (
+    structure_id bigint PRIMARY KEY REFERENCES structure (id),
+    sensor_count bigint NOT NULL,
+    plan_count bigint NOT NULL,
+    nok_count bigint NOT NULL,
+    defective_count bigint NOT NULL,
+    ok_count bigint NOT NULL,
+    unknown_count bigint NOT NULL,
+    state tinyint
+);
+CREATE INDEX structure_summary_state_idx ON structure_summary (state);
+
+-- Results of a sensor and plans of a structure
+CREATE INDEX result_sensor_idx ON result (control_chip, measure_chip);
+CREATE INDEX plan_structure_idx ON plan (structure_id);
@@ -0,0 +1,39 @@
+-- Idempotent scans, asynchronous scan queue and resumable uploads.
+
+-- Fingerprint of the content of a scan, to recognize the scans sent again
+ALTER TABLE scan ADD COLUMN fingerprint varchar(64);
+CREATE UNIQUE INDEX scan_fingerprint_idx ON scan (fingerprint);
+
+CREATE TABLE pending_scan (
+    id integer PRIMARY KEY,
+    ticket varchar(36) NOT NULL UNIQUE,
+    payload TEXT,
+    submitter_id bigint REFERENCES account (id),
+    state tinyint,
+    error varchar(255),
+    scan_id bigint,
+    submitted_at timestamp,
+    started_at timestamp,
+    finished_at timestamp
+);
+CREATE INDEX pending_scan_state_idx ON pending_scan (state, id);
+
+CREATE TABLE upload_session (
+    id integer PRIMARY KEY,
+    upload_id varchar(36) NOT NULL UNIQUE,
+    submitter_id bigint REFERENCES account (id),
+    fingerprint varchar(64) NOT NULL,
+    metadata TEXT,
+    committed boolean NOT NULL,
+    scan_id bigint,
+    updated_at timestamp
+);
+CREATE INDEX upload_session_fingerprint_idx ON upload_session (fingerprint);
+
+CREATE TABLE upload_chunk (
+    id integer PRIMARY KEY,
+    session_id bigint REFERENCES upload_session (id),
+    chunk_index integer NOT NULL,
+    payload TEXT
+);
+CREATE UNIQUE INDEX upload_chunk_session_idx ON upload_chunk (session_id, chunk_index);
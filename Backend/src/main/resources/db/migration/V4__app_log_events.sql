@@ -0,0 +1,13 @@
+-- Log entries stored as an event type and its values, with the entities
+-- they concern. The entries written before keep their free-text message.
+
+ALTER TABLE app_log ADD COLUMN event tinyint;
+ALTER TABLE app_log ADD COLUMN params varchar(255);
+ALTER TABLE app_log ADD COLUMN structure_id bigint;
+ALTER TABLE app_log ADD COLUMN plan_id bigint;
+ALTER TABLE app_log ADD COLUMN scan_id bigint;
+ALTER TABLE app_log ADD COLUMN sensor_control_chip varchar(255);
+ALTER TABLE app_log ADD COLUMN sensor_measure_chip varchar(255);
+ALTER TABLE app_log ADD COLUMN account_id bigint;
+CREATE INDEX app_log_time_idx ON app_log (time, id);
+CREATE INDEX app_log_author_idx ON app_log (author_id);
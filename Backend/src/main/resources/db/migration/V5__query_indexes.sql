@@ -0,0 +1,21 @@
+-- Indexes backing the repository queries that were scanning their table.
+
+-- Results of a scan (ResultRepository.findByScanId, sensor states rebuild)
+CREATE INDEX IF NOT EXISTS result_scan_idx ON result (scan_id);
+
+-- Sensors of a plan (SensorRepository.findByPlan, plan archival)
+CREATE INDEX IF NOT EXISTS sensor_plan_idx ON sensor (plan_id);
+-- Sensors by measure chip, the control chip being the primary key prefix (findByChipTag)
+CREATE INDEX IF NOT EXISTS sensor_measure_chip_idx ON sensor (measure_chip);
+-- Sensors by name (findByName, name uniqueness)
+CREATE INDEX IF NOT EXISTS sensor_name_idx ON sensor (name);
+
+-- Scans of a structure (ScanRepository.findByStructure)
+CREATE INDEX IF NOT EXISTS scan_structure_idx ON scan (structure_id);
+
+-- Structures of an account (access checks), the primary key starting with the structure
+CREATE INDEX IF NOT EXISTS structure_account_login_idx ON structure_account (login);
+
+-- Retention of the processed scans and of the expired uploads
+CREATE INDEX IF NOT EXISTS pending_scan_finished_idx ON pending_scan (finished_at);
+CREATE INDEX IF NOT EXISTS upload_session_updated_idx ON upload_session (updated_at);
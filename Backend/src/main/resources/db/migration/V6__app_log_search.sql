@@ -0,0 +1,25 @@
+-- Full-text search in the log entries and listing of the entries by the
+-- entity they concern, see AppLogSearchRepository.
+
+CREATE VIRTUAL TABLE IF NOT EXISTS app_log_fts
+USING fts5(message, login, firstname, lastname, tokenize = 'trigram');
+
+-- The entries are indexed with their rendered message when inserted by
+-- AppLogBatchWriter, and the existing ones at startup
+
+CREATE TRIGGER IF NOT EXISTS app_log_fts_delete AFTER DELETE ON app_log BEGIN
+    DELETE FROM app_log_fts WHERE rowid = old.id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS app_log_fts_author AFTER UPDATE OF login, firstname, lastname ON account BEGIN
+    UPDATE app_log_fts SET login = new.login, firstname = new.firstname, lastname = new.lastname
+    WHERE rowid IN (SELECT id FROM app_log WHERE author_id = new.id);
+END;
+
+-- Indexes of the references, without the entries not having them
+CREATE INDEX IF NOT EXISTS app_log_structure_idx ON app_log (structure_id, time, id) WHERE structure_id IS NOT NULL;
+CREATE INDEX IF NOT EXISTS app_log_plan_idx ON app_log (plan_id, time, id) WHERE plan_id IS NOT NULL;
+CREATE INDEX IF NOT EXISTS app_log_scan_idx ON app_log (scan_id, time, id) WHERE scan_id IS NOT NULL;
+CREATE INDEX IF NOT EXISTS app_log_sensor_idx ON app_log (sensor_control_chip, sensor_measure_chip, time, id)
+    WHERE sensor_control_chip IS NOT NULL;
+CREATE INDEX IF NOT EXISTS app_log_account_idx ON app_log (account_id, time, id) WHERE account_id IS NOT NULL;
@@ -18,6 +18,8 @@ public class DataBaseTests {
 		if (initialized.getAndSet(true)) return;
 		try {
 			Files.deleteIfExists(Path.of("structsure-test.db"));
+			Files.deleteIfExists(Path.of("structsure-test.db-wal"));
+			Files.deleteIfExists(Path.of("structsure-test.db-shm"));
 		} catch (FileSystemException e) {
 			// Database in use (already cleaned)
 		}
@@ -0,0 +1,125 @@
+package fr.uge.structsure.benchmarks;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.config.AuthContext;
+import fr.uge.structsure.config.CustomUserDetailsService;
+import fr.uge.structsure.config.JwtFilter;
+import fr.uge.structsure.config.JwtUtils;
+import fr.uge.structsure.config.RequiresRole;
+import fr.uge.structsure.config.RoleFilter;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.services.AuthValidationService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the time spent to authenticate a request, comparing the
+ * legacy pipeline (token parsed and account loaded by each layer) with
+ * the {@link AuthContext} built once by the filters.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class AuthFilterBenchmarkTest extends DataBaseTests {
+    private static final int WARMUP = 200;
+    private static final int ROUNDS = 2000;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private JwtFilter jwtFilter;
+
+    @Autowired
+    private RoleFilter roleFilter;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private AuthValidationService authValidationService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private RequestMappingHandlerMapping handlerMapping;
+
+    @Test
+    void filterChainOverhead() throws Exception {
+        var login = "bench" + System.nanoTime();
+        accountRepository.save(new Account(login, "-", "Bench", "Mark", Role.ADMIN, true));
+        var token = "Bearer " + jwtUtils.generateToken(login);
+
+        for (var i = 0; i < WARMUP; i++) {
+            legacy(token);
+            current(token);
+        }
+        var start = System.nanoTime();
+        for (var i = 0; i < ROUNDS; i++) legacy(token);
+        var legacyTime = (System.nanoTime() - start) / ROUNDS / 1e3;
+        start = System.nanoTime();
+        for (var i = 0; i < ROUNDS; i++) current(token);
+        var currentTime = (System.nanoTime() - start) / ROUNDS / 1e3;
+
+        BenchmarkReport.print("authentication per request: legacy %7.1f us, single pass %7.1f us (%.1fx)",
+            legacyTime, currentTime, legacyTime / currentTime);
+    }
+
+    /**
+     * Reproduces the work done by the previous filters and services:
+     * three token parses and an account load in the JWT filter, the
+     * handler lookup and another account load in the role filter, and
+     * a last one in the service.
+     */
+    private void legacy(String token) throws Exception {
+        var request = request(token);
+        var jwt = token.substring(7);
+        var username = jwtUtils.extractUsername(jwt);
+        var userDetails = userDetailsService.loadUserByUsername(username);
+        assertTrue(jwtUtils.validateToken(jwt, userDetails));
+        jwtUtils.extractExpirationDate(jwt);
+
+        var handler = handlerMapping.getHandler(request);
+        assertNotNull(handler);
+        var role = ((HandlerMethod) handler.getHandler()).getMethodAnnotation(RequiresRole.class);
+        assertNotNull(role);
+        var account = accountRepository.findByLogin(jwtUtils.extractUsername(jwt)).orElseThrow();
+        assertTrue(account.getRole().ordinal() >= role.value().ordinal());
+        accountRepository.findByLogin(jwtUtils.extractUsername(jwt)).orElseThrow();
+    }
+
+    /** Runs the current filters and the service lookup of the account */
+    private void current(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        var request = request(token);
+        var response = new MockHttpServletResponse();
+        var chain = new MockFilterChain();
+        jwtFilter.doFilter(request, response, (req, res) -> roleFilter.doFilter(req, res, chain));
+        assertEquals(200, response.getStatus());
+        assertNotNull(chain.getRequest());
+        assertEquals(Role.RESPONSABLE, AuthContext.of(request).orElseThrow().requiredRole());
+        authValidationService.currentUser(request);
+    }
+
+    private static MockHttpServletRequest request(String token) {
+        var request = new MockHttpServletRequest("POST", "/api/structures");
+        request.setServletPath("/api/structures");
+        request.addHeader("Authorization", token);
+        return request;
+    }
+}
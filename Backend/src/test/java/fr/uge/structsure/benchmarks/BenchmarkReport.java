@@ -0,0 +1,37 @@
+package fr.uge.structsure.benchmarks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Reporting shared by the benchmarks: the measures are logged on a
+ * single logger so that they can be filtered or redirected like the
+ * other logs, and the latencies are summarized the same way.
+ */
+final class BenchmarkReport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BenchmarkReport.class);
+
+    private BenchmarkReport() {}
+
+    /**
+     * Logs a line of results of a benchmark
+     * @param format the format of the line, see {@link String#format}
+     * @param args the values of the line
+     */
+    static void print(String format, Object... args) {
+        if (LOGGER.isInfoEnabled()) LOGGER.info(String.format(format, args));
+    }
+
+    /**
+     * Gets a percentile of the given measures (nearest rank)
+     * @param sorted the measures, in ascending order
+     * @param percentile the percentile to get, between 0 and 1
+     * @return the value at this percentile, 0 if there is no measure
+     */
+    static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) return 0;
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.round(percentile * (sorted.size() - 1))));
+    }
+}
@@ -0,0 +1,73 @@
+package fr.uge.structsure.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorEditDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.entities.State;
+import fr.uge.structsure.utils.BinaryCodec;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the size and the encoding time of the Android scans in
+ * JSON and in the {@link BinaryCodec} format.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class BinaryCodecBenchmarkTest {
+    private static final int ROUNDS = 20;
+    private static final State[] STATES = State.values();
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+    @ParameterizedTest
+    @ValueSource(ints = { 100, 1000, 10_000 })
+    void encodeScan(int size) throws IOException {
+        var scan = scan(size);
+        var json = mapper.writeValueAsBytes(scan);
+        var binary = binary(scan);
+        assertEquals(scan, mapper.readValue(json, AndroidScanResultDTO.class));
+        assertEquals(scan, BinaryCodec.decodeScan(new ByteArrayInputStream(binary)));
+
+        var start = System.nanoTime();
+        for (var i = 0; i < ROUNDS; i++) mapper.readValue(mapper.writeValueAsBytes(scan), AndroidScanResultDTO.class);
+        var jsonTime = (System.nanoTime() - start) / ROUNDS / 1e6;
+        start = System.nanoTime();
+        for (var i = 0; i < ROUNDS; i++) BinaryCodec.decodeScan(new ByteArrayInputStream(binary(scan)));
+        var binaryTime = (System.nanoTime() - start) / ROUNDS / 1e6;
+
+        BenchmarkReport.print("%6d results: JSON %8d B %7.2f ms, binary %8d B %7.2f ms (%.0f%% of JSON size)",
+            size, json.length, jsonTime, binary.length, binaryTime, binary.length * 100.0 / json.length);
+    }
+
+    private static byte[] binary(AndroidScanResultDTO scan) throws IOException {
+        var output = new ByteArrayOutputStream();
+        BinaryCodec.encode(scan, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Creates a scan looking like the ones sent by the Android devices
+     * @param size the number of results of the scan
+     * @return the scan
+     */
+    private static AndroidScanResultDTO scan(int size) {
+        var results = new ArrayList<AndroidSensorResultDTO>(size);
+        for (var i = 0; i < size; i++) {
+            var sensorId = "E2000017221101441890" + String.format("%04X", i) + "-E2000017221101441891" + String.format("%04X", i);
+            results.add(new AndroidSensorResultDTO(sensorId, STATES[i % STATES.length].name()));
+        }
+        var edits = List.of(new AndroidSensorEditDTO(results.getFirst().sensorId(), null, null, "Capteur renommé", "Fissure", 1L, 120, 45));
+        return new AndroidScanResultDTO(1L, 42L, "2025-01-12 10:05:31.123", "Note du scan", "Note de l'ouvrage", "operateur", results, edits);
+    }
+}
@@ -0,0 +1,174 @@
+package fr.uge.structsure.benchmarks;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.dto.sensors.AllSensorsByStructureRequestDTO;
+import fr.uge.structsure.dto.structure.AllStructureRequestDTO;
+import fr.uge.structsure.entities.*;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.SensorRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import fr.uge.structsure.repositories.StructureRepositoryCriteriaQuery;
+import fr.uge.structsure.services.ScanService;
+import fr.uge.structsure.services.SensorService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static fr.uge.structsure.benchmarks.BenchmarkReport.percentile;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs scan ingestions concurrently with the structures and sensors
+ * listings, as when tablets upload their scans while the dashboard is
+ * used, and reports the throughput, the latency of the listings and
+ * the number of SQLITE_BUSY failures.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class DatabaseConcurrencyBenchmarkTest extends DataBaseTests {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final int SENSORS = 1000;
+    private static final int WRITERS = 4;
+    private static final int SCANS_PER_WRITER = 10;
+    private static final int READERS = 8;
+    private static final int LISTINGS_PER_READER = 50;
+
+    @Autowired
+    private ScanService scanService;
+
+    @Autowired
+    private SensorService sensorService;
+
+    @Autowired
+    private StructureRepositoryCriteriaQuery structureCriteriaQuery;
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void mixedIngestionAndListings() throws Exception {
+        var prefix = "C" + System.nanoTime() + "X";
+        var structure = structureRepository.save(new Structure("Concurrency " + prefix, "", false));
+        var account = accountRepository.save(new Account(prefix, "-", "Bench", "Mark", Role.OPERATEUR, true));
+        var results = seedSensors(structure, prefix).stream()
+            .map(id -> new AndroidSensorResultDTO(id.getControlChip() + "-" + id.getMeasureChip(), State.OK.name()))
+            .toList();
+        var readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        var structures = new AllStructureRequestDTO(prefix, Optional.empty(), Optional.empty(),
+            "NAME", "ASC", Optional.empty(), Optional.empty());
+        var sensors = new AllSensorsByStructureRequestDTO("NAME", "ASC",
+            null, null, null, null, null, null, false, null);
+
+        var busy = new AtomicInteger();
+        var failures = new AtomicInteger();
+        var latencies = Collections.synchronizedList(new ArrayList<Long>());
+        var tasks = new ArrayList<Callable<Void>>();
+        for (var w = 0; w < WRITERS; w++) {
+            final var writer = w;
+            tasks.add(() -> {
+                for (var i = 0; i < SCANS_PER_WRITER; i++) {
+                    var date = LocalDateTime.now().plusSeconds(writer * SCANS_PER_WRITER + i).format(DATE_FORMAT);
+                    var scan = new AndroidScanResultDTO(structure.getId(), (long) (writer * SCANS_PER_WRITER + i),
+                        date, "", "", account.getLogin(), results, List.of());
+                    run(() -> scanService.saveScanResults(account, scan), busy, failures);
+                }
+                return null;
+            });
+        }
+        for (var r = 0; r < READERS; r++) {
+            tasks.add(() -> {
+                for (var i = 0; i < LISTINGS_PER_READER; i++) {
+                    var start = System.nanoTime();
+                    run(() -> {
+                        readOnly.executeWithoutResult(status -> {
+                            try {
+                                structureCriteriaQuery.findAllStructuresWithState(structures, null);
+                            } catch (TraitementException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        });
+                        return sensorService.getSensors(structure.getId(), sensors);
+                    }, busy, failures);
+                    latencies.add(System.nanoTime() - start);
+                }
+                return null;
+            });
+        }
+
+        var start = System.nanoTime();
+        try (var executor = Executors.newFixedThreadPool(tasks.size())) {
+            for (var future : executor.invokeAll(tasks)) future.get();
+        }
+        var duration = System.nanoTime() - start;
+
+        var sorted = latencies.stream().sorted().toList();
+        BenchmarkReport.print("%d writers x %d scans of %d results with %d readers x %d listings: total %8.2f ms,"
+                + " listing p50 %7.2f ms, p95 %7.2f ms, max %7.2f ms, %d SQLITE_BUSY, %d other failures",
+            WRITERS, SCANS_PER_WRITER, SENSORS, READERS, LISTINGS_PER_READER, duration / 1e6,
+            percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.95) / 1e6, sorted.getLast() / 1e6,
+            busy.get(), failures.get());
+        assertEquals(0, busy.get());
+    }
+
+    /**
+     * Runs the given action, counting its failures.
+     * @param action the action to run
+     * @param busy the counter of the failures due to a locked database
+     * @param failures the counter of the other failures
+     */
+    private static void run(Callable<?> action, AtomicInteger busy, AtomicInteger failures) {
+        try {
+            action.call();
+        } catch (Exception e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause.getMessage() != null && cause.getMessage().contains("SQLITE_BUSY")) {
+                    busy.incrementAndGet();
+                    return;
+                }
+            }
+            failures.incrementAndGet();
+        }
+    }
+
+
+    /**
+     * Creates the sensors of the structure.
+     * @param structure the structure to add the sensors into
+     * @param prefix the prefix of the chips to avoid collisions
+     * @return the ids of the created sensors
+     */
+    private List<SensorId> seedSensors(Structure structure, String prefix) {
+        var created = new ArrayList<Sensor>(SENSORS);
+        for (var i = 0; i < SENSORS; i++) {
+            created.add(new Sensor(prefix + "C" + i, prefix + "M" + i, prefix + "S" + i, "", structure));
+        }
+        return sensorRepository.saveAll(created).stream().map(Sensor::getSensorId).toList();
+    }
+}
@@ -0,0 +1,514 @@
+package fr.uge.structsure.benchmarks;
+
+import fr.uge.structsure.entities.AppLogEvent;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.entities.State;
+import fr.uge.structsure.repositories.AppLogSearchRepository;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Fills a StructSure database with a synthetic dataset of a configurable
+ * shape: structures with their plans organized in sections, sensors
+ * placed on the plans, scans with their results and the log entries of
+ * all these creations. Rows are written with multi-rows INSERT
+ * statements on a single connection, so that millions of results only
+ * take minutes. Runs with the same seed and end date give the same data.
+ * <p>
+ * The database is migrated first and the rows are added after the
+ * existing ones. The structure summaries are not written, they are
+ * created by the application at startup. Log entries older than
+ * {@code logs.expiration-time.days} are purged by the application.
+ * <p>
+ * From the command line, with options named after the {@link Shape}
+ * components:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=fr.uge.structsure.benchmarks.DatasetGenerator \
+ *     -Dexec.args="--database=structsure.db --structures=100 --scansPerStructure=500"
+ * </pre>
+ */
+public final class DatasetGenerator {
+    /** Password of all the generated accounts */
+    public static final String PASSWORD = "password";
+
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+    private static final int MAX_COORDINATE = 1000;
+    private static final String[] SECTIONS = { "Pile", "Travee", "Niveau", "Zone", "Joint" };
+
+    /**
+     * Shape of the generated dataset
+     * @param structures the number of structures
+     * @param plansPerStructure the number of plans of each structure
+     * @param sectionDepth the maximum depth of the sections of the plans
+     * @param sensorsPerPlan the number of sensors placed on each plan
+     * @param scansPerStructure the number of scans of each structure, each one having a result for all its sensors
+     * @param nokRate the part of the results that are NOK
+     * @param defectiveRate the part of the results that are DEFECTIVE
+     * @param accounts the number of accounts, the first one being an admin
+     * @param editsPerStructure the number of sensor edition log entries of each structure
+     * @param days the number of days before the end date over which the scans are spread
+     * @param end the date of the most recent scans
+     * @param planImage the image file of all the plans, empty for none
+     * @param seed the seed of the random values
+     */
+    public record Shape(int structures, int plansPerStructure, int sectionDepth, int sensorsPerPlan,
+                        int scansPerStructure, double nokRate, double defectiveRate, int accounts,
+                        int editsPerStructure, int days, LocalDate end, String planImage, long seed) {
+        public Shape {
+            if (structures < 0 || plansPerStructure < 1 || sectionDepth < 0 || sensorsPerPlan < 0
+                || scansPerStructure < 0 || accounts < 1 || editsPerStructure < 0 || days < 1) {
+                throw new IllegalArgumentException("Invalid dataset shape");
+            }
+            if (nokRate < 0 || defectiveRate < 0 || nokRate + defectiveRate > 1) {
+                throw new IllegalArgumentException("Invalid results rates");
+            }
+            Objects.requireNonNull(end);
+            Objects.requireNonNull(planImage);
+        }
+
+        /**
+         * Gets a shape with the given options, and the default values
+         * for the missing ones.
+         * @param options the values of the components by name
+         * @return the shape
+         */
+        public static Shape of(Map<String, String> options) {
+            var values = new HashMap<>(options);
+            var shape = new Shape(
+                integer(values, "structures", 20), integer(values, "plansPerStructure", 5),
+                integer(values, "sectionDepth", 2), integer(values, "sensorsPerPlan", 20),
+                integer(values, "scansPerStructure", 50),
+                Double.parseDouble(values.getOrDefault("nokRate", "0.02")),
+                Double.parseDouble(values.getOrDefault("defectiveRate", "0.01")),
+                integer(values, "accounts", 10), integer(values, "editsPerStructure", 20),
+                integer(values, "days", 30),
+                values.containsKey("end") ? LocalDate.parse(values.get("end")) : LocalDate.now(),
+                values.getOrDefault("planImage", ""),
+                Long.parseLong(values.getOrDefault("seed", "42"))
+            );
+            values.keySet().removeAll(List.of("structures", "plansPerStructure", "sectionDepth", "sensorsPerPlan",
+                "scansPerStructure", "nokRate", "defectiveRate", "accounts", "editsPerStructure", "days", "end",
+                "planImage", "seed"));
+            if (!values.isEmpty()) throw new IllegalArgumentException("Unknown options " + values.keySet());
+            return shape;
+        }
+
+        private static int integer(Map<String, String> values, String name, int defaultValue) {
+            var value = values.get(name);
+            return value == null ? defaultValue : Integer.parseInt(value);
+        }
+    }
+
+    /**
+     * Number of generated rows
+     * @param structures the number of structures
+     * @param plans the number of plans
+     * @param sensors the number of sensors
+     * @param scans the number of scans
+     * @param results the number of results
+     * @param logs the number of log entries
+     * @param duration the time taken by the generation
+     */
+    public record Summary(long structures, long plans, long sensors, long scans, long results, long logs,
+                          Duration duration) {}
+
+    private final Shape shape;
+    private final Random random;
+
+    /**
+     * Constructor
+     * @param shape the shape of the dataset to generate
+     */
+    public DatasetGenerator(Shape shape) {
+        this.shape = Objects.requireNonNull(shape);
+        this.random = new Random(shape.seed());
+    }
+
+    /**
+     * Migrates the given SQLite database and fills it.
+     * @param database the database file, created if needed
+     * @param shape the shape of the dataset
+     * @return the number of generated rows
+     * @throws SQLException if the database cannot be written
+     */
+    public static Summary generate(Path database, Shape shape) throws SQLException {
+        var url = "jdbc:sqlite:" + database;
+        Flyway.configure().dataSource(url, null, null).baselineOnMigrate(true).baselineVersion("1").load().migrate();
+        try (var connection = DriverManager.getConnection(url)) {
+            return new DatasetGenerator(shape).generate(connection);
+        }
+    }
+
+    /**
+     * Fills the given migrated database. Each structure is written
+     * within its own transaction, then the log entries are added to the
+     * full-text index like at the application startup.
+     * @param connection the connection to the database
+     * @return the number of generated rows
+     * @throws SQLException if the database cannot be written
+     */
+    public Summary generate(Connection connection) throws SQLException {
+        var start = System.nanoTime();
+        try (var pragma = connection.createStatement()) {
+            pragma.execute("PRAGMA journal_mode = WAL");
+            pragma.execute("PRAGMA synchronous = OFF");
+        }
+        connection.setAutoCommit(false);
+        var ids = new Ids(connection);
+        try (var context = new Inserts(connection)) {
+            var accounts = accounts(context, ids);
+            context.flush();
+            connection.commit();
+            var first = shape.end().atStartOfDay().minusDays(shape.days());
+            for (var s = 0; s < shape.structures(); s++) {
+                structure(context, ids, accounts, first.plusMinutes(s));
+                context.flush();
+                connection.commit();
+            }
+            new AppLogSearchRepository(new JdbcTemplate(new SingleConnectionDataSource(connection, true))).syncIndex();
+            connection.commit();
+            connection.setAutoCommit(true);
+            return new Summary(context.structures.count, context.plans.count, context.sensors.count,
+                context.scans.count, context.results.count, context.logs.count,
+                Duration.ofNanos(System.nanoTime() - start));
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the accounts, the first one being an admin and one out of
+     * ten being responsible.
+     * @param context the bulk inserts
+     * @param ids the next identifiers
+     * @return the created accounts
+     * @throws SQLException if the insertion fails
+     */
+    private List<GeneratedAccount> accounts(Inserts context, Ids ids) throws SQLException {
+        var password = new BCryptPasswordEncoder().encode(PASSWORD);
+        var accounts = new ArrayList<GeneratedAccount>(shape.accounts());
+        var time = Timestamp.valueOf(shape.end().atStartOfDay().minusDays(shape.days() + 1L));
+        for (var i = 0; i < shape.accounts(); i++) {
+            var id = ids.account++;
+            var role = i == 0 ? Role.ADMIN : i % 10 == 1 ? Role.RESPONSABLE : Role.OPERATEUR;
+            var account = new GeneratedAccount(id, "user" + id, role);
+            context.accounts.add(id, account.login, password, "Prénom" + id, "Nom" + id, role.ordinal(), true);
+            context.logs.add(time, accounts.isEmpty() ? id : accounts.getFirst().id, AppLogEvent.ACCOUNT_CREATED.ordinal(),
+                AppLogEvent.ACCOUNT_CREATED.encode(account.login, role, id), null, null, null, null, null, id);
+            accounts.add(account);
+        }
+        return accounts;
+    }
+
+    /**
+     * Creates a structure with its plans, sensors, scans and results.
+     * @param context the bulk inserts
+     * @param ids the next identifiers
+     * @param accounts the generated accounts
+     * @param created the creation time of the structure
+     * @throws SQLException if the insertion fails
+     */
+    private void structure(Inserts context, Ids ids, List<GeneratedAccount> accounts, LocalDateTime created)
+        throws SQLException {
+        var admin = accounts.getFirst();
+        var time = Timestamp.valueOf(created);
+        var structureId = ids.structure++;
+        var name = "Ouvrage " + structureId;
+        context.structures.add(structureId, name, "Ouvrage généré", false);
+        context.logs.add(time, admin.id, AppLogEvent.STRUCTURE_CREATED.ordinal(),
+            AppLogEvent.STRUCTURE_CREATED.encode(name, structureId), structureId, null, null, null, null, null);
+        var operators = new ArrayList<GeneratedAccount>();
+        for (var account : accounts) {
+            if (account.role == Role.ADMIN || random.nextBoolean()) {
+                context.access.add(structureId, account.id);
+                operators.add(account);
+            }
+        }
+
+        var sensorCount = shape.plansPerStructure() * shape.sensorsPerPlan();
+        var sensors = new GeneratedSensor[sensorCount];
+        for (var p = 0; p < shape.plansPerStructure(); p++) {
+            var planId = ids.plan++;
+            var planName = "Plan " + planId;
+            var section = section();
+            context.plans.add(planId, planName, false, shape.planImage(), section, structureId);
+            context.logs.add(time, admin.id, AppLogEvent.PLAN_CREATED.ordinal(),
+                AppLogEvent.PLAN_CREATED.encode(section + '/' + planName + " (#" + planId + ")"),
+                structureId, planId, null, null, null, null);
+            for (var i = 0; i < shape.sensorsPerPlan(); i++) {
+                var number = ids.sensor++;
+                sensors[p * shape.sensorsPerPlan() + i] = new GeneratedSensor(chip(2 * number), chip(2 * number + 1),
+                    "Capteur " + number, planId);
+            }
+        }
+
+        var span = Duration.ofDays(shape.days()).toMinutes();
+        for (var i = 0; i < shape.scansPerStructure(); i++) {
+            var scanId = ids.scan++;
+            var author = operators.get(random.nextInt(operators.size()));
+            var date = Timestamp.valueOf(created.plusMinutes(span * (i + 1) / (shape.scansPerStructure() + 1)));
+            context.scans.add(scanId, structureId, date, "", author.id, null);
+            for (var sensor : sensors) {
+                var state = state();
+                context.results.add(state.ordinal(), scanId, sensor.controlChip, sensor.measureChip);
+                sensor.add(state, scanId);
+            }
+            context.logs.add(date, author.id, AppLogEvent.SCAN_ADDED.ordinal(),
+                AppLogEvent.SCAN_ADDED.encode(scanId, name, structureId, author.login, sensorCount, ""),
+                structureId, null, scanId, null, null, null);
+        }
+
+        var installation = Date.valueOf(created.toLocalDate());
+        for (var sensor : sensors) {
+            context.sensors.add(sensor.controlChip, sensor.measureChip, sensor.name, "", structureId, installation,
+                sensor.planId, random.nextInt(MAX_COORDINATE), random.nextInt(MAX_COORDINATE), false,
+                sensor.state.ordinal(), sensor.results, sensor.lastScanId);
+            context.logs.add(time, admin.id, AppLogEvent.SENSOR_CREATED.ordinal(),
+                AppLogEvent.SENSOR_CREATED.encode(sensor.name, sensor.controlChip + ", " + sensor.measureChip, ""),
+                structureId, null, null, sensor.controlChip, sensor.measureChip, null);
+        }
+        for (var i = 0; i < shape.editsPerStructure() && sensorCount > 0; i++) {
+            var sensor = sensors[random.nextInt(sensorCount)];
+            var date = Timestamp.valueOf(created.plusMinutes(random.nextLong(span)));
+            context.logs.add(date, admin.id, AppLogEvent.SENSOR_EDITED.ordinal(),
+                AppLogEvent.SENSOR_EDITED.encode(sensor.name, sensor.controlChip + ", " + sensor.measureChip,
+                    ", Note: '' -> 'Vérifié le " + date.toLocalDateTime().toLocalDate() + "'"),
+                structureId, null, null, sensor.controlChip, sensor.measureChip, null);
+        }
+    }
+
+    /**
+     * Draws the state of a result according to the rates of the shape.
+     * @return the state of the result
+     */
+    private State state() {
+        var draw = random.nextDouble();
+        if (draw < shape.nokRate()) return State.NOK;
+        if (draw < shape.nokRate() + shape.defectiveRate()) return State.DEFECTIVE;
+        return State.OK;
+    }
+
+    /**
+     * Draws the section of a plan, at most as deep as the shape allows,
+     * the plans of a structure sharing the first levels.
+     * @return the section of the plan, empty for the root
+     */
+    private String section() {
+        var depth = random.nextInt(shape.sectionDepth() + 1);
+        var section = new StringBuilder();
+        for (var level = 0; level < depth; level++) {
+            if (level > 0) section.append('/');
+            section.append(SECTIONS[level % SECTIONS.length]).append('-').append(1 + random.nextInt(3));
+        }
+        return section.toString();
+    }
+
+    /**
+     * Builds the identifier of a chip, shaped like the EPC of the RFID
+     * tags. Numbers are scrambled with a bijection so that consecutive
+     * chips do not share their prefix.
+     * @param number the number of the chip
+     * @return the identifier of the chip
+     */
+    private static String chip(long number) {
+        var scrambled = (number * 0x9E3779B97F4BL) & 0xFFFFFFFFFFFFL;
+        return "E28068940000%012X".formatted(scrambled);
+    }
+
+    public static void main(String[] args) throws SQLException {
+        var options = new HashMap<String, String>();
+        for (var arg : args) {
+            var separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) throw new IllegalArgumentException("Expected --name=value: " + arg);
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        var database = Path.of(Objects.requireNonNullElse(options.remove("database"), "structsure.db"));
+        var summary = generate(database, Shape.of(options));
+        BenchmarkReport.print("dataset %s: %d structures, %d plans, %d sensors, %d scans, %d results, %d logs in %d s",
+            database, summary.structures(), summary.plans(), summary.sensors(), summary.scans(), summary.results(),
+            summary.logs(), summary.duration().toSeconds());
+    }
+
+    private record GeneratedAccount(long id, String login, Role role) {}
+
+    /**
+     * Sensor of the structure being generated, with the aggregation of
+     * its results stored on the sensor row.
+     */
+    private static final class GeneratedSensor {
+        private final String controlChip;
+        private final String measureChip;
+        private final String name;
+        private final long planId;
+        private State state = State.UNKNOWN;
+        private int results;
+        private Long lastScanId;
+
+        private GeneratedSensor(String controlChip, String measureChip, String name, long planId) {
+            this.controlChip = controlChip;
+            this.measureChip = measureChip;
+            this.name = name;
+            this.planId = planId;
+        }
+
+        private void add(State resultState, long scanId) {
+            if (resultState.ordinal() < state.ordinal()) state = resultState;
+            results++;
+            lastScanId = scanId;
+        }
+    }
+
+    /**
+     * Next identifiers of the tables, after the existing rows.
+     */
+    private static final class Ids {
+        private long account;
+        private long structure;
+        private long plan;
+        private long scan;
+        private long sensor;
+
+        private Ids(Connection connection) throws SQLException {
+            account = next(connection, "SELECT MAX(id) FROM account");
+            structure = next(connection, "SELECT MAX(id) FROM structure");
+            plan = next(connection, "SELECT MAX(id) FROM plan");
+            scan = next(connection, "SELECT MAX(id) FROM scan");
+            sensor = next(connection, "SELECT COUNT(*) FROM sensor");
+        }
+
+        private static long next(Connection connection, String query) throws SQLException {
+            try (var statement = connection.createStatement(); var result = statement.executeQuery(query)) {
+                return result.next() ? result.getLong(1) + 1 : 1;
+            }
+        }
+    }
+
+    /**
+     * Bulk inserts of all the generated tables
+     */
+    private static final class Inserts implements AutoCloseable {
+        private final BulkInsert accounts;
+        private final BulkInsert structures;
+        private final BulkInsert access;
+        private final BulkInsert plans;
+        private final BulkInsert sensors;
+        private final BulkInsert scans;
+        private final BulkInsert results;
+        private final BulkInsert logs;
+
+        private Inserts(Connection connection) {
+            accounts = new BulkInsert(connection,
+                "account (id, login, password_encrypted, firstname, lastname, role, enabled)", 7);
+            structures = new BulkInsert(connection, "structure (id, name, note, archived)", 4);
+            access = new BulkInsert(connection, "structure_account (id, login)", 2);
+            plans = new BulkInsert(connection, "plan (id, name, archived, image_url, section, structure_id)", 6);
+            sensors = new BulkInsert(connection, "sensor (control_chip, measure_chip, name, note, structure_id, "
+                + "installation_date, plan_id, x, y, archived, current_state, result_count, last_scan_id)", 13);
+            scans = new BulkInsert(connection, "scan (id, structure_id, date, note, author_id, fingerprint)", 6);
+            results = new BulkInsert(connection, "result (state, scan_id, control_chip, measure_chip)", 4);
+            logs = new BulkInsert(connection, "app_log (time, author_id, event, params, structure_id, plan_id, "
+                + "scan_id, sensor_control_chip, sensor_measure_chip, account_id)", 10);
+        }
+
+        /**
+         * Writes the pending rows, the referenced rows first.
+         * @throws SQLException if the insertion fails
+         */
+        private void flush() throws SQLException {
+            for (var insert : all()) insert.flush();
+        }
+
+        private List<BulkInsert> all() {
+            return List.of(accounts, structures, access, plans, sensors, scans, results, logs);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            for (var insert : all()) insert.close();
+        }
+    }
+
+    /**
+     * Buffer of rows of a table, written by multi-rows INSERT statements.
+     */
+    private static final class BulkInsert implements AutoCloseable {
+        private final Connection connection;
+        private final String table;
+        private final int columns;
+        private final int rowsPerStatement;
+        private final List<Object[]> pending;
+        private PreparedStatement full;
+        private long count;
+
+        private BulkInsert(Connection connection, String table, int columns) {
+            this.connection = connection;
+            this.table = table;
+            this.columns = columns;
+            this.rowsPerStatement = Math.min(MAX_ROWS_PER_STATEMENT, 32_000 / columns);
+            this.pending = new ArrayList<>(rowsPerStatement);
+        }
+
+        private void add(Object... row) throws SQLException {
+            if (row.length != columns) throw new IllegalArgumentException(table + ": " + row.length + " values");
+            pending.add(row);
+            if (pending.size() == rowsPerStatement) flush();
+        }
+
+        private void flush() throws SQLException {
+            if (pending.isEmpty()) return;
+            if (pending.size() == rowsPerStatement) {
+                if (full == null) full = connection.prepareStatement(sql(rowsPerStatement));
+                write(full);
+            } else {
+                try (var statement = connection.prepareStatement(sql(pending.size()))) {
+                    write(statement);
+                }
+            }
+        }
+
+        private void write(PreparedStatement statement) throws SQLException {
+            var index = 1;
+            for (var row : pending) {
+                for (var value : row) statement.setObject(index++, value);
+            }
+            count += statement.executeUpdate();
+            pending.clear();
+        }
+
+        private String sql(int rows) {
+            var row = "(" + "?, ".repeat(columns - 1) + "?)";
+            var sql = new StringBuilder("INSERT INTO ").append(table).append(" VALUES ");
+            for (var i = 0; i < rows; i++) {
+                if (i > 0) sql.append(", ");
+                sql.append(row);
+            }
+            return sql.toString();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (full != null) full.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package fr.uge.structsure.benchmarks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatasetGeneratorTest {
+    private static final Map<String, String> SHAPE = Map.of(
+        "structures", "3", "plansPerStructure", "2", "sensorsPerPlan", "5", "scansPerStructure", "4",
+        "accounts", "4", "editsPerStructure", "2", "end", "2025-01-31"
+    );
+
+    @Test
+    void generatesTheRequestedShape(@TempDir Path directory) throws SQLException {
+        var database = directory.resolve("dataset.db");
+        var summary = DatasetGenerator.generate(database, DatasetGenerator.Shape.of(SHAPE));
+        assertEquals(3, summary.structures());
+        assertEquals(6, summary.plans());
+        assertEquals(30, summary.sensors());
+        assertEquals(12, summary.scans());
+        assertEquals(120, summary.results());
+        /* accounts + per structure: itself, plans, scans, sensors and edits */
+        assertEquals(4 + 3 * (1 + 2 + 4 + 10 + 2), summary.logs());
+        assertEquals(30, query(database, "SELECT COUNT(*) FROM sensor WHERE result_count = 4 AND last_scan_id IS NOT NULL"));
+        assertEquals(12, query(database, "SELECT COUNT(*) FROM app_log_fts WHERE message LIKE 'Scan ajouté%'"));
+    }
+
+    @Test
+    void sameSeedGivesSameData(@TempDir Path directory) throws SQLException {
+        var first = directory.resolve("first.db");
+        var second = directory.resolve("second.db");
+        DatasetGenerator.generate(first, DatasetGenerator.Shape.of(SHAPE));
+        DatasetGenerator.generate(second, DatasetGenerator.Shape.of(SHAPE));
+        var checksum = "SELECT SUM(id * (state + 1)) + (SELECT SUM(x * y) FROM sensor) FROM result";
+        assertEquals(query(first, checksum), query(second, checksum));
+    }
+
+    private static long query(Path database, String sql) throws SQLException {
+        try (var connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             var statement = connection.createStatement();
+             var result = statement.executeQuery(sql)) {
+            assertTrue(result.next());
+            return result.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package fr.uge.structsure.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import fr.uge.structsure.dto.auth.LoginRequestDTO;
+import fr.uge.structsure.dto.logs.LogsRequestDTO;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.dto.sensors.AllSensorsByStructureRequestDTO;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.entities.State;
+import fr.uge.structsure.entities.Structure;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import fr.uge.structsure.repositories.StructureSummaryWriter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static fr.uge.structsure.benchmarks.BenchmarkReport.percentile;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load test of the whole server: a fleet of tablets and browsers is
+ * simulated against a dataset made by the {@link DatasetGenerator}.
+ * Tablets log in, download structures and their plan images, and
+ * upload scans. Browsers page the structures, open their details and
+ * list their sensors and logs. The throughput, the latency percentiles
+ * and the error rate of each endpoint are logged and saved to a JSON
+ * report in target/load-test so that runs can be compared.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Dtest=LoadTestBenchmarkTest},
+ * the mix being set with the load.* properties, for example
+ * {@code -Dload.tablets=100 -Dload.browsers=400 -Dload.duration-seconds=120}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class LoadTestBenchmarkTest {
+    private static final Path DIRECTORY = Path.of("target", "load-test");
+    private static final Path DATABASE = DIRECTORY.resolve("structsure-load.db");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final DateTimeFormatter REPORT_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    /** Smallest valid PNG image (1x1 transparent pixel), used for all the plans */
+    private static final byte[] PLAN_IMAGE = Base64.getDecoder().decode(
+        "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkYPhfDwAChwGA60e6kgAAAABJRU5ErkJggg==");
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${load.tablets:50}")
+    private int tablets;
+
+    @Value("${load.browsers:150}")
+    private int browsers;
+
+    @Value("${load.duration-seconds:60}")
+    private int durationSeconds;
+
+    @Value("${load.think-time-ms:200}")
+    private int thinkTime;
+
+    @Value("${load.structures:20}")
+    private int structures;
+
+    @Value("${load.max-error-rate:0.01}")
+    private double maxErrorRate;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private StructureSummaryWriter summaryWriter;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private HttpClient client;
+
+    /**
+     * Removes the database of the previous run, before the server
+     * starts on it.
+     * @throws IOException if the files cannot be removed
+     */
+    @BeforeAll
+    static void cleanDatabase() throws IOException {
+        Files.createDirectories(DIRECTORY);
+        for (var suffix : new String[] { "", "-wal", "-shm" }) {
+            Files.deleteIfExists(Path.of(DATABASE + suffix));
+        }
+    }
+
+    /**
+     * Runs the server on a new database, dedicated to the load test.
+     * @param registry the properties of the test context
+     */
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + DATABASE);
+    }
+
+    @Test
+    void fleetOfTabletsAndBrowsers() throws Exception {
+        var shape = seed();
+        var structureIds = structureRepository.findAll().stream().map(Structure::getId).toList();
+        var generated = accountRepository.findAll().stream().filter(account -> account.getLogin().startsWith("user")).toList();
+        var admin = generated.stream().filter(account -> account.getRole() == Role.ADMIN).findFirst().orElseThrow();
+        var operators = generated.stream().filter(account -> account.getRole() != Role.ADMIN).toList();
+
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long duration;
+        try (var httpClient = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(30)).build();
+             var users = Executors.newVirtualThreadPerTaskExecutor()) {
+            client = httpClient;
+            var start = System.nanoTime();
+            for (var t = 0; t < tablets; t++) {
+                final var index = t;
+                var login = operators.get(t % operators.size()).getLogin();
+                users.submit(() -> tablet(index, login, structureIds, deadline));
+            }
+            for (var b = 0; b < browsers; b++) {
+                users.submit(() -> browser(admin.getLogin(), structureIds, deadline));
+            }
+            users.shutdown();
+            assertTrue(users.awaitTermination(durationSeconds + 300L, TimeUnit.SECONDS));
+            duration = System.nanoTime() - start;
+        }
+
+        var report = report(shape, duration);
+        var file = DIRECTORY.resolve("report-" + LocalDateTime.now().format(REPORT_FORMAT) + ".json");
+        mapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+        BenchmarkReport.print("load test report written to %s", file);
+        var requests = endpoints.values().stream().mapToLong(endpoint -> endpoint.requests.get()).sum();
+        var errors = endpoints.values().stream().mapToLong(endpoint -> endpoint.errors.get()).sum();
+        assertTrue(requests > 0);
+        assertTrue(errors <= requests * maxErrorRate, errors + " errors out of " + requests + " requests");
+    }
+
+    /**
+     * Generates the dataset and the image of its plans.
+     * @return the shape of the generated dataset
+     */
+    private DatasetGenerator.Shape seed() throws IOException, SQLException {
+        var image = DIRECTORY.resolve("plan.png");
+        Files.write(image, PLAN_IMAGE);
+        var shape = DatasetGenerator.Shape.of(Map.of(
+            "structures", String.valueOf(structures), "accounts", "20",
+            "end", LocalDate.now().plusDays(1).toString(), "planImage", image.toString()
+        ));
+        var summary = DatasetGenerator.generate(DATABASE, shape);
+        summaryWriter.refreshAll();
+        BenchmarkReport.print("load test dataset: %d structures, %d sensors, %d results, %d logs",
+            summary.structures(), summary.sensors(), summary.results(), summary.logs());
+        return shape;
+    }
+
+    /**
+     * Simulates a tablet until the deadline: downloads a structure and
+     * the images of its plans, then uploads a scan of all its sensors.
+     * @param index the number of the tablet, used for the scans ids
+     * @param login the login of the operator using the tablet
+     * @param structureIds the ids of the structures to scan
+     * @param deadline the end of the test, as given by {@link System#nanoTime()}
+     */
+    private Void tablet(int index, String login, List<Long> structureIds, long deadline) throws Exception {
+        var token = login("POST /api/android/login", "/api/android/login", login);
+        if (token == null) return null;
+        var random = ThreadLocalRandom.current();
+        var scanId = index * 1_000_000L;
+        while (System.nanoTime() < deadline) {
+            var structureId = structureIds.get(random.nextInt(structureIds.size()));
+            var structure = json(call("GET /api/structures/android/{id}",
+                get("/api/structures/android/" + structureId, token).header("Accept", "application/json")));
+            if (structure != null) {
+                for (var plan : structure.get("plans")) {
+                    call("GET /api/structures/plans/{id}/image", get("/api/structures/plans/" + plan.get("id").asLong() + "/image", token));
+                }
+                var results = new ArrayList<AndroidSensorResultDTO>();
+                for (var sensor : structure.get("sensors")) {
+                    var state = random.nextInt(50) == 0 ? State.NOK : State.OK;
+                    results.add(new AndroidSensorResultDTO(
+                        sensor.get("controlChip").asText() + "-" + sensor.get("measureChip").asText(), state.name()));
+                }
+                var scan = new AndroidScanResultDTO(structureId, scanId++, LocalDateTime.now().format(DATE_FORMAT),
+                    "", "", login, results, List.of());
+                call("POST /api/scans", post("/api/scans", token, scan));
+            }
+            think();
+        }
+        return null;
+    }
+
+    /**
+     * Simulates a browser until the deadline: pages the structures, opens
+     * one of them with its sensors, and looks at the logs.
+     * @param login the login of the user of the browser
+     * @param structureIds the ids of the structures to open
+     * @param deadline the end of the test, as given by {@link System#nanoTime()}
+     */
+    private Void browser(String login, List<Long> structureIds, long deadline) throws Exception {
+        var token = login("POST /api/login", "/api/login", login);
+        if (token == null) return null;
+        var random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            String cursor = null;
+            for (var page = 0; page < 3; page++) {
+                var query = "?searchByName=&orderByColumnName=NAME&orderType=ASC&limit=20"
+                    + (cursor == null ? "" : "&cursor=" + URLEncoder.encode(cursor, StandardCharsets.UTF_8));
+                var structures = json(call("GET /api/structures", get("/api/structures" + query, token)));
+                if (structures == null || !structures.path("nextCursor").isTextual()) break;
+                cursor = structures.get("nextCursor").asText();
+            }
+            var structureId = structureIds.get(random.nextInt(structureIds.size()));
+            call("GET /api/structures/{id}", get("/api/structures/" + structureId, token));
+            call("POST /api/structures/{id}/sensors", post("/api/structures/" + structureId + "/sensors", token,
+                new AllSensorsByStructureRequestDTO("NAME", "ASC", null, null, null, null, 50, null, false, null)));
+            call("POST /api/logs", post("/api/logs", token, new LogsRequestDTO(null, 0)));
+            call("GET /api/logs/structures/{id}", get("/api/logs/structures/" + structureId, token));
+            think();
+        }
+        return null;
+    }
+
+    /**
+     * Logs in with the given account.
+     * @param endpoint the name of the endpoint in the report
+     * @param path the path of the login endpoint
+     * @param login the login of the account
+     * @return the authorization header, null if the login failed
+     */
+    private String login(String endpoint, String path, String login) throws IOException {
+        var request = HttpRequest.newBuilder(uri(path))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(
+                mapper.writeValueAsBytes(new LoginRequestDTO(login, DatasetGenerator.PASSWORD))));
+        var response = json(call(endpoint, request));
+        return response == null ? null : "Bearer " + response.get("token").asText();
+    }
+
+    /**
+     * Sends a request and records its latency and its status.
+     * @param endpoint the name of the endpoint in the report
+     * @param request the request to send
+     * @return the response body, null if the request failed
+     */
+    private byte[] call(String endpoint, HttpRequest.Builder request) {
+        var stats = endpoints.computeIfAbsent(endpoint, name -> new Endpoint());
+        stats.requests.incrementAndGet();
+        var start = System.nanoTime();
+        try {
+            var response = client.send(request.timeout(Duration.ofSeconds(60)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            stats.latencies.add(System.nanoTime() - start);
+            if (response.statusCode() == 200) return response.body();
+        } catch (IOException e) {
+            stats.latencies.add(System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stats.errors.incrementAndGet();
+        return null;
+    }
+
+    private HttpRequest.Builder get(String path, String token) {
+        return HttpRequest.newBuilder(uri(path)).header("Authorization", token).GET();
+    }
+
+    private HttpRequest.Builder post(String path, String token, Object body) throws IOException {
+        return HttpRequest.newBuilder(uri(path))
+            .header("Authorization", token)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)));
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private JsonNode json(byte[] body) throws IOException {
+        return body == null ? null : mapper.readTree(body);
+    }
+
+    private void think() throws InterruptedException {
+        if (thinkTime > 0) Thread.sleep(ThreadLocalRandom.current().nextInt(thinkTime / 2, thinkTime * 3 / 2 + 1));
+    }
+
+    /**
+     * Builds the report of the run and prints the statistics of each
+     * endpoint.
+     * @param shape the shape of the dataset
+     * @param duration the duration of the run, in nanoseconds
+     * @return the content of the JSON report
+     */
+    private Map<String, Object> report(DatasetGenerator.Shape shape, long duration) {
+        var seconds = duration / 1e9;
+        var results = new TreeMap<String, Object>();
+        endpoints.forEach((name, endpoint) -> {
+            var sorted = endpoint.latencies.stream().sorted().toList();
+            var requests = endpoint.requests.get();
+            var stats = new LinkedHashMap<String, Object>();
+            stats.put("requests", requests);
+            stats.put("throughput", requests / seconds);
+            stats.put("p50Ms", percentile(sorted, 0.50) / 1e6);
+            stats.put("p95Ms", percentile(sorted, 0.95) / 1e6);
+            stats.put("p99Ms", percentile(sorted, 0.99) / 1e6);
+            stats.put("maxMs", sorted.isEmpty() ? 0 : sorted.getLast() / 1e6);
+            stats.put("errorRate", requests == 0 ? 0 : endpoint.errors.get() / (double) requests);
+            results.put(name, stats);
+            BenchmarkReport.print("%-40s %7d req %8.1f req/s, p50 %7.2f ms, p95 %7.2f ms, p99 %7.2f ms,"
+                    + " errors %5.2f%%", name, requests, requests / seconds, percentile(sorted, 0.50) / 1e6,
+                percentile(sorted, 0.95) / 1e6, percentile(sorted, 0.99) / 1e6,
+                100 * (double) stats.get("errorRate"));
+        });
+        var configuration = new LinkedHashMap<String, Object>();
+        configuration.put("tablets", tablets);
+        configuration.put("browsers", browsers);
+        configuration.put("durationSeconds", durationSeconds);
+        configuration.put("thinkTimeMs", thinkTime);
+        configuration.put("virtualThreads", virtualThreads);
+        configuration.put("structures", shape.structures());
+        configuration.put("sensorsPerStructure", shape.plansPerStructure() * shape.sensorsPerPlan());
+        configuration.put("scansPerStructure", shape.scansPerStructure());
+        var report = new LinkedHashMap<String, Object>();
+        report.put("date", LocalDateTime.now().toString());
+        report.put("configuration", configuration);
+        report.put("durationSeconds", seconds);
+        report.put("endpoints", results);
+        return report;
+    }
+
+
+    /**
+     * Statistics of an endpoint
+     */
+    private static final class Endpoint {
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger errors = new AtomicInteger();
+    }
+}
@@ -0,0 +1,151 @@
+package fr.uge.structsure.benchmarks;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.config.JwtUtils;
+import fr.uge.structsure.entities.*;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.PlanRepository;
+import fr.uge.structsure.repositories.SensorRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import fr.uge.structsure.repositories.StructureSummaryWriter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static fr.uge.structsure.benchmarks.BenchmarkReport.percentile;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Sends the requests of 500 concurrent clients to the server and
+ * reports the throughput and the latency. A third of the clients are
+ * tablets downloading structures, the others are browsers listing the
+ * structures and opening their details. The concrete classes run the
+ * server with the requests handled by platform or virtual threads.
+ */
+abstract class RequestThreadingBenchmark extends DataBaseTests {
+    private static final int CLIENTS = 500;
+    private static final int REQUESTS_PER_CLIENT = 20;
+    private static final int STRUCTURES = 20;
+    private static final int SENSORS_PER_STRUCTURE = 200;
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private PlanRepository planRepository;
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    @Autowired
+    private StructureSummaryWriter summaryWriter;
+
+    @Test
+    void concurrentClients() throws InterruptedException {
+        var prefix = "T" + System.nanoTime() + "X";
+        var structures = seed(prefix);
+        var login = prefix + "admin";
+        accountRepository.save(new Account(login, "-", "Bench", "Mark", Role.ADMIN, true));
+        var token = "Bearer " + jwtUtils.generateToken(login);
+
+        var latencies = new ConcurrentLinkedQueue<Long>();
+        var failures = new AtomicInteger();
+        var ready = new CountDownLatch(CLIENTS);
+        var go = new CountDownLatch(1);
+        long duration;
+        try (var client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(30)).build();
+             var clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var c = 0; c < CLIENTS; c++) {
+                final var tablet = c % 3 == 0;
+                final var first = c;
+                clients.submit(() -> {
+                    ready.countDown();
+                    go.await();
+                    for (var i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                        var structure = structures.get((first + i) % structures.size());
+                        var path = tablet ? "/api/structures/android/" + structure
+                            : i % 2 == 0 ? "/api/structures" : "/api/structures/" + structure;
+                        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                            .header("Authorization", token)
+                            .timeout(Duration.ofSeconds(60))
+                            .GET().build();
+                        var start = System.nanoTime();
+                        try {
+                            var response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) failures.incrementAndGet();
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        latencies.add(System.nanoTime() - start);
+                    }
+                    return null;
+                });
+            }
+            ready.await();
+            var start = System.nanoTime();
+            go.countDown();
+            clients.shutdown();
+            clients.awaitTermination(10, TimeUnit.MINUTES);
+            duration = System.nanoTime() - start;
+        }
+
+        var sorted = latencies.stream().sorted().toList();
+        BenchmarkReport.print("%s threads, %d clients x %d requests: %8.1f req/s, p50 %7.2f ms, p99 %7.2f ms,"
+                + " max %7.2f ms, %d failures",
+            virtualThreads ? "virtual" : "platform", CLIENTS, REQUESTS_PER_CLIENT,
+            sorted.size() / (duration / 1e9), percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6,
+            sorted.getLast() / 1e6, failures.get());
+        assertEquals(0, failures.get());
+    }
+
+
+    /**
+     * Creates the structures, each with a plan and its sensors.
+     * @param prefix the prefix of the names to avoid collisions
+     * @return the ids of the created structures
+     */
+    private List<Long> seed(String prefix) {
+        var ids = new ArrayList<Long>(STRUCTURES);
+        for (var s = 0; s < STRUCTURES; s++) {
+            var structure = structureRepository.save(new Structure(prefix + "S" + s, "", false));
+            var plan = planRepository.save(new Plan("", prefix + "P" + s, "", structure));
+            var sensors = new ArrayList<Sensor>(SENSORS_PER_STRUCTURE);
+            for (var i = 0; i < SENSORS_PER_STRUCTURE; i++) {
+                var sensor = new Sensor(prefix + s + "C" + i, prefix + s + "M" + i, prefix + s + "N" + i, "", structure);
+                sensor.setPlan(plan);
+                sensors.add(sensor);
+            }
+            sensorRepository.saveAll(sensors);
+            summaryWriter.refresh(structure.getId());
+            ids.add(structure.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,92 @@
+package fr.uge.structsure.benchmarks;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.entities.*;
+import fr.uge.structsure.repositories.*;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the insertion rate of the results using JPA and using the
+ * {@link ResultBatchWriter}.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class ResultWriterBenchmarkTest extends DataBaseTests {
+    private static final int SENSORS = 500;
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private ResultBatchWriter resultWriter;
+
+    @Autowired
+    private ScanRepository scanRepository;
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionTemplate transaction;
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1000, 10_000, 50_000 })
+    void insertResults(int size) {
+        var prefix = "W" + System.nanoTime() + "X";
+        var structure = structureRepository.save(new Structure("Writer " + prefix, "", false));
+        var account = accountRepository.save(new Account(prefix, "-", "Writer", "Bench", Role.OPERATEUR, true));
+        var sensors = new ArrayList<Sensor>(SENSORS);
+        for (var i = 0; i < SENSORS; i++) {
+            sensors.add(new Sensor(prefix + "C" + i, prefix + "M" + i, prefix + "S" + i, "", structure));
+        }
+        var saved = sensorRepository.saveAll(sensors);
+
+        var jpa = rate(structure, account, saved, size, resultRepository::saveAll);
+        var jdbc = rate(structure, account, saved, size, resultWriter::saveAll);
+        BenchmarkReport.print("%6d results: JPA %9.0f rows/s, JDBC batches %9.0f rows/s (x%.1f)",
+            size, jpa, jdbc, jdbc / jpa);
+    }
+
+    /**
+     * Inserts the given amount of results for a new scan in a single
+     * transaction with the given writer.
+     * @param structure the structure of the scan
+     * @param account the author of the scan
+     * @param sensors the sensors to create results for (used in loop)
+     * @param size the number of results to insert
+     * @param writer the way to insert the results
+     * @return the number of rows inserted per second
+     */
+    private double rate(Structure structure, Account account, List<Sensor> sensors, int size, Consumer<List<Result>> writer) {
+        var scan = scanRepository.save(new Scan(structure, LocalDateTime.now(), "", account));
+        var states = State.values();
+        var results = new ArrayList<Result>(size);
+        for (var i = 0; i < size; i++) {
+            results.add(new Result(states[i % states.length], sensors.get(i % sensors.size()), scan));
+        }
+        var start = System.nanoTime();
+        transaction.executeWithoutResult(status -> writer.accept(results));
+        var elapsed = System.nanoTime() - start;
+        assertEquals(size, resultRepository.findByScanId(scan.getId()).size());
+        return size * 1e9 / elapsed;
+    }
+}
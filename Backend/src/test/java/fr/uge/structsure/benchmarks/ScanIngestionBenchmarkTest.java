@@ -0,0 +1,115 @@
+package fr.uge.structsure.benchmarks;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.entities.*;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.SensorRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import fr.uge.structsure.services.ScanService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the legacy per-result sensor lookup of the scan ingestion
+ * with the set-based one, and measures the whole ingestion for
+ * several scan sizes.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class ScanIngestionBenchmarkTest extends DataBaseTests {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final int ROUNDS = 5;
+
+    @Autowired
+    private ScanService scanService;
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionTemplate transaction;
+
+    @ParameterizedTest
+    @ValueSource(ints = { 100, 1000, 3000 })
+    void ingestScan(int size) throws TraitementException {
+        var prefix = "B" + System.nanoTime() + "X";
+        var structure = structureRepository.save(new Structure("Benchmark " + prefix, "", false));
+        var account = accountRepository.save(new Account(prefix, "-", "Bench", "Mark", Role.OPERATEUR, true));
+        var ids = seedSensors(structure, prefix, size);
+
+        var legacy = time(() -> transaction.executeWithoutResult(status -> {
+            var found = 0;
+            for (var id : ids) {
+                if (sensorRepository.findBySensorId(id).isPresent()) found++;
+            }
+            assertEquals(size, found);
+        }));
+        var batched = time(() -> transaction.executeWithoutResult(status ->
+            assertEquals(size, sensorRepository.findAllBySensorIds(ids).size())
+        ));
+
+        var results = ids.stream()
+            .map(id -> new AndroidSensorResultDTO(id.getControlChip() + "-" + id.getMeasureChip(), State.OK.name()))
+            .toList();
+        var start = System.nanoTime();
+        for (var i = 0; i < ROUNDS; i++) {
+            var date = LocalDateTime.now().plusSeconds(i).format(DATE_FORMAT);
+            var scan = new AndroidScanResultDTO(structure.getId(), (long) i, date, "", "",
+                account.getLogin(), results, List.of());
+            scanService.saveScanResults(new MockHttpServletRequest(), scan);
+        }
+        var ingestion = (System.nanoTime() - start) / ROUNDS;
+
+        BenchmarkReport.print("scan of %5d results: per-row lookup %8.2f ms, batched lookup %8.2f ms, ingestion %8.2f ms",
+            size, legacy / 1e6, batched / 1e6, ingestion / 1e6);
+    }
+
+    /**
+     * Creates the given amount of sensors in the structure.
+     * @param structure the structure to add the sensors into
+     * @param prefix the prefix of the chips to avoid collisions
+     * @param size the number of sensors to create
+     * @return the ids of the created sensors
+     */
+    private List<SensorId> seedSensors(Structure structure, String prefix, int size) {
+        var sensors = new ArrayList<Sensor>(size);
+        for (var i = 0; i < size; i++) {
+            sensors.add(new Sensor(prefix + "C" + i, prefix + "M" + i, prefix + "S" + i, "", structure));
+        }
+        return sensorRepository.saveAll(sensors).stream().map(Sensor::getSensorId).toList();
+    }
+
+    /**
+     * Gets the average duration of the given action in nanoseconds.
+     * @param action the action to measure
+     * @return the average duration of the action
+     */
+    private static long time(Runnable action) {
+        action.run(); // warm up
+        var start = System.nanoTime();
+        for (var i = 0; i < ROUNDS; i++) action.run();
+        return (System.nanoTime() - start) / ROUNDS;
+    }
+}
@@ -0,0 +1,174 @@
+package fr.uge.structsure.benchmarks;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.entities.*;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.ResultRepository;
+import fr.uge.structsure.repositories.ScanRepository;
+import fr.uge.structsure.repositories.SensorRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import fr.uge.structsure.services.ScanService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the memory retained while saving a streamed scan does
+ * not depend on the number of results of the scan.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class StreamedScanMemoryBenchmarkTest extends DataBaseTests {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final int SENSORS = 1000;
+    private static final long MB = 1024 * 1024;
+
+    @Autowired
+    private ScanService scanService;
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private ScanRepository scanRepository;
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Test
+    void retainedHeapIsFlat() throws Exception {
+        var prefix = "H" + System.nanoTime() + "X";
+        var structure = structureRepository.save(new Structure("Heap " + prefix, "", false));
+        var account = accountRepository.save(new Account(prefix, "-", "Heap", "Bench", Role.OPERATEUR, true));
+        var ids = seedSensors(structure, prefix);
+
+        var peaks = new ArrayList<Long>();
+        var date = LocalDateTime.now();
+        for (var size : new int[] { 1_000, 10_000, 100_000 }) {
+            date = date.plusSeconds(1);
+            var body = scanBody(structure.getId(), account.getLogin(), date.format(DATE_FORMAT), ids, size);
+            var peak = retainedPeak(() -> scanService.saveScanResults((Account) null, body));
+            peaks.add(peak);
+            BenchmarkReport.print("streamed scan of %6d results: retained heap peak %4d MB", size, peak / MB);
+        }
+
+        var scans = scanRepository.findByStructure(structure);
+        assertEquals(3, scans.size());
+        assertEquals(111_000, scans.stream().mapToLong(scan -> resultRepository.findByScanId(scan.getId()).size()).sum());
+        assertTrue(peaks.get(2) < peaks.get(0) + 64 * MB,
+            "Retained heap grows with the scan size: " + peaks.get(0) / MB + " MB -> " + peaks.get(2) / MB + " MB");
+    }
+
+    /**
+     * Creates the sensors referenced by the generated scans.
+     * @param structure the structure to add the sensors into
+     * @param prefix the prefix of the chips to avoid collisions
+     * @return the ids of the created sensors as sent by Android
+     */
+    private List<String> seedSensors(Structure structure, String prefix) {
+        var sensors = new ArrayList<Sensor>(SENSORS);
+        for (var i = 0; i < SENSORS; i++) {
+            sensors.add(new Sensor(prefix + "C" + i, prefix + "M" + i, prefix + "S" + i, "", structure));
+        }
+        return sensorRepository.saveAll(sensors).stream()
+            .map(sensor -> sensor.getSensorId().getControlChip() + "-" + sensor.getSensorId().getMeasureChip())
+            .toList();
+    }
+
+    /**
+     * Generates the JSON body of a scan lazily, so that the body itself
+     * is never fully loaded in memory.
+     * @param structureId the scanned structure
+     * @param login the author of the scan
+     * @param date the launch date of the scan
+     * @param ids the sensors to create results for (used in loop)
+     * @param size the number of results of the scan
+     * @return the stream of the scan body
+     */
+    private static InputStream scanBody(long structureId, String login, String date, List<String> ids, int size) {
+        var header = "{\"structureId\":" + structureId + ",\"scanId\":1,\"launchDate\":\"" + date
+            + "\",\"scanNote\":\"" + "x".repeat(500) + "\",\"structureNote\":\"\",\"login\":\"" + login + "\",\"results\":[";
+        var footer = "],\"sensorEdits\":[]}";
+        var chunks = new Enumeration<InputStream>() {
+            private int index = -1;
+
+            @Override
+            public boolean hasMoreElements() {
+                return index <= size;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                var i = index++;
+                String text;
+                if (i == -1) text = header;
+                else if (i == size) text = footer;
+                else text = (i == 0 ? "" : ",") + "{\"sensorId\":\"" + ids.get(i % ids.size()) + "\",\"state\":\"OK\"}";
+                return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+        return new SequenceInputStream(chunks);
+    }
+
+    /** Action to measure */
+    @FunctionalInterface
+    private interface Action {
+        void run() throws TraitementException;
+    }
+
+    /**
+     * Runs the given action while regularly collecting the garbage to
+     * sample the heap that is actually retained.
+     * @param action the action to measure
+     * @return the maximum heap retained during the action
+     * @throws Exception if the action fails
+     */
+    private static long retainedPeak(Action action) throws Exception {
+        var runtime = Runtime.getRuntime();
+        var running = new AtomicBoolean(true);
+        var peak = new AtomicLong();
+        var sampler = new Thread(() -> {
+            while (running.get()) {
+                System.gc();
+                peak.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.start();
+        try {
+            action.run();
+        } finally {
+            running.set(false);
+            sampler.join();
+        }
+        return peak.get();
+    }
+}
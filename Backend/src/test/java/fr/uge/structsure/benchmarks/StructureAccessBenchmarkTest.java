@@ -0,0 +1,151 @@
+package fr.uge.structsure.benchmarks;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.dto.structure.AllStructureRequestDTO;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.entities.Structure;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import fr.uge.structsure.repositories.StructureRepositoryCriteriaQuery;
+import fr.uge.structsure.repositories.StructureSummaryWriter;
+import fr.uge.structsure.utils.StructureAccess;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the authorization of the structures listing done in Java
+ * over the lazily loaded structures of the account with the SQL
+ * subquery, and the access check of a single structure with the
+ * {@link StructureAccess} index, for 5000 structures and 200 accounts.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class StructureAccessBenchmarkTest extends DataBaseTests {
+    private static final int STRUCTURES = 5000;
+    private static final int ACCOUNTS = 200;
+    private static final int STRUCTURES_PER_ACCOUNT = 100;
+    private static final int SAMPLED_ACCOUNTS = 20;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private StructureRepositoryCriteriaQuery structureCriteriaQuery;
+
+    @Autowired
+    private StructureSummaryWriter summaryWriter;
+
+    @Autowired
+    private TransactionTemplate transaction;
+
+    @Test
+    void structureAccess() {
+        var prefix = "A" + System.nanoTime() + "X";
+        var accounts = seed(prefix);
+        var request = new AllStructureRequestDTO(prefix, Optional.empty(), Optional.empty(),
+            "NAME", "ASC", Optional.empty(), Optional.empty());
+
+        long legacyListing = 0, sqlListing = 0, legacyCheck = 0, indexCheck = 0;
+        for (var login : accounts.subList(0, SAMPLED_ACCOUNTS)) {
+            var times = transaction.execute(status -> {
+                try {
+                    return measure(login, request);
+                } catch (TraitementException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            legacyListing += times[0];
+            sqlListing += times[1];
+            legacyCheck += times[2];
+            indexCheck += times[3];
+        }
+        BenchmarkReport.print("%d structures, %d accounts: listing Java filter %7.2f ms, SQL subquery %7.2f ms;"
+                + " %d access checks stream %7.2f ms, index %7.3f ms",
+            STRUCTURES, ACCOUNTS, legacyListing / 1e6 / SAMPLED_ACCOUNTS, sqlListing / 1e6 / SAMPLED_ACCOUNTS,
+            STRUCTURES, legacyCheck / 1e6 / SAMPLED_ACCOUNTS, indexCheck / 1e6 / SAMPLED_ACCOUNTS);
+    }
+
+    /**
+     * Measures the listing and the access checks for one account
+     * @return the durations of the legacy listing, the SQL listing, the
+     *     legacy checks and the index checks, in nanoseconds
+     */
+    private long[] measure(String login, AllStructureRequestDTO request) throws TraitementException {
+        var start = System.nanoTime();
+        var account = accountRepository.findByLogin(login).orElseThrow();
+        var allowedStructures = account.getAllowedStructures();
+        var legacy = structureCriteriaQuery.findAllStructuresWithState(request, null).stream()
+            .filter(s -> allowedStructures.stream().anyMatch(a -> a.getId() == s.id()))
+            .toList();
+        var legacyListing = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        var listed = structureCriteriaQuery.findAllStructuresWithState(request, account.getId());
+        var sqlListing = System.nanoTime() - start;
+        assertEquals(legacy.size(), listed.size());
+
+        var ids = legacy.stream().mapToLong(s -> s.id()).toArray();
+        var first = ids.length == 0 ? 0 : ids[0];
+        var allowedCount = 0;
+        start = System.nanoTime();
+        for (var id = first; id < first + STRUCTURES; id++) {
+            final var structureId = id;
+            if (allowedStructures.stream().anyMatch(structure -> structure.getId() == structureId)) allowedCount++;
+        }
+        var legacyCheck = System.nanoTime() - start;
+
+        var index = StructureAccess.of(accountRepository.findAllowedStructureIds(account.getId()));
+        var indexCount = 0;
+        start = System.nanoTime();
+        for (var id = first; id < first + STRUCTURES; id++) {
+            if (index.contains(id)) indexCount++;
+        }
+        var indexCheck = System.nanoTime() - start;
+        assertEquals(allowedCount, indexCount);
+        return new long[] { legacyListing, sqlListing, legacyCheck, indexCheck };
+    }
+
+    /**
+     * Creates the accounts and the structures, each account being
+     * allowed to access a random set of structures.
+     * @param prefix the prefix of the names to avoid collisions
+     * @return the logins of the created accounts
+     */
+    private List<String> seed(String prefix) {
+        var random = new Random(0);
+        var accounts = new ArrayList<Account>(ACCOUNTS);
+        for (var i = 0; i < ACCOUNTS; i++) {
+            accounts.add(new Account(prefix + "U" + i, "-", "Bench", "Mark", Role.OPERATEUR, true));
+        }
+        accounts = new ArrayList<>(accountRepository.saveAll(accounts));
+        var structures = new ArrayList<Structure>(STRUCTURES);
+        for (var i = 0; i < STRUCTURES; i++) {
+            structures.add(new Structure(prefix + "S" + i, "", false));
+        }
+        var accessPerStructure = ACCOUNTS * STRUCTURES_PER_ACCOUNT / STRUCTURES;
+        for (var structure : structures) {
+            for (var i = 0; i < accessPerStructure; i++) {
+                structure.add(accounts.get(random.nextInt(ACCOUNTS)));
+            }
+        }
+        structureRepository.saveAll(structures);
+        summaryWriter.refreshAll();
+        return accounts.stream().map(Account::getLogin).toList();
+    }
+}
@@ -0,0 +1,14 @@
+package fr.uge.structsure.benchmarks;
+
+import org.junit.jupiter.api.Tag;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Runs the {@link RequestThreadingBenchmark} with the requests handled
+ * by virtual threads.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "spring.threads.virtual.enabled=true")
+class VirtualThreadsBenchmarkTest extends RequestThreadingBenchmark {}
@@ -0,0 +1,43 @@
+package fr.uge.structsure.benchmarks.jmh;
+
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.entities.Scan;
+import fr.uge.structsure.entities.Structure;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.ScanRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import fr.uge.structsure.services.AppLogService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost for the caller of saving a log entry with {@link AppLogService},
+ * the entries being written in the background.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AppLogJmh extends SpringState {
+    private AppLogService appLogService;
+    private Account account;
+    private Scan scan;
+
+    @Override
+    protected void seed() {
+        appLogService = bean(AppLogService.class);
+        account = bean(AccountRepository.class).save(new Account("jmh", "-", "Bench", "Mark", Role.OPERATEUR, true));
+        var structure = bean(StructureRepository.class).save(new Structure("JMH", "", false));
+        scan = bean(ScanRepository.class).save(new Scan(structure, LocalDateTime.now(), "Note", account));
+    }
+
+    @Benchmark
+    public void save() {
+        appLogService.addScan(account, scan, 100);
+    }
+}
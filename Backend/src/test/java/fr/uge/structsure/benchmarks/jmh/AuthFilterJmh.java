@@ -0,0 +1,53 @@
+package fr.uge.structsure.benchmarks.jmh;
+
+import fr.uge.structsure.config.JwtFilter;
+import fr.uge.structsure.config.JwtUtils;
+import fr.uge.structsure.config.RoleFilter;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.repositories.AccountRepository;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authentication of a request by the {@link JwtFilter} followed by the
+ * {@link RoleFilter}, from the token to the handler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthFilterJmh extends SpringState {
+    private JwtFilter jwtFilter;
+    private RoleFilter roleFilter;
+    private String token;
+
+    @Override
+    protected void seed() {
+        jwtFilter = bean(JwtFilter.class);
+        roleFilter = bean(RoleFilter.class);
+        bean(AccountRepository.class).save(new Account("jmh", "-", "Bench", "Mark", Role.ADMIN, true));
+        token = "Bearer " + bean(JwtUtils.class).generateToken("jmh");
+    }
+
+    @Benchmark
+    public int filters() throws ServletException, IOException {
+        SecurityContextHolder.clearContext();
+        var request = new MockHttpServletRequest("POST", "/api/structures");
+        request.setServletPath("/api/structures");
+        request.addHeader("Authorization", token);
+        var response = new MockHttpServletResponse();
+        var chain = new MockFilterChain();
+        jwtFilter.doFilter(request, response, (req, res) -> roleFilter.doFilter(req, res, chain));
+        return response.getStatus();
+    }
+}
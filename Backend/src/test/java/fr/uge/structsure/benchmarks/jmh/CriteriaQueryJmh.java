@@ -0,0 +1,67 @@
+package fr.uge.structsure.benchmarks.jmh;
+
+import fr.uge.structsure.dto.sensors.AllSensorsByStructureRequestDTO;
+import fr.uge.structsure.dto.sensors.SensorDTO;
+import fr.uge.structsure.dto.structure.AllStructureRequestDTO;
+import fr.uge.structsure.dto.structure.AllStructureResponseDTO;
+import fr.uge.structsure.entities.Sensor;
+import fr.uge.structsure.entities.Structure;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listings of the structures and of the sensors of a structure built
+ * with the Criteria API, on 200 structures of 50 sensors each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CriteriaQueryJmh extends SpringState {
+    private static final int STRUCTURES = 200;
+    private static final int SENSORS_PER_STRUCTURE = 50;
+
+    private SensorRepositoryCriteriaQuery sensorQuery;
+    private StructureRepositoryCriteriaQuery structureQuery;
+    private long structureId;
+    private final AllSensorsByStructureRequestDTO sensors = new AllSensorsByStructureRequestDTO("NAME", "ASC",
+        null, null, null, null, null, null, false, null);
+    private final AllStructureRequestDTO structures = new AllStructureRequestDTO("", Optional.empty(),
+        Optional.empty(), "NAME", "ASC", Optional.empty(), Optional.empty());
+
+    @Override
+    protected void seed() {
+        sensorQuery = bean(SensorRepositoryCriteriaQuery.class);
+        structureQuery = bean(StructureRepositoryCriteriaQuery.class);
+        var structureRepository = bean(StructureRepository.class);
+        var sensorRepository = bean(SensorRepository.class);
+        for (var s = 0; s < STRUCTURES; s++) {
+            var structure = structureRepository.save(new Structure("Structure " + s, "", false));
+            var created = new ArrayList<Sensor>(SENSORS_PER_STRUCTURE);
+            for (var i = 0; i < SENSORS_PER_STRUCTURE; i++) {
+                created.add(new Sensor(s + "C" + i, s + "M" + i, s + "S" + i, "", structure));
+            }
+            sensorRepository.saveAll(created);
+            structureId = structure.getId();
+        }
+        bean(StructureSummaryWriter.class).refreshAll();
+    }
+
+    @Benchmark
+    public List<SensorDTO> findAllSensorsByStructureId() throws TraitementException {
+        return sensorQuery.findAllSensorsByStructureId(structureId, sensors);
+    }
+
+    @Benchmark
+    public List<AllStructureResponseDTO> findAllStructuresWithState() throws TraitementException {
+        return structureQuery.findAllStructuresWithState(structures, null);
+    }
+}
@@ -0,0 +1,37 @@
+package fr.uge.structsure.benchmarks.jmh;
+
+import fr.uge.structsure.config.JwtUtils;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation and parsing of the authentication tokens by {@link JwtUtils}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtJmh extends SpringState {
+    private JwtUtils jwtUtils;
+    private String token;
+
+    @Override
+    protected void seed() {
+        jwtUtils = bean(JwtUtils.class);
+        token = jwtUtils.generateToken("jmh");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtils.generateToken("jmh");
+    }
+
+    @Benchmark
+    public Claims parseToken() {
+        return jwtUtils.parse(token);
+    }
+}
@@ -0,0 +1,69 @@
+package fr.uge.structsure.benchmarks.jmh;
+
+import fr.uge.structsure.dto.scan.AndroidScanResponseDTO;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.entities.Sensor;
+import fr.uge.structsure.entities.Structure;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.SensorRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import fr.uge.structsure.services.ScanService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingestion of a whole scan by {@link ScanService#saveScanResults},
+ * for several numbers of results.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScanIngestionJmh extends SpringState {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    @Param({ "100", "1000", "5000" })
+    public int size;
+
+    private ScanService scanService;
+    private Account account;
+    private Structure structure;
+    private List<AndroidSensorResultDTO> results;
+    private final LocalDateTime start = LocalDateTime.now();
+    private long scanId;
+
+    @Override
+    protected void seed() {
+        scanService = bean(ScanService.class);
+        structure = bean(StructureRepository.class).save(new Structure("JMH", "", false));
+        account = bean(AccountRepository.class).save(new Account("jmh", "-", "Bench", "Mark", Role.OPERATEUR, true));
+        var sensors = new ArrayList<Sensor>(size);
+        for (var i = 0; i < size; i++) {
+            sensors.add(new Sensor("C" + i, "M" + i, "S" + i, "", structure));
+        }
+        results = bean(SensorRepository.class).saveAll(sensors).stream()
+            .map(sensor -> new AndroidSensorResultDTO(
+                sensor.getSensorId().getControlChip() + "-" + sensor.getSensorId().getMeasureChip(), fr.uge.structsure.entities.State.OK.name()))
+            .toList();
+    }
+
+    @Benchmark
+    public AndroidScanResponseDTO saveScanResults() throws TraitementException {
+        var id = scanId++;
+        var date = start.plusSeconds(id).format(DATE_FORMAT);
+        var scan = new AndroidScanResultDTO(structure.getId(), id, date, "", "", account.getLogin(), results, List.of());
+        return scanService.saveScanResults(account, scan);
+    }
+}
@@ -0,0 +1,64 @@
+package fr.uge.structsure.benchmarks.jmh;
+
+import fr.uge.structsure.StructSureBackendApplication;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Base of the JMH suites: starts the whole application on a new
+ * file-backed SQLite database before each trial, and lets the suite
+ * seed it with the data it needs.
+ */
+@State(Scope.Benchmark)
+public abstract class SpringState {
+    /** Database of the benchmarks, recreated for each trial */
+    private static final Path DATABASE = Path.of("target", "jmh", "structsure-jmh.db");
+
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        Files.createDirectories(DATABASE.getParent());
+        for (var suffix : new String[] { "", "-wal", "-shm" }) {
+            Files.deleteIfExists(Path.of(DATABASE + suffix));
+        }
+        context = new SpringApplicationBuilder(StructSureBackendApplication.class)
+            .properties(Map.of(
+                "spring.datasource.url", "jdbc:sqlite:" + DATABASE,
+                "server.port", "0",
+                "logging.level.fr.uge.structsure", "WARN"
+            ))
+            .run();
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        context.close();
+    }
+
+    /**
+     * Creates the data used by the suite
+     * @throws Exception if the data cannot be created
+     */
+    protected abstract void seed() throws Exception;
+
+    /**
+     * Gets a bean of the running application
+     * @param type the type of the bean
+     * @return the bean
+     */
+    protected <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+}
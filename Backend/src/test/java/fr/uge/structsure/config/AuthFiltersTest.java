@@ -0,0 +1,146 @@
+package fr.uge.structsure.config;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.exceptions.Error;
+import fr.uge.structsure.repositories.AccountRepository;
+import jakarta.servlet.Filter;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the authentication and the roles of the requests through the
+ * {@link JwtFilter} and the {@link RoleFilter}, as chained in front of
+ * the controllers.
+ */
+@SpringBootTest
+class AuthFiltersTest extends DataBaseTests {
+
+    @Autowired
+    private JwtFilter jwtFilter;
+
+    @Autowired
+    private RoleFilter roleFilter;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Value("${app.secret-key}")
+    private String secretKey;
+
+    private Account admin;
+    private Account operator;
+
+    @BeforeEach
+    void setUp() {
+        var prefix = "F" + System.nanoTime();
+        admin = accountRepository.save(new Account(prefix + "-admin", "-", "John", "Doe", Role.ADMIN, true));
+        operator = accountRepository.save(new Account(prefix + "-operator", "-", "Jane", "Doe", Role.OPERATEUR, true));
+    }
+
+    @AfterEach
+    void clean() {
+        SecurityContextHolder.clearContext();
+        accountRepository.delete(admin);
+        accountRepository.delete(operator);
+    }
+
+    /**
+     * Sends the given request through the filters.
+     * @param request the request to filter
+     * @param response the response filled by the filters
+     * @return true if the request reached the controllers
+     */
+    private boolean filter(MockHttpServletRequest request, MockHttpServletResponse response) throws ServletException, IOException {
+        var end = new MockFilterChain();
+        Filter controllers = (req, res, chain) -> end.doFilter(req, res);
+        new MockFilterChain(new HttpServlet() {}, jwtFilter, roleFilter, controllers).doFilter(request, response);
+        return end.getRequest() != null;
+    }
+
+    private static MockHttpServletRequest request(String uri, String token) {
+        var request = new MockHttpServletRequest("GET", uri);
+        if (token != null) request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+
+    @Test
+    void missingTokenRedirectsToLogin() throws ServletException, IOException {
+        var response = new MockHttpServletResponse();
+        assertFalse(filter(request("/api/structures", null), response));
+        assertEquals(307, response.getStatus());
+        assertEquals("/login", response.getHeader("Location"));
+    }
+
+    @Test
+    void expiredTokenIsRejected() throws ServletException, IOException {
+        var expired = new JwtUtils(secretKey, 3, -1000).generateToken(admin.getLogin());
+        var request = request("/api/accounts", expired);
+        var response = new MockHttpServletResponse();
+        filter(request, response);
+        assertEquals(Error.INVALID_TOKEN.code, response.getStatus());
+        assertTrue(AuthContext.of(request).isEmpty());
+    }
+
+    @Test
+    void unknownAccountIsRejected() throws ServletException, IOException {
+        var request = request("/api/structures", jwtUtils.generateToken(admin.getLogin() + "-unknown"));
+        var response = new MockHttpServletResponse();
+        filter(request, response);
+        assertEquals(Error.INVALID_TOKEN.code, response.getStatus());
+        assertTrue(AuthContext.of(request).isEmpty());
+    }
+
+    @Test
+    void validTokenAttachesTheAccount() throws ServletException, IOException {
+        var request = request("/api/accounts", jwtUtils.generateToken(admin.getLogin()));
+        var response = new MockHttpServletResponse();
+        assertTrue(filter(request, response));
+        assertEquals(200, response.getStatus());
+        var context = AuthContext.of(request).orElseThrow();
+        assertEquals(admin.getId(), context.account().id());
+        assertEquals(Role.ADMIN, context.requiredRole());
+    }
+
+    @Test
+    void insufficientRoleIsRejected() throws ServletException, IOException {
+        var response = new MockHttpServletResponse();
+        assertFalse(filter(request("/api/accounts", jwtUtils.generateToken(operator.getLogin())), response));
+        assertEquals(Error.UNAUTHORIZED_OPERATION.code, response.getStatus());
+    }
+
+    @Test
+    void restrictedEndpointNeedsAnAccount() throws ServletException, IOException {
+        var request = request("/api/accounts", null);
+        var response = new MockHttpServletResponse();
+        roleFilter.doFilter(request, response, new MockFilterChain());
+        assertEquals(Error.INVALID_TOKEN.code, response.getStatus());
+    }
+
+    @Test
+    void unknownEndpointRequiresNoRole() throws ServletException, IOException {
+        var request = request("/api/unknown/endpoint", jwtUtils.generateToken(operator.getLogin()));
+        var response = new MockHttpServletResponse();
+        assertTrue(filter(request, response));
+        assertEquals(200, response.getStatus());
+        assertNull(AuthContext.of(request).orElseThrow().requiredRole());
+    }
+}
@@ -0,0 +1,109 @@
+package fr.uge.structsure.config;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.dto.structure.AllStructureRequestDTO;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.entities.Sensor;
+import fr.uge.structsure.entities.State;
+import fr.uge.structsure.entities.Structure;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.SensorRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import fr.uge.structsure.repositories.StructureRepositoryCriteriaQuery;
+import fr.uge.structsure.services.ScanService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class MetricsConfigTest extends DataBaseTests {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StructureRepositoryCriteriaQuery structureCriteriaQuery;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    @Autowired
+    private ScanService scanService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void timesTheCriteriaQueriesButNotTheSpringDataRepositories() throws TraitementException {
+        var request = new AllStructureRequestDTO("", Optional.empty(), Optional.empty(),
+            "NAME", "ASC", Optional.empty(), Optional.empty());
+        var before = repositoryCalls("StructureRepositoryCriteriaQuery", "findAllStructuresWithState");
+        structureCriteriaQuery.findAllStructuresWithState(request, null);
+        assertEquals(before + 1, repositoryCalls("StructureRepositoryCriteriaQuery", "findAllStructuresWithState"));
+        structureRepository.findAll();
+        assertNull(meterRegistry.find(RepositoryMetricsPostProcessor.TIMER).tag("repository", "StructureRepository").timer());
+    }
+
+    @Test
+    void exposesTheLogWriterCounters() {
+        assertNotNull(meterRegistry.find("structsure.logs.written").functionCounter());
+        assertNotNull(meterRegistry.find("structsure.logs.failed").functionCounter());
+        assertNotNull(meterRegistry.find("structsure.logs.pending").gauge());
+    }
+
+    @Test
+    void countsTheScansOnlyOnceCommitted() {
+        var prefix = "M" + System.nanoTime();
+        var structure = structureRepository.save(new Structure("Metrics " + prefix, "", false));
+        var account = accountRepository.save(new Account(prefix, "-", "John", "Doe", Role.OPERATEUR, true));
+        sensorRepository.save(new Sensor(prefix + "C", prefix + "M", prefix + "S", "", structure));
+        var results = List.of(new AndroidSensorResultDTO(prefix + "C-" + prefix + "M", State.OK.name()));
+        var transaction = new TransactionTemplate(transactionManager);
+        var saved = savedScans();
+
+        transaction.executeWithoutResult(status -> {
+            save(account, new AndroidScanResultDTO(structure.getId(), 1L, "2025-01-01 10:00:00.000", "", "", prefix, results, List.of()));
+            status.setRollbackOnly();
+        });
+        assertEquals(saved, savedScans());
+
+        transaction.executeWithoutResult(status ->
+            save(account, new AndroidScanResultDTO(structure.getId(), 2L, "2025-01-01 11:00:00.000", "", "", prefix, results, List.of())));
+        assertEquals(saved + 1, savedScans());
+    }
+
+    private void save(Account account, AndroidScanResultDTO scan) {
+        try {
+            scanService.saveScanResults(account, scan);
+        } catch (TraitementException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double savedScans() {
+        return meterRegistry.get("structsure.scans").tag("outcome", "saved").counter().count();
+    }
+
+    private long repositoryCalls(String repository, String method) {
+        var timer = meterRegistry.find(RepositoryMetricsPostProcessor.TIMER).tag("repository", repository).tag("method", method).timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -0,0 +1,143 @@
+package fr.uge.structsure.config;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the databases created by Hibernate before the migrations
+ * are baselined and migrated to the same schema as the new databases.
+ */
+class SchemaMigrationTest {
+
+    @TempDir
+    private Path directory;
+
+    private static String url(Path file) {
+        return "jdbc:sqlite:" + file.toAbsolutePath();
+    }
+
+    /**
+     * Migrates the database the same way as at startup
+     * @param url the JDBC url of the database
+     */
+    private static void migrate(String url) {
+        Flyway.configure()
+            .dataSource(url, null, null)
+            .baselineOnMigrate(true)
+            .baselineVersion("1")
+            .load()
+            .migrate();
+    }
+
+    /**
+     * Creates a database with the schema Hibernate created before the
+     * migrations existed, with a few rows.
+     * @param url the JDBC url of the database
+     */
+    private static void createLegacyDatabase(String url) throws IOException, SQLException {
+        String script;
+        try (var input = Objects.requireNonNull(SchemaMigrationTest.class.getResourceAsStream("/db/hibernate-baseline.sql"))) {
+            script = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try (var connection = DriverManager.getConnection(url); var statement = connection.createStatement()) {
+            for (var sql : script.split(";\n")) {
+                var lines = sql.lines().filter(line -> !line.startsWith("--")).toList();
+                if (!lines.isEmpty()) statement.execute(String.join("\n", lines));
+            }
+            statement.execute("INSERT INTO account (id, enabled, firstname, lastname, login, password_encrypted, role) "
+                + "VALUES (1, true, 'John', 'Doe', 'jdoe', '-', 0)");
+            statement.execute("INSERT INTO structure (id, archived, name, note) VALUES (1, false, 'Pont', '')");
+            statement.execute("INSERT INTO sensor (control_chip, measure_chip, archived, name, structure_id) "
+                + "VALUES ('C1', 'M1', false, 'Capteur', 1)");
+            statement.execute("INSERT INTO scan (id, date, note, author_id, structure_id) VALUES (1, 0, '', 1, 1)");
+            statement.execute("INSERT INTO result (id, state, scan_id, control_chip, measure_chip) VALUES (1, 2, 1, 'C1', 'M1')");
+            statement.execute("INSERT INTO app_log (id, message, time, author_id) VALUES (1, 'Ouvrage créé: Pont (#1)', 0, 1)");
+        }
+    }
+
+    /**
+     * Describes the tables, their columns and the indexes and triggers
+     * of the database, without the history of the migrations.
+     * @param connection the connection to the database
+     * @return the description of each element by name
+     */
+    private static Map<String, List<String>> schema(Connection connection) throws SQLException {
+        var schema = new TreeMap<String, List<String>>();
+        try (var statement = connection.createStatement();
+             var elements = statement.executeQuery("SELECT type, name, tbl_name FROM sqlite_master "
+                 + "WHERE name NOT LIKE 'sqlite_%' AND tbl_name <> 'flyway_schema_history'")) {
+            while (elements.next()) {
+                var type = elements.getString(1);
+                var name = elements.getString(2);
+                schema.put(type + " " + name, List.of(elements.getString(3)));
+            }
+        }
+        for (var element : List.copyOf(schema.keySet())) {
+            if (!element.startsWith("table ")) continue;
+            var columns = new ArrayList<String>();
+            try (var statement = connection.createStatement();
+                 var info = statement.executeQuery("PRAGMA table_info('" + element.substring(6) + "')")) {
+                while (info.next()) {
+                    columns.add(info.getString("name") + " " + info.getString("type") + " notnull=" + info.getInt("notnull")
+                        + " default=" + info.getString("dflt_value") + " pk=" + info.getInt("pk"));
+                }
+            }
+            schema.put(element, columns);
+        }
+        return schema;
+    }
+
+    private static List<String> history(Connection connection) throws SQLException {
+        var history = new ArrayList<String>();
+        try (var statement = connection.createStatement();
+             var rows = statement.executeQuery("SELECT version, type, success FROM flyway_schema_history ORDER BY installed_rank")) {
+            while (rows.next()) history.add(rows.getString(1) + " " + rows.getString(2) + " " + rows.getBoolean(3));
+        }
+        return history;
+    }
+
+    @Test
+    void legacyDatabaseIsMigratedLikeANewOne() throws IOException, SQLException {
+        var legacy = url(directory.resolve("legacy.db"));
+        var fresh = url(directory.resolve("fresh.db"));
+        createLegacyDatabase(legacy);
+        migrate(legacy);
+        migrate(fresh);
+
+        try (var legacyConnection = DriverManager.getConnection(legacy);
+             var freshConnection = DriverManager.getConnection(fresh)) {
+            var history = history(legacyConnection);
+            assertEquals("1 BASELINE true", history.getFirst());
+            assertTrue(history.stream().skip(1).allMatch(row -> row.endsWith(" SQL true")), history.toString());
+            assertEquals(history(freshConnection).size(), history.size());
+
+            assertEquals(schema(freshConnection), schema(legacyConnection));
+
+            try (var statement = legacyConnection.createStatement();
+                 var rows = statement.executeQuery("SELECT s.current_state, s.result_count, l.message, l.event, "
+                     + "(SELECT COUNT(*) FROM result) FROM sensor s, app_log l")) {
+                assertTrue(rows.next());
+                assertEquals(3, rows.getInt(1));
+                assertEquals(0, rows.getInt(2));
+                assertEquals("Ouvrage créé: Pont (#1)", rows.getString(3));
+                assertNull(rows.getObject(4));
+                assertEquals(1, rows.getInt(5));
+            }
+        }
+    }
+}
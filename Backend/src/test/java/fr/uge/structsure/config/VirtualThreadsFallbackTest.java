@@ -0,0 +1,48 @@
+package fr.uge.structsure.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.logging.DeferredLogs;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadsFallbackTest {
+    private static final String PARALLELISM = "jdk.virtualThreadScheduler.parallelism";
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty(PARALLELISM);
+    }
+
+    private static boolean virtualThreads(int carriers, boolean enabled) {
+        System.setProperty(PARALLELISM, String.valueOf(carriers));
+        var environment = new MockEnvironment().withProperty("spring.threads.virtual.enabled", String.valueOf(enabled));
+        new VirtualThreadsFallback(new DeferredLogs()).postProcessEnvironment(environment, new SpringApplication());
+        return environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+    }
+
+    @Test
+    void tooFewCarriersFallBackToPlatformThreads() {
+        assertFalse(virtualThreads(1, true));
+        assertFalse(virtualThreads(2, true));
+    }
+
+    @Test
+    void enoughCarriersKeepVirtualThreads() {
+        assertTrue(virtualThreads(3, true));
+        assertTrue(virtualThreads(8, true));
+        assertFalse(virtualThreads(8, false));
+    }
+
+    @Test
+    void readersLeaveOneCarrierFree() {
+        for (var carriers = DataSourceConfig.MIN_CARRIERS; carriers <= 16; carriers++) {
+            System.setProperty(PARALLELISM, String.valueOf(carriers));
+            var readers = DataSourceConfig.carriers() - 2;
+            assertTrue(readers >= 1);
+            assertTrue(readers + 1 < carriers);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package fr.uge.structsure.controllers;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.config.JwtUtils;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.repositories.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MonitoringControllerTest extends DataBaseTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    private final Account admin = new Account("monitoring-admin", "-", "John", "Doe", Role.ADMIN, true);
+    private final Account operator = new Account("monitoring-operator", "-", "Jane", "Doe", Role.OPERATEUR, true);
+
+    @BeforeEach
+    void setUp() {
+        accountRepository.save(admin);
+        accountRepository.save(operator);
+    }
+
+    @AfterEach
+    void clean() {
+        accountRepository.delete(admin);
+        accountRepository.delete(operator);
+    }
+
+    @Test
+    void metricsAreExposedToTheAdministrators() throws Exception {
+        mockMvc.perform(get("/api/monitoring/metrics").header("Authorization", "Bearer " + jwtUtils.generateToken(admin.getLogin())))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("structsure_logs_pending")))
+            .andExpect(content().string(containsString("hikaricp_connections")));
+    }
+
+    @Test
+    void metricsAreHiddenFromTheOperators() throws Exception {
+        mockMvc.perform(get("/api/monitoring/metrics").header("Authorization", "Bearer " + jwtUtils.generateToken(operator.getLogin())))
+            .andExpect(status().is4xxClientError());
+    }
+}
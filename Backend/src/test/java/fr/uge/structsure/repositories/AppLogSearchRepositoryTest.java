@@ -0,0 +1,128 @@
+package fr.uge.structsure.repositories;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.entities.AppLog;
+import fr.uge.structsure.entities.AppLogEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the search in the log entries against the SQLite full-text
+ * index filled by the batch writer and maintained by the triggers of
+ * the V6 migration.
+ */
+@SpringBootTest
+class AppLogSearchRepositoryTest extends DataBaseTests {
+
+    @Autowired
+    private AppLogSearchRepository searchRepository;
+
+    @Autowired
+    private AppLogBatchWriter batchWriter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts an entry by value, all at the given time.
+     * @param time the time of the entries
+     * @param values the single value of each entry
+     */
+    private void insert(LocalDateTime time, String... values) {
+        var entries = new ArrayList<AppLogBatchWriter.Entry>();
+        for (var value : values) {
+            entries.add(new AppLogBatchWriter.Entry(time, null, AppLogEvent.PLAN_CREATED,
+                AppLogEvent.PLAN_CREATED.encode(value), AppLogBatchWriter.Target.account(1)));
+        }
+        batchWriter.insertAll(entries);
+    }
+
+    private static List<String> messages(List<AppLog> logs) {
+        return logs.stream().map(AppLog::getMessage).toList();
+    }
+
+    @Test
+    void shortSearchesUseLike() {
+        var prefix = "S" + System.nanoTime();
+        insert(LocalDateTime.now(), prefix + " ʘʬ", prefix + " other");
+
+        assertEquals(List.of("Plan créé: " + prefix + " ʘʬ"), messages(searchRepository.search("ʘʬ", null, null, 0, 10)));
+        assertEquals(1, searchRepository.count("ʘʬ"));
+        assertEquals(1, searchRepository.count("ʬ"));
+        assertEquals(2, searchRepository.count(prefix));
+        assertEquals(2, searchRepository.search(prefix, null, null, 0, 10).size());
+    }
+
+    @Test
+    void pagesSplitEntriesHavingTheSameTime() {
+        var prefix = "T" + System.nanoTime();
+        var time = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        insert(time.minusSeconds(1), prefix + "-older");
+        insert(time, prefix + "-0", prefix + "-1", prefix + "-2", prefix + "-3", prefix + "-4");
+
+        var seen = new ArrayList<AppLog>();
+        var page = searchRepository.search(prefix, null, null, 0, 2);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 2);
+            seen.addAll(page);
+            var last = page.get(page.size() - 1);
+            page = searchRepository.search(prefix, last.getDateTime(), last.getId(), 0, 2);
+        }
+        assertEquals(List.of("4", "3", "2", "1", "0", "older").stream().map(s -> "Plan créé: " + prefix + "-" + s).toList(),
+            messages(seen));
+        assertEquals(6, seen.stream().mapToLong(AppLog::getId).distinct().count());
+    }
+
+    @Test
+    void deletedEntriesLeaveTheIndex() {
+        var prefix = "U" + System.nanoTime();
+        var time = LocalDateTime.now().minusYears(5);
+        insert(time, prefix + "-a", prefix + "-b");
+        var ids = jdbcTemplate.queryForList("SELECT rowid FROM app_log_fts WHERE app_log_fts MATCH ?",
+            Long.class, '"' + prefix + '"');
+        assertEquals(2, ids.size());
+
+        assertTrue(batchWriter.deleteBefore(time.plusSeconds(1), 1) >= 2);
+        assertEquals(0, searchRepository.count(prefix));
+        assertTrue(searchRepository.search(prefix, null, null, 0, 10).isEmpty());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM app_log_fts WHERE rowid IN (?, ?)",
+            Long.class, ids.get(0), ids.get(1)));
+    }
+
+    @Test
+    void searchesSpanTheFixedTextAndTheValues() {
+        var scanId = System.nanoTime();
+        var structure = "Pont " + scanId;
+        batchWriter.insertAll(List.of(new AppLogBatchWriter.Entry(LocalDateTime.now(), null, AppLogEvent.SCAN_ADDED,
+            AppLogEvent.SCAN_ADDED.encode(scanId, structure, 3, "jdoe", 12, ""), AppLogBatchWriter.Target.account(1))));
+
+        for (var search : List.of("#" + scanId, "Scan: #" + scanId, "Ouvrage: " + structure + " (#3)")) {
+            var found = searchRepository.search(search, null, null, 0, 10);
+            assertEquals(List.of("Scan ajouté: Scan: #" + scanId + ", Ouvrage: " + structure
+                + " (#3), Auteur: jdoe, Résultats: 12, Note: "), messages(found), search);
+            assertEquals(1, searchRepository.count(search), search);
+        }
+    }
+
+    @Test
+    void missingEntriesAreIndexedAgain() {
+        var prefix = "V" + System.nanoTime();
+        insert(LocalDateTime.now(), prefix + "-a", prefix + "-b");
+        jdbcTemplate.update("DELETE FROM app_log_fts WHERE app_log_fts MATCH ?", '"' + prefix + '"');
+        assertEquals(0, searchRepository.count(prefix));
+
+        assertTrue(searchRepository.syncIndex() >= 2);
+        assertEquals(List.of("Plan créé: " + prefix + "-b", "Plan créé: " + prefix + "-a"),
+            messages(searchRepository.search("créé: " + prefix, null, null, 0, 10)));
+        assertEquals(0, searchRepository.syncIndex());
+    }
+}
@@ -0,0 +1,143 @@
+package fr.uge.structsure.repositories;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.dto.sensors.AllSensorsByStructureRequestDTO;
+import fr.uge.structsure.dto.sensors.SensorDTO;
+import fr.uge.structsure.dto.structure.AllStructureRequestDTO;
+import fr.uge.structsure.dto.structure.AllStructureResponseDTO;
+import fr.uge.structsure.entities.Sensor;
+import fr.uge.structsure.entities.Structure;
+import fr.uge.structsure.exceptions.Error;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.utils.KeysetCursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that walking a listing page by page with the cursors gives
+ * the same rows, in the same order, as the listing read at once.
+ */
+@SpringBootTest
+class KeysetPagingTest extends DataBaseTests {
+    private static final int PAGE = 2;
+
+    @Autowired
+    private SensorRepositoryCriteriaQuery sensorQuery;
+
+    @Autowired
+    private StructureRepositoryCriteriaQuery structureQuery;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    @Autowired
+    private StructureSummaryWriter summaryWriter;
+
+    private static AllSensorsByStructureRequestDTO sensors(String column, String order, Integer limit, String cursor) {
+        return new AllSensorsByStructureRequestDTO(column, order, null, null, null, null, limit, null, null, null, cursor);
+    }
+
+    private static AllStructureRequestDTO structures(String name, String column, String order, Integer limit, String cursor) {
+        return new AllStructureRequestDTO(name, Optional.empty(), Optional.empty(), column, order,
+            Optional.ofNullable(limit), Optional.ofNullable(cursor));
+    }
+
+    private List<SensorDTO> sensorPages(long structureId, String column, String order) throws TraitementException {
+        var rows = new ArrayList<SensorDTO>();
+        String cursor = null;
+        do {
+            var request = sensors(column, order, PAGE, cursor);
+            var page = sensorQuery.findAllSensorsByStructureId(structureId, request);
+            assertTrue(page.size() <= PAGE);
+            rows.addAll(page);
+            cursor = SensorRepositoryCriteriaQuery.nextCursor(request, page);
+        } while (cursor != null);
+        return rows;
+    }
+
+    private List<AllStructureResponseDTO> structurePages(String name, String column, String order) throws TraitementException {
+        var rows = new ArrayList<AllStructureResponseDTO>();
+        String cursor = null;
+        do {
+            var request = structures(name, column, order, PAGE, cursor);
+            var page = structureQuery.findAllStructuresWithState(request, null);
+            assertTrue(page.size() <= PAGE);
+            rows.addAll(page);
+            cursor = StructureRepositoryCriteriaQuery.nextCursor(request, page);
+        } while (cursor != null);
+        return rows;
+    }
+
+    private static List<String> chips(List<SensorDTO> sensors) {
+        return sensors.stream().map(s -> s.controlChip() + "-" + s.measureChip()).toList();
+    }
+
+    @Test
+    void sensorPagesFollowTheListing() throws TraitementException {
+        var prefix = "K" + System.nanoTime();
+        var structure = structureRepository.save(new Structure("Keyset " + prefix, "", false));
+        var date = LocalDate.of(2025, 1, 1);
+        var dates = new LocalDate[] { date, null, date, null, date.plusDays(1), null, date };
+        for (var i = 0; i < dates.length; i++) {
+            // only two distinct names, the ties being broken by the chips
+            sensorRepository.save(new Sensor(prefix + "C" + i, prefix + "M" + i, prefix + (i % 2), dates[i], "", structure));
+        }
+
+        for (var column : List.of("NAME", "INSTALLATION_DATE", "STATE")) {
+            for (var order : List.of("ASC", "DESC")) {
+                var all = sensorQuery.findAllSensorsByStructureId(structure.getId(), sensors(column, order, null, null));
+                assertEquals(dates.length, all.size());
+                assertEquals(chips(all), chips(sensorPages(structure.getId(), column, order)), column + " " + order);
+            }
+        }
+    }
+
+    @Test
+    void structurePagesFollowTheListing() throws TraitementException {
+        var prefix = "K" + System.nanoTime();
+        var counts = new int[] { 1, 0, 1, 2, 1, 0 };
+        for (var i = 0; i < counts.length; i++) {
+            var structure = structureRepository.save(new Structure(prefix + " " + (i % 2 == 0 ? "A" + i : "B" + i), "", false));
+            for (var j = 0; j < counts[i]; j++) {
+                sensorRepository.save(new Sensor(prefix + "C" + i + "-" + j, prefix + "M" + i + "-" + j, "S" + j, "", structure));
+            }
+            summaryWriter.refresh(structure.getId());
+        }
+
+        for (var column : List.of("NAME", "NUMBER_OF_SENSORS", "STATE")) {
+            for (var order : List.of("ASC", "DESC")) {
+                var all = structureQuery.findAllStructuresWithState(structures(prefix, column, order, null, null), null);
+                assertEquals(counts.length, all.size());
+                assertEquals(all, structurePages(prefix, column, order), column + " " + order);
+            }
+        }
+    }
+
+    @Test
+    void cursorOfAnotherSortIsRejected() {
+        var structure = structureRepository.save(new Structure("Keyset " + System.nanoTime(), "", false));
+        var sensorCursor = new KeysetCursor("NAME", "ASC", "name", List.of("C", "M")).encode();
+        var exception = assertThrows(TraitementException.class,
+            () -> sensorQuery.findAllSensorsByStructureId(structure.getId(), sensors("STATE", "ASC", PAGE, sensorCursor)));
+        assertEquals(Error.INCORRECT_FIELD_VALUE, exception.error);
+
+        var structureCursor = new KeysetCursor("NAME", "ASC", "name", List.of("1")).encode();
+        exception = assertThrows(TraitementException.class,
+            () -> structureQuery.findAllStructuresWithState(structures("", "NAME", "DESC", PAGE, structureCursor), null));
+        assertEquals(Error.INCORRECT_FIELD_VALUE, exception.error);
+        exception = assertThrows(TraitementException.class,
+            () -> structureQuery.findAllStructuresWithState(structures("", "NAME", "ASC", PAGE, sensorCursor), null));
+        assertEquals(Error.INCORRECT_FIELD_VALUE, exception.error);
+    }
+}
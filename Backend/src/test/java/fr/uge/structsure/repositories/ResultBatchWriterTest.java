@@ -0,0 +1,124 @@
+package fr.uge.structsure.repositories;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.entities.Sensor;
+import fr.uge.structsure.entities.State;
+import fr.uge.structsure.entities.Structure;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.services.ScanService;
+import fr.uge.structsure.services.SensorService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the state, results count and last scan stored on the sensors
+ * when the results are saved, and that rebuilding them from the
+ * results gives the same values.
+ */
+@SpringBootTest
+class ResultBatchWriterTest extends DataBaseTests {
+
+    @Autowired
+    private ScanService scanService;
+
+    @Autowired
+    private SensorService sensorService;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    private String prefix;
+    private Structure structure;
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        prefix = "R" + System.nanoTime();
+        structure = structureRepository.save(new Structure("Results " + prefix, "", false));
+        account = accountRepository.save(new Account(prefix, "-", "John", "Doe", Role.OPERATEUR, true));
+        for (var i = 0; i < 4; i++) {
+            sensorRepository.save(new Sensor(prefix + "C" + i, prefix + "M" + i, prefix + "S" + i, "", structure));
+        }
+    }
+
+    private long scan(long scanId, State... states) throws TraitementException {
+        var results = new ArrayList<AndroidSensorResultDTO>();
+        for (var i = 0; i < states.length; i++) {
+            if (states[i] == null) continue;
+            results.add(new AndroidSensorResultDTO(prefix + "C" + i + "-" + prefix + "M" + i, states[i].name()));
+        }
+        return scanService.saveScanResults(account, new AndroidScanResultDTO(structure.getId(), scanId,
+            "2025-01-0" + scanId + " 10:00:00.000", "", "", prefix, results, List.of())).scanId();
+    }
+
+    /**
+     * Gets the state, results count and last scan stored on each sensor
+     * of the structure, in the order of the sensors.
+     * @return the stored values of each sensor
+     */
+    private List<List<Object>> stored() {
+        return jdbcTemplate.query("""
+            SELECT current_state, result_count, last_scan_id FROM sensor WHERE structure_id = ? ORDER BY control_chip""",
+            (rs, i) -> {
+                var state = State.values()[rs.getInt(1)];
+                var count = rs.getLong(2);
+                var lastScan = rs.getLong(3);
+                return List.<Object>of(state, count, rs.wasNull() ? "none" : lastScan);
+            }, structure.getId());
+    }
+
+    @Test
+    void savedResultsKeepTheWorstState() throws TraitementException {
+        var first = scan(1, State.OK, State.NOK, State.UNKNOWN, null);
+        var second = scan(2, State.DEFECTIVE, State.OK, null, null);
+        assertEquals(List.of(
+            List.of(State.DEFECTIVE, 2L, second),
+            List.of(State.NOK, 2L, second),
+            List.of(State.OK, 1L, first),
+            List.of(State.UNKNOWN, 0L, "none")
+        ), stored());
+    }
+
+    @Test
+    void rebuildGivesTheSavedValues() throws TraitementException {
+        scan(1, State.NOK, State.OK, State.DEFECTIVE, null);
+        scan(2, State.OK, State.UNKNOWN, State.OK, null);
+        var saved = stored();
+
+        jdbcTemplate.update("UPDATE sensor SET current_state = ?, result_count = 0, last_scan_id = NULL WHERE structure_id = ?",
+            State.UNKNOWN.ordinal(), structure.getId());
+        sensorService.rebuildStatesIfStale(new ApplicationReadyEvent(new SpringApplication(), new String[0], context, Duration.ZERO));
+        assertEquals(saved, stored());
+
+        sensorService.rebuildStates();
+        assertEquals(saved, stored());
+    }
+}
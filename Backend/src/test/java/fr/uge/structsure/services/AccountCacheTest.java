@@ -0,0 +1,92 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.repositories.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AccountCacheTest {
+    private AccountRepository accountRepository;
+    private AccountCache cache;
+
+    @BeforeEach
+    void setUp() {
+        accountRepository = mock(AccountRepository.class);
+        cache = new AccountCache(accountRepository, 2, 60);
+    }
+
+    private Account account(String login, long id, Role role) {
+        var account = new Account(login, "hash", "First", "Last", role, true);
+        account.setId(id);
+        when(accountRepository.findByLogin(login)).thenReturn(Optional.of(account));
+        when(accountRepository.findAllowedStructureIds(id)).thenReturn(List.of(1L, 2L));
+        return account;
+    }
+
+    @Test
+    void loadsOnceThenHits() {
+        account("alice", 1, Role.OPERATEUR);
+        var first = cache.get("alice").orElseThrow();
+        var second = cache.get("alice").orElseThrow();
+        assertEquals(first, second);
+        assertEquals(Role.OPERATEUR, first.role());
+        assertTrue(first.allowedStructures().contains(2L));
+        verify(accountRepository, times(1)).findByLogin("alice");
+        var stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    void unknownAccountIsNotCached() {
+        when(accountRepository.findByLogin("nobody")).thenReturn(Optional.empty());
+        assertTrue(cache.get("nobody").isEmpty());
+        assertTrue(cache.get("nobody").isEmpty());
+        verify(accountRepository, times(2)).findByLogin("nobody");
+    }
+
+    @Test
+    void invalidateShowsChangeImmediately() {
+        var account = account("bob", 2, Role.OPERATEUR);
+        assertEquals(Role.OPERATEUR, cache.get("bob").orElseThrow().role());
+        account.setRole(Role.ADMIN);
+        cache.invalidate("bob");
+        assertEquals(Role.ADMIN, cache.get("bob").orElseThrow().role());
+        assertEquals(1, cache.stats().invalidations());
+    }
+
+    @Test
+    void loadRacingWithInvalidationIsNotStored() {
+        var account = account("carol", 3, Role.OPERATEUR);
+        when(accountRepository.findAllowedStructureIds(3L)).thenAnswer(invocation -> {
+            cache.invalidate("carol"); // concurrent write committed during the load
+            return List.of();
+        }).thenReturn(List.of());
+        cache.get("carol");
+        account.setRole(Role.RESPONSABLE);
+        assertEquals(Role.RESPONSABLE, cache.get("carol").orElseThrow().role());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        account("a", 10, Role.OPERATEUR);
+        account("b", 11, Role.OPERATEUR);
+        account("c", 12, Role.OPERATEUR);
+        cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c");
+        var stats = cache.stats();
+        assertEquals(2, stats.size());
+        assertEquals(1, stats.evictions());
+        cache.get("a");
+        verify(accountRepository, times(1)).findByLogin("a");
+    }
+}
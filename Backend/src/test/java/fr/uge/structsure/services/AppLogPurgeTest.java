@@ -0,0 +1,70 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.entities.AppLogEvent;
+import fr.uge.structsure.repositories.AppLogBatchWriter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the old log entries are removed by chunks of ids without
+ * removing the recent entries, even when the ids do not follow the time.
+ */
+@SpringBootTest
+class AppLogPurgeTest extends DataBaseTests {
+
+    @Autowired
+    private AppLogService appLogService;
+
+    @Autowired
+    private AppLogBatchWriter batchWriter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts one entry by age, in the given order so that their ids
+     * follow the list rather than the time.
+     * @param prefix the prefix of the parameters of the entries
+     * @param ages the age of each entry, in days
+     */
+    private void insert(String prefix, int... ages) {
+        var now = LocalDateTime.now();
+        var entries = new ArrayList<AppLogBatchWriter.Entry>();
+        for (var i = 0; i < ages.length; i++) {
+            entries.add(new AppLogBatchWriter.Entry(now.minusDays(ages[i]), null, AppLogEvent.PLAN_CREATED,
+                prefix + i, AppLogBatchWriter.Target.account(1)));
+        }
+        assertEquals(ages.length, batchWriter.insertAll(entries));
+    }
+
+    private List<String> remaining(String prefix) {
+        return jdbcTemplate.queryForList("SELECT params FROM app_log WHERE params LIKE ? ORDER BY id",
+            String.class, prefix + "%");
+    }
+
+    @Test
+    void removesTheOldEntriesByChunks() {
+        var prefix = "P" + System.nanoTime() + "-";
+        insert(prefix, 400, 300, 1, 350, 310, 2, 320);
+        var removed = batchWriter.deleteBefore(LocalDateTime.now().minusDays(200), 2);
+        assertEquals(5, removed);
+        assertEquals(List.of(prefix + 2, prefix + 5), remaining(prefix));
+    }
+
+    @Test
+    void purgeKeepsTheRecentEntriesInsertedBeforeOldOnes() {
+        var prefix = "Q" + System.nanoTime() + "-";
+        insert(prefix, 40, 3, 0, 35);
+        appLogService.purge();
+        assertEquals(List.of(prefix + 1, prefix + 2), remaining(prefix));
+    }
+}
@@ -0,0 +1,154 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.dto.scan.AndroidSensorEditDTO;
+import fr.uge.structsure.dto.userAccount.accountStructure.StructurePermission;
+import fr.uge.structsure.entities.*;
+import fr.uge.structsure.exceptions.Error;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.AppLogBatchWriter;
+import fr.uge.structsure.repositories.AppLogRepository;
+import fr.uge.structsure.repositories.AppLogSearchRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks that the entries stored as an event and its values are shown
+ * with the same text as the free-text entries written before the events.
+ * The expected messages are built with the formats used at that time.
+ */
+class AppLogRenderingTest {
+    private static final HttpServletRequest REQUEST = new MockHttpServletRequest();
+
+    private AppLogWriter writer;
+    private AppLogService appLogService;
+
+    private Account account;
+    private Structure structure;
+    private Plan plan;
+    private Sensor sensor;
+    private Scan scan;
+
+    @BeforeEach
+    void setUp() throws TraitementException {
+        writer = mock(AppLogWriter.class);
+        var authValidation = mock(AuthValidationService.class);
+        when(authValidation.currentUser(any())).thenThrow(new TraitementException(Error.UNAUTHORIZED_OPERATION));
+        appLogService = new AppLogService(mock(AppLogRepository.class), authValidation, writer,
+            mock(AppLogBatchWriter.class), mock(AppLogSearchRepository.class), 31, 1000);
+
+        account = new Account("jdoe", "-", "John", "Doe", Role.OPERATEUR, true);
+        account.setId(7);
+        structure = new Structure("Pont d'Iéna", "Note", false);
+        structure.setId(3);
+        plan = new Plan(12, "Pile 1", false, "plan.png", "Nord", structure, new HashSet<>());
+        sensor = new Sensor("c01", "m01", "Capteur 1", null, structure);
+        scan = new Scan(structure, LocalDateTime.now(), "Scan du matin", account);
+        scan.setId(42);
+    }
+
+    /**
+     * Renders the entry submitted to the writer, as the UI shows it
+     * @return the message of the last submitted entry
+     */
+    private String rendered() {
+        var event = ArgumentCaptor.forClass(AppLogEvent.class);
+        var params = ArgumentCaptor.forClass(String.class);
+        verify(writer).submit(any(), event.capture(), params.capture(), any());
+        clearInvocations(writer);
+        return event.getValue().render(params.getValue());
+    }
+
+    @Test
+    void accountEventsRenderLikeTheLegacyMessages() {
+        appLogService.addAccount(REQUEST, account);
+        assertEquals(String.format("Compte créé: %s - %s (#%d)",
+            account.getLogin(), account.getRole(), account.getId()), rendered());
+
+        appLogService.editAccountAccess(REQUEST, account,
+            List.of(new StructurePermission(3, true), new StructurePermission(4, false)));
+        assertEquals(String.format("Autorisations de compte édité: %s (#%d) -> %s",
+            account.getLogin(), account.getId(), "#3 ajouté, #4 retiré"), rendered());
+
+        appLogService.deleteAccount(REQUEST, "jdoe", 7);
+        assertEquals(String.format("Compte supprimé: %s (#%d)", "jdoe", 7), rendered());
+    }
+
+    @Test
+    void structureAndPlanEventsRenderLikeTheLegacyMessages() {
+        appLogService.addStructure(REQUEST, structure);
+        assertEquals(String.format("Ouvrage créé: %s (#%d)", structure.getName(), structure.getId()), rendered());
+
+        appLogService.archiveStructure(REQUEST, structure);
+        assertEquals(String.format("Ouvrage archivé: %s (#%d)", structure.getName(), structure.getId()), rendered());
+
+        appLogService.restoreStructure(REQUEST, structure);
+        assertEquals(String.format("Ouvrage restauré: %s (#%d)", structure.getName(), structure.getId()), rendered());
+
+        appLogService.addPlan(REQUEST, plan);
+        assertEquals(String.format("Plan créé: %s", plan), rendered());
+
+        appLogService.editPlan(REQUEST, plan, ", Nom: Pile 1 -> Pile 2");
+        assertEquals(String.format("Plan édité: %s%s", plan, ", Nom: Pile 1 -> Pile 2"), rendered());
+
+        appLogService.archivePlan(REQUEST, plan);
+        assertEquals(String.format("Plan archivé: %s", plan), rendered());
+
+        appLogService.restorePlan(REQUEST, plan);
+        assertEquals(String.format("Plan restoré: %s", plan), rendered());
+    }
+
+    @Test
+    void sensorEventsRenderLikeTheLegacyMessages() {
+        appLogService.addSensor(REQUEST, sensor);
+        assertEquals(String.format("Capteur créé: %s (%s), Note: %s",
+            sensor.getName(), sensor.getSensorId(), sensor.getNote()), rendered());
+
+        appLogService.editSensor(REQUEST, sensor, ", Nom: A -> B");
+        assertEquals(String.format("Capteur édité: %s (%s)%s",
+            sensor.getName(), sensor.getSensorId(), ", Nom: A -> B"), rendered());
+
+        appLogService.archiveSensor(REQUEST, sensor);
+        assertEquals(String.format("Capteur archivé: %s (%s)", sensor.getName(), sensor.getSensorId()), rendered());
+
+        appLogService.restoreSensor(REQUEST, sensor);
+        assertEquals(String.format("Capteur restauré: %s (%s)", sensor.getName(), sensor.getSensorId()), rendered());
+    }
+
+    @Test
+    void scanEventsRenderLikeTheLegacyMessages() {
+        appLogService.addScan(account, scan, 15);
+        assertEquals(String.format("Scan ajouté: Scan: #%d, Ouvrage: %s (#%d), Auteur: %s, Résultats: %d, Note: %s",
+            scan.getId(), structure.getName(), structure.getId(), account.getLogin(), 15, scan.getNote()), rendered());
+
+        appLogService.addScanEdit(account, scan, sensor, null, true);
+        assertEquals(String.format("Capteur créé lors du scan #%d: %s (%s), Note: %s",
+            scan.getId(), sensor.getName(), sensor.getSensorId(), sensor.getNote()), rendered());
+
+        var edit = new AndroidSensorEditDTO("C01-M01", null, null, "Capteur 2", null, null, null, null);
+        appLogService.addScanEdit(account, scan, sensor, edit, false);
+        assertEquals(String.format("Capteur édité lors du scan #%d: %s (%s)%s",
+            scan.getId(), sensor.getName(), sensor.getSensorId(), edit.logDiff(sensor)), rendered());
+
+        appLogService.addScanNote(account, scan, structure, "Nouvelle note");
+        assertEquals(String.format("Note d'ouvrage éditée lors du scan #%d: %s (%s), Note: %s -> %s",
+            scan.getId(), structure.getName(), structure.getId(), scan.getNote(), "Nouvelle note"), rendered());
+    }
+
+    @Test
+    void legacyEntriesKeepTheirText() {
+        var legacy = new AppLog(account, "Plan créé: Nord/Pile 1 (#12)");
+        assertEquals("Plan créé: Nord/Pile 1 (#12)", legacy.getMessage());
+        assertEquals(legacy.getMessage(), AppLogEvent.PLAN_CREATED.render(AppLogEvent.PLAN_CREATED.encode(plan)));
+    }
+}
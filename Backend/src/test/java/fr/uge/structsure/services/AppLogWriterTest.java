@@ -0,0 +1,88 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.entities.AppLogEvent;
+import fr.uge.structsure.repositories.AppLogBatchWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class AppLogWriterTest {
+    private AppLogBatchWriter batchWriter;
+    private List<String> inserted;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        batchWriter = mock(AppLogBatchWriter.class);
+        inserted = new ArrayList<>();
+        when(batchWriter.insertAll(anyList())).thenAnswer(invocation -> {
+            var entries = (List<AppLogBatchWriter.Entry>) invocation.getArgument(0);
+            synchronized (inserted) {
+                entries.forEach(entry -> inserted.add(entry.params()));
+            }
+            return entries.size();
+        });
+    }
+
+    private static void submit(AppLogWriter writer, int index) {
+        writer.submit(null, AppLogEvent.PLAN_CREATED, "Plan " + index, AppLogBatchWriter.Target.account(1));
+    }
+
+    @Test
+    void shutdownDrainsTheQueue() throws InterruptedException {
+        var writer = new AppLogWriter(batchWriter, 100, 3, 60_000);
+        for (var i = 0; i < 7; i++) submit(writer, i);
+        assertEquals(7, writer.pending());
+        verifyNoInteractions(batchWriter);
+
+        writer.shutdown();
+        assertEquals(0, writer.pending());
+        assertEquals(7, writer.written());
+        assertEquals(List.of("Plan 0", "Plan 1", "Plan 2", "Plan 3", "Plan 4", "Plan 5", "Plan 6"), inserted);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<AppLogBatchWriter.Entry>> batches = ArgumentCaptor.forClass(List.class);
+        verify(batchWriter, times(3)).insertAll(batches.capture());
+        assertEquals(List.of(3, 3, 1), batches.getAllValues().stream().map(List::size).toList());
+    }
+
+    @Test
+    void runningWriterIsDrainedOnShutdown() throws InterruptedException {
+        var writer = new AppLogWriter(batchWriter, 1000, 50, 200);
+        writer.start();
+        for (var i = 0; i < 120; i++) submit(writer, i);
+        writer.shutdown();
+        assertEquals(0, writer.pending());
+        assertEquals(120, writer.written());
+        assertEquals(120, inserted.size());
+    }
+
+    @Test
+    void fullQueueWritesDirectly() throws InterruptedException {
+        var writer = new AppLogWriter(batchWriter, 2, 10, 60_000);
+        for (var i = 0; i < 3; i++) submit(writer, i);
+        assertEquals(2, writer.pending());
+        assertEquals(List.of("Plan 2"), inserted);
+        assertEquals(1, writer.written());
+
+        writer.shutdown();
+        assertEquals(3, writer.written());
+        assertEquals(List.of("Plan 2", "Plan 0", "Plan 1"), inserted);
+    }
+
+    @Test
+    void failedWritesAreCounted() throws InterruptedException {
+        when(batchWriter.insertAll(anyList())).thenThrow(new IllegalStateException("database is locked"));
+        var writer = new AppLogWriter(batchWriter, 1, 10, 60_000);
+        for (var i = 0; i < 3; i++) submit(writer, i);
+        writer.shutdown();
+        assertEquals(0, writer.written());
+        assertEquals(3, writer.failed());
+    }
+}
@@ -0,0 +1,148 @@
+package fr.uge.structsure.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.config.JwtUtils;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.dto.scan.ScanJobDTO;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.PendingScan;
+import fr.uge.structsure.entities.PendingScanState;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.entities.Sensor;
+import fr.uge.structsure.entities.State;
+import fr.uge.structsure.entities.Structure;
+import fr.uge.structsure.exceptions.Error;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.PendingScanRepository;
+import fr.uge.structsure.repositories.SensorRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the processing of the queued scans. The poller is slowed down
+ * so that the scans stored directly in the queue are only processed
+ * when the test asks for it.
+ */
+@SpringBootTest(properties = "app.scans.queue.poll-delay=3600000")
+class ScanQueueServiceTest extends DataBaseTests {
+
+    @Autowired
+    private ScanQueueService queueService;
+
+    @Autowired
+    private PendingScanRepository pendingScanRepository;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    private String prefix;
+    private Structure structure;
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        prefix = "Q" + System.nanoTime();
+        structure = structureRepository.save(new Structure("Queue " + prefix, "", false));
+        account = accountRepository.save(new Account(prefix, "-", "John", "Doe", Role.OPERATEUR, true));
+        sensorRepository.save(new Sensor(prefix + "C", prefix + "M", prefix + "S", "", structure));
+    }
+
+    private MockHttpServletRequest request(Account user) {
+        var request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + jwtUtils.generateToken(user.getLogin()));
+        return request;
+    }
+
+    private AndroidScanResultDTO scan(String sensor) {
+        var result = new AndroidSensorResultDTO(prefix + "C" + sensor + "-" + prefix + "M" + sensor, State.OK.name());
+        return new AndroidScanResultDTO(structure.getId(), 1L, "2025-01-01 10:00:00.000", "", "", prefix, List.of(result), List.of());
+    }
+
+    /**
+     * Waits for the given scan to be processed
+     * @param ticket the ticket of the scan
+     * @return the final status of the scan
+     */
+    private ScanJobDTO await(String ticket) throws TraitementException, InterruptedException {
+        for (var i = 0; i < 100; i++) {
+            var status = queueService.status(request(account), ticket);
+            if (!status.state().equals(PendingScanState.QUEUED.name())
+                && !status.state().equals(PendingScanState.RUNNING.name())) return status;
+            Thread.sleep(50);
+        }
+        return fail("Scan " + ticket + " not processed");
+    }
+
+    @Test
+    void submittedScanIsSaved() throws TraitementException, InterruptedException {
+        var ticket = queueService.submit(request(account), scan("")).ticket();
+        var status = await(ticket);
+        assertEquals(PendingScanState.DONE.name(), status.state());
+        assertNotNull(status.scanId());
+    }
+
+    @Test
+    void rejectedScanFailsWithTheError() throws TraitementException, InterruptedException {
+        var ticket = queueService.submit(request(account), scan("Unknown")).ticket();
+        var status = await(ticket);
+        assertEquals(PendingScanState.FAILED.name(), status.state());
+        assertEquals(Error.SENSOR_NOT_FOUND.message, status.error());
+        assertNull(status.scanId());
+    }
+
+    @Test
+    void otherAccountDoesNotFindTheTicket() throws TraitementException {
+        var other = accountRepository.save(new Account(prefix + "-other", "-", "Jane", "Doe", Role.OPERATEUR, true));
+        var ticket = queueService.submit(request(account), scan("")).ticket();
+        var exception = assertThrows(TraitementException.class, () -> queueService.status(request(other), ticket));
+        assertEquals(Error.SCAN_JOB_NOT_FOUND, exception.error);
+    }
+
+    @Test
+    void duplicateClaimIsIgnored() {
+        var pending = pendingScanRepository.save(new PendingScan(UUID.randomUUID().toString(), "{}", account));
+        assertEquals(1, pendingScanRepository.claim(pending.getId(), LocalDateTime.now()));
+        assertEquals(0, pendingScanRepository.claim(pending.getId(), LocalDateTime.now()));
+        assertEquals(PendingScanState.RUNNING, pendingScanRepository.findById(pending.getId()).orElseThrow().getState());
+    }
+
+    @Test
+    void stalledScanIsRequeued() throws Exception {
+        var payload = mapper.writeValueAsString(scan(""));
+        var stalled = pendingScanRepository.save(new PendingScan(UUID.randomUUID().toString(), payload, account));
+        var running = pendingScanRepository.save(new PendingScan(UUID.randomUUID().toString(), payload, account));
+        pendingScanRepository.claim(stalled.getId(), LocalDateTime.now().minusHours(1));
+        pendingScanRepository.claim(running.getId(), LocalDateTime.now());
+
+        queueService.poll();
+        var status = await(stalled.getTicket());
+        assertEquals(PendingScanState.DONE.name(), status.state());
+        assertNotNull(status.scanId());
+        assertEquals(PendingScanState.RUNNING.name(), queueService.status(request(account), running.getTicket()).state());
+    }
+}
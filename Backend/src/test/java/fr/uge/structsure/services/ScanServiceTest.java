@@ -0,0 +1,83 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.entities.Sensor;
+import fr.uge.structsure.entities.State;
+import fr.uge.structsure.entities.Structure;
+import fr.uge.structsure.exceptions.Error;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.SensorRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ScanServiceTest extends DataBaseTests {
+
+    @Autowired
+    private ScanService scanService;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    private String prefix;
+    private Structure structure;
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        prefix = "S" + System.nanoTime();
+        structure = structureRepository.save(new Structure("Scans " + prefix, "", false));
+        account = accountRepository.save(new Account(prefix, "-", "John", "Doe", Role.OPERATEUR, true));
+        sensorRepository.save(new Sensor(prefix + "C", prefix + "M", prefix + "S", "", structure));
+    }
+
+    @Test
+    void failedScanIsRolledBack() throws TraitementException {
+        var scan = scan(List.of(result(""), result("Unknown")));
+        var exception = assertThrows(TraitementException.class, () -> scanService.saveScanResults(account, scan));
+        assertEquals(Error.SENSOR_NOT_FOUND, exception.error);
+
+        var retry = scanService.saveScanResults(account, scan(List.of(result(""))));
+        assertNotNull(retry.scanId());
+        assertFalse(retry.alreadyIngested());
+    }
+
+    @Test
+    void concurrentDuplicateGetsTheSavedScan() throws TraitementException {
+        var scan = scan(List.of(result("")));
+        var failure = new DataIntegrityViolationException("UNIQUE constraint failed: scan.fingerprint");
+        assertSame(failure, assertThrows(DataIntegrityViolationException.class, () -> scanService.concurrentDuplicate(scan, failure)));
+
+        var saved = scanService.saveScanResults(account, scan);
+        var duplicate = scanService.concurrentDuplicate(scan, failure);
+        assertEquals(saved.scanId(), duplicate.scanId());
+        assertTrue(duplicate.alreadyIngested());
+    }
+
+    private AndroidScanResultDTO scan(List<AndroidSensorResultDTO> results) {
+        return new AndroidScanResultDTO(structure.getId(), 1L, "2025-01-01 10:00:00.000", "", "", prefix, results, List.of());
+    }
+
+    private AndroidSensorResultDTO result(String sensor) {
+        return new AndroidSensorResultDTO(prefix + "C" + sensor + "-" + prefix + "M" + sensor, State.OK.name());
+    }
+}
@@ -0,0 +1,165 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.config.JwtUtils;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.dto.scan.ScanChunkDTO;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.entities.Sensor;
+import fr.uge.structsure.entities.State;
+import fr.uge.structsure.entities.Structure;
+import fr.uge.structsure.exceptions.Error;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.SensorRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ScanUploadServiceTest extends DataBaseTests {
+
+    @Autowired
+    private ScanUploadService uploadService;
+
+    @Autowired
+    private ScanService scanService;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private SensorRepository sensorRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String prefix;
+    private Structure structure;
+    private Account account;
+    private Account other;
+
+    @BeforeEach
+    void setUp() {
+        prefix = "U" + System.nanoTime();
+        structure = structureRepository.save(new Structure("Uploads " + prefix, "", false));
+        account = accountRepository.save(new Account(prefix, "-", "John", "Doe", Role.OPERATEUR, true));
+        other = accountRepository.save(new Account(prefix + "-other", "-", "Jane", "Doe", Role.OPERATEUR, true));
+        for (var i = 0; i < 3; i++) {
+            sensorRepository.save(new Sensor(prefix + "C" + i, prefix + "M" + i, prefix + "S" + i, "", structure));
+        }
+    }
+
+    private MockHttpServletRequest request(Account user) {
+        var request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + jwtUtils.generateToken(user.getLogin()));
+        return request;
+    }
+
+    private AndroidScanResultDTO metadata() {
+        return new AndroidScanResultDTO(structure.getId(), 1L, "2025-01-01 10:00:00.000", "", "", prefix, List.of(), List.of());
+    }
+
+    private ScanChunkDTO chunk(int... sensors) {
+        var results = new ArrayList<AndroidSensorResultDTO>();
+        for (var sensor : sensors) {
+            results.add(new AndroidSensorResultDTO(prefix + "C" + sensor + "-" + prefix + "M" + sensor, State.OK.name()));
+        }
+        return new ScanChunkDTO(results, List.of());
+    }
+
+    private long results(long scanId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM result WHERE scan_id = ?", Long.class, scanId);
+    }
+
+    @Test
+    void openReturnsTheSameSession() throws TraitementException {
+        var first = uploadService.open(request(account), metadata());
+        assertEquals(first.uploadId(), uploadService.open(request(account), metadata()).uploadId());
+        assertNotEquals(first.uploadId(), uploadService.open(request(other), metadata()).uploadId());
+    }
+
+    @Test
+    void resentChunkReplacesTheChunk() throws TraitementException {
+        var uploadId = uploadService.open(request(account), metadata()).uploadId();
+        uploadService.putChunk(request(account), uploadId, 0, chunk(0, 1));
+        uploadService.putChunk(request(account), uploadId, 0, chunk(0));
+        var status = uploadService.putChunk(request(account), uploadId, 1, chunk(2));
+        assertEquals(2, status.acknowledged());
+        assertEquals(2, status.received());
+
+        var committed = uploadService.commit(request(account), uploadId, 2);
+        assertTrue(committed.committed());
+        assertEquals(2, results(committed.scanId()));
+    }
+
+    @Test
+    void missingChunkIsReported() throws TraitementException {
+        var uploadId = uploadService.open(request(account), metadata()).uploadId();
+        uploadService.putChunk(request(account), uploadId, 0, chunk(0));
+        var status = uploadService.putChunk(request(account), uploadId, 2, chunk(2));
+        assertEquals(1, status.acknowledged());
+        assertEquals(2, status.received());
+
+        var exception = assertThrows(TraitementException.class, () -> uploadService.commit(request(account), uploadId, 3));
+        assertEquals(Error.UPLOAD_INCOMPLETE, exception.error);
+        assertFalse(uploadService.status(request(account), uploadId).committed());
+    }
+
+    @Test
+    void secondCommitGivesTheSameScan() throws TraitementException {
+        var uploadId = uploadService.open(request(account), metadata()).uploadId();
+        uploadService.putChunk(request(account), uploadId, 0, chunk(0, 1, 2));
+        var first = uploadService.commit(request(account), uploadId, 1);
+        var second = uploadService.commit(request(account), uploadId, 1);
+        assertTrue(second.committed());
+        assertEquals(first.scanId(), second.scanId());
+        assertEquals(3, results(first.scanId()));
+        assertEquals(first.scanId(), uploadService.open(request(account), metadata()).scanId());
+    }
+
+    @Test
+    void scanAlreadySavedIsReused() throws TraitementException {
+        var uploadId = uploadService.open(request(account), metadata()).uploadId();
+        uploadService.putChunk(request(account), uploadId, 0, chunk(0));
+        var scan = metadata();
+        var saved = scanService.saveScanResults(account, new AndroidScanResultDTO(scan.structureId(), scan.scanId(),
+            scan.launchDate(), scan.scanNote(), scan.structureNote(), scan.login(), chunk(0).results(), List.of()));
+
+        var committed = uploadService.commit(request(account), uploadId, 1);
+        assertTrue(committed.committed());
+        assertEquals(saved.scanId(), committed.scanId());
+        assertEquals(1, results(saved.scanId()));
+    }
+
+    @Test
+    void otherAccountDoesNotFindTheUpload() throws TraitementException {
+        var uploadId = uploadService.open(request(account), metadata()).uploadId();
+        for (var call : List.<Executable>of(
+            () -> uploadService.status(request(other), uploadId),
+            () -> uploadService.putChunk(request(other), uploadId, 0, chunk(0)),
+            () -> uploadService.commit(request(other), uploadId, 0)
+        )) {
+            assertEquals(Error.UPLOAD_NOT_FOUND, assertThrows(TraitementException.class, call).error);
+        }
+        assertEquals(0, uploadService.status(request(account), uploadId).received());
+    }
+}
@@ -0,0 +1,87 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.repositories.SensorRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SensorRegistryTest {
+    private final SensorRepository sensorRepository = mock(SensorRepository.class);
+    private final SensorRegistry registry = new SensorRegistry(sensorRepository);
+
+    @AfterEach
+    void clean() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void consistencyCheckRemovesTheDrift() {
+        when(sensorRepository.findAllChipsAndNames()).thenReturn(List.<Object[]>of(new Object[] { "C1", "M1", "S1" }));
+        registry.load();
+        assertTrue(registry.reserveName("Stale"));
+        assertEquals(1, registry.checkConsistency());
+        assertFalse(registry.nameExists("Stale"));
+        assertTrue(registry.nameExists("S1"));
+    }
+
+    @Test
+    void consistencyCheckKeepsTheValuesReservedDuringTheRead() {
+        when(sensorRepository.findAllChipsAndNames()).thenAnswer(invocation -> {
+            /* Sensor created and committed once the database has been read */
+            registry.reserveName("New");
+            registry.reserveChips("C2", "M2");
+            return List.<Object[]>of(new Object[] { "C1", "M1", "S1" });
+        });
+        registry.checkConsistency();
+        assertTrue(registry.nameExists("New"));
+        assertTrue(registry.chipExists("C2"));
+        assertTrue(registry.chipExists("M2"));
+    }
+
+    @Test
+    void renamingRolledBackKeepsTheOldName() {
+        when(sensorRepository.findAllChipsAndNames()).thenReturn(List.<Object[]>of(new Object[] { "C1", "M1", "Old" }));
+        registry.load();
+
+        var synchronizations = transaction(() -> {
+            assertTrue(registry.reserveName("New"));
+            registry.releaseNameOnCommit("Old");
+        });
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        assertTrue(registry.nameExists("Old"));
+        assertFalse(registry.nameExists("New"));
+
+        synchronizations = transaction(() -> {
+            assertTrue(registry.reserveName("New"));
+            registry.releaseNameOnCommit("Old");
+        });
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        assertFalse(registry.nameExists("Old"));
+        assertTrue(registry.nameExists("New"));
+    }
+
+    /**
+     * Runs the given action as in a transaction
+     * @param action the action to run
+     * @return the synchronizations registered by the action
+     */
+    private static List<TransactionSynchronization> transaction(Runnable action) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            action.run();
+            return new ArrayList<>(TransactionSynchronizationManager.getSynchronizations());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
@@ -13,6 +13,7 @@ import fr.uge.structsure.repositories.ResultRepository;
 import fr.uge.structsure.repositories.SensorRepository;
 import fr.uge.structsure.repositories.SensorRepositoryCriteriaQuery;
 import fr.uge.structsure.repositories.StructureRepository;
+import fr.uge.structsure.repositories.StructureSummaryWriter;
 import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -45,6 +46,12 @@ class SensorServiceTest extends DataBaseTests {
     @Mock
     private AppLogService appLogs;
 
+    @Mock
+    private SensorRegistry sensorRegistry;
+
+    @Mock
+    private StructureSummaryWriter summaryWriter;
+
     @InjectMocks
     private SensorService sensorService;
 
@@ -93,7 +100,8 @@ class SensorServiceTest extends DataBaseTests {
     void testCreateSensor_SensorNameAlreadyExists() {
         BaseSensorDTO dto = new BaseSensorDTO(1L, "ABC1", "ABC2", "Sensor1", Optional.empty(), "");
         when(structureRepository.findById(dto.structureId())).thenReturn(Optional.of(new Structure()));
-        when(sensorRepository.nameAlreadyExists(dto.name())).thenReturn(true);
+        when(sensorRegistry.reserveChips(dto.controlChip(), dto.measureChip())).thenReturn(true);
+        when(sensorRegistry.reserveName(dto.name())).thenReturn(false);
 
         TraitementException exception = assertThrows(TraitementException.class, () -> sensorService.createSensor(REQUEST, dto));
         assertEquals(Error.SENSOR_NAME_ALREADY_EXISTS, exception.error);
@@ -106,6 +114,8 @@ class SensorServiceTest extends DataBaseTests {
         when(structureRepository.findById(dto.structureId())).thenReturn(Optional.of(structure));
         when(sensorRepository.findByName(dto.name())).thenReturn(Optional.empty());
         when(sensorRepository.findByChipTag(dto.controlChip())).thenReturn(List.of());
+        when(sensorRegistry.reserveChips(dto.controlChip(), dto.measureChip())).thenReturn(true);
+        when(sensorRegistry.reserveName(dto.name())).thenReturn(true);
 
         Sensor sensor = new Sensor(dto.controlChip(), dto.measureChip(), dto.name(), dto.note(), structure);
         when(sensorRepository.save(any(Sensor.class))).thenReturn(sensor);
@@ -0,0 +1,63 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.config.StatementStatisticsDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementStatisticsTest {
+
+    @Test
+    void normalizesValuesAndLists() {
+        assertEquals("SELECT s1_0.id FROM sensor s1_0 WHERE s1_0.plan_id = ? AND s1_0.name = ?",
+            StatementStatistics.normalize("SELECT s1_0.id FROM sensor s1_0\n  WHERE s1_0.plan_id = 12 AND s1_0.name = 'it''s'"));
+        assertEquals("SELECT * FROM result WHERE id IN (...)",
+            StatementStatistics.normalize("SELECT * FROM result WHERE id IN (?, ?, ?)"));
+        assertEquals("INSERT INTO result (scan_id, state) VALUES (...)",
+            StatementStatistics.normalize("INSERT INTO result (scan_id, state) VALUES (?, ?), (?, ?), (?, ?)"));
+    }
+
+    @Test
+    void countsTheStatementsOfNestedScopes() {
+        var statistics = new StatementStatistics(100, 20, 200);
+        try (var request = statistics.open("GET /api/structures")) {
+            statistics.record("SELECT * FROM structure", 1_000, List.of());
+            try (var sensors = statistics.open("sensors")) {
+                for (var i = 0; i < 3; i++) {
+                    statistics.record("SELECT * FROM sensor WHERE plan_id = " + i, 1_000, List.of());
+                }
+                assertEquals(3, sensors.total());
+                assertEquals(3, sensors.maxRepeats());
+            }
+            assertEquals(4, request.total());
+            assertEquals(3, request.counts().get("SELECT * FROM sensor WHERE plan_id = ?"));
+        }
+        statistics.record("SELECT 1", 1_000, List.of());
+        var stats = statistics.stats(10);
+        assertEquals(3, stats.size());
+        assertEquals(3, stats.stream().filter(s -> s.statement().contains("sensor")).findFirst().orElseThrow().count());
+        statistics.reset();
+        assertTrue(statistics.stats(10).isEmpty());
+    }
+
+    @Test
+    void recordsTheStatementsOfTheDataSource() {
+        var statistics = new StatementStatistics(100, 20, 200);
+        var dataSource = new SingleConnectionDataSource("jdbc:sqlite::memory:", true);
+        var jdbc = new JdbcTemplate(new StatementStatisticsDataSource(dataSource, statistics));
+        try (var scope = statistics.open("test")) {
+            jdbc.execute("CREATE TABLE sensor (id INTEGER PRIMARY KEY, name TEXT)");
+            jdbc.update("INSERT INTO sensor (id, name) VALUES (?, ?)", 1L, "a");
+            jdbc.update("INSERT INTO sensor (id, name) VALUES (?, ?)", 2L, "b");
+            assertEquals(2, jdbc.queryForObject("SELECT COUNT(*) FROM sensor WHERE id > ?", Long.class, 0L));
+            assertEquals(4, scope.total());
+            assertEquals(2, scope.maxRepeats());
+        } finally {
+            dataSource.destroy();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.config.JwtUtils;
+import fr.uge.structsure.dto.structure.AllStructureRequestDTO;
+import fr.uge.structsure.dto.structure.AllStructureResponseDTO;
+import fr.uge.structsure.dto.userAccount.UserStructureAccessRequestDTO;
+import fr.uge.structsure.dto.userAccount.accountStructure.StructurePermission;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.entities.Structure;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import fr.uge.structsure.repositories.StructureSummaryWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the structures listing of the accounts that are not
+ * administrators only contains the structures they are allowed to
+ * access, as filtered by the database.
+ */
+@SpringBootTest
+class StructureAccessTest extends DataBaseTests {
+
+    @Autowired
+    private StructureService structureService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private StructureSummaryWriter summaryWriter;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private TransactionTemplate transaction;
+
+    private String prefix;
+    private Account admin;
+    private final List<Structure> structures = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        prefix = "P" + System.nanoTime();
+        admin = accountRepository.save(new Account(prefix + "-admin", "-", "John", "Doe", Role.ADMIN, true));
+        structures.clear();
+        for (var i = 0; i < 4; i++) {
+            var structure = structureRepository.save(new Structure(prefix + " " + i, "", false));
+            summaryWriter.refresh(structure.getId());
+            structures.add(structure);
+        }
+    }
+
+    private MockHttpServletRequest request(Account user) {
+        var request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + jwtUtils.generateToken(user.getLogin()));
+        return request;
+    }
+
+    private AllStructureRequestDTO listing(Integer limit) {
+        return new AllStructureRequestDTO(prefix, Optional.empty(), Optional.empty(), "NAME", "ASC",
+            Optional.ofNullable(limit), Optional.empty());
+    }
+
+    /**
+     * Gets the ids of the structures listed for the given account, and
+     * checks that the paged listing gives the same ones.
+     * @param user the account listing the structures
+     * @return the ids of the listed structures
+     */
+    private Set<Long> listed(Account user) throws TraitementException {
+        var all = structureService.getAllStructure(listing(null), request(user));
+        var page = structureService.getStructuresPage(listing(structures.size()), request(user));
+        assertEquals(all, page.structures());
+        assertEquals(all.size(), page.sizeOfResult());
+        return all.stream().map(AllStructureResponseDTO::id).collect(Collectors.toSet());
+    }
+
+    private Set<Long> ids(int... indexes) {
+        return Arrays.stream(indexes).mapToObj(i -> structures.get(i).getId()).collect(Collectors.toSet());
+    }
+
+    /**
+     * Changes the access of the given account, within a transaction as
+     * the entity manager opened for each request would do.
+     */
+    private void access(Account user, boolean hasAccess, int... indexes) {
+        var permissions = Arrays.stream(indexes)
+            .mapToObj(i -> new StructurePermission(structures.get(i).getId(), hasAccess)).toList();
+        transaction.executeWithoutResult(status -> {
+            try {
+                accountService.updateUserStructureAccess(request(admin), user.getLogin(), new UserStructureAccessRequestDTO(permissions));
+            } catch (TraitementException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    void adminSeesAllTheStructures() throws TraitementException {
+        assertEquals(ids(0, 1, 2, 3), listed(admin));
+    }
+
+    @Test
+    void nonAdminSeesTheAllowedStructures() throws TraitementException {
+        var operator = accountRepository.save(new Account(prefix + "-operator", "-", "Jane", "Doe", Role.OPERATEUR, true));
+        var responsible = accountRepository.save(new Account(prefix + "-responsible", "-", "Jim", "Doe", Role.RESPONSABLE, true));
+        assertEquals(Set.of(), listed(operator));
+        assertEquals(Set.of(), listed(responsible));
+
+        access(operator, true, 0, 2);
+        access(responsible, true, 1);
+        assertEquals(ids(0, 2), listed(operator));
+        assertEquals(ids(1), listed(responsible));
+
+        access(operator, false, 0);
+        access(operator, true, 3);
+        assertEquals(ids(2, 3), listed(operator));
+        assertEquals(ids(1), listed(responsible));
+    }
+}
@@ -0,0 +1,109 @@
+package fr.uge.structsure.services;
+
+import fr.uge.structsure.DataBaseTests;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.dto.sensors.ArchiveSensorRequestDTO;
+import fr.uge.structsure.dto.sensors.BaseSensorDTO;
+import fr.uge.structsure.entities.Account;
+import fr.uge.structsure.entities.Role;
+import fr.uge.structsure.entities.State;
+import fr.uge.structsure.entities.Structure;
+import fr.uge.structsure.exceptions.TraitementException;
+import fr.uge.structsure.repositories.AccountRepository;
+import fr.uge.structsure.repositories.StructureRepository;
+import fr.uge.structsure.repositories.StructureSummaryWriter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the summary of a structure, updated by each change,
+ * stays equal to the summary computed from scratch.
+ */
+@SpringBootTest
+class StructureSummaryTest extends DataBaseTests {
+
+    @Autowired
+    private SensorService sensorService;
+
+    @Autowired
+    private ScanService scanService;
+
+    @Autowired
+    private StructureService structureService;
+
+    @Autowired
+    private StructureRepository structureRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private StructureSummaryWriter summaryWriter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void summaryFollowsTheSensorsResultsAndArchives() throws TraitementException {
+        var request = new MockHttpServletRequest();
+        var prefix = "Y" + System.nanoTime();
+        var structure = structureRepository.save(new Structure("Summary " + prefix, "", false));
+        var account = accountRepository.save(new Account(prefix, "-", "John", "Doe", Role.OPERATEUR, true));
+        summaryWriter.refresh(structure.getId());
+        assertSummary(structure, 0, 0, 0, 0, State.UNKNOWN);
+
+        for (var i = 1; i <= 3; i++) {
+            sensorService.createSensor(request, new BaseSensorDTO(structure.getId(), prefix + "C" + i, prefix + "M" + i,
+                prefix + "S" + i, Optional.empty(), ""));
+        }
+        assertSummary(structure, 3, 0, 0, 0, State.UNKNOWN);
+
+        scanService.saveScanResults(account, new AndroidScanResultDTO(structure.getId(), 1L, "2025-01-01 10:00:00.000",
+            "", "", prefix, List.of(result(prefix, 1, State.OK), result(prefix, 2, State.OK)), List.of()));
+        assertSummary(structure, 3, 2, 0, 0, State.OK);
+
+        scanService.saveScanResults(account, new AndroidScanResultDTO(structure.getId(), 2L, "2025-01-02 10:00:00.000",
+            "", "", prefix, List.of(result(prefix, 1, State.NOK), result(prefix, 3, State.DEFECTIVE)), List.of()));
+        assertSummary(structure, 3, 1, 1, 1, State.NOK);
+
+        sensorService.archiveASensor(new ArchiveSensorRequestDTO(prefix + "C1", prefix + "M1", true), request, true);
+        assertSummary(structure, 3, 1, 1, 1, State.NOK);
+
+        structureService.archiveStructure(structure.getId(), request);
+        assertSummary(structure, 3, 1, 1, 1, State.NOK);
+
+        sensorService.rebuildStates();
+        assertSummary(structure, 3, 1, 1, 1, State.NOK);
+    }
+
+    private static AndroidSensorResultDTO result(String prefix, int sensor, State state) {
+        return new AndroidSensorResultDTO(prefix + "C" + sensor + "-" + prefix + "M" + sensor, state.name());
+    }
+
+    /**
+     * Checks the stored summary of the structure, then that it is the
+     * same once recomputed from all the sensors.
+     */
+    private void assertSummary(Structure structure, long sensors, long ok, long nok, long defective, State state) {
+        var stored = summary(structure);
+        assertEquals(List.of(sensors, ok, nok, defective, sensors - ok - nok - defective, (long) state.ordinal()), stored);
+        summaryWriter.refreshAll();
+        assertEquals(stored, summary(structure));
+    }
+
+    private List<Long> summary(Structure structure) {
+        return jdbcTemplate.queryForObject(
+            "SELECT sensor_count, ok_count, nok_count, defective_count, unknown_count, state FROM structure_summary WHERE structure_id = ?",
+            (row, index) -> List.of(row.getLong(1), row.getLong(2), row.getLong(3), row.getLong(4), row.getLong(5), row.getLong(6)),
+            structure.getId());
+    }
+}
@@ -0,0 +1,124 @@
+package fr.uge.structsure.utils;
+
+import fr.uge.structsure.dto.ErrorDTO;
+import fr.uge.structsure.dto.plan.PlanDTO;
+import fr.uge.structsure.dto.scan.AndroidScanResultDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorEditDTO;
+import fr.uge.structsure.dto.scan.AndroidSensorResultDTO;
+import fr.uge.structsure.dto.sensors.SensorDTO;
+import fr.uge.structsure.dto.structure.StructureResponseDTO;
+import fr.uge.structsure.entities.State;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCodecTest {
+
+    private static final AndroidScanResultDTO SCAN = new AndroidScanResultDTO(3L, -7L, "2025-01-01 10:00:00.000",
+        "Note ✓", "", "login", List.of(
+            new AndroidSensorResultDTO("C1-M1", State.OK.name()),
+            new AndroidSensorResultDTO("C1-M2", State.NOK.name()),
+            new AndroidSensorResultDTO("not-a-sensor-id", "BROKEN"),
+            new AndroidSensorResultDTO("C2-M1", State.UNKNOWN.name())
+        ), List.of(
+            new AndroidSensorEditDTO("C1-M1", "C3", "M3", "Name", null, 12L, -5, Integer.MAX_VALUE),
+            new AndroidSensorEditDTO("C2-M1", null, null, null, null, null, null, null)
+        ));
+
+    private static final StructureResponseDTO STRUCTURE = new StructureResponseDTO(Long.MAX_VALUE, "Pont", null, List.of(
+            new PlanDTO(-1L, "Plan", "/plans/1", null)
+        ), List.of(
+            new SensorDTO("C1", "M1", "Sensor 1", "", State.DEFECTIVE, true, LocalDate.of(1960, 2, 29), 1L, 0, -1),
+            new SensorDTO("C1", "M2", null, null, null, null, null, null, null, null)
+        ));
+
+    private static byte[] encode(AndroidScanResultDTO scan) throws IOException {
+        var output = new ByteArrayOutputStream();
+        BinaryCodec.encode(scan, output);
+        return output.toByteArray();
+    }
+
+    private static byte[] encode(StructureResponseDTO structure) throws IOException {
+        var output = new ByteArrayOutputStream();
+        BinaryCodec.encode(structure, output);
+        return output.toByteArray();
+    }
+
+    private static AndroidScanResultDTO decodeScan(byte[] bytes) throws IOException {
+        return BinaryCodec.decodeScan(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    void scanRoundTrip() throws IOException {
+        assertEquals(SCAN, decodeScan(encode(SCAN)));
+    }
+
+    @Test
+    void structureRoundTrip() throws IOException {
+        assertEquals(STRUCTURE, BinaryCodec.decodeStructure(new ByteArrayInputStream(encode(STRUCTURE))));
+    }
+
+    @Test
+    void errorRoundTrip() throws IOException {
+        var output = new ByteArrayOutputStream();
+        BinaryCodec.encode(new ErrorDTO("Échec"), output);
+        assertEquals(new ErrorDTO("Échec"), BinaryCodec.decodeError(new ByteArrayInputStream(output.toByteArray())));
+    }
+
+    @Test
+    void nullFieldsAreKept() throws IOException {
+        var scan = new AndroidScanResultDTO(null, null, null, null, null, null, null, null);
+        assertEquals(new AndroidScanResultDTO(null, null, null, null, null, null, List.of(), List.of()), decodeScan(encode(scan)));
+        var structure = new StructureResponseDTO(null, null, null, null, null);
+        assertEquals(new StructureResponseDTO(null, null, null, List.of(), List.of()),
+            BinaryCodec.decodeStructure(new ByteArrayInputStream(encode(structure))));
+    }
+
+    @Test
+    void truncatedStreamIsRejected() throws IOException {
+        var bytes = encode(SCAN);
+        for (var length = 0; length < bytes.length; length++) {
+            var truncated = Arrays.copyOf(bytes, length);
+            assertThrows(EOFException.class, () -> decodeScan(truncated), "truncated at " + length);
+        }
+    }
+
+    @Test
+    void malformedVarintIsRejected() {
+        var bytes = new byte[14];
+        System.arraycopy(new byte[] { 'S', 'S', 1, 1 }, 0, bytes, 0, 4);
+        Arrays.fill(bytes, 4, bytes.length, (byte) 0x80); // never ending varint as chip table size
+        var exception = assertThrows(IOException.class, () -> decodeScan(bytes));
+        assertEquals("Malformed varint", exception.getMessage());
+    }
+
+    @Test
+    void unknownChipIsRejected() throws IOException {
+        var scan = new AndroidScanResultDTO(1L, 1L, "", "", "", "", List.of(new AndroidSensorResultDTO("C-M", "OK")), List.of());
+        var bytes = encode(scan);
+        // the document ends with the result (control ref, measure ref, state) and the empty edits list
+        assertEquals(1, bytes[bytes.length - 4]);
+        bytes[bytes.length - 4] = 3;
+        var exception = assertThrows(IOException.class, () -> decodeScan(bytes));
+        assertEquals("Unknown chip 3", exception.getMessage());
+    }
+
+    @Test
+    void otherVersionOrTypeIsRejected() throws IOException {
+        var bytes = encode(SCAN);
+        assertThrows(IOException.class, () -> BinaryCodec.decodeStructure(new ByteArrayInputStream(bytes)));
+        bytes[2] = 2;
+        var exception = assertThrows(IOException.class, () -> decodeScan(bytes));
+        assertEquals("Unsupported version 2", exception.getMessage());
+        bytes[0] = 'X';
+        assertThrows(IOException.class, () -> decodeScan(bytes));
+    }
+}
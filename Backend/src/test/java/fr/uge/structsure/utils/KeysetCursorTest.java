@@ -0,0 +1,56 @@
+package fr.uge.structsure.utils;
+
+import fr.uge.structsure.exceptions.Error;
+import fr.uge.structsure.exceptions.TraitementException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetCursorTest {
+
+    private static void assertRejected(String token, String column, String order, int keyCount) {
+        var exception = assertThrows(TraitementException.class, () -> KeysetCursor.decode(token, column, order, keyCount));
+        assertEquals(Error.INCORRECT_FIELD_VALUE, exception.error);
+    }
+
+    @Test
+    void tokenGivesBackTheCursor() throws TraitementException {
+        var cursor = new KeysetCursor("NAME", "ASC", "Pont de l'Europe", List.of("C1", "M1"));
+        assertEquals(cursor, KeysetCursor.decode(cursor.encode(), "NAME", "ASC", 2));
+    }
+
+    @Test
+    void separatorsAndEscapesAreKept() throws TraitementException {
+        var cursor = new KeysetCursor("NAME", "DESC", "a\nb\\n\\\u0000", List.of("\n", "\\", ""));
+        assertEquals(cursor, KeysetCursor.decode(cursor.encode(), "NAME", "DESC", 3));
+    }
+
+    @Test
+    void nullValueIsKept() throws TraitementException {
+        var cursor = new KeysetCursor("INSTALLATION_DATE", "ASC", null, List.of("C1", "M1"));
+        var decoded = KeysetCursor.decode(cursor.encode(), "INSTALLATION_DATE", "ASC", 2);
+        assertNull(decoded.value());
+        assertEquals(List.of("C1", "M1"), decoded.keys());
+        var empty = new KeysetCursor("NAME", "ASC", "", List.of("1"));
+        assertEquals("", KeysetCursor.decode(empty.encode(), "NAME", "ASC", 1).value());
+    }
+
+    @Test
+    void tokenOfAnotherSortIsRejected() {
+        var token = new KeysetCursor("NAME", "ASC", "name", List.of("1")).encode();
+        assertRejected(token, "STATE", "ASC", 1);
+        assertRejected(token, "NAME", "DESC", 1);
+        assertRejected(token, "NAME", "ASC", 2);
+    }
+
+    @Test
+    void malformedTokenIsRejected() {
+        assertRejected("not base64 !", "NAME", "ASC", 1);
+        var raw = Base64.getUrlEncoder().encodeToString("NAME".getBytes(StandardCharsets.UTF_8));
+        assertRejected(raw, "NAME", "ASC", 1);
+    }
+}
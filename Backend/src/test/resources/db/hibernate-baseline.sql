@@ -0,0 +1,12 @@
+-- Schema created by Hibernate (ddl-auto=update) with the entities of the
+-- last version released before the migrations, as found in the existing
+-- databases. Used to check that these databases are migrated.
+
+CREATE TABLE account (id integer, enabled boolean, firstname varchar(64) not null, lastname varchar(64) not null, login varchar(128) not null unique, password_encrypted varchar(64), role tinyint check (role between 0 and 2), primary key (id));
+CREATE TABLE app_log (id integer, message varchar(255), time timestamp, author_id bigint, primary key (id));
+CREATE TABLE plan (id integer, archived boolean not null, image_url varchar(255), name varchar(32) not null unique, section varchar(128), structure_id bigint not null, primary key (id));
+CREATE TABLE result (id integer, state tinyint check (state between 0 and 3), scan_id bigint, control_chip varchar(255), measure_chip varchar(255), primary key (id));
+CREATE TABLE scan (id integer, date timestamp, note varchar(255), author_id bigint, structure_id bigint, primary key (id));
+CREATE TABLE sensor (control_chip varchar(255) not null, measure_chip varchar(255) not null, archived boolean, installation_date date, name varchar(255), note varchar(255), x REAL, y REAL, plan_id bigint, structure_id bigint, primary key (control_chip, measure_chip));
+CREATE TABLE structure (id integer, archived boolean, name varchar(64) not null unique, note varchar(255), primary key (id));
+CREATE TABLE structure_account (id bigint not null, login bigint not null, primary key (id, login));